@@ -89,9 +89,25 @@ public class AI {
 		// As all projectiles have the same path through the air and max launch
 		// velocity, we only need to
 		// Check one bullet weapon and one projectile weapon
-		boolean bCheck = false;
-		boolean pCheck = false;
-		Random r = new Random();
+		boolean bCheck = true;
+		boolean pCheck = true;
+		// Only the kinds of weapon that can be fired are checked, otherwise the
+		// loop never ends when there is none of a kind
+		for (int i = 0; i < orderedWeapons.size(); i++) {
+			Weapon w = orderedWeapons.get(i);
+			if (i == 3 || i == 5 || w.getAmmo() < 1) {
+				continue;
+			}
+			if (w.firesBullet()) {
+				pCheck = false;
+			} else {
+				bCheck = false;
+			}
+		}
+		if (pCheck && bCheck) {
+			return new Plan();
+		}
+		Random r = state.getRandom();
 		// for(Weapon w : orderedWeapons) {
 		while (true) {
 			int nextSlot = r.nextInt(orderedWeapons.size());
@@ -147,7 +163,7 @@ public class AI {
 		double offset = 0;
 
 		// Creates the error for the AI using a gaussian
-		Random r = new Random();
+		Random r = state.getRandom();
 		double error = r.nextGaussian() * diffMult() / 10.4;// 20.8;
 		// Sets variables
 		double tx = startLocation.getX();
@@ -206,7 +222,7 @@ public class AI {
 	 */
 	private Plan targetBullet(Coord startLocation, Coord target) {
 		// Creates the error for the AI using a gaussian
-		Random r = new Random();
+		Random r = state.getRandom();
 		double error = r.nextGaussian() * diffMult() / 20.8;
 		// Sets variables
 		double tx = startLocation.getX();
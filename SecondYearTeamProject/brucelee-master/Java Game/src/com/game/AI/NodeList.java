@@ -4,7 +4,6 @@ import java.util.ArrayList;
 
 import com.game.physics.Coord;
 import com.game.state.GameState;
-import com.game.state.GameWorld;
 
 /**
  * A list of all the possible nodes that the AI can move to. It has methods in
@@ -52,7 +51,7 @@ public class NodeList {
 	public void addRightNode(double height, boolean candidate) {
 		Coord location = nodes.get(nodes.size() - 1).getLocation();
 		int nextX = location.getX() + 50;
-		if (nextX <= 0 || nextX >= GameWorld.worldWidth) {
+		if (nextX <= 0 || nextX >= state.getWorld().getWorldWidth()) {
 			return;
 		}
 		Coord newPos = state.getNodeYPos(nextX, location.getY());
@@ -69,7 +68,7 @@ public class NodeList {
 		Coord location = nodes.get(nodes.size() - 1).getLocation();
 		int nextX = location.getX() - 50;
 		// Returns if the node would be out of bounds
-		if (nextX <= 0 || nextX >= GameWorld.worldWidth) {
+		if (nextX <= 0 || nextX >= state.getWorld().getWorldWidth()) {
 			return;
 		}
 		Coord newPos = state.getNodeYPos(nextX, location.getY());
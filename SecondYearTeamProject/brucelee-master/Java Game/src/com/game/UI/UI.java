@@ -17,6 +17,7 @@ import com.game.state.Loadout;
 
 import javafx.animation.AnimationTimer;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.event.EventHandler;
@@ -48,7 +49,6 @@ import javafx.stage.Stage;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.Optional;
 
@@ -456,6 +456,7 @@ public class UI extends Application {
 		InputForNetwork.playerId = 1;
 		InputForNetwork.gameType = 2;
 		client.setLoadout(loadouts);
+		stopBrowsingServers();
 		client.joinGame(InputForNetwork.serverName, InputForNetwork.serverPassword);
 		launchUIGameLoop();
 
@@ -542,35 +543,35 @@ public class UI extends Application {
 	}
 
 	/**
-	 * Returns the list of GameServers that are currently on the server.
+	 * Returns the list of GameServers that are currently on the server. The list starts empty
+	 * and is kept up to date with the server browser of the server until stopBrowsingServers()
+	 * is called.
 	 * 
 	 * @return the ObservableList of GameServers.
 	 */
 	public ObservableList<GameServer> getGameServers() {
 		ObservableList<GameServer> obgs = FXCollections.observableArrayList();
+		client.setServerListListener(gameServers -> Platform.runLater(() -> obgs.setAll(gameServers)));
 		client.sendServersListPacket();
-		while (client.menuStatus != Client.MenuStatus.SERVERS_LIST) {
-			try {
-				Thread.sleep(100);
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
-		}
-		for (GameServer gs : client.getGameServers()) {
-			obgs.add(gs);
-		}
 		return obgs;
 	}
 
 	/**
-	 * Returns the list of Players that are on the server's database.
+	 * Stops the list of GameServers from being updated, when the player leaves the list.
+	 */
+	public void stopBrowsingServers() {
+		client.setServerListListener(null);
+		client.sendServersUnsubscribePacket();
+	}
+
+	/**
+	 * Returns the top of the leaderboard kept by the server.
 	 * 
 	 * @return the ObservableList of Players.
 	 */
 	public ObservableList<Player> getLeaderBoard() {
 		ArrayList<Player> alp;
 		ObservableList<Player> obp = FXCollections.observableArrayList();
-		int position = 1;
 		client.sendLeaderboardPacket();
 		while (client.menuStatus != Client.MenuStatus.LEADERBOARD) {
 			try {
@@ -580,16 +581,8 @@ public class UI extends Application {
 			}
 		}
 		alp = client.getLeaderboard();
-		Collections.sort(alp);
-		for (int i = 0; i < alp.size(); i++) {
-			alp.get(i).setPosition(position);
-			obp.add(alp.get(i));
-			if (!(i == (alp.size() - 1))) {
-				if (alp.get(i + 1).getWinRatio() < alp.get(i).getWinRatio()) {
-					position += 1;
-				}
-			}
-		}
+		// The server sends the page in order, with the positions set
+		obp.addAll(alp);
 
 		return obp;
 	}
@@ -736,6 +729,9 @@ public class UI extends Application {
 			@Override
 			public void handle(long now) {
 				inputLoop();
+				if (InputForNetwork.gameType == 2) {
+					client.interpolate(now);
+				}
 				renderer.draw(gc, state);
 				state.updateRobotsHealthBars();
 				if (!(gameController.getAppState() == State.MENU || gameController.getAppState() == State.PLAY)) {
@@ -94,6 +94,7 @@ public class MultiplayerMenuController {
 	 */
 	@FXML
 	private void goMultiplayerMenu() throws IOException {
+		UI.stopBrowsingServers();
 		UI.showMultiplayerMenu();
 	}
 
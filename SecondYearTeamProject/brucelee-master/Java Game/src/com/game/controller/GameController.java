@@ -158,18 +158,7 @@ public class GameController implements Runnable {
 
 		// Get ai plan
 		if (state.hasCommands()) {
-			KeyCode AIinput = state.getNextInput();
-			if (AIinput == KeyCode.D) {
-				state.moveRight(1);
-			} else if (AIinput == KeyCode.A) {
-				state.moveLeft(1);
-			} else if (AIinput == KeyCode.E) {
-				state.moveRight(1);
-				state.jump(1);
-			} else {
-				state.moveLeft(1);
-				state.jump(1);
-			}
+			state.followPlan();
 		}
 
 		if (input != null) {
@@ -263,14 +252,20 @@ public class GameController implements Runnable {
 				lastFpsTime = 0;
 			}
 
-			// update the game logic
+			// update the game logic, starting from the game states received since the last frame
+			client.applyGameMessages();
 			if (client.hasTurn) {
 				sendInput();
 			}
 			frameCounter++;
 			state.updateGameHUD();
-			state.step(0.03);
-			state.onlineCheckDrops();
+			if (client.isLockstep()) {
+				// The game is simulated here from the inputs the server relays
+				client.advanceGame(updateLength / 1e9);
+			} else {
+				state.step(0.03);
+				state.onlineCheckDrops();
+			}
 
 			// we want each frame to take 10 milliseconds, to do this
 			// we've recorded when we started the frame. We add 10 milliseconds
@@ -0,0 +1,57 @@
+package com.game.net;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * A pool of equally sized heap ByteBuffers. Connections take a buffer from the pool when they
+ * open and give it back when they close, so a server that accepts and drops many clients keeps
+ * reusing the same buffers instead of allocating new ones. It is safe to use from any thread.
+ *
+ * @author Robert Chiper
+ */
+public class BufferPool {
+    public static final int BUFFER_SIZE = 8192;
+    public static final BufferPool SHARED = new BufferPool(BUFFER_SIZE, 1024);
+
+    private final int bufferSize;
+    private final ArrayBlockingQueue<ByteBuffer> buffers;
+
+    /**
+     * @param bufferSize the capacity of every buffer in the pool
+     * @param maxPooled  the most buffers that are kept for reuse, the rest are left to the garbage collector
+     */
+    public BufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        buffers = new ArrayBlockingQueue<>(maxPooled);
+    }
+
+    /**
+     * @return a cleared buffer, reused if one is available
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null)
+            return ByteBuffer.allocate(bufferSize);
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Gives a buffer back to the pool. The buffer must not be used by the caller afterwards.
+     *
+     * @param buffer the buffer taken from this pool
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || buffer.capacity() != bufferSize)
+            return;
+        buffers.offer(buffer);
+    }
+
+    /**
+     * @return the capacity of the buffers in the pool
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+}
@@ -0,0 +1,228 @@
+package com.game.net;
+
+import javafx.scene.input.KeyCode;
+
+/**
+ * The reading side of ByteWriter. The static methods decode primitive types straight from the
+ * array of a message, without the temporary arrays ByteUtils uses. An instance keeps a position
+ * in a message and reads the fields one after the other; reset() points it at the next message,
+ * so one reader can be kept and reused by a thread.
+ *
+ * @author Robert Chiper
+ */
+public class ByteReader {
+
+    private byte[] data;
+    private int position;
+
+    /**
+     * Creates a reader which is not pointed at any message yet.
+     */
+    public ByteReader() {
+    }
+
+    /**
+     * @param data     the message to be read
+     * @param position the index of the first byte to be read
+     */
+    public ByteReader(byte[] data, int position) {
+        reset(data, position);
+    }
+
+    /**
+     * Points the reader at another message.
+     *
+     * @param data     the message to be read
+     * @param position the index of the first byte to be read
+     */
+    public void reset(byte[] data, int position) {
+        this.data = data;
+        this.position = position;
+    }
+
+    /**
+     * @return the index of the next byte to be read
+     */
+    public int position() {
+        return position;
+    }
+
+    /**
+     * @param count the number of bytes to be skipped
+     */
+    public void skip(int count) {
+        position += count;
+    }
+
+    /**
+     * @return the next byte
+     */
+    public byte readByte() {
+        return data[position++];
+    }
+
+    /**
+     * @return the next short
+     */
+    public short readShort() {
+        short result = getShort(data, position);
+        position += 2;
+        return result;
+    }
+
+    /**
+     * @return the next int
+     */
+    public int readInt() {
+        int result = getInt(data, position);
+        position += 4;
+        return result;
+    }
+
+    /**
+     * @return the next long
+     */
+    public long readLong() {
+        long result = getLong(data, position);
+        position += 8;
+        return result;
+    }
+
+    /**
+     * @return true if the next byte is 1, false otherwise
+     */
+    public boolean readBoolean() {
+        return data[position++] == 1;
+    }
+
+    /**
+     * Reads a String up to the byte of 0 that ends it and moves past that byte.
+     *
+     * @return the String
+     */
+    public String readString() {
+        int start = position;
+        while (data[position] != 0)
+            position++;
+        String result = new String(data, start, position - start);
+        position++;
+        return result;
+    }
+
+    /**
+     * @return the KeyCode of the next byte, or null if it is not one of the keys of the game
+     */
+    public KeyCode readKeyCode() {
+        return getKeyCode(data[position++]);
+    }
+
+    /**
+     * @param data   the array of bytes which contains an int
+     * @param offset the position where the bytes of the int start
+     * @return the int
+     */
+    public static int getInt(byte[] data, int offset) {
+        return (data[offset] << 24) | ((data[offset + 1] & 0xFF) << 16)
+                | ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
+    }
+
+    /**
+     * @param data   the array of bytes which contains a short
+     * @param offset the position where the bytes of the short start
+     * @return the short
+     */
+    public static short getShort(byte[] data, int offset) {
+        return (short) ((data[offset] << 8) | (data[offset + 1] & 0xFF));
+    }
+
+    /**
+     * @param data   the array of bytes which contains a long
+     * @param offset the position where the bytes of the long start
+     * @return the long
+     */
+    public static long getLong(byte[] data, int offset) {
+        return ((long) getInt(data, offset) << 32) | (getInt(data, offset + 4) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @param data the byte of the KeyCode
+     * @return the KeyCode obtained from the byte, or null if it is not one of the keys of the game
+     */
+    public static KeyCode getKeyCode(byte data) {
+        switch (data) {
+            case 0x0A:
+                return KeyCode.ENTER;
+            case 0x20:
+                return KeyCode.SPACE;
+            case 0x25:
+                return KeyCode.LEFT;
+            case 0x26:
+                return KeyCode.UP;
+            case 0x27:
+                return KeyCode.RIGHT;
+            case 0x28:
+                return KeyCode.DOWN;
+            case 0x31:
+                return KeyCode.DIGIT1;
+            case 0x32:
+                return KeyCode.DIGIT2;
+            case 0x33:
+                return KeyCode.DIGIT3;
+            case 0x41:
+                return KeyCode.A;
+            case 0x44:
+                return KeyCode.D;
+            case 0x45:
+                return KeyCode.E;
+            case 0x51:
+                return KeyCode.Q;
+            case 0x53:
+                return KeyCode.S;
+            case 0x57:
+                return KeyCode.W;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @param data the KeyCode
+     * @return its ASCII value, or 0 if it is not one of the keys of the game
+     */
+    public static byte keyCodeToByte(KeyCode data) {
+        switch (data) {
+            case ENTER:
+                return 0x0A;
+            case SPACE:
+                return 0x20;
+            case LEFT:
+                return 0x25;
+            case UP:
+                return 0x26;
+            case RIGHT:
+                return 0x27;
+            case DOWN:
+                return 0x28;
+            case DIGIT1:
+                return 0x31;
+            case DIGIT2:
+                return 0x32;
+            case DIGIT3:
+                return 0x33;
+            case A:
+                return 0x41;
+            case D:
+                return 0x44;
+            case E:
+                return 0x45;
+            case Q:
+                return 0x51;
+            case S:
+                return 0x53;
+            case W:
+                return 0x57;
+            default:
+                return 0;
+        }
+    }
+}
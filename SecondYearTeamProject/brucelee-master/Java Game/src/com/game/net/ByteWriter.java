@@ -0,0 +1,180 @@
+package com.game.net;
+
+import javafx.scene.input.KeyCode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A replacement for the writing side of ByteUtils that keeps its bytes in a plain array. The
+ * array only grows when a message does not fit in it, and flush() just moves back to the start
+ * of the array, so a writer that is kept and reused builds every message without allocating.
+ * <p>
+ * The write methods have the same names and encodings as the ones in ByteUtils. A writer is not
+ * synchronized, so it must only be used by one thread at a time.
+ * </p>
+ *
+ * @author Robert Chiper
+ */
+public class ByteWriter {
+
+    private byte[] buffer;
+    private int size;
+
+    /**
+     * Creates a writer with room for 256 bytes.
+     */
+    public ByteWriter() {
+        this(256);
+    }
+
+    /**
+     * @param capacity the initial size of the array
+     */
+    public ByteWriter(int capacity) {
+        buffer = new byte[capacity];
+    }
+
+    /**
+     * @return a copy of the bytes written since the last flush
+     */
+    public byte[] getBuffer() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    /**
+     * @return the array the bytes are written to; only the first size() bytes are valid
+     */
+    public byte[] array() {
+        return buffer;
+    }
+
+    /**
+     * @return the number of bytes written since the last flush
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Empties the writer, keeping its array for the next message.
+     */
+    public void flush() {
+        size = 0;
+    }
+
+    /**
+     * Writes the content of the writer to the stream without copying it.
+     *
+     * @param outputStream the stream to write to
+     * @throws IOException if the write fails
+     */
+    public void writeTo(OutputStream outputStream) throws IOException {
+        outputStream.write(buffer, 0, size);
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > buffer.length)
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+    }
+
+    /**
+     * @param data the byte to be written at the end of the buffer
+     */
+    public void write(byte data) {
+        ensureCapacity(1);
+        buffer[size++] = data;
+    }
+
+    /**
+     * @param data the bytes to be written at the end of the buffer
+     */
+    public void write(byte[] data) {
+        write(data, 0, data.length);
+    }
+
+    /**
+     * @param data   the array containing the bytes to be written at the end of the buffer
+     * @param offset the index of the first byte
+     * @param length the number of bytes
+     */
+    public void write(byte[] data, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(data, offset, buffer, size, length);
+        size += length;
+    }
+
+    /**
+     * @param data the integer to be written at the end of the buffer
+     */
+    public void write(int data) {
+        ensureCapacity(4);
+        buffer[size++] = (byte) (data >> 24);
+        buffer[size++] = (byte) (data >> 16);
+        buffer[size++] = (byte) (data >> 8);
+        buffer[size++] = (byte) data;
+    }
+
+    /**
+     * @param data the short to be written at the end of the buffer
+     */
+    public void write(short data) {
+        ensureCapacity(2);
+        buffer[size++] = (byte) (data >> 8);
+        buffer[size++] = (byte) data;
+    }
+
+    /**
+     * @param data the long to be written at the end of the buffer
+     */
+    public void write(long data) {
+        ensureCapacity(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[size++] = (byte) (data >> shift);
+        }
+    }
+
+    /**
+     * Writes the bytes of the String to the end of the buffer and adds a byte of 0 at the end.
+     * ASCII Strings, which all the names in the game are, are written without allocating.
+     *
+     * @param data the String to be written at the end of the buffer
+     */
+    public void write(String data) {
+        int length = data.length();
+        ensureCapacity(length + 1);
+        for (int i = 0; i < length; i++) {
+            char c = data.charAt(i);
+            if (c >= 0x80) {
+                // Not ASCII, fall back to the default charset like ByteUtils does
+                size -= i;
+                write(data.getBytes());
+                write((byte) 0);
+                return;
+            }
+            buffer[size++] = (byte) c;
+        }
+        buffer[size++] = 0;
+    }
+
+    /**
+     * Writes a byte of 1 for true or a byte of 2 for false.
+     *
+     * @param data the boolean to be written at the end of the buffer
+     */
+    public void write(boolean data) {
+        write(data ? (byte) 1 : (byte) 2);
+    }
+
+    /**
+     * Writes the ASCII value of the KeyCode, in the same way as ByteUtils.
+     *
+     * @param data the KeyCode to be written at the end of the buffer
+     */
+    public void write(KeyCode data) {
+        byte code = ByteReader.keyCodeToByte(data);
+        if (code != 0)
+            write(code);
+    }
+}
@@ -5,6 +5,7 @@ import com.game.UI.InputForNetwork;
 import com.game.object.Explosion;
 import com.game.physics.Robot;
 import com.game.state.GameState;
+import com.game.state.Input;
 import com.game.state.Loadout;
 import com.game.weapon.Weapon;
 import javafx.scene.input.KeyCode;
@@ -16,6 +17,9 @@ import java.net.InetAddress;
 import java.net.Socket;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
 
 
 /**
@@ -47,6 +51,11 @@ public class Client {
         DEFAULT, SERVERS_LIST, LEADERBOARD, SERVER_NAME_IN_USE, INVALID_PASSWORD, FULL_SERVER, SERVER_NOT_FOUND
     }
 
+    // The number of players asked for in a leaderboard page
+    public static final int LEADERBOARD_PAGE_SIZE = 50;
+    // The nanoseconds the robots of the game states are drawn behind them, 0 to move them as they arrive
+    public static final long INTERPOLATION_DELAY = Long.getLong("interpolationDelay", 100) * 1_000_000L;
+
     public volatile ConnectionStatus connectionStatus;
     public volatile GameStatus gameStatus;
     public volatile MenuStatus menuStatus;
@@ -61,16 +70,53 @@ public class Client {
     private boolean listening = false;
 
     private boolean listeningGame = false;
+    private int matchId;
+    private long matchToken;
     private Socket gameSocket;
     private OutputStream gameOutputStream;
     private InputStream gameInputStream;
 
-    private ArrayList<GameServer> gameServers;
+    // Replaced, never changed, when the server browser changes, so the UI can read it from its thread
+    private volatile ArrayList<GameServer> gameServers = new ArrayList<>();
+    private volatile int gameServersTotal;
+    private volatile Consumer<ArrayList<GameServer>> serverListListener;
     private ArrayList<Player> leaderboard;
+    private int leaderboardSize;
     private GameState gameState;
+    private SnapshotHistory snapshots = new SnapshotHistory();
+    private byte[] snapshotScratch = new byte[GameState.noTeams * GameState.teamSize * Serializer.ROBOT_SIZE];
+    // Set when the game server relays the inputs instead of sending the game state
+    private Lockstep lockstep;
+    // Set when the game server sends the game state, for the Robot of this player
+    private Prediction prediction;
+    // The GAME_STATE, TURN_CHANGE and WEAPON_FIRED messages, received by the thread of the connection
+    // and applied in order by the game loop, so only the game loop changes the GameState during a game
+    private ConcurrentLinkedQueue<ReceivedMessage> gameMessages = new ConcurrentLinkedQueue<>();
+    // Null when the robots are moved as soon as a game state arrives
+    private Interpolation interpolation = INTERPOLATION_DELAY > 0
+            ? new Interpolation(INTERPOLATION_DELAY, GameState.noTeams * GameState.teamSize) : null;
+
+    // Reused by the synchronized message builders, so sending does not allocate
+    private ByteWriter tcpMessage = new ByteWriter();
+    private ByteWriter tcpFrame = new ByteWriter();
+    private ByteWriter gameMessage = new ByteWriter();
+    private ByteWriter gameFrame = new ByteWriter();
     private Loadout[] loadouts;
     private InputForController ifc;
 
+    /**
+     * A game message waiting for the game loop, with the System.nanoTime at which it arrived.
+     */
+    private static class ReceivedMessage {
+        final byte[] data;
+        final long arrival;
+
+        ReceivedMessage(byte[] data, long arrival) {
+            this.data = data;
+            this.arrival = arrival;
+        }
+    }
+
     /**
      * Gets the IP address and the port of the main server from InputForNetwork. Sets the statuses accordingly.
      */
@@ -128,43 +174,53 @@ public class Client {
     }
 
     /**
-     * Listens for messages from the main server and calls the method to process them.
+     * Listens for messages from the main server and calls the method to process every complete
+     * message that has been received.
      */
     private void listenTCP() {
+        FrameCodec decoder = new FrameCodec();
         try {
-            byte data[] = new byte[1024];
-            while (listening) {
-                inputStream.read(data);
-                process(data);
+            byte data[];
+            while (listening && decoder.read(inputStream) >= 0) {
+                while ((data = decoder.nextMessage()) != null) {
+                    process(data);
+                }
             }
             inputStream.close();
         } catch (IOException e) {
             e.printStackTrace();
+        } finally {
+            decoder.release();
         }
     }
 
     /**
-     * Listens for messages from the game server and calls the method to process them.
+     * Listens for messages from the game server and calls the method to process every complete
+     * message that has been received.
      */
     private void listenGame() {
+        FrameCodec decoder = new FrameCodec();
         try {
-            byte data[] = new byte[256];
-            while (listeningGame) {
-                gameInputStream.read(data);
-                processGameData(data);
+            byte data[];
+            while (listeningGame && decoder.read(gameInputStream) >= 0) {
+                while (listeningGame && (data = decoder.nextMessage()) != null) {
+                    processGameData(data);
+                }
             }
             gameInputStream.close();
             gameStatus = GameStatus.NOT_IN_GAME;
         } catch (IOException e) {
             e.printStackTrace();
 
+        } finally {
+            decoder.release();
         }
     }
 
     /**
      * Processes the messages from the main server. The possible types of messages are:
      * CREATE_SERVER, JOIN_SERVER, SERVER_NAME_IN_USE, SERVER_NOT_FOUND, SERVER_FULL,
-     * INVALID_PASSWORD, CONNECTION, SERVERS_LIST, LEADERBOARD. Based on the received message,
+     * INVALID_PASSWORD, CONNECTION, SERVERS_LIST, SERVERS_UPDATE, LEADERBOARD. Based on the received message,
      * the menu and game statuses are set accordingly.
      *
      * @param data the byte array with the received message
@@ -177,7 +233,9 @@ public class Client {
         switch (data[2]) {
             case MessageHeaders.CREATE_SERVER:
             case MessageHeaders.JOIN_SERVER:
-                int gameServerPort = ByteUtils.getInt(data, 3);
+                int gameServerPort = ByteReader.getInt(data, 3);
+                matchId = ByteReader.getInt(data, 7);
+                matchToken = ByteReader.getLong(data, 11);
                 try {
                     gameSocket = new Socket(serverAddress, gameServerPort);
                     System.out.println("Game socket port: " + gameSocket.getLocalPort());
@@ -191,8 +249,8 @@ public class Client {
                 menuStatus = MenuStatus.DEFAULT;
                 if (InputForNetwork.playerId == 0)
                     hasTurn = true;
-                (new Thread(() -> listenGame(), "Game ListenThread")).start();
                 listeningGame = true;
+                (new Thread(() -> listenGame(), "Game ListenThread")).start();
                 System.out.println("Now connected to " + serverAddress + ":" + gameServerPort);
                 sendPortToGameServer();
                 break;
@@ -213,11 +271,20 @@ public class Client {
                 connectionStatus = ConnectionStatus.CONNECTED;
                 break;
             case MessageHeaders.SERVERS_LIST:
+                gameServersTotal = ByteReader.getInt(data, 3);
                 gameServers = Serializer.deserializeGameServers(data, 3);
                 menuStatus = MenuStatus.SERVERS_LIST;
+                serverListChanged();
+                break;
+            case MessageHeaders.SERVERS_UPDATE:
+                ArrayList<GameServer> updated = new ArrayList<>(gameServers);
+                gameServersTotal = Serializer.applyGameServerUpdates(updated, data, 3);
+                gameServers = updated;
+                serverListChanged();
                 break;
             case MessageHeaders.LEADERBOARD:
                 leaderboard = Serializer.deserializeLeaderboard(data, 3);
+                leaderboardSize = ByteReader.getInt(data, 3);
                 menuStatus = MenuStatus.LEADERBOARD;
                 break;
             default:
@@ -227,14 +294,18 @@ public class Client {
 
     /**
      * Sends a message with the port that the client opens for the Socket used in games.
-     * It also says if the player is hosting or joining.
+     * It also says if the player is hosting or joining, and the match id of the game, which the
+     * game listener of the server uses to find the game, followed by the token that the main server
+     * gave the player for it.
      */
-    private void sendPortToGameServer() {
-        ByteUtils byteUtils = new ByteUtils();
-        byteUtils.write(MessageHeaders.PACKET_HEADER);
-        byteUtils.write(MessageHeaders.PORT_PACKET);
-        byteUtils.write((byte) InputForNetwork.playerId);
-        sendGame(byteUtils.getBuffer());
+    private synchronized void sendPortToGameServer() {
+        gameMessage.flush();
+        gameMessage.write(MessageHeaders.PACKET_HEADER);
+        gameMessage.write(MessageHeaders.PORT_PACKET);
+        gameMessage.write((byte) InputForNetwork.playerId);
+        gameMessage.write(matchId);
+        gameMessage.write(matchToken);
+        sendGame(gameMessage);
 
     }
 
@@ -242,6 +313,15 @@ public class Client {
      * Processes the messages received during games. The possible types of messages are:
      * BEGIN_GAME, GAME_STATE, TURN_CHANGE, WEAPON_FIRED, GAME_ENDED. Based on the message,
      * the game state of the client is updated and the various client statuses can also change.
+     * <p>
+     * When the BEGIN_GAME message says that the server relays the inputs, the game is played in
+     * lockstep instead, and the messages are INPUT_RELAY, CHECKSUM, RESYNC and GAME_ENDED, which
+     * are handed to the Lockstep for the game loop.
+     * </p>
+     * <p>
+     * GAME_STATE, TURN_CHANGE and WEAPON_FIRED change the GameState that the game loop is stepping,
+     * so they are only queued here, and applied by the game loop when it calls applyGameMessages.
+     * </p>
      *
      * @param data the byte array with the received message
      */
@@ -252,41 +332,53 @@ public class Client {
         switch (data[2]) {
             case MessageHeaders.BEGIN_GAME:
                 boolean randomGravity = data[3] == 1;
-                long seed = ByteUtils.getLong(data, 4);
-                gameState.createGameWorld(seed);
-                gameState.setRobots(Serializer.deserializeRobots(ByteUtils.shrinkByteArray(data, 12, data.length - 12)));
-                gameState.initOnline(randomGravity);
+                long seed = ByteReader.getLong(data, 4);
+                int relayOffset = 12 + GameState.noTeams * GameState.teamSize * Serializer.ROBOT_SIZE;
+                snapshots.clear();
+                gameMessages.clear();
+                if (interpolation != null)
+                    interpolation.clear();
+                if (data.length > relayOffset && data[relayOffset] == 1) {
+                    Loadout[] relayedLoadouts = new Loadout[GameState.noTeams * GameState.teamSize];
+                    for (int i = 0; i < relayedLoadouts.length; i++) {
+                        relayedLoadouts[i] = Serializer.deserializeLoadout(data, relayOffset + 1 + 12 * i);
+                    }
+                    lockstep = new Lockstep(gameState, InputForNetwork.playerId, seed, randomGravity, relayedLoadouts);
+                    lockstep.start();
+                    prediction = null;
+                } else {
+                    lockstep = null;
+                    prediction = new Prediction(gameState, InputForNetwork.playerId);
+                    gameState.createGameWorld(seed);
+                    gameState.setRobots(Serializer.deserializeRobots(data, 12));
+                    gameState.initOnline(randomGravity);
+                }
                 gameStatus = GameStatus.START_GAME;
                 break;
 
-            case MessageHeaders.GAME_STATE:
-                updateRobots(data);
+            case MessageHeaders.INPUT_RELAY:
+                lockstep.inputReceived(ByteReader.getInt(data, 3), data[7], Input.fromByte(data[8]));
                 break;
 
-            case MessageHeaders.TURN_CHANGE:
-                int turnNumber = ByteUtils.getShort(data, 6);
-                int whosTurn = data[8];
-                if (data[3] == 0x01) {
-                    int supplyDropXPos = ByteUtils.getShort(data, 4);
-                    gameState.endTurn(true, supplyDropXPos, turnNumber, whosTurn);
-                } else {
-                    gameState.endTurn(false, 0, turnNumber, whosTurn);
-                }
+            case MessageHeaders.CHECKSUM:
+                lockstep.checksumReceived(ByteReader.getInt(data, 3), ByteReader.getLong(data, 7));
+                break;
 
-                if (whosTurn == InputForNetwork.playerId) {
-                    ifc.clearInputList();
-                    hasTurn = true;
-                } else {
-                    hasTurn = false;
-                }
+            case MessageHeaders.RESYNC:
+                lockstep.resyncReceived(data, 4, data[3] == 1);
                 break;
 
+            case MessageHeaders.GAME_STATE:
+            case MessageHeaders.TURN_CHANGE:
             case MessageHeaders.WEAPON_FIRED:
-                gameState.onlineFireWeapon();
+                gameMessages.add(new ReceivedMessage(data, System.nanoTime()));
                 break;
 
             case MessageHeaders.LEAVE_GAME:
-                gameState.gameResult = 3;
+                if (lockstep != null)
+                    lockstep.serverEnded(3);
+                else
+                    gameState.gameResult = 3;
                 listeningGame = false;
                 gameStatus = GameStatus.NOT_IN_GAME;
                 try {
@@ -299,7 +391,10 @@ public class Client {
                 break;
 
             case MessageHeaders.GAME_ENDED:
-                gameState.gameResult = data[3];
+                if (lockstep != null)
+                    lockstep.serverEnded(data[3]);
+                else
+                    gameState.gameResult = data[3];
                 listeningGame = false;
                 gameStatus = GameStatus.NOT_IN_GAME;
                 try {
@@ -318,13 +413,12 @@ public class Client {
     /**
      * Send a connection package to the main server which includes the username.
      */
-    private void sendConnectionPacket() {
-        ByteUtils byteUtils = new ByteUtils();
-        byteUtils.flush();
-        byteUtils.write(MessageHeaders.PACKET_HEADER);
-        byteUtils.write(MessageHeaders.CONNECTION);
-        byteUtils.write(InputForNetwork.username);
-        sendTCP(byteUtils.getBuffer());
+    private synchronized void sendConnectionPacket() {
+        tcpMessage.flush();
+        tcpMessage.write(MessageHeaders.PACKET_HEADER);
+        tcpMessage.write(MessageHeaders.CONNECTION);
+        tcpMessage.write(InputForNetwork.username);
+        sendTCP(tcpMessage);
     }
 
 
@@ -336,19 +430,17 @@ public class Client {
      * @param password      the password of the game
      * @param randomGravity true if random, false otherwise
      */
-    private void sendCreateServerPacket(String name, String password, boolean randomGravity) {
-        ByteUtils byteUtils = new ByteUtils();
-
-        byteUtils.flush();
-        byteUtils.write(MessageHeaders.PACKET_HEADER);
-        byteUtils.write(MessageHeaders.CREATE_SERVER);
-        byteUtils.write(randomGravity);
+    private synchronized void sendCreateServerPacket(String name, String password, boolean randomGravity) {
+        tcpMessage.flush();
+        tcpMessage.write(MessageHeaders.PACKET_HEADER);
+        tcpMessage.write(MessageHeaders.CREATE_SERVER);
+        tcpMessage.write(randomGravity);
         for (Loadout loadout : loadouts) {
-            byteUtils.write(Serializer.serializeLoadout(loadout));
+            Serializer.serializeLoadout(loadout, tcpMessage);
         }
-        byteUtils.write(name);
-        byteUtils.write(password);
-        sendTCP(byteUtils.getBuffer());
+        tcpMessage.write(name);
+        tcpMessage.write(password);
+        sendTCP(tcpMessage);
     }
 
     /**
@@ -358,111 +450,245 @@ public class Client {
      * @param name     the name of the game
      * @param password the password of the game
      */
-    private void sendJoinServerPacket(String name, String password) {
-        ByteUtils byteUtils = new ByteUtils();
-
-        byteUtils.flush();
-        byteUtils.write(MessageHeaders.PACKET_HEADER);
-        byteUtils.write(MessageHeaders.JOIN_SERVER);
-        byteUtils.write((byte) 0);
+    private synchronized void sendJoinServerPacket(String name, String password) {
+        tcpMessage.flush();
+        tcpMessage.write(MessageHeaders.PACKET_HEADER);
+        tcpMessage.write(MessageHeaders.JOIN_SERVER);
+        tcpMessage.write((byte) 0);
         for (Loadout loadout : loadouts) {
-            byteUtils.write(Serializer.serializeLoadout(loadout));
+            Serializer.serializeLoadout(loadout, tcpMessage);
         }
-        byteUtils.write(name);
-        byteUtils.write(password);
-        sendTCP(byteUtils.getBuffer());
+        tcpMessage.write(name);
+        tcpMessage.write(password);
+        sendTCP(tcpMessage);
     }
 
     /**
-     * Sends a request to the main server to get the list of active games.
+     * Subscribes to the server browser of the main server, asking for the first page of all the games.
      */
     public void sendServersListPacket() {
-        ByteUtils byteUtils = new ByteUtils();
-        byteUtils.write(MessageHeaders.PACKET_HEADER);
-        byteUtils.write(MessageHeaders.SERVERS_LIST);
-        sendTCP(byteUtils.getBuffer());
+        sendServersListPacket("", "", 2, 0, 50);
+    }
+
+    /**
+     * Subscribes to the server browser of the main server. The server sends the page of games in a
+     * SERVERS_LIST message and then the changes to it in SERVERS_UPDATE messages, until the client
+     * unsubscribes, creates or joins a game.
+     *
+     * @param nameFilter only games whose name contains it, ignoring the case
+     * @param hostFilter only games whose host name contains it, ignoring the case
+     * @param maxPlayers only games with at most this many players, 1 for the games that can be joined
+     * @param first      the index of the first game of the page
+     * @param count      the number of games in the page, the server sends at most 50
+     */
+    public synchronized void sendServersListPacket(String nameFilter, String hostFilter, int maxPlayers, int first,
+                                                   int count) {
+        tcpMessage.flush();
+        tcpMessage.write(MessageHeaders.PACKET_HEADER);
+        tcpMessage.write(MessageHeaders.SERVERS_LIST);
+        tcpMessage.write(nameFilter);
+        tcpMessage.write(hostFilter);
+        tcpMessage.write((byte) maxPlayers);
+        tcpMessage.write(first);
+        tcpMessage.write((byte) count);
+        sendTCP(tcpMessage);
+    }
+
+    /**
+     * Stops the changes of the server browser from being sent.
+     */
+    public synchronized void sendServersUnsubscribePacket() {
+        tcpMessage.flush();
+        tcpMessage.write(MessageHeaders.PACKET_HEADER);
+        tcpMessage.write(MessageHeaders.SERVERS_UNSUBSCRIBE);
+        sendTCP(tcpMessage);
+    }
+
+    private void serverListChanged() {
+        Consumer<ArrayList<GameServer>> listener = serverListListener;
+        if (listener != null)
+            listener.accept(gameServers);
     }
 
     /**
-     * Sends a request to the main server to get the leaderboard.
+     * Sends a request to the main server to get the top of the leaderboard.
      */
     public void sendLeaderboardPacket() {
-        ByteUtils byteUtils = new ByteUtils();
-        byteUtils.write(MessageHeaders.PACKET_HEADER);
-        byteUtils.write(MessageHeaders.LEADERBOARD);
-        sendTCP(byteUtils.getBuffer());
+        sendLeaderboardPacket(0, LEADERBOARD_PAGE_SIZE);
+    }
+
+    /**
+     * Sends a request to the main server to get a page of the leaderboard.
+     *
+     * @param first the rank of the first player, starting from 0
+     * @param count the number of players, the server sends at most 50
+     */
+    public synchronized void sendLeaderboardPacket(int first, int count) {
+        tcpMessage.flush();
+        tcpMessage.write(MessageHeaders.PACKET_HEADER);
+        tcpMessage.write(MessageHeaders.LEADERBOARD);
+        tcpMessage.write(MessageHeaders.LEADERBOARD_PAGE);
+        tcpMessage.write(first);
+        tcpMessage.write((byte) count);
+        sendTCP(tcpMessage);
     }
 
     /**
-     * Sends a byte array to the main server.
+     * Sends a request to the main server to get the page of the leaderboard that has this player
+     * in the middle.
      *
-     * @param data the byte array
+     * @param count the number of players, the server sends at most 50
      */
-    private void sendTCP(byte[] data) {
+    public synchronized void sendLeaderboardAroundPacket(int count) {
+        tcpMessage.flush();
+        tcpMessage.write(MessageHeaders.PACKET_HEADER);
+        tcpMessage.write(MessageHeaders.LEADERBOARD);
+        tcpMessage.write(MessageHeaders.LEADERBOARD_AROUND);
+        tcpMessage.write(0);
+        tcpMessage.write((byte) count);
+        sendTCP(tcpMessage);
+    }
+
+    /**
+     * Frames the message and sends it to the main server. It is called by the synchronized
+     * message builders, which all share the same writers.
+     *
+     * @param message the writer holding the message
+     */
+    private void sendTCP(ByteWriter message) {
         try {
-            outputStream.write(data);
+            tcpFrame.flush();
+            FrameCodec.encode(message, tcpFrame);
+            tcpFrame.writeTo(outputStream);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
     /**
-     * Sends a byte array to the game server
+     * Frames the message and sends it to the game server. It is called by the synchronized
+     * message builders, so the input and the snapshot acks, which are sent from different
+     * threads, are never written at the same time.
      *
-     * @param data the byte array
+     * @param message the writer holding the message
      */
-    private void sendGame(byte[] data) {
+    private void sendGame(ByteWriter message) {
         try {
-            gameOutputStream.write(data);
+            gameFrame.flush();
+            FrameCodec.encode(message, gameFrame);
+            gameFrame.writeTo(gameOutputStream);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
     /**
-     * During games, sends the user input to the game server.
+     * During games, sends the user input to the game server. When the server sends the game state,
+     * the input is also predicted, so the Robot of this player moves before the server says so.
      *
      * @param keyCode the code of the pressed key
      */
-    public void sendInput(KeyCode keyCode) {
+    public synchronized void sendInput(KeyCode keyCode) {
         if (gameStatus == GameStatus.NOT_IN_GAME)
             return;
-        ByteUtils byteUtils = new ByteUtils();
-        byteUtils.flush();
-        byteUtils.write(MessageHeaders.PACKET_HEADER);
-        byteUtils.write(MessageHeaders.INPUT_PACKET);
-        byteUtils.write(keyCode);
-        sendGame(byteUtils.getBuffer());
+        gameMessage.flush();
+        gameMessage.write(MessageHeaders.PACKET_HEADER);
+        gameMessage.write(MessageHeaders.INPUT_PACKET);
+        gameMessage.write(keyCode);
+        sendGame(gameMessage);
+
+        // The server only keeps the keys that are inputs, and counts those
+        Input input = Input.fromByte(ByteReader.keyCodeToByte(keyCode));
+        if (prediction != null && input != null)
+            prediction.sent(input);
+    }
 
+    /**
+     * Asks the game server for every input it has relayed, because the game on this client has
+     * diverged from the game on the server.
+     */
+    private synchronized void sendResyncRequest() {
+        gameMessage.flush();
+        gameMessage.write(MessageHeaders.PACKET_HEADER);
+        gameMessage.write(MessageHeaders.RESYNC);
+        sendGame(gameMessage);
     }
 
     /**
-     * Sends a request to the game server to leave.
+     * @return true if the game server relays the inputs, so the game loop must call advanceGame
+     *         instead of stepping the GameState
+     */
+    public boolean isLockstep() {
+        return lockstep != null;
+    }
+
+    /**
+     * Moves a game that is played in lockstep forward by the given real time, and asks for a
+     * resync if it has diverged from the server. The turn of this player is known from the game
+     * itself, so the input is cleared when it starts, as for a TURN_CHANGE message.
+     *
+     * @param elapsed the real time in seconds since the last call
      */
-    public void sendLeaveGamePacket() {
-        ByteUtils byteUtils = new ByteUtils();
+    public void advanceGame(double elapsed) {
+        lockstep.advance(elapsed);
+        if (lockstep.needsResync()) {
+            lockstep.resyncRequested();
+            System.out.println("Game diverged from the server, asking for a resync");
+            sendResyncRequest();
+        }
+        boolean turn = gameState.whosTurn == InputForNetwork.playerId;
+        if (turn && !hasTurn)
+            ifc.clearInputList();
+        hasTurn = turn;
+    }
 
-        byteUtils.flush();
-        byteUtils.write(MessageHeaders.PACKET_HEADER);
-        byteUtils.write(MessageHeaders.LEAVE_GAME);
-        sendGame(byteUtils.getBuffer());
+    /**
+     * Sends a request to the game server to leave.
+     */
+    public synchronized void sendLeaveGamePacket() {
+        gameMessage.flush();
+        gameMessage.write(MessageHeaders.PACKET_HEADER);
+        gameMessage.write(MessageHeaders.LEAVE_GAME);
+        sendGame(gameMessage);
         gameStatus = GameStatus.NOT_IN_GAME;
     }
 
     /**
-     * @return the ArrayList of active games
+     * @return the page of games of the server browser, sorted by name
      */
     public ArrayList<GameServer> getGameServers() {
         return gameServers;
     }
 
     /**
-     * @return the ArrayList of Player objects in the leadearboard table
+     * @return the number of games that match the filter of the server browser
+     */
+    public int getGameServersTotal() {
+        return gameServersTotal;
+    }
+
+    /**
+     * @param serverListListener called from the thread of the connection every time the page of the
+     *                           server browser changes, null to stop
+     */
+    public void setServerListListener(Consumer<ArrayList<GameServer>> serverListListener) {
+        this.serverListListener = serverListListener;
+    }
+
+    /**
+     * @return the ArrayList of Player objects in the last page of the leaderboard received
      */
     public ArrayList<Player> getLeaderboard() {
         return leaderboard;
     }
 
+    /**
+     * @return the number of players in the whole leaderboard, as of the last page received
+     */
+    public int getLeaderboardSize() {
+        return leaderboardSize;
+    }
+
 
     /**
      * @param gameState the GameState object that the UI generates
@@ -472,49 +698,165 @@ public class Client {
     }
 
     /**
-     * Updates all the information about the robots and who's turn it is.
+     * Applies the GAME_STATE, TURN_CHANGE and WEAPON_FIRED messages received since the last call, in
+     * the order they arrived. Called by the game loop at the start of every frame, so the GameState
+     * is only changed by the thread that steps it.
+     */
+    public void applyGameMessages() {
+        ReceivedMessage message;
+        while ((message = gameMessages.poll()) != null) {
+            byte[] data = message.data;
+            switch (data[2]) {
+                case MessageHeaders.GAME_STATE:
+                    updateRobots(data, message.arrival);
+                    break;
+
+                case MessageHeaders.TURN_CHANGE:
+                    int turnNumber = ByteReader.getShort(data, 6);
+                    int whosTurn = data[8];
+                    if (data[3] == 0x01) {
+                        int supplyDropXPos = ByteReader.getShort(data, 4);
+                        gameState.endTurn(true, supplyDropXPos, turnNumber, whosTurn);
+                    } else {
+                        gameState.endTurn(false, 0, turnNumber, whosTurn);
+                    }
+
+                    if (whosTurn == InputForNetwork.playerId) {
+                        ifc.clearInputList();
+                        hasTurn = true;
+                    } else {
+                        hasTurn = false;
+                    }
+                    break;
+
+                case MessageHeaders.WEAPON_FIRED:
+                    gameState.onlineFireWeapon();
+                    break;
+
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Updates all the information about the robots and who's turn it is. The explosions are applied
+     * to the terrain first. The robots arrive as changes to an earlier snapshot, which are applied
+     * to a copy of that snapshot; the result is stored in the history and acknowledged so the server
+     * can use it as the baseline of the next game states. The inputs of this player that the server
+     * has not taken yet are then predicted again on top of the robots.
+     * <p>
+     * With an interpolation delay, only the robot this player moves is put where the game state
+     * says. The others are moved by interpolate when the game is drawn.
+     * </p>
      *
-     * @param data the byte array containing the data
+     * @param data    the byte array containing the data
+     * @param arrival the System.nanoTime at which the game state arrived
      */
-    private void updateRobots(byte[] data) {
+    private void updateRobots(byte[] data, long arrival) {
+        int sequence = ByteReader.getShort(data, 3) & 0xFFFF;
+        int baselineSequence = ByteReader.getShort(data, 5) & 0xFFFF;
         for (Robot cRobot : gameState.getRobots()) {
-            if (cRobot.getRobotId() == data[3]) {
+            if (cRobot.getRobotId() == data[7]) {
                 gameState.setCurrentCharacter(cRobot);
             }
         }
-        if (data[4] != gameState.whosTurn) {
+        if (data[8] != gameState.whosTurn) {
             hasTurn = !hasTurn;
         }
-        int offset = 5;
-        int bytesForRobots = GameState.noTeams * GameState.teamSize * 24;
-        for (int i = offset; i < offset + bytesForRobots; i += 24) {
-            short xPos = ByteUtils.getShort(data, i + 2);
-            short yPos = ByteUtils.getShort(data, i + 4);
+        int inputsTaken = ByteReader.getInt(data, 9);
+        int offset = 13;
+        int explosionsSize = data[offset++];
+        for (int i = offset; i < offset + 6 * explosionsSize; i += 6) {
+            gameState.getWorld().destructTerrain(ByteReader.getShort(data, i), ByteReader.getShort(data, i + 2), ByteReader.getShort(data, i + 4));
+        }
+        offset += 6 * explosionsSize;
+
+        byte[] robots = snapshotScratch;
+        if (baselineSequence == sequence) {
+            Arrays.fill(robots, (byte) 0);
+        } else {
+            byte[] baseline = snapshots.get(baselineSequence);
+            // Without the baseline the robots wait for the next keyframe
+            if (baseline == null)
+                return;
+            System.arraycopy(baseline, 0, robots, 0, robots.length);
+        }
+        Serializer.applyRobotsDelta(data, offset, robots);
+        snapshots.put(sequence, robots);
+        sendSnapshotAck(sequence);
+        if (interpolation != null)
+            interpolation.add(sequence, arrival, robots);
+
+        setRobots(robots);
+        prediction.reconcile(inputsTaken);
+    }
+
+    /**
+     * Sets the robots of the game state to the robots of a snapshot.
+     *
+     * @param robots the robots of the snapshot
+     */
+    private void setRobots(byte[] robots) {
+        Robot predicted = predictedRobot();
+        for (int i = 0; i < robots.length; i += Serializer.ROBOT_SIZE) {
+            short xPos = ByteReader.getShort(robots, i + 2);
+            short yPos = ByteReader.getShort(robots, i + 4);
             for (Robot robot : gameState.getRobots()) {
-                if (robot.getRobotId() == data[i]) {
-                    robot.setIsDead(data[i + 1] == 1);
-                    robot.setXPos(xPos);
-                    robot.setYPos(yPos);
-                    robot.setHealth(data[i + 6]);
-                    robot.setEnergy(ByteUtils.getShort(data, i + 7));
+                if (robot.getRobotId() == robots[i]) {
+                    robot.setIsDead(robots[i + 1] == 1);
+                    if (interpolation == null || robot == predicted) {
+                        robot.setXPos(xPos);
+                        robot.setYPos(yPos);
+                    }
+                    robot.setHealth(robots[i + 6]);
+                    robot.setEnergy(ByteReader.getShort(robots, i + 7));
                     int index = 0;
                     for (Weapon weapon : robot.getAllWeapons()) {
-                        weapon.setAmmo(data[i + 9 + index]);
+                        weapon.setAmmo(robots[i + 9 + index]);
                         index++;
                     }
-                    robot.setSlot(data[i + 18]);
-                    robot.setAngle(ByteUtils.getShort(data, i + 19));
-                    robot.setPower(data[i + 21]);
-                    robot.setImageId(data[i + 22]);
-                    robot.setTimer(data[i + 23]);
+                    robot.setSlot(robots[i + 18]);
+                    robot.setAngle(ByteReader.getShort(robots, i + 19));
+                    robot.setPower(robots[i + 21]);
+                    robot.setImageId(robots[i + 22]);
+                    robot.setTimer(robots[i + 23]);
                 }
             }
         }
-        offset += bytesForRobots;
-        int explosionsSize = data[offset++];
-        for (int i = offset; i < offset + 6 * explosionsSize; i += 6) {
-            gameState.getWorld().destructTerrain(ByteUtils.getShort(data, i), ByteUtils.getShort(data, i + 2), ByteUtils.getShort(data, i + 4));
-        }
+    }
+
+    /**
+     * @return the robot of this player during its turn, which is predicted instead of interpolated,
+     *         or null during the turn of the other player
+     */
+    private Robot predictedRobot() {
+        return gameState.whosTurn == InputForNetwork.playerId ? gameState.getCurrentChar() : null;
+    }
+
+    /**
+     * Moves the robots that this player does not control to where they were a little before the
+     * newest game state, so they move smoothly however the game states arrive. Called by the UI
+     * before every frame is drawn.
+     *
+     * @param now the System.nanoTime of the frame
+     */
+    public void interpolate(long now) {
+        if (interpolation != null && lockstep == null)
+            interpolation.apply(now, gameState.getRobots(), predictedRobot());
+    }
+
+    /**
+     * Tells the game server which game state was received last.
+     *
+     * @param sequence the sequence number of the game state
+     */
+    private synchronized void sendSnapshotAck(int sequence) {
+        gameMessage.flush();
+        gameMessage.write(MessageHeaders.PACKET_HEADER);
+        gameMessage.write(MessageHeaders.SNAPSHOT_ACK);
+        gameMessage.write((short) sequence);
+        sendGame(gameMessage);
     }
 
     /**
@@ -527,15 +869,17 @@ public class Client {
     /**
      * Sends a disconnect message to the main server and closes the running threads.
      */
-    public void disconnect() {
-        ByteUtils byteUtils = new ByteUtils();
-        byteUtils.write(MessageHeaders.PACKET_HEADER);
-        byteUtils.write(MessageHeaders.FORCE_QUIT);
+    public synchronized void disconnect() {
         if (tcpSocket == null || outputStream == null) {
             return;
         }
+        tcpMessage.flush();
+        tcpMessage.write(MessageHeaders.PACKET_HEADER);
+        tcpMessage.write(MessageHeaders.FORCE_QUIT);
         try {
-            outputStream.write(byteUtils.getBuffer());
+            tcpFrame.flush();
+            FrameCodec.encode(tcpMessage, tcpFrame);
+            tcpFrame.writeTo(outputStream);
             listening = false;
             tcpSocket.close();
         } catch (IOException e) {
@@ -561,11 +905,11 @@ public class Client {
          * started by the client.
          */
         public void run() {
-            ByteUtils byteUtils = new ByteUtils();
-            byteUtils.write(MessageHeaders.PACKET_HEADER);
-            byteUtils.write(MessageHeaders.FORCE_QUIT);
+            ByteWriter byteWriter = new ByteWriter(3);
+            byteWriter.write(MessageHeaders.PACKET_HEADER);
+            byteWriter.write(MessageHeaders.FORCE_QUIT);
             try {
-                outputStream.write(byteUtils.getBuffer());
+                outputStream.write(FrameCodec.encode(byteWriter.getBuffer()));
                 listeningGame = false;
                 listening = false;
                 tcpSocket.close();
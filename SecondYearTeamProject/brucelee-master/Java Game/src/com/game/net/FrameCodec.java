@@ -0,0 +1,217 @@
+package com.game.net;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * The framing layer shared by the client and the servers. On the wire every message is the
+ * packet header, followed by a 2 byte length and then the type and body of the message:
+ * <pre>
+ * 0x12 0x11 | length (unsigned short) | type | body
+ * </pre>
+ * The length counts the type and the body. The rest of the code keeps working with messages
+ * in the form header, type, body, so the encoder only inserts the length after the header and
+ * the decoder takes it out again.
+ * <p>
+ * An instance of this class is the decoder of one connection. The bytes read from the socket
+ * are collected in a buffer taken from a BufferPool, so a message split across several reads
+ * is put back together, and several messages received in a single read are all returned.
+ * A decoder is used by a single thread.
+ * </p>
+ *
+ * @author Robert Chiper
+ */
+public class FrameCodec {
+    public static final int PREFIX_SIZE = 4;
+    public static final int MAX_MESSAGE_LENGTH = BufferPool.BUFFER_SIZE - PREFIX_SIZE;
+
+    private BufferPool pool;
+    private ByteBuffer buffer;
+    private int start;
+
+    /**
+     * Creates a decoder that takes its buffer from the shared pool.
+     */
+    public FrameCodec() {
+        this(BufferPool.SHARED);
+    }
+
+    /**
+     * @param pool the pool the buffer of the decoder is taken from
+     */
+    public FrameCodec(BufferPool pool) {
+        this.pool = pool;
+        buffer = pool.acquire();
+    }
+
+    /**
+     * Adds the length of the message after its packet header.
+     *
+     * @param message a message starting with the packet header
+     * @return the bytes to be written on the wire
+     */
+    public static byte[] encode(byte[] message) {
+        byte[] frame = new byte[message.length + 2];
+        writeFrame(message, frame, 0);
+        return frame;
+    }
+
+    /**
+     * Adds the framed message to the buffer, so that many messages can be sent with one write.
+     *
+     * @param message a message starting with the packet header
+     * @param out     the buffer the frame is written to
+     * @throws java.nio.BufferOverflowException if the frame does not fit in the buffer
+     */
+    public static void encode(byte[] message, ByteBuffer out) {
+        int length = checkLength(message.length);
+        out.put(MessageHeaders.PACKET_HEADER);
+        out.putShort((short) length);
+        out.put(message, 2, length);
+    }
+
+    /**
+     * Adds the framed message to another writer without allocating.
+     *
+     * @param message the writer holding a message starting with the packet header
+     * @param out     the writer the frame is added to
+     */
+    public static void encode(ByteWriter message, ByteWriter out) {
+        int length = checkLength(message.size());
+        out.write(MessageHeaders.PACKET_HEADER);
+        out.write((short) length);
+        out.write(message.array(), 2, length);
+    }
+
+    /**
+     * Adds the framed message to the buffer without allocating.
+     *
+     * @param message the writer holding a message starting with the packet header
+     * @param out     the buffer the frame is written to
+     * @throws java.nio.BufferOverflowException if the frame does not fit in the buffer
+     */
+    public static void encode(ByteWriter message, ByteBuffer out) {
+        int length = checkLength(message.size());
+        out.put(MessageHeaders.PACKET_HEADER);
+        out.putShort((short) length);
+        out.put(message.array(), 2, length);
+    }
+
+    /**
+     * @param message a message starting with the packet header
+     * @return the number of bytes the message takes on the wire
+     */
+    public static int frameLength(byte[] message) {
+        return message.length + 2;
+    }
+
+    private static void writeFrame(byte[] message, byte[] frame, int offset) {
+        int length = checkLength(message.length);
+        frame[offset] = MessageHeaders.PACKET_HEADER[0];
+        frame[offset + 1] = MessageHeaders.PACKET_HEADER[1];
+        frame[offset + 2] = (byte) (length >> 8);
+        frame[offset + 3] = (byte) length;
+        System.arraycopy(message, 2, frame, offset + PREFIX_SIZE, length);
+    }
+
+    private static int checkLength(int messageLength) {
+        int length = messageLength - 2;
+        if (length < 1 || length > MAX_MESSAGE_LENGTH)
+            throw new IllegalArgumentException("Message length " + length + " is out of range");
+        return length;
+    }
+
+    /**
+     * Reads as many bytes as the stream gives in one call.
+     *
+     * @param inputStream the stream of the socket
+     * @return the number of bytes read, -1 at the end of the stream
+     * @throws IOException if the read fails
+     */
+    public int read(InputStream inputStream) throws IOException {
+        compact();
+        int read = inputStream.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        if (read > 0)
+            buffer.position(buffer.position() + read);
+        return read;
+    }
+
+    /**
+     * Reads as many bytes as the channel has available.
+     *
+     * @param channel the channel of the socket
+     * @return the number of bytes read, -1 at the end of the stream
+     * @throws IOException if the read fails
+     */
+    public int read(ReadableByteChannel channel) throws IOException {
+        compact();
+        return channel.read(buffer);
+    }
+
+    /**
+     * Adds bytes which were received by other means to the decoder.
+     *
+     * @param data   the received bytes
+     * @param offset the index of the first byte
+     * @param length the number of bytes
+     * @throws IOException if the bytes do not fit in the buffer
+     */
+    public void feed(byte[] data, int offset, int length) throws IOException {
+        compact();
+        if (length > buffer.remaining())
+            throw new IOException("Frame buffer overflow");
+        buffer.put(data, offset, length);
+    }
+
+    /**
+     * Takes the next complete message out of the buffer.
+     *
+     * @return the message as header, type and body, or null if no complete message has been received
+     * @throws IOException if the stream does not start with a valid frame
+     */
+    public byte[] nextMessage() throws IOException {
+        int available = buffer.position() - start;
+        if (available < PREFIX_SIZE)
+            return null;
+        if (buffer.get(start) != MessageHeaders.PACKET_HEADER[0] || buffer.get(start + 1) != MessageHeaders.PACKET_HEADER[1])
+            throw new IOException("Invalid packet header");
+        int length = ((buffer.get(start + 2) & 0xFF) << 8) | (buffer.get(start + 3) & 0xFF);
+        if (length < 1 || length > MAX_MESSAGE_LENGTH)
+            throw new IOException("Invalid message length " + length);
+        if (available < PREFIX_SIZE + length)
+            return null;
+
+        byte[] message = new byte[length + 2];
+        message[0] = MessageHeaders.PACKET_HEADER[0];
+        message[1] = MessageHeaders.PACKET_HEADER[1];
+        System.arraycopy(buffer.array(), buffer.arrayOffset() + start + PREFIX_SIZE, message, 2, length);
+        start += PREFIX_SIZE + length;
+        if (start == buffer.position()) {
+            buffer.clear();
+            start = 0;
+        }
+        return message;
+    }
+
+    /**
+     * Moves the bytes of an incomplete message to the start of the buffer.
+     */
+    private void compact() {
+        if (start == 0)
+            return;
+        buffer.flip();
+        buffer.position(start);
+        buffer.compact();
+        start = 0;
+    }
+
+    /**
+     * Gives the buffer back to the pool. The decoder cannot be used afterwards.
+     */
+    public void release() {
+        pool.release(buffer);
+        buffer = null;
+    }
+}
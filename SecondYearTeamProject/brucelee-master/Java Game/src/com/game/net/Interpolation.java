@@ -0,0 +1,158 @@
+package com.game.net;
+
+import com.game.physics.Robot;
+
+import java.util.ArrayList;
+
+/**
+ * A ring of the positions of the robots in the last game states, which the client draws the robots
+ * from a little in the past instead of moving them when each game state arrives.
+ * <p>
+ * The server sends a game state every tick, 30 times a second, but the client draws 60 times a
+ * second and the game states do not arrive at an even pace. Each game state is placed on the time
+ * line of the server by its sequence number, and the robots are drawn where they were the given
+ * delay before the newest game state, between the two game states on either side. A game state
+ * that is late is covered by moving the robots on the way they were going, for a short time.
+ * </p>
+ * <p>
+ * The game states are added on the thread of the connection and the robots are moved on the
+ * thread of the UI, so the methods of this class are synchronized.
+ * </p>
+ *
+ * @author Robert Chiper
+ */
+public class Interpolation {
+    // The game server sends a game state every tick, 30 ticks a second
+    public static final long SNAPSHOT_INTERVAL = 1_000_000_000L / 30;
+    // The game states kept, a second of the game
+    public static final int SIZE = 32;
+    // The longest time the robots are moved past the newest game state
+    public static final long MAX_EXTRAPOLATION = 3 * SNAPSHOT_INTERVAL;
+    // When the clock of the server seems to move by more than this, it is set again instead of followed
+    private static final long CLOCK_RESET = 1_000_000_000L;
+
+    private final long delay;
+    private final int robots;
+    private final long[] times = new long[SIZE];
+    private final byte[][] ids;
+    private final int[][] xs;
+    private final int[][] ys;
+    private int newest = -1;
+    private int count;
+    private int lastSequence;
+    private long serverTime;
+    // The local time at which the server was at time 0 of its time line
+    private long offset;
+    // The time of the server the robots were last drawn at, which only goes forward
+    private long drawn = Long.MIN_VALUE;
+
+    /**
+     * @param delay  the nanoseconds the robots are drawn behind the newest game state
+     * @param robots the number of robots in a game state
+     */
+    public Interpolation(long delay, int robots) {
+        this.delay = delay;
+        this.robots = robots;
+        ids = new byte[SIZE][robots];
+        xs = new int[SIZE][robots];
+        ys = new int[SIZE][robots];
+    }
+
+    /**
+     * Adds the positions of the robots of a game state.
+     *
+     * @param sequence  the sequence number of the game state
+     * @param arrival   the System.nanoTime at which the game state arrived
+     * @param snapshot  the serialized robots of the game state
+     */
+    public synchronized void add(int sequence, long arrival, byte[] snapshot) {
+        if (count > 0)
+            serverTime += ((sequence - lastSequence) & (SnapshotHistory.SEQUENCE_MODULO - 1)) * SNAPSHOT_INTERVAL;
+        lastSequence = sequence;
+
+        // The clock of the server is followed slowly, so a late game state does not move it much
+        long sample = arrival - serverTime;
+        if (count == 0 || Math.abs(sample - offset) > CLOCK_RESET) {
+            offset = sample;
+            drawn = Long.MIN_VALUE;
+        } else {
+            offset += (sample - offset) / 16;
+        }
+
+        newest = (newest + 1) % SIZE;
+        times[newest] = serverTime;
+        for (int i = 0; i < robots; i++) {
+            int position = i * Serializer.ROBOT_SIZE;
+            ids[newest][i] = snapshot[position];
+            xs[newest][i] = ByteReader.getShort(snapshot, position + 2);
+            ys[newest][i] = ByteReader.getShort(snapshot, position + 4);
+        }
+        if (count < SIZE)
+            count++;
+    }
+
+    /**
+     * Moves the robots to where they were the delay before the newest game state, as of the
+     * given time.
+     *
+     * @param now        the System.nanoTime of the frame that is drawn
+     * @param gameRobots the robots of the game
+     * @param skip       a robot that is not moved, because it is predicted, or null
+     */
+    public synchronized void apply(long now, ArrayList<Robot> gameRobots, Robot skip) {
+        if (count == 0)
+            return;
+        // When the clock is set back a little, the robots wait for it instead of going back
+        long time = Math.max(now - offset - delay, drawn);
+        drawn = time;
+        int oldest = (newest - count + 1 + SIZE) % SIZE;
+
+        int from = newest;
+        int to = newest;
+        double fraction = 0;
+        if (time >= times[newest]) {
+            // Late, so the robots go on the way they were going
+            if (count > 1) {
+                from = (newest - 1 + SIZE) % SIZE;
+                fraction = 1 + (double) Math.min(time - times[newest], MAX_EXTRAPOLATION) / (times[newest] - times[from]);
+            }
+        } else if (time <= times[oldest]) {
+            from = oldest;
+            to = oldest;
+        } else {
+            to = newest;
+            from = (to - 1 + SIZE) % SIZE;
+            while (times[from] > time) {
+                to = from;
+                from = (to - 1 + SIZE) % SIZE;
+            }
+            fraction = (double) (time - times[from]) / (times[to] - times[from]);
+        }
+
+        for (int i = 0; i < robots; i++) {
+            for (Robot robot : gameRobots) {
+                if (robot.getRobotId() == ids[to][i] && robot != skip) {
+                    robot.setXPos(xs[from][i] + (xs[to][i] - xs[from][i]) * fraction);
+                    robot.setYPos(ys[from][i] + (ys[to][i] - ys[from][i]) * fraction);
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets all the game states, for a new game.
+     */
+    public synchronized void clear() {
+        newest = -1;
+        count = 0;
+        serverTime = 0;
+        drawn = Long.MIN_VALUE;
+    }
+
+    /**
+     * @return the nanoseconds the robots are drawn behind the newest game state
+     */
+    public long getDelay() {
+        return delay;
+    }
+}
@@ -0,0 +1,341 @@
+package com.game.net;
+
+import com.game.state.GameEvent;
+import com.game.state.Input;
+import com.game.state.Loadout;
+import com.game.state.Simulation;
+import com.game.state.SyncChecker;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Plays a multiplayer game on the client from the inputs that the game server relays, instead of
+ * copying the game state that it sends.
+ * <p>
+ * The server stamps every input of the player whose turn it is with the tick at which it is given,
+ * INPUT_DELAY ticks after the tick the server is at, and relays it to both clients. Every copy of
+ * the match schedules it for that tick, and since the Simulation is deterministic they all stay the
+ * same for a few bytes per key press. The client never steps further than INPUT_DELAY ticks past the
+ * last tick it knows the server has reached, so an input cannot arrive for a tick it has passed.
+ * </p>
+ * <p>
+ * Every SYNC_INTERVAL ticks the server sends the checksum of its Simulation. When it is different
+ * from the checksum of the client at that tick, or an input arrives late anyway, the client asks for
+ * a resync. The server then sends every input it has relayed, and the client plays the match again
+ * from the start, without events, up to the tick it was at. The replay takes at most REPLAY_STEPS
+ * steps a frame, so a long match is caught up over a few frames instead of stalling the game loop.
+ * </p>
+ * <p>
+ * Another resync is not asked for until RESYNC_COOLDOWN ticks after the last one caught up. When the
+ * game keeps diverging soon after each resync, the Simulation is not deterministic on this client and
+ * replaying cannot fix it, so after MAX_RESYNCS resyncs in a row like that no more are asked for and
+ * the result of the server decides the match.
+ * </p>
+ * <p>
+ * The messages are received on the thread of the connection and the game is advanced on the thread
+ * of the game loop, so they only share queues, volatiles and SyncCheckers.
+ * </p>
+ *
+ * @author Robert Chiper
+ */
+public class Lockstep {
+    // The ticks between the tick the server is at and the tick of the inputs it relays
+    public static final int INPUT_DELAY = 5;
+    // The ticks between two checksums of the server
+    public static final int SYNC_INTERVAL = 2;
+    // The bytes of a relayed input: the tick, the player and the key
+    public static final int INPUT_SIZE = 6;
+    // The most steps a single call to advance may take to catch up, as in Simulation
+    private static final int MAX_STEPS = 5;
+    // The ticks whose checksums are kept, a few seconds of the game
+    private static final int HISTORY = 256;
+    // The most steps a single call to advance may take while it plays the match again for a resync
+    static final int REPLAY_STEPS = 300;
+    // The ticks after a resync has caught up before the client, or the server, takes another
+    public static final int RESYNC_COOLDOWN = 90;
+    // A game that diverges again this many ticks after a resync has caught up was not fixed by it
+    private static final int CONVERGE_TICKS = 300;
+    // The resyncs in a row that did not fix the game, after which no more are asked for
+    static final int MAX_RESYNCS = 3;
+
+    /**
+     * An input relayed by the server.
+     */
+    private static class RelayedInput {
+        final int tick;
+        final int player;
+        final Input input;
+
+        RelayedInput(int tick, int player, Input input) {
+            this.tick = tick;
+            this.player = player;
+            this.input = input;
+        }
+    }
+
+    private final Simulation simulation;
+    private final int playerId;
+    private final long seed;
+    private final boolean randomGravity;
+    // The Robots share the weapons of their Loadout, so every start gets new ones
+    private final byte[] loadouts;
+
+    private ConcurrentLinkedQueue<RelayedInput> received = new ConcurrentLinkedQueue<>();
+    // The checksums of this client, checked by the thread of the connection when the server's arrive
+    private volatile SyncChecker checksums = new SyncChecker(HISTORY);
+    // The checksums of the server, checked by the game loop when this client reaches their tick
+    private volatile SyncChecker serverChecksums = new SyncChecker(HISTORY);
+    private volatile int serverTick;
+    private volatile boolean late;
+    private volatile boolean resyncRequested;
+    // The inputs of a resync, collected by the thread of the connection until the last message
+    private ArrayList<RelayedInput> resyncInputs = new ArrayList<>();
+    private volatile ArrayList<RelayedInput> resync;
+    private volatile int serverResult = -1;
+    private boolean ended;
+    private double accumulator;
+    // Only used by the game loop: the tick a replay is catching up to, -1 when there is none, the
+    // listener that is given back when it has, and the tick the last replay caught up at
+    private int replayTick = -1;
+    private GameEvent.Listener replayListener;
+    private int caughtUpTick = -1;
+    private int failedResyncs;
+
+    /**
+     * @param simulation    the Simulation of the client
+     * @param playerId      the id of the player on this client
+     * @param seed          the seed of the world
+     * @param randomGravity true if the game has random gravity
+     * @param loadouts      the Loadout for each Robot, as the server used them
+     */
+    public Lockstep(Simulation simulation, int playerId, long seed, boolean randomGravity, Loadout[] loadouts) {
+        this.simulation = simulation;
+        this.playerId = playerId;
+        this.seed = seed;
+        this.randomGravity = randomGravity;
+        ByteWriter writer = new ByteWriter();
+        for (Loadout loadout : loadouts) {
+            Serializer.serializeLoadout(loadout, writer);
+        }
+        this.loadouts = writer.getBuffer();
+    }
+
+    /**
+     * Sets the match up the way the server did, so both start the same.
+     */
+    public void start() {
+        simulation.reset();
+        simulation.setLockstep(true);
+        Loadout[] robotLoadouts = new Loadout[loadouts.length / 12];
+        for (int i = 0; i < robotLoadouts.length; i++) {
+            robotLoadouts[i] = Serializer.deserializeLoadout(loadouts, 12 * i);
+        }
+        simulation.setLoadouts(robotLoadouts);
+        simulation.createGameWorld(seed);
+        simulation.setRandomGravity(randomGravity);
+        simulation.init();
+    }
+
+    /**
+     * Called by the thread of the connection for an INPUT_RELAY message.
+     *
+     * @param tick   the tick at which the input is given
+     * @param player the player who gave it
+     * @param input  the input
+     */
+    public void inputReceived(int tick, int player, Input input) {
+        if (tick - INPUT_DELAY > serverTick)
+            serverTick = tick - INPUT_DELAY;
+        if (input != null)
+            received.add(new RelayedInput(tick, player, input));
+    }
+
+    /**
+     * Called by the thread of the connection for a CHECKSUM message.
+     *
+     * @param tick     the tick the server is at
+     * @param checksum the checksum of the Simulation of the server after that tick
+     */
+    public void checksumReceived(int tick, long checksum) {
+        if (tick > serverTick)
+            serverTick = tick;
+        serverChecksums.record(tick, checksum);
+        checksums.check(tick, checksum);
+    }
+
+    /**
+     * Called by the thread of the connection for every RESYNC message. Each one holds some of the
+     * inputs the server has relayed since the start, in order.
+     *
+     * @param data   the message
+     * @param offset the position of the first input
+     * @param last   true for the last message of the resync
+     */
+    public void resyncReceived(byte[] data, int offset, boolean last) {
+        for (int i = offset; i + INPUT_SIZE <= data.length; i += INPUT_SIZE) {
+            Input input = Input.fromByte(data[i + 5]);
+            if (input != null)
+                resyncInputs.add(new RelayedInput(ByteReader.getInt(data, i), data[i + 4], input));
+        }
+        if (last) {
+            // The inputs relayed before the resync are all in it
+            received.clear();
+            resync = resyncInputs;
+            resyncInputs = new ArrayList<>();
+        }
+    }
+
+    /**
+     * Called by the thread of the connection when the server says the game has ended.
+     *
+     * @param result the result of the game for this player, as in GAME_ENDED and LEAVE_GAME
+     */
+    public void serverEnded(int result) {
+        serverResult = result;
+    }
+
+    /**
+     * Moves the match forward by the given real time, in steps of Simulation.TIME_STEP, as far as
+     * the server allows. A client that has fallen behind the server takes up to MAX_STEPS steps to
+     * catch up, or REPLAY_STEPS while it replays the match for a resync. Called by the game loop,
+     * which is the only thread that changes the Simulation.
+     * <p>
+     * When the match ends, the result is turned from the team that won into whether this player
+     * won, as the server sends it.
+     * </p>
+     *
+     * @param elapsed the real time in seconds since the last call
+     * @return the number of steps taken
+     */
+    public int advance(double elapsed) {
+        ArrayList<RelayedInput> inputs = resync;
+        if (inputs != null) {
+            resync = null;
+            replay(inputs);
+        }
+        int maxSteps = replayTick >= 0 ? REPLAY_STEPS : MAX_STEPS;
+        RelayedInput next;
+        while ((next = received.poll()) != null) {
+            if (!simulation.schedule(next.tick, next.player, next.input))
+                late = true;
+        }
+
+        accumulator += elapsed;
+        int steps = 0;
+        int knownTick = serverTick;
+        while (steps < maxSteps && simulation.getTick() < knownTick + INPUT_DELAY && simulation.gameResult == -1) {
+            if (accumulator >= Simulation.TIME_STEP) {
+                accumulator -= Simulation.TIME_STEP;
+            } else if (simulation.getTick() >= knownTick) {
+                break;
+            }
+            // Behind the server, the steps are taken without waiting for the time to pass
+            step();
+            steps++;
+        }
+        // Waiting for the server does not build up time to catch up with later
+        accumulator = Math.min(accumulator, Simulation.TIME_STEP);
+        if (replayTick >= 0 && (simulation.getTick() >= replayTick || simulation.gameResult != -1)) {
+            simulation.setListener(replayListener);
+            replayListener = null;
+            replayTick = -1;
+            caughtUpTick = simulation.getTick();
+        }
+
+        if (!ended && simulation.gameResult != -1) {
+            ended = true;
+            if (simulation.gameResult < 2)
+                simulation.gameResult = simulation.gameResult == playerId ? 0 : 1;
+        } else if (!ended && serverResult != -1) {
+            ended = true;
+            simulation.gameResult = serverResult;
+        }
+        return steps;
+    }
+
+    private void step() {
+        simulation.step(Simulation.TIME_STEP);
+        int tick = simulation.getTick();
+        long checksum = simulation.checksum();
+        checksums.record(tick, checksum);
+        serverChecksums.check(tick, checksum);
+    }
+
+    /**
+     * Starts the match again with all the inputs of the server, to be played back up to the tick it
+     * is at by advance, REPLAY_STEPS steps at a time. Nothing that happens on the way is shown or
+     * played. A resync that arrives during a replay starts it again, up to the same tick.
+     */
+    private void replay(ArrayList<RelayedInput> inputs) {
+        if (replayTick < 0) {
+            replayTick = simulation.getTick();
+            replayListener = simulation.getListener();
+            simulation.setListener(null);
+        }
+        checksums = new SyncChecker(HISTORY);
+        serverChecksums = new SyncChecker(HISTORY);
+        start();
+        for (RelayedInput input : inputs) {
+            simulation.schedule(input.tick, input.player, input.input);
+        }
+        late = false;
+        resyncRequested = false;
+    }
+
+    /**
+     * @return true if this copy of the match has diverged from the server, no resync is being asked
+     *         for or replayed, the last one caught up at least RESYNC_COOLDOWN ticks ago and the client
+     *         has not stopped asking for them
+     */
+    public boolean needsResync() {
+        if (resyncRequested || replayTick >= 0 || failedResyncs >= MAX_RESYNCS)
+            return false;
+        if (caughtUpTick >= 0 && simulation.getTick() - caughtUpTick < RESYNC_COOLDOWN)
+            return false;
+        return late || !checksums.inSync() || !serverChecksums.inSync();
+    }
+
+    /**
+     * Remembers that a resync has been asked for, so it is asked for once. A resync asked for soon
+     * after the last one caught up means that one did not fix the game.
+     */
+    public void resyncRequested() {
+        resyncRequested = true;
+        if (caughtUpTick >= 0 && simulation.getTick() - caughtUpTick < CONVERGE_TICKS) {
+            failedResyncs++;
+            if (failedResyncs == MAX_RESYNCS)
+                System.out.println("The game keeps diverging after resyncs, no more will be asked for");
+        } else {
+            failedResyncs = 0;
+        }
+    }
+
+    /**
+     * @return true while the match is being played again for a resync
+     */
+    public boolean isReplaying() {
+        return replayTick >= 0;
+    }
+
+    /**
+     * @return the last tick this client knows the server has reached
+     */
+    public int getServerTick() {
+        return serverTick;
+    }
+
+    /**
+     * Writes an input as it is relayed and kept for a resync.
+     *
+     * @param tick   the tick at which the input is given
+     * @param player the player who gave it
+     * @param input  the input
+     * @param out    the writer the INPUT_SIZE bytes are added to
+     */
+    public static void writeInput(int tick, int player, Input input, ByteWriter out) {
+        out.write(tick);
+        out.write((byte) player);
+        out.write(input.getCode());
+    }
+}
@@ -20,6 +20,9 @@ public class MessageHeaders {
     public final static byte CONNECTION = 0x11;
     public final static byte SERVERS_LIST = 0x12;
     public final static byte LEADERBOARD = 0x13;
+    // The kind of page a LEADERBOARD request asks for, sent after the header
+    public final static byte LEADERBOARD_PAGE = 0x00;
+    public final static byte LEADERBOARD_AROUND = 0x01;
     public final static byte PORT_PACKET = 0x14;
     public final static byte INPUT_PACKET = 0x15;
 
@@ -31,5 +34,18 @@ public class MessageHeaders {
 
     public final static byte FORCE_QUIT = 0x1B;
     public final static byte GAME_ENDED = 0x1C;
+    public final static byte SNAPSHOT_ACK = 0x1D;
+
+    public final static byte SERVERS_UPDATE = 0x1E;
+    public final static byte SERVERS_UNSUBSCRIBE = 0x1F;
+    // The events of a SERVERS_UPDATE message
+    public final static byte SERVER_ADDED = 0x01;
+    public final static byte SERVER_REMOVED = 0x02;
+    public final static byte SERVER_UPDATED = 0x03;
+
+    // The messages of a game whose server relays the inputs instead of the game state
+    public final static byte INPUT_RELAY = 0x20;
+    public final static byte CHECKSUM = 0x21;
+    public final static byte RESYNC = 0x22;
 
 }
@@ -0,0 +1,87 @@
+package com.game.net;
+
+import com.game.physics.Robot;
+import com.game.state.Input;
+import com.game.state.Simulation;
+
+import java.util.ArrayDeque;
+
+/**
+ * Moves and aims the Robot of this player as soon as a key is pressed, instead of when the game
+ * state of the server shows it, so the game does not feel a round trip behind.
+ * <p>
+ * Every input sent to the server during this player's turn is predicted by the Simulation of the
+ * client and kept until the server has taken it. Each game state says how many inputs of this
+ * player the server has taken, so when it arrives the inputs it already holds are dropped, and the
+ * ones still on their way are applied again on top of the Robots of the server. When the
+ * prediction was right, nothing moves.
+ * </p>
+ * <p>
+ * The inputs are sent and the game states are applied by the game loop, so the Simulation is only
+ * predicted on the thread that steps it.
+ * </p>
+ *
+ * @author Robert Chiper
+ */
+public class Prediction {
+    // More inputs than the server takes in a few seconds means it is not taking them
+    private static final int MAX_PENDING = 128;
+
+    private final Simulation simulation;
+    private final int playerId;
+    private final ArrayDeque<Input> pending = new ArrayDeque<>();
+    private int sent;
+
+    /**
+     * @param simulation the Simulation of the client
+     * @param playerId   the id of the player on this client
+     */
+    public Prediction(Simulation simulation, int playerId) {
+        this.simulation = simulation;
+        this.playerId = playerId;
+    }
+
+    /**
+     * Called for every input sent to the server. It is predicted if it is the turn of this player.
+     *
+     * @param input the input that was sent
+     */
+    public void sent(Input input) {
+        sent++;
+        pending.add(input);
+        if (pending.size() > MAX_PENDING)
+            pending.poll();
+        if (simulation.whosTurn == playerId && simulation.getCurrentChar() != null)
+            simulation.predict(input, Simulation.TIME_STEP);
+    }
+
+    /**
+     * Called once the Robots of a game state have been set. The inputs the server has taken are
+     * dropped and the others are predicted again from the Robots of the server.
+     *
+     * @param taken the number of inputs of this player that the server has taken
+     */
+    public void reconcile(int taken) {
+        while (pending.size() > Math.max(sent - taken, 0)) {
+            pending.poll();
+        }
+        Robot robot = simulation.getCurrentChar();
+        if (simulation.whosTurn != playerId || robot == null)
+            return;
+        // The game state holds where the Robot is, rounded down, but not how it moves
+        robot.setVelocity(0);
+        robot.stopY();
+        robot.setFalling(false);
+        simulation.settle(robot);
+        for (Input input : pending) {
+            simulation.predict(input, Simulation.TIME_STEP);
+        }
+    }
+
+    /**
+     * @return the number of inputs sent that the server has not taken yet
+     */
+    public int getPending() {
+        return pending.size();
+    }
+}
@@ -1,13 +1,12 @@
 package com.game.net;
 
-import com.game.object.Explosion;
 import com.game.physics.Coord;
 import com.game.physics.Robot;
-import com.game.state.GameState;
+import com.game.state.GameEvent;
 import com.game.state.Loadout;
+import com.game.state.Simulation;
 import com.game.weapon.*;
 
-import java.lang.reflect.Array;
 import java.util.ArrayList;
 
 /**
@@ -17,6 +16,15 @@ import java.util.ArrayList;
  * @author Robert Chiper
  */
 public class Serializer {
+    public static final int ROBOT_SIZE = 24;
+
+    /**
+     * The offset and length of every field of a serialized robot, in the order of the bits of the
+     * dirty mask: id, dead, x, y, health, energy, ammo, slot, angle, power, image and timer.
+     */
+    private static final int[] ROBOT_FIELD_OFFSETS = {0, 1, 2, 4, 6, 7, 9, 18, 19, 21, 22, 23};
+    private static final int[] ROBOT_FIELD_LENGTHS = {1, 1, 2, 2, 1, 2, 9, 1, 2, 1, 1, 1};
+    private static final int FULL_MASK = (1 << ROBOT_FIELD_OFFSETS.length) - 1;
 
     /**
      * Converts a Loadout to bytes.
@@ -25,13 +33,23 @@ public class Serializer {
      * @return array of 12 bytes
      */
     public static byte[] serializeLoadout(Loadout loadout) {
-        ByteUtils byteUtils = new ByteUtils();
-        byteUtils.write((byte) loadout.getStartHP());
-        byteUtils.write((short) loadout.getMaxEnergy());
+        ByteWriter byteWriter = new ByteWriter(12);
+        serializeLoadout(loadout, byteWriter);
+        return byteWriter.getBuffer();
+    }
+
+    /**
+     * Writes the 12 bytes of a Loadout.
+     *
+     * @param loadout the Loadout to be converted
+     * @param out     the writer the bytes are added to
+     */
+    public static void serializeLoadout(Loadout loadout, ByteWriter out) {
+        out.write((byte) loadout.getStartHP());
+        out.write((short) loadout.getMaxEnergy());
         for (Weapon weapon : loadout.getInv()) {
-            byteUtils.write((byte) weapon.getAmmo());
+            out.write((byte) weapon.getAmmo());
         }
-        return byteUtils.getBuffer();
     }
 
     /**
@@ -41,10 +59,22 @@ public class Serializer {
      * @return the loadout
      */
     public static Loadout deserializeLoadout(byte[] data) {
-        return new Loadout(data[0], ByteUtils.getShort(data, 1),
-                new int[]{data[3], data[4], data[5],
-                        data[6], data[7], data[8],
-                        data[9], data[10], data[11]});
+        return deserializeLoadout(data, 0);
+    }
+
+    /**
+     * Converts the 12 bytes of a Loadout inside a message to a Loadout.
+     *
+     * @param data   the array of bytes containing the loadout
+     * @param offset the position where the loadout starts
+     * @return the loadout
+     */
+    public static Loadout deserializeLoadout(byte[] data, int offset) {
+        int[] ammo = new int[9];
+        for (int i = 0; i < 9; i++) {
+            ammo[i] = data[offset + 3 + i];
+        }
+        return new Loadout(data[offset], ByteReader.getShort(data, offset + 1), ammo);
     }
 
     /**
@@ -54,11 +84,11 @@ public class Serializer {
      * @return array of 12 * number of loadouts bytes
      */
     public static byte[] serializeLoadouts(ArrayList<Loadout> loadouts) {
-        ByteUtils byteUtils = new ByteUtils();
+        ByteWriter byteWriter = new ByteWriter(12 * loadouts.size());
         for (Loadout loadout : loadouts) {
-            byteUtils.write(serializeLoadout(loadout));
+            serializeLoadout(loadout, byteWriter);
         }
-        return byteUtils.getBuffer();
+        return byteWriter.getBuffer();
     }
 
     /**
@@ -71,7 +101,7 @@ public class Serializer {
     public static ArrayList<Loadout> deserializeLoadouts(byte[] data, int offset) {
         ArrayList<Loadout> loadouts = new ArrayList<>();
         for (int i = offset; i < offset + 36; i += 12) {
-            loadouts.add(deserializeLoadout(ByteUtils.shrinkByteArray(data, i, 12)));
+            loadouts.add(deserializeLoadout(data, i));
         }
         return loadouts;
 
@@ -84,23 +114,32 @@ public class Serializer {
      * @return array of 24 bytes
      */
     public static byte[] serializeRobot(Robot robot) {
-        ByteUtils byteUtils = new ByteUtils();
-        byteUtils.write((byte) robot.getRobotId());
-        byteUtils.write(robot.isDead());
-        byteUtils.write((short) robot.getXPos());
-        byteUtils.write((short) robot.getYPos());
-        byteUtils.write((byte) robot.getHealth());
-        byteUtils.write((short) robot.getEnergy());
+        ByteWriter byteWriter = new ByteWriter(ROBOT_SIZE);
+        serializeRobot(robot, byteWriter);
+        return byteWriter.getBuffer();
+    }
+
+    /**
+     * Writes the 24 bytes of a Robot.
+     *
+     * @param robot the object to be converted
+     * @param out   the writer the bytes are added to
+     */
+    public static void serializeRobot(Robot robot, ByteWriter out) {
+        out.write((byte) robot.getRobotId());
+        out.write(robot.isDead());
+        out.write((short) robot.getXPos());
+        out.write((short) robot.getYPos());
+        out.write((byte) robot.getHealth());
+        out.write((short) robot.getEnergy());
         for (Weapon weapon : robot.getAllWeapons()) {
-            byteUtils.write((byte) weapon.getAmmo());
+            out.write((byte) weapon.getAmmo());
         }
-        byteUtils.write((byte) robot.getWeaponSlot());
-        byteUtils.write((short) robot.getAngle());
-        byteUtils.write((byte) robot.getPower());
-        byteUtils.write((byte) robot.getImageId());
-        byteUtils.write((byte) robot.getTimer());
-
-        return byteUtils.getBuffer();
+        out.write((byte) robot.getWeaponSlot());
+        out.write((short) robot.getAngle());
+        out.write((byte) robot.getPower());
+        out.write((byte) robot.getImageId());
+        out.write((byte) robot.getTimer());
     }
 
     /**
@@ -110,25 +149,36 @@ public class Serializer {
      * @return the Robot object
      */
     public static Robot deserializeRobot(byte[] data) {
+        return deserializeRobot(data, 0);
+    }
+
+    /**
+     * Converts the 24 bytes of a robot inside a message to a Robot object.
+     *
+     * @param data   the array containing the bytes of the robot
+     * @param offset the position where the robot starts
+     * @return the Robot object
+     */
+    public static Robot deserializeRobot(byte[] data, int offset) {
         boolean isDead = false;
-        if (data[1] == 0x01)
+        if (data[offset + 1] == 0x01)
             isDead = true;
-        short xPos = ByteUtils.getShort(data, 2);
-        short yPos = ByteUtils.getShort(data, 4);
-        Robot robot = new Robot(100, 45, new Coord(xPos, yPos), new Loadout(), (int) data[0]);
-        robot.setHealth((int) data[6]);
-        robot.setEnergy((int) ByteUtils.getShort(data, 7));
+        short xPos = ByteReader.getShort(data, offset + 2);
+        short yPos = ByteReader.getShort(data, offset + 4);
+        Robot robot = new Robot(50, 23, new Coord(xPos, yPos), new Loadout(), (int) data[offset]);
+        robot.setHealth((int) data[offset + 6]);
+        robot.setEnergy((int) ByteReader.getShort(data, offset + 7));
         int index = 0;
         for (Weapon weapon : robot.getAllWeapons()) {
-            weapon.setAmmo(data[index + 9]);
+            weapon.setAmmo(data[offset + index + 9]);
             index++;
         }
         robot.setIsDead(isDead);
-        robot.setSlot((int) data[18]);
-        robot.setAngle((int) ByteUtils.getShort(data, 19));
-        robot.setPower((int) data[21]);
-        robot.setImageId(data[22]);
-        robot.setTimer(data[23]);
+        robot.setSlot((int) data[offset + 18]);
+        robot.setAngle((int) ByteReader.getShort(data, offset + 19));
+        robot.setPower((int) data[offset + 21]);
+        robot.setImageId(data[offset + 22]);
+        robot.setTimer(data[offset + 23]);
         return robot;
     }
 
@@ -139,10 +189,20 @@ public class Serializer {
      * @return array of 24 * number of robots bytes
      */
     public static byte[] serializeRobots(ArrayList<Robot> robots) {
-        ByteUtils byteUtils = new ByteUtils();
+        ByteWriter byteWriter = new ByteWriter(ROBOT_SIZE * robots.size());
+        serializeRobots(robots, byteWriter);
+        return byteWriter.getBuffer();
+    }
+
+    /**
+     * Writes the bytes of a Collection of Robot objects.
+     *
+     * @param robots the ArrayList of robots
+     * @param out    the writer the 24 * number of robots bytes are added to
+     */
+    public static void serializeRobots(ArrayList<Robot> robots, ByteWriter out) {
         for (Robot robot : robots)
-            byteUtils.write(serializeRobot(robot));
-        return byteUtils.getBuffer();
+            serializeRobot(robot, out);
     }
 
     /**
@@ -152,15 +212,115 @@ public class Serializer {
      * @return the ArrayList of Robot objects
      */
     public static ArrayList<Robot> deserializeRobots(byte[] data) {
-        int offset = 0;
-        int robotsSize = GameState.teamSize * GameState.noTeams * 24;
+        return deserializeRobots(data, 0);
+    }
+
+    /**
+     * Converts the robots inside a message to a Collection of Robot objects.
+     *
+     * @param data   the byte array containing the robots
+     * @param offset the position where the first robot starts
+     * @return the ArrayList of Robot objects
+     */
+    public static ArrayList<Robot> deserializeRobots(byte[] data, int offset) {
+        int robotsSize = Simulation.teamSize * Simulation.noTeams * 24;
         ArrayList<Robot> robots = new ArrayList<>();
         for (int i = offset; i < robotsSize + offset; i += 24) {
-            robots.add(deserializeRobot(ByteUtils.shrinkByteArray(data, i, 24)));
+            robots.add(deserializeRobot(data, i));
         }
         return robots;
     }
 
+    /**
+     * Encodes the robots as the changes since the baseline. For every robot that changed it
+     * writes its index, a mask with a bit set for every field that changed and then the bytes of
+     * those fields. Without a baseline every field of every robot is written, which makes the
+     * delta a full keyframe.
+     *
+     * @param baseline the serialized robots the receiver already has, or null for a keyframe
+     * @param robots   the serialized robots to be sent
+     * @return the number of changed robots followed by their changes
+     */
+    public static byte[] serializeRobotsDelta(byte[] baseline, byte[] robots) {
+        ByteWriter byteWriter = new ByteWriter(1 + robots.length / ROBOT_SIZE * (ROBOT_SIZE + 2));
+        serializeRobotsDelta(baseline, robots, byteWriter);
+        return byteWriter.getBuffer();
+    }
+
+    /**
+     * Writes the changes of the robots since the baseline, in the same way as
+     * serializeRobotsDelta(byte[], byte[]).
+     *
+     * @param baseline the serialized robots the receiver already has, or null for a keyframe
+     * @param robots   the serialized robots to be sent
+     * @param out      the writer the delta is added to
+     */
+    public static void serializeRobotsDelta(byte[] baseline, byte[] robots, ByteWriter out) {
+        int robotsCount = robots.length / ROBOT_SIZE;
+        int countIndex = out.size();
+        out.write((byte) 0);
+        int changed = 0;
+        for (int i = 0; i < robotsCount; i++) {
+            int offset = i * ROBOT_SIZE;
+            int mask = baseline == null ? FULL_MASK : dirtyMask(baseline, robots, offset);
+            if (mask == 0)
+                continue;
+            changed++;
+            out.write((byte) i);
+            out.write((short) mask);
+            for (int field = 0; field < ROBOT_FIELD_OFFSETS.length; field++) {
+                if ((mask & (1 << field)) != 0) {
+                    out.write(robots, offset + ROBOT_FIELD_OFFSETS[field], ROBOT_FIELD_LENGTHS[field]);
+                }
+            }
+        }
+        out.array()[countIndex] = (byte) changed;
+    }
+
+    /**
+     * Applies a delta written by serializeRobotsDelta to the serialized robots.
+     *
+     * @param data   the byte array containing the delta
+     * @param offset the index where the delta starts
+     * @param robots the serialized baseline, which is changed in place
+     * @return the index right after the delta
+     */
+    public static int applyRobotsDelta(byte[] data, int offset, byte[] robots) {
+        int changed = data[offset++];
+        for (int i = 0; i < changed; i++) {
+            int robotOffset = data[offset] * ROBOT_SIZE;
+            int mask = ((data[offset + 1] & 0xFF) << 8) | (data[offset + 2] & 0xFF);
+            offset += 3;
+            for (int field = 0; field < ROBOT_FIELD_OFFSETS.length; field++) {
+                if ((mask & (1 << field)) != 0) {
+                    System.arraycopy(data, offset, robots, robotOffset + ROBOT_FIELD_OFFSETS[field], ROBOT_FIELD_LENGTHS[field]);
+                    offset += ROBOT_FIELD_LENGTHS[field];
+                }
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * @param baseline the serialized robots of the baseline
+     * @param robots   the current serialized robots
+     * @param offset   the index of the robot in both arrays
+     * @return a mask with a bit set for every field of the robot that differs from the baseline
+     */
+    private static int dirtyMask(byte[] baseline, byte[] robots, int offset) {
+        int mask = 0;
+        for (int field = 0; field < ROBOT_FIELD_OFFSETS.length; field++) {
+            int start = offset + ROBOT_FIELD_OFFSETS[field];
+            for (int i = start; i < start + ROBOT_FIELD_LENGTHS[field]; i++) {
+                if (baseline[i] != robots[i]) {
+                    mask |= 1 << field;
+                    break;
+                }
+            }
+        }
+        return mask;
+    }
+
     /**
      * Converts a byte array to GameServer.
      *
@@ -168,48 +328,75 @@ public class Serializer {
      * @return the GameServer
      */
     public static GameServer deserializeGameServer(byte[] data) {
-        ByteUtils byteUtils = new ByteUtils();
-        int index = 1;
-        ArrayList<String> strings = new ArrayList<>();
-        while (index < data.length) {
-            if (data[index] == 0) {
-                strings.add(new String(byteUtils.getBuffer()));
-                byteUtils.flush();
-            } else
-                byteUtils.write(data[index]);
-            index++;
-        }
-        return new GameServer(strings.get(0), data[0], strings.get(1));
+        return deserializeGameServer(new ByteReader(data, 0));
     }
 
     /**
-     * Converts a byte array to a collection of GameServers.
+     * Reads a GameServer: its player count, name and host name.
      *
-     * @param data   the byte array containing the Collection of GameServer objects
+     * @param reader the reader positioned at the start of the GameServer
+     * @return the GameServer
+     */
+    private static GameServer deserializeGameServer(ByteReader reader) {
+        int capacity = reader.readByte();
+        String name = reader.readString();
+        String hostName = reader.readString();
+        return new GameServer(name, capacity, hostName);
+    }
+
+    /**
+     * Converts a page of the server browser to GameServers. The page starts with the number of games
+     * that match the filter of the client, the index of its first game and the number of games in it,
+     * followed by each game.
+     *
+     * @param data   the byte array containing the page
      * @param offset the start position
-     * @return the ArrayList of GameServer objects
+     * @return the ArrayList of GameServer objects, sorted by name
      */
     public static ArrayList<GameServer> deserializeGameServers(byte[] data, int offset) {
-        ArrayList<GameServer> gameServers = new ArrayList<>();
+        ByteReader reader = new ByteReader(data, offset);
+        reader.readInt();
+        reader.readInt();
+        int listSize = reader.readShort() & 0xFFFF;
+        ArrayList<GameServer> gameServers = new ArrayList<>(listSize);
+        for (int i = 0; i < listSize; i++) {
+            gameServers.add(deserializeGameServer(reader));
+        }
+        return gameServers;
+    }
 
-        int currentSize = 0;
-        int listSize = data[offset++];
-        int leftIndex = offset;
-        int rightIndex = offset;
-        int zeros = 0;
-        while (currentSize < listSize) {
-            while (zeros < 2) {
-                if (data[rightIndex] == 0x00) {
-                    zeros++;
-                }
-                rightIndex++;
+    /**
+     * Applies the events of a SERVERS_UPDATE message to the page of the server browser: the games
+     * added are put in their place by name, the games updated are replaced and the games removed
+     * are taken out.
+     *
+     * @param gameServers the page, sorted by name
+     * @param data        the byte array containing the events
+     * @param offset      the start position
+     * @return the number of games that match the filter of the client
+     */
+    public static int applyGameServerUpdates(ArrayList<GameServer> gameServers, byte[] data, int offset) {
+        ByteReader reader = new ByteReader(data, offset);
+        int total = reader.readInt();
+        int events = reader.readShort() & 0xFFFF;
+        for (int i = 0; i < events; i++) {
+            byte type = reader.readByte();
+            if (type == MessageHeaders.SERVER_REMOVED) {
+                String name = reader.readString();
+                gameServers.removeIf(server -> server.getName().equals(name));
+                continue;
+            }
+            GameServer server = deserializeGameServer(reader);
+            int index = 0;
+            while (index < gameServers.size() && gameServers.get(index).getName().compareTo(server.getName()) < 0)
+                index++;
+            if (index < gameServers.size() && gameServers.get(index).getName().equals(server.getName())) {
+                gameServers.set(index, server);
+            } else {
+                gameServers.add(index, server);
             }
-            zeros = 0;
-            gameServers.add(deserializeGameServer(ByteUtils.shrinkByteArray(data, leftIndex, rightIndex - leftIndex)));
-            leftIndex = rightIndex;
-            currentSize++;
         }
-        return gameServers;
+        return total;
     }
 
     /**
@@ -219,49 +406,61 @@ public class Serializer {
      * @return the Player object
      */
     public static Player deserializePlayer(byte[] data) {
-        ByteUtils byteUtils = new ByteUtils();
-        int index = 3;
-        while (index < data.length) {
-            byteUtils.write(data[index]);
-            index++;
-        }
-        return new Player(new String(byteUtils.getBuffer()), data[0], data[1], data[2]);
+        return new Player(new String(data, 3, data.length - 3), data[0], data[1], data[2]);
     }
 
     /**
-     * Converts a byte array to a Collection of Player objects.
+     * Converts a page of the leaderboard to Player objects. The page starts with the total number
+     * of players, the rank of its first player and the number of players in it, followed by the
+     * wins, loses, draws and username of each. The positions of the players are set from their rank,
+     * starting from 1.
      *
-     * @param data the byte array containing the Player objects
-     * @return the ArrayList of Player objects
+     * @param data   the byte array containing the page
+     * @param offset the position where the page starts
+     * @return the ArrayList of Player objects, in order
      */
     public static ArrayList<Player> deserializeLeaderboard(byte[] data, int offset) {
-        ArrayList<Player> players = new ArrayList<>();
-
-        int currentSize = 0;
-        int listSize = data[offset++];
-        int leftIndex = offset;
-        int rightIndex = offset + 3;
-        while (currentSize < listSize) {
-            while (data[rightIndex] != 0)
-                rightIndex++;
-
-            players.add(deserializePlayer(ByteUtils.shrinkByteArray(data, leftIndex, rightIndex - leftIndex)));
-            leftIndex = ++rightIndex;
-            rightIndex += 3;
-            currentSize++;
+        ByteReader reader = new ByteReader(data, offset);
+        reader.readInt();
+        int first = reader.readInt();
+        int count = reader.readShort();
+        ArrayList<Player> players = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int wins = reader.readInt();
+            int loses = reader.readInt();
+            int draws = reader.readInt();
+            Player player = new Player(reader.readString(), wins, loses, draws);
+            player.setPosition(first + i + 1);
+            players.add(player);
         }
         return players;
     }
 
-    public static byte[] serializeExplosions(ArrayList<Explosion> explosions) {
-        ByteUtils byteUtils = new ByteUtils();
-        byteUtils.write((byte) explosions.size());
-        for (Explosion explosion : explosions) {
-            byteUtils.write((short) explosion.getXPos());
-            byteUtils.write((short) explosion.getYPos());
-            byteUtils.write((short) explosion.getRadius());
-            System.out.println("Radius: " + (short) explosion.getRadius());
+    /**
+     * Converts the explosions to bytes: their number followed by the position and radius of each.
+     * The explosions are the EXPLOSION events emitted by the Simulation.
+     *
+     * @param explosions the explosions since the last game state
+     * @return array of 1 + 6 * number of explosions bytes
+     */
+    public static byte[] serializeExplosions(ArrayList<GameEvent> explosions) {
+        ByteWriter byteWriter = new ByteWriter(1 + 6 * explosions.size());
+        serializeExplosions(explosions, byteWriter);
+        return byteWriter.getBuffer();
+    }
+
+    /**
+     * Writes the bytes of the explosions.
+     *
+     * @param explosions the explosions since the last game state
+     * @param out        the writer the bytes are added to
+     */
+    public static void serializeExplosions(ArrayList<GameEvent> explosions, ByteWriter out) {
+        out.write((byte) explosions.size());
+        for (GameEvent explosion : explosions) {
+            out.write((short) explosion.getX());
+            out.write((short) explosion.getY());
+            out.write((short) explosion.getRadius());
         }
-        return byteUtils.getBuffer();
     }
 }
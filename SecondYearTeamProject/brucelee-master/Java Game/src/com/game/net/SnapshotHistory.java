@@ -0,0 +1,83 @@
+package com.game.net;
+
+/**
+ * A ring of the last robot snapshots, indexed by their sequence number. The game server keeps
+ * the snapshots it sent so it can encode the next one against the last snapshot a client
+ * acknowledged, and the client keeps the snapshots it received so it can decode them.
+ * <p>
+ * Sequence numbers go from 0 to 65535 and then wrap around. The size of the ring divides 65536,
+ * so a sequence number always maps to the same slot.
+ * </p>
+ *
+ * @author Robert Chiper
+ */
+public class SnapshotHistory {
+    public static final int SIZE = 64;
+    public static final int SEQUENCE_MODULO = 1 << 16;
+
+    private byte[][] snapshots = new byte[SIZE][];
+    private int[] sequences = new int[SIZE];
+
+    /**
+     * Creates an empty history.
+     */
+    public SnapshotHistory() {
+        clear();
+    }
+
+    /**
+     * Stores a copy of a snapshot, replacing the one that was sent SIZE sequence numbers earlier.
+     * The array of the replaced snapshot is reused, so storing snapshots does not allocate once
+     * the ring is full.
+     *
+     * @param sequence the sequence number of the snapshot
+     * @param robots   the serialized robots of the snapshot
+     */
+    public void put(int sequence, byte[] robots) {
+        put(sequence, robots, robots.length);
+    }
+
+    /**
+     * Stores a copy of the first bytes of an array as a snapshot.
+     *
+     * @param sequence the sequence number of the snapshot
+     * @param robots   the array starting with the serialized robots of the snapshot
+     * @param length   the number of bytes of the snapshot
+     */
+    public synchronized void put(int sequence, byte[] robots, int length) {
+        int slot = sequence & (SIZE - 1);
+        if (snapshots[slot] == null || snapshots[slot].length != length)
+            snapshots[slot] = new byte[length];
+        System.arraycopy(robots, 0, snapshots[slot], 0, length);
+        sequences[slot] = sequence;
+    }
+
+    /**
+     * @param sequence the sequence number of the snapshot
+     * @return the serialized robots of the snapshot, or null if it is not in the history anymore.
+     * The array stays valid until SIZE more snapshots are stored and must not be changed.
+     */
+    public synchronized byte[] get(int sequence) {
+        if (sequence < 0)
+            return null;
+        int slot = sequence & (SIZE - 1);
+        return sequences[slot] == sequence ? snapshots[slot] : null;
+    }
+
+    /**
+     * Forgets all the snapshots.
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < SIZE; i++) {
+            sequences[i] = -1;
+        }
+    }
+
+    /**
+     * @param sequence the current sequence number
+     * @return the sequence number after it
+     */
+    public static int next(int sequence) {
+        return (sequence + 1) & (SEQUENCE_MODULO - 1);
+    }
+}
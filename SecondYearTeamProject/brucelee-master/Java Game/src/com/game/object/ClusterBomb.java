@@ -1,10 +1,7 @@
 package com.game.object;
 
 import com.game.physics.Coord;
-import com.game.sound.SoundEffect;
-import com.game.state.GameState;
-
-import javafx.scene.image.Image;
+import com.game.state.Simulation;
 
 public class ClusterBomb extends Projectile{
 	
@@ -16,7 +13,7 @@ public class ClusterBomb extends Projectile{
 	}
 
 	@Override
-	public boolean collided(GameState state) {
+	public boolean collided(Simulation state) {
 		int launchAngle = 140;
 		for(int i = 0; i < 10; i++) {
 			Projectile p = new ClusterGrenade(new Coord((int)xPos,(int)yPos), 0);
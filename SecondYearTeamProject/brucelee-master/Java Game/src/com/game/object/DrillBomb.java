@@ -1,7 +1,7 @@
 package com.game.object;
 
 import com.game.physics.Coord;
-import com.game.state.GameState;
+import com.game.state.Simulation;
 
 public class DrillBomb extends Projectile{
 
@@ -27,7 +27,7 @@ public class DrillBomb extends Projectile{
 	
 
 	@Override
-	public boolean collided(GameState state) {
+	public boolean collided(Simulation state) {
 		if(drillNum < 0) {
 			return true;
 		}
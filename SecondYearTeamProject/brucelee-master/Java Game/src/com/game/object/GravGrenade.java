@@ -1,10 +1,7 @@
 package com.game.object;
 
 import com.game.physics.Coord;
-import com.game.sound.SoundEffect;
-import com.game.state.GameState;
-import javafx.scene.image.Image;
-import javafx.scene.image.PixelWriter;
+import com.game.state.Simulation;
 
 public class GravGrenade extends Projectile {
     public GravGrenade(Coord location, int angle) {
@@ -15,7 +12,7 @@ public class GravGrenade extends Projectile {
     }
 
     @Override
-    public boolean collided(GameState state) {
+    public boolean collided(Simulation state) {
         Coord centre = this.getCentre();
         state.shiftRobots(centre.getX(), centre.getY(), (int)explosiveRadius, 300);
         state.getWorld().shiftTerrain(centre.getX(), centre.getY(), (int)explosiveRadius, 300);
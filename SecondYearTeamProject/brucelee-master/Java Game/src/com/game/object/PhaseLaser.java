@@ -1,10 +1,7 @@
 package com.game.object;
 
 import com.game.physics.Coord;
-import com.game.sound.SoundEffect;
-import com.game.state.GameState;
-
-import javafx.scene.image.Image;
+import com.game.state.Simulation;
 
 /**
  * The Projectile corresponding to the PhaseGun Weapon.
@@ -23,23 +20,24 @@ public class PhaseLaser extends Projectile {
 		this.maxVelocity = 20;
 		this.setXPos(location.getX());
 		this.setYPos(location.getY());
-		this.fireSound = new SoundEffect("phase_laser_fire");
-		this.impactSound = new SoundEffect("phase_laser_impact");
+		this.fireSound = "phase_laser_fire";
+		this.impactSound = "phase_laser_impact";
 	}
 
 	/**
 	 * This method is for moving the simulating the projectile path.
 	 * @param time The time the simulation should be stepped forward to simulate velocities.
+	 * @param gravity The gravity of the world.
 	 */
 	@Override
-	public void moveObject(double time) {
+	public void moveObject(double time, double gravity) {
 		this.name = "phase_laser_air";
 		xPos += xVelocity * time;
 		yPos -= yVelocity * time; // This is because the y co-ordinate increases
 									// as you go down the screen
 		// Decrease velocity according to gravity
 		if (!isBullet && isFalling) {
-			yVelocity -= GameState.gravity * time;
+			yVelocity -= gravity * time;
 			if(yVelocity < maxVelocity) {
 				yVelocity = maxVelocity;
 			}
@@ -48,11 +46,11 @@ public class PhaseLaser extends Projectile {
 	}
 
 	/**
-	 * @param state The GameState of the world.
+	 * @param state The Simulation of the world.
 	 * @return whether or not the Projectile collided with terrain. Always false for PhaseLaser.
 	 */
 	@Override
-	public boolean collided(GameState state) {
+	public boolean collided(Simulation state) {
 		this.name = "phase_laser_ground";
 		return false;
 	}
@@ -3,10 +3,7 @@ package com.game.object;
 import com.game.physics.Coord;
 import com.game.physics.PhysicsObject;
 import com.game.physics.Robot;
-import com.game.sound.SoundEffect;
-import com.game.state.GameState;
-
-import javafx.scene.image.Image;
+import com.game.state.Simulation;
 
 /**
  * This abstract class is extended by any object that's considered a projectile fired by a weapon
@@ -20,11 +17,15 @@ public abstract class Projectile extends PhysicsObject {
 	protected int fireAngle;
 	protected double radius;
 	protected double explosiveRadius = 300;
-	protected SoundEffect fireSound;
-	protected SoundEffect impactSound;
+	protected String fireSound;
+	protected String impactSound;
 	protected int imgIndex;
 	protected boolean isRotational = false;
 	private Robot creator;
+	private boolean removed;
+	private boolean marked;
+	private double lastX;
+	private double lastY;
 	
 	/**
 	 * Creates a projectile with the given attributes
@@ -40,8 +41,8 @@ public abstract class Projectile extends PhysicsObject {
 		this.radius = radius;
 		this.explosiveRadius = eRadius;
 		this.fireAngle = angle;
-		fireSound = new SoundEffect(name.concat("_fire"));
-		impactSound = new SoundEffect(name.concat("_impact"));
+		fireSound = name.concat("_fire");
+		impactSound = name.concat("_impact");
 		imgIndex = 0;
 	}
 	
@@ -87,26 +88,26 @@ public abstract class Projectile extends PhysicsObject {
 	
 	/**
 	 * Override this to get the projectile to do something when colliding with terrain
-	 * @param state The state of the world
+	 * @param state The simulation of the world
 	 * @return Should the projectile explode and be removed
 	 */
-	public boolean collided(GameState state) {
+	public boolean collided(Simulation state) {
 		return true;
 	}
 
 	/**
-	 * Get the sound made when this projectile is fired
+	 * Get the name of the sound made when this projectile is fired
 	 * @return The projectiles fire sound
 	 */
-	public SoundEffect getFireSound() {
+	public String getFireSound() {
 		return fireSound;
 	}
 
 	/**
-	 * Get the sound the projectile makes when it hits something
+	 * Get the name of the sound the projectile makes when it hits something
 	 * @return The impact sound
 	 */
-	public SoundEffect getImpactSound() {
+	public String getImpactSound() {
 		return impactSound;
 	}
 
@@ -140,4 +141,54 @@ public abstract class Projectile extends PhysicsObject {
 	public void incrementCounter() {
 		imgIndex = imgIndex + 1;
 	}
+
+	/**
+	 * Marks this projectile as removed from the world. The Simulation takes it out of its list
+	 * at the end of the step, so the other projectiles are not moved around while they are checked
+	 */
+	public void setRemoved() {
+		removed = true;
+	}
+
+	/**
+	 * Check if this projectile has been removed from the world
+	 * @return True if it has exploded or left the world
+	 */
+	public boolean isRemoved() {
+		return removed;
+	}
+
+	/**
+	 * Remembers where the projectile is before it is moved, so the Simulation can check the
+	 * terrain all the way between where it was and where it is after the step
+	 */
+	public void markPosition() {
+		lastX = xPos;
+		lastY = yPos;
+		marked = true;
+	}
+
+	/**
+	 * Check if the position before the last step is known
+	 * @return True if markPosition has been called
+	 */
+	public boolean hasLastPosition() {
+		return marked;
+	}
+
+	/**
+	 * Get the x position of the projectile before the last step
+	 * @return The x position it was moved from
+	 */
+	public double getLastXPos() {
+		return lastX;
+	}
+
+	/**
+	 * Get the y position of the projectile before the last step
+	 * @return The y position it was moved from
+	 */
+	public double getLastYPos() {
+		return lastY;
+	}
 }
@@ -1,10 +1,6 @@
 package com.game.object;
 
 import com.game.physics.Coord;
-import com.game.sound.SoundEffect;
-import com.game.state.GameState;
-
-import javafx.scene.image.Image;
 
 /**
  * The Projectile corresponding to the Sniper Weapon
@@ -1,7 +1,7 @@
 package com.game.object;
 
 import com.game.physics.Coord;
-import com.game.state.GameState;
+import com.game.state.Simulation;
 
 /**
  * The Projectile corresponding to the SpeedLauncher Weapon.
@@ -20,7 +20,7 @@ public class SpeedBomb extends Projectile {
 	}
 	
 	@Override
-	public boolean collided(GameState state) {
+	public boolean collided(Simulation state) {
 		explosiveRadius += Math.abs( yVelocity / 5);
 		System.out.println("ERADIUS WAS " + explosiveRadius);
 		maxDam += Math.abs(yVelocity / 35);
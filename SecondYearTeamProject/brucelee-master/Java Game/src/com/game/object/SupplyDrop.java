@@ -4,9 +4,6 @@ import java.util.Random;
 
 import com.game.physics.Coord;
 import com.game.physics.PhysicsObject;
-import com.game.sound.SoundEffect;
-
-import javafx.scene.image.Image;
 
 /**
  * <p>
@@ -16,9 +13,9 @@ import javafx.scene.image.Image;
  */
 public class SupplyDrop extends PhysicsObject {
 
-	protected SoundEffect fireSound;
-	protected SoundEffect impactSound;
-	protected SoundEffect collectSound;
+	protected String fireSound;
+	protected String impactSound;
+	protected String collectSound;
 
 	/**
 	 * Default constructor for SupplyDrop.
@@ -29,29 +26,29 @@ public class SupplyDrop extends PhysicsObject {
 	 */
 	public SupplyDrop(Coord location) {
 		super(40, 40, location, false, "supply");
-		fireSound = new SoundEffect(name.concat("_fire"));
-		impactSound = new SoundEffect(name.concat("_impact"));
-		collectSound = new SoundEffect(name.concat("_collect"));
+		fireSound = name.concat("_fire");
+		impactSound = name.concat("_impact");
+		collectSound = name.concat("_collect");
 	}
 
 	/**
-	 * @return get the SoundEffect for the spawning of the SupplyDrop.
+	 * @return get the name of the SoundEffect for the spawning of the SupplyDrop.
 	 */
-	public SoundEffect getFireSound() {
+	public String getFireSound() {
 		return fireSound;
 	}
 
 	/**
-	 * @return get the SoundEffect for the landing of the SupplyDrop.
+	 * @return get the name of the SoundEffect for the landing of the SupplyDrop.
 	 */
-	public SoundEffect getImpactSound() {
+	public String getImpactSound() {
 		return impactSound;
 	}
 
 	/**
-	 * @return get the SoundEffect for when a Robot picks up the SupplyDrop.
+	 * @return get the name of the SoundEffect for when a Robot picks up the SupplyDrop.
 	 */
-	public SoundEffect getCollectSound() {
+	public String getCollectSound() {
 		return collectSound;
 	}
 }
@@ -2,10 +2,7 @@ package com.game.object;
 
 import com.game.physics.Coord;
 import com.game.physics.Robot;
-import com.game.sound.SoundEffect;
-import com.game.state.GameState;
-
-import javafx.scene.image.Image;
+import com.game.state.Simulation;
 
 /**
  * The Projectile corresponding to the Teleport Weapon.
@@ -26,7 +23,7 @@ public class Teleporter extends Projectile{
 	}
 
 	@Override
-	public boolean collided(GameState state) {
+	public boolean collided(Simulation state) {
 		Robot target = state.getCurrentChar();
 		target.setXPos((int)xPos);
 		target.setYPos((int) (yPos - target.getCollisionBox().getHeight()));
@@ -0,0 +1,114 @@
+package com.game.physics;
+
+/**
+ * An axis aligned bounding box made of primitive values. It is the hit box of every object in
+ * the world and replaces the JavaFX Rectangle, so the simulation does not need the JavaFX toolkit.
+ *
+ * @author Isaac
+ *
+ */
+public class AABB {
+	private double x;
+	private double y;
+	private double width;
+	private double height;
+
+	/**
+	 * Creates a box with its top left corner at the given position
+	 *
+	 * @param x
+	 *            The x position of the top left corner
+	 * @param y
+	 *            The y position of the top left corner
+	 * @param width
+	 *            The width of the box
+	 * @param height
+	 *            The height of the box
+	 */
+	public AABB(double x, double y, double width, double height) {
+		this.x = x;
+		this.y = y;
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Checks if this box overlaps the given area. Boxes that only touch at an edge do not
+	 * overlap
+	 *
+	 * @param x
+	 *            The x position of the area
+	 * @param y
+	 *            The y position of the area
+	 * @param width
+	 *            The width of the area
+	 * @param height
+	 *            The height of the area
+	 * @return True if the two overlap
+	 */
+	public boolean intersects(double x, double y, double width, double height) {
+		if (width <= 0 || height <= 0 || this.width <= 0 || this.height <= 0) {
+			return false;
+		}
+		return x + width > this.x && y + height > this.y && x < this.x + this.width && y < this.y + this.height;
+	}
+
+	/**
+	 * Checks if this box overlaps another box
+	 *
+	 * @param other
+	 *            The other box
+	 * @return True if the two overlap
+	 */
+	public boolean intersects(AABB other) {
+		return intersects(other.x, other.y, other.width, other.height);
+	}
+
+	/**
+	 * Get the x position of the top left corner
+	 * @return The x position of the box
+	 */
+	public double getX() {
+		return x;
+	}
+
+	/**
+	 * Get the y position of the top left corner
+	 * @return The y position of the box
+	 */
+	public double getY() {
+		return y;
+	}
+
+	/**
+	 * Set the x position of the top left corner
+	 * @param x The new x position of the box
+	 */
+	public void setX(double x) {
+		this.x = x;
+	}
+
+	/**
+	 * Set the y position of the top left corner
+	 * @param y The new y position of the box
+	 */
+	public void setY(double y) {
+		this.y = y;
+	}
+
+	/**
+	 * Get the width of the box
+	 * @return The width of the box
+	 */
+	public double getWidth() {
+		return width;
+	}
+
+	/**
+	 * Get the height of the box
+	 * @return The height of the box
+	 */
+	public double getHeight() {
+		return height;
+	}
+}
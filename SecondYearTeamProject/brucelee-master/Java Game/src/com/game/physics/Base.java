@@ -1,7 +1,5 @@
 package com.game.physics;
 
-import javafx.scene.shape.Rectangle;
-
 /**
  * Base physics class that stores all of the essential values for an object in
  * the world including it's position and hit box
@@ -15,10 +13,10 @@ public abstract class Base {
 	protected int width;
 	protected double xPos;
 	protected double yPos;
-	private Rectangle collisionBox;
+	private AABB collisionBox;
 
 	/**
-	 * Creates a base that hold simple values. A rectangle is used for the hitbox of the characters
+	 * Creates a base that hold simple values. An AABB is used for the hitbox of the characters
 	 * 
 	 * @param height
 	 *            The height of the rectangle
@@ -32,7 +30,7 @@ public abstract class Base {
 		this.width = width;
 		this.xPos = location.getX();
 		this.yPos = location.getY();
-		this.collisionBox = new Rectangle(xPos, yPos, width, height);
+		this.collisionBox = new AABB(xPos, yPos, width, height);
 	}
 
 	/**
@@ -87,7 +85,7 @@ public abstract class Base {
 	 * returns a collision box with at the base's current location * @return
 	 * Returns the collision box
 	 */
-	public Rectangle getCollisionBox() {
+	public AABB getCollisionBox() {
 		collisionBox.setX(xPos);
 		collisionBox.setY(yPos);
 		return collisionBox;
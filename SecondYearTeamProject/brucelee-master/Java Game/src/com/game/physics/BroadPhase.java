@@ -0,0 +1,129 @@
+package com.game.physics;
+
+import java.util.Arrays;
+
+/**
+ * A sweep and prune index of the boxes that projectiles can hit, so a projectile is only tested
+ * against the boxes near it instead of against every Robot and SupplyDrop in the world.
+ * <p>
+ * The boxes are copied as primitive values and sorted by their left edge. A box can only overlap
+ * a query box if its left edge is before the right edge of the query and it is no further to the
+ * left than the widest box, so a query is a binary search followed by a short scan. The objects
+ * do not move while the projectiles are checked, so the index is built once for every step.
+ * </p>
+ * <p>
+ * Each box is added with an id, and the ids of the boxes a query overlaps are returned in
+ * ascending order, so the objects are hit in the same order as when they are all checked.
+ * </p>
+ */
+public class BroadPhase {
+	private double[] minX = new double[16];
+	private double[] minY = new double[16];
+	private double[] maxX = new double[16];
+	private double[] maxY = new double[16];
+	private int[] ids = new int[16];
+	private int size;
+	private double widest;
+
+	/**
+	 * Removes all the boxes
+	 */
+	public void clear() {
+		size = 0;
+		widest = 0;
+	}
+
+	/**
+	 * Adds a copy of a box. Boxes without an area are not added, since nothing overlaps them
+	 *
+	 * @param box
+	 *            The box
+	 * @param id
+	 *            The id the box is returned as
+	 */
+	public void add(AABB box, int id) {
+		if (box.getWidth() <= 0 || box.getHeight() <= 0) {
+			return;
+		}
+		if (size == ids.length) {
+			int length = size * 2;
+			minX = Arrays.copyOf(minX, length);
+			minY = Arrays.copyOf(minY, length);
+			maxX = Arrays.copyOf(maxX, length);
+			maxY = Arrays.copyOf(maxY, length);
+			ids = Arrays.copyOf(ids, length);
+		}
+		// Insertion keeps the boxes sorted by their left edge
+		int i = size;
+		while (i > 0 && minX[i - 1] > box.getX()) {
+			minX[i] = minX[i - 1];
+			minY[i] = minY[i - 1];
+			maxX[i] = maxX[i - 1];
+			maxY[i] = maxY[i - 1];
+			ids[i] = ids[i - 1];
+			i--;
+		}
+		minX[i] = box.getX();
+		minY[i] = box.getY();
+		maxX[i] = box.getX() + box.getWidth();
+		maxY[i] = box.getY() + box.getHeight();
+		ids[i] = id;
+		size++;
+		widest = Math.max(widest, box.getWidth());
+	}
+
+	/**
+	 * Finds the boxes that overlap the given box, in the same way as AABB.intersects
+	 *
+	 * @param box
+	 *            The box to check
+	 * @param out
+	 *            The array the ids of the overlapping boxes are written to. It must hold as many
+	 *            ids as there are boxes
+	 * @return The number of ids written, in ascending order
+	 */
+	public int query(AABB box, int[] out) {
+		if (size == 0 || box.getWidth() <= 0 || box.getHeight() <= 0) {
+			return 0;
+		}
+		double left = box.getX();
+		double top = box.getY();
+		double right = left + box.getWidth();
+		double bottom = top + box.getHeight();
+
+		// The first box whose left edge is not too far to the left to reach the query
+		int low = 0;
+		int high = size;
+		double from = left - widest;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (minX[middle] < from) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+
+		int found = 0;
+		for (int i = low; i < size && minX[i] < right; i++) {
+			if (maxX[i] > left && maxY[i] > top && minY[i] < bottom) {
+				// Insertion keeps the ids in ascending order, and there are only a few
+				int j = found++;
+				while (j > 0 && out[j - 1] > ids[i]) {
+					out[j] = out[j - 1];
+					j--;
+				}
+				out[j] = ids[i];
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Get the number of boxes
+	 * @return The number of boxes in the index
+	 */
+	public int size() {
+		return size;
+	}
+}
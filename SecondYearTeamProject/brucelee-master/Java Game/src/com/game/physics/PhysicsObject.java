@@ -1,9 +1,6 @@
 package com.game.physics;
 
-import com.game.state.GameState;
-
-import javafx.scene.image.Image;
-import javafx.scene.shape.Rectangle;
+import com.game.state.Simulation;
 
 /**
  * This class simulates a physical object moving in the world. It can be
@@ -19,7 +16,6 @@ public class PhysicsObject extends Base {
 	protected boolean isBullet;
 	protected boolean isFalling;
 	protected double maxVelocity = 800;
-	protected Image img;
 	protected String name;
 
 	/**
@@ -104,20 +100,33 @@ public class PhysicsObject extends Base {
 	}
 
 	/**
-	 * Moves the object forward in time
+	 * Moves the object forward in time with the default gravity
 	 * 
 	 * @param time
 	 *            The time the simulation takes to move forward and get the
 	 *            right values
 	 */
 	public void moveObject(double time) {
+		moveObject(time, Simulation.DEFAULT_GRAVITY);
+	}
+
+	/**
+	 * Moves the object forward in time
+	 * 
+	 * @param time
+	 *            The time the simulation takes to move forward and get the
+	 *            right values
+	 * @param gravity
+	 *            The gravity of the world the object is in
+	 */
+	public void moveObject(double time, double gravity) {
 		double startPos = xPos;
 		xPos += xVelocity * time;
 		yPos -= yVelocity * time; // This is because the y co-ordinate increases
 									// as you go down the screen
 		// Decrease velocity according to gravity
 		if (!isBullet && isFalling) {
-			yVelocity -= GameState.gravity * time;
+			yVelocity -= gravity * time;
 			if (Math.abs(yVelocity) > maxVelocity) {
 				if (yVelocity > 0) {
 					yVelocity = maxVelocity;
@@ -164,9 +173,10 @@ public class PhysicsObject extends Base {
 	 * 
 	 * @param tx
 	 * @param ty
+	 * @param p The simulation the object is in, which gives the terrain and gravity
 	 * @return
 	 */
-	public boolean simulate(double tx, double ty, GameState p, Robot[] team) {
+	public boolean simulate(double tx, double ty, Simulation p, Robot[] team) {
 		double simX = xPos;
 		double simY = yPos;
 		double yvSim = yVelocity;
@@ -181,11 +191,11 @@ public class PhysicsObject extends Base {
 			simY -= yvSim * simConstant;
 			simX += xvSim * simConstant;
 			if (!isBullet) {
-				yvSim -= GameState.gravity * simConstant;
+				yvSim -= p.getGravity() * simConstant;
 			}
 			// Checks to see if colliding with teammates
 			for (Robot r : team) {
-				Rectangle hitBox = r.getCollisionBox();
+				AABB hitBox = r.getCollisionBox();
 				if (hitBox.intersects(simX, simY, width, height)) {
 					// System.out.println("Collided with teammate");
 					return false;
@@ -241,14 +251,6 @@ public class PhysicsObject extends Base {
 		}
 	}
 
-	/**
-	 * Get the current image of this physics object
-	 * @return The objects current image
-	 */
-	public Image getImage() {
-		return this.img;
-	}
-
 	/**
 	 * Get the name of the object
 	 * @return The objects name
@@ -2,12 +2,11 @@ package com.game.physics;
 
 import com.game.AI.HighHealthStrat;
 import com.game.AI.Strategy;
-import com.game.state.GameState;
 import com.game.state.Loadout;
+import com.game.state.Simulation;
 import com.game.state.Team;
-import com.game.state.GameWorld;
+import com.game.state.Terrain;
 import com.game.weapon.Weapon;
-import javafx.scene.shape.Rectangle;
 
 import java.util.ArrayList;
 import java.util.Random;
@@ -42,7 +41,6 @@ public class Robot extends PhysicsObject {
 	private int imageId;
 	private int robotId;
 	private int imageOffset = 0;
-	protected Random r;
 
 	/**
 	 * Creates a new robot character
@@ -76,7 +74,6 @@ public class Robot extends PhysicsObject {
 		if (robotId >= 10)
 			imageOffset = 7;
 		imageId = imageOffset;
-		r = new Random();
 	}
 
 	/**
@@ -458,14 +455,18 @@ public class Robot extends PhysicsObject {
 	/**
 	 * Tell the robot to pickup some supplies for it's weapons. This gives it
 	 * random ammo for it's weapons based on their rarity
+	 * 
+	 * @param random
+	 *            The Random of the match, so every copy of it gives the same
+	 *            supplies
 	 */
-	public void pickupSupplies() {
+	public void pickupSupplies(Random random) {
 		int ammoCount = 0;
 		for (Weapon w : weapons) {
 			if (ammoCount >= 3) {
 				return;
 			}
-			if (r.nextInt(100) > w.rarity()) {
+			if (random.nextInt(100) > w.rarity()) {
 				w.refillAmmo(1);
 				ammoCount++;
 			}
@@ -529,7 +530,7 @@ public class Robot extends PhysicsObject {
 	 * @param time
 	 *            The time to calculate the movement for
 	 */
-	public void stepX(GameWorld world, double time) {
+	public void stepX(Terrain world, double time) {
 		double endPoint = xPos + xVelocity * time;
 		double xStart = xPos;
 		double yStart = yPos;
@@ -573,19 +574,29 @@ public class Robot extends PhysicsObject {
 	 *            The current world
 	 * @return True if the robot is currently colliding with the world
 	 */
-	public boolean hasCollisionX(GameWorld world) {
+	public boolean hasCollisionX(Terrain world) {
 		Coord location = new Coord((int) this.getXPos(), (int) this.getYPos());
-		Rectangle collisionBox = this.getCollisionBox();
+		AABB collisionBox = this.getCollisionBox();
 		int maxX = (int) (location.getX() + collisionBox.getWidth());
 		int maxY = (int) (location.getY() + collisionBox.getHeight());
-		for (int i = location.getY() + 5; i < maxY - 5; i++) {
-			if (!world.map[maxX][i]) {
-				return true;
-			} else if (location.getX() > 0 && !world.map[location.getX()][i]) {
-				return true;
-			}
-		}
-		return false;
+		int top = location.getY() + 5;
+		int rows = maxY - 5 - top;
+		// The right and left edges of the box, as columns of pixels
+		return world.map.anySolid(maxX, top, 1, rows)
+				|| (location.getX() > 0 && world.map.anySolid(location.getX(), top, 1, rows));
+	}
+
+	/**
+	 * Move the robot in the y axis one pixel at a time. If it collides with any
+	 * terrain then it stops the robot from moving
+	 * 
+	 * @param world
+	 *            The game world
+	 * @param time
+	 *            The time used to calculate ho far to move the robot
+	 */
+	public void stepY(Terrain world, double time) {
+		stepY(world, time, Simulation.DEFAULT_GRAVITY);
 	}
 
 	/**
@@ -596,8 +607,10 @@ public class Robot extends PhysicsObject {
 	 *            The game world
 	 * @param time
 	 *            The time used to calculate ho far to move the robot
+	 * @param gravity
+	 *            The gravity of the world
 	 */
-	public void stepY(GameWorld world, double time) {
+	public void stepY(Terrain world, double time, double gravity) {
 		double endPoint = (yPos - yVelocity * time);
 		double startPoint = yPos;
 		boolean coll = true;
@@ -608,10 +621,13 @@ public class Robot extends PhysicsObject {
 				yPos += 1;
 			}
 
-			// return if it's out of bounds
+			// Stop at the edge of the world like at a ceiling, so gravity still
+			// brings the robot back instead of it keeping its velocity there
 			if (yPos <= 0 || yPos + height >= world.worldHeight) {
 				yPos = startPoint;
-				return;
+				stopY();
+				coll = false;
+				break;
 			}
 
 			// If there's a collision, undo any movement in the y axis
@@ -628,7 +644,7 @@ public class Robot extends PhysicsObject {
 		}
 		// Decrease velocity according to gravity
 		if (!isBullet && isFalling) {
-			yVelocity -= GameState.gravity * time;
+			yVelocity -= gravity * time;
 			if (Math.abs(yVelocity) > maxVelocity) {
 				if (Math.abs(yVelocity) > maxVelocity) {
 					if (yVelocity > 0) {
@@ -648,20 +664,21 @@ public class Robot extends PhysicsObject {
 	 * @param world The game world
 	 * @return True if the robot collides with something
 	 */
-	public boolean hasCollisionY(GameWorld world) {
+	public boolean hasCollisionY(Terrain world) {
 		Coord location = new Coord((int) this.getXPos(), (int) this.getYPos());
-		Rectangle collisionBox = this.getCollisionBox();
+		AABB collisionBox = this.getCollisionBox();
 		int maxX = (int) (location.getX() + collisionBox.getWidth());
 		int maxY = (int) (location.getY() + collisionBox.getHeight());
-		for (int i = location.getX() + 3; i < maxX - 3; i++) {
-			if (!world.map[i][maxY]) {
-				takeFallDamage();
-				return true;
-			} else if (location.getY() > 0 && !world.map[i][location.getY()]) {
-				return true;
-			}
+		int left = location.getX() + 3;
+		int right = maxX - 3;
+		int floor = world.map.firstSolidInRow(maxY, left, right);
+		int ceiling = location.getY() > 0 ? world.map.firstSolidInRow(location.getY(), left, right) : -1;
+		// The floor wins when it is hit at the same column or further left than the ceiling
+		if (floor != -1 && (ceiling == -1 || floor <= ceiling)) {
+			takeFallDamage();
+			return true;
 		}
-		return false;
+		return ceiling != -1;
 	}
 
 	/**
@@ -0,0 +1,93 @@
+package com.game.state;
+
+import com.game.physics.Robot;
+
+/**
+ * Something that happened in the Simulation which the client may want to show or play.
+ * <p>
+ * The Simulation only emits these, it does not know about sounds, the HUD or animations. The
+ * GameState turns them into SoundEffects, HUD updates and explosions, blood and heads to be drawn.
+ * Each event has the name of the sound for it when there is one, the position it happened at,
+ * and the Robot it happened to.
+ * </p>
+ */
+public class GameEvent {
+
+    /**
+     * The kinds of event that the Simulation emits.
+     */
+    public enum Type {
+        /** A projectile was fired or spawned. */
+        FIRED,
+        /** A projectile exploded at (x, y) with the given radius. */
+        EXPLOSION,
+        /** A supply drop appeared in the sky. */
+        DROP_SPAWNED,
+        /** A supply drop landed on the terrain. */
+        DROP_LANDED,
+        /** A supply drop was picked up. */
+        DROP_COLLECTED,
+        /** The health, energy, power or weapon of a Robot changed. */
+        ROBOT_CHANGED,
+        /** A Robot died and was removed from the world, (x, y) is its centre. */
+        ROBOT_DIED
+    }
+
+    /**
+     * Receives the events of a Simulation.
+     */
+    public interface Listener {
+        /**
+         * @param event the event that happened
+         */
+        void onEvent(GameEvent event);
+    }
+
+    private final Type type;
+    private final String sound;
+    private final int x;
+    private final int y;
+    private final int radius;
+    private final Robot robot;
+
+    /**
+     * @param type   the kind of event
+     * @param sound  the name of the sound for the event, or null if it is silent
+     * @param x      the x position of the event
+     * @param y      the y position of the event
+     * @param radius the radius of an explosion, 0 for the other events
+     * @param robot  the Robot the event happened to, or null
+     */
+    public GameEvent(Type type, String sound, int x, int y, int radius, Robot robot) {
+        this.type = type;
+        this.sound = sound;
+        this.x = x;
+        this.y = y;
+        this.radius = radius;
+        this.robot = robot;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getSound() {
+        return sound;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+    public Robot getRobot() {
+        return robot;
+    }
+}
@@ -6,67 +6,38 @@ import com.game.UI.HUDComponent;
 import com.game.UI.InGameHUD;
 import com.game.object.*;
 import com.game.physics.Coord;
-import com.game.physics.PhysicsObject;
 import javafx.scene.input.KeyCode;
 import com.game.physics.Robot;
 import com.game.sound.SoundEffect;
 import com.game.weapon.Weapon;
-import javafx.scene.shape.Rectangle;
 
 import java.util.ArrayList;
-import java.util.ConcurrentModificationException;
-import java.util.Random;
 
 /**
- * The current state for the running game.
+ * The current state for the running game on the client.
  * <p>
- * This is where all the rules and logical aspects of the game are
- * checked/managed. This stores the world, and also handles physics for the
- * game.
+ * The rules, the physics and the world are handled by the Simulation this
+ * class extends. GameState listens to the events of the Simulation and turns
+ * them into the SoundEffects, HUD updates, explosions, blood and heads that the
+ * Renderer shows. It also runs the AI in single player.
  * </p>
  */
-public class GameState {
-    public static final int noTeams = 2;
-    public static final int teamSize = 3;
-    public static final int MAX_VELOCITY = 15;
-    public static double gravity = 9.81;
+public class GameState extends Simulation implements GameEvent.Listener {
 
-    private ArrayList<Robot> robots;
-    private ArrayList<Projectile> projectiles;
     private ArrayList<SoundEffect> soundEffects;
-    private GameWorld world;
-    private ArrayList<Team> teams;
-    private ArrayList<SupplyDrop> drops;
     private ArrayList<Explosion> explosions;
     private ArrayList<Blood> blood;
     private ArrayList<Head> heads;
     private ArrayList<HUDComponent> hudComponents;
-    private Loadout[] loadouts;
-
-    public int whosTurn;
-    private Robot currentCharacter;
-    public boolean endedTurn;
-    public boolean dropCreated;
-    public int gameResult;
 
     private InGameHUD igh;
 
-    public int turnNumber = 0;
-
-    private final int SUDDEN_DEATH_TURN = 20;
-    private final int RISE_PER_TURN = 50;
-    public final int STARTING_HEIGHT = 100;
-    protected int lavaHeight;
-
-    private boolean onClient;
-
-    private boolean singlePlayer;
-    private AI computer;
+    private AI[] computers;
+    private boolean computerOnly;
     private Plan plan;
     private Coord oldPos;
     private final int MAX_STUCK = 10;
     private int stuckFor;
-    private int difficulty = 0;
 
     /**
      * The constructor for GameState. Requires some flags and the robot
@@ -77,213 +48,141 @@ public class GameState {
      * @param loadouts     the Loadout for each Robot in the game.
      */
     public GameState(boolean singlePlayer, boolean onClient, Loadout[] loadouts) {
-        gravity = 9.81;
-        this.loadouts = loadouts;
-        gameResult = -1;
-        this.singlePlayer = singlePlayer;
-        this.onClient = onClient;
-        if (singlePlayer) {
-            world = new GameWorld(false, System.currentTimeMillis(), onClient);
-            lavaHeight = world.getWorldHeight() - STARTING_HEIGHT;
-        }
-        robots = new ArrayList<Robot>();
+        this(singlePlayer, onClient, loadouts, System.currentTimeMillis());
+    }
+
+    /**
+     * The constructor for GameState, with the seed of the world of a single
+     * player game, so the same world can be played again.
+     *
+     * @param singlePlayer boolean for if the game is in single player mode.
+     * @param onClient     boolean for if the game is in multiplayer mode.
+     * @param loadouts     the Loadout for each Robot in the game.
+     * @param seed         the seed of the world, used in single player only.
+     */
+    public GameState(boolean singlePlayer, boolean onClient, Loadout[] loadouts, long seed) {
+        super(singlePlayer, onClient, loadouts, seed);
         soundEffects = new ArrayList<SoundEffect>();
-        projectiles = new ArrayList<Projectile>();
-        drops = new ArrayList<SupplyDrop>();
         explosions = new ArrayList<Explosion>();
         blood = new ArrayList<Blood>();
         heads = new ArrayList<Head>();
         if (onClient)
             hudComponents = new ArrayList<HUDComponent>();
+        setListener(this);
+    }
+
+    /**
+     * Lets the AI control the first team as well, so a single player game
+     * plays itself. Must be called before init.
+     *
+     * @param computerOnly true if the AI controls both teams.
+     */
+    public void setComputerOnly(boolean computerOnly) {
+        this.computerOnly = computerOnly;
     }
 
     /**
      * Initialises the GameState.
      * <p>
-     * Initialises the team turn count - starting with team 1. Creates the team
-     * - with the expected Loadout for each Robot. Each Robot spawns in a random
-     * location that is not too close to another Robot. Initialises the AI for
-     * singleplayer, who will control the second team.
+     * Initialises the Simulation, then creates the HUD and, for singleplayer,
+     * the AI who will control the second team, and the first team too when
+     * the game is computer only.
      * </p>
      */
+    @Override
     public void init() {
-        if (singlePlayer) {
-            whosTurn = 1;
-        }
-        teams = new ArrayList<>();
-        ArrayList<Integer> existingSpawns = new ArrayList();
-        // Generates the teams
-        for (int t = 0; t < noTeams; t++) {
-            ArrayList<Robot> members = new ArrayList<>();
-            Random ran = new Random();
-            for (int c = 0; c < teamSize; c++) {
-                // Randomise spawn positions
-                int position = ran.nextInt(world.getWorldWidth() - 50);
-
-                // checking the new spawn isn't too close to an existing one
-                boolean goodSpawn = false;
-                while (!goodSpawn) {
-                    goodSpawn = true;
-                    position = ran.nextInt(world.getWorldWidth() - 50);
-                    for (Integer spawn : existingSpawns) {
-                        if (Math.abs(spawn - position) < (100)) {
-                            goodSpawn = false;
-                        }
-                    }
-                }
-                existingSpawns.add(position);
-                Robot r;
-                if (t == 0) {
-                    r = new Robot(50, 23, new Coord(position, 0), loadouts[c], (t * 10 + c));
-                } else if (!singlePlayer) {
-                    r = new Robot(50, 23, new Coord(position, 0), loadouts[c], (t * 10 + c));
-                } else {
-                    r = new Robot(50, 23, new Coord(position, 0), new Loadout(difficulty), (t * 10 + c));
-                }
-                int y = 0;
-                while (!isOnGround(r)) {
-                    y += 5;
-                    r.setYPos(y);
-                }
-                r.setYPos(y - 5);
-                members.add(r);
-                robots.add(r);
-            }
-            Team team = new Team(members);
-            teams.add(team);
-        }
+        super.init();
         if (onClient) {
             igh = new InGameHUD(robots);
             hudComponents = igh.getHud();
         }
 
         if (singlePlayer) {
-
-            // Code for AI to play. Needs to be changed for multiplayer
-
-            endedTurn = true;
-            currentCharacter = teams.get(whosTurn).getNextPlayer();
-            this.endTurn();
-            endedTurn = false;
-            // singlePlayer = true;
             Robot[] enemy = new Robot[3];
             teams.get(0).getRobots().toArray(enemy);
             Robot[] myTeam = new Robot[3];
             teams.get(1).getRobots().toArray(myTeam);
-            computer = new AI(enemy, myTeam, 0, this);
-        } else {
-            currentCharacter = robots.get(0);
+            computers = new AI[noTeams];
+            computers[1] = new AI(enemy, myTeam, 0, this);
+            if (computerOnly) {
+                computers[0] = new AI(myTeam, enemy, 0, this);
+                // The first turn was given out before there was an AI to plan it
+                turnStarted();
+            }
         }
     }
 
     /**
      * Initialises the GameState with any extra attributes for the multiplayer
-     * only.
-     * <p>
-     * Checks if the game host has random gravity on. Sets up the team of the
-     * opposing player.
-     * </p>
+     * only, and creates the HUD.
      *
      * @param randomGravity boolean saying whether the game has random gravity.
      */
+    @Override
     public void initOnline(boolean randomGravity) {
-        setRandomGravity(randomGravity);
-        teams = new ArrayList<>();
-        for (int t = 0; t < noTeams; t++) {
-            ArrayList<Robot> members = new ArrayList<>();
-            for (int c = 0; c < teamSize; c++) {
-                members.add(robots.get(t * teamSize + c));
-            }
-            Team team = new Team(members);
-            teams.add(team);
-        }
-        currentCharacter = robots.get(0);
+        super.initOnline(randomGravity);
         igh = new InGameHUD(robots);
         hudComponents = igh.getHud();
     }
 
     /**
-     * Generate the GameWorld for the game.
-     * <p>
-     * Generate the GameWorld used in the current game. Takes a seed so that
-     * random generation can be the same over multiplayer (each client generates
-     * the same GameWorld).
-     * </p>
+     * Creates the GameWorld, which also holds the image of the terrain.
      *
      * @param seed a seed for random generation.
+     * @return the new GameWorld.
      */
-    public void createGameWorld(long seed) {
+    @Override
+    protected Terrain createTerrain(long seed) {
+        return new GameWorld(false, seed, onClient);
+    }
 
-        world = new GameWorld(false, seed, onClient);
-        lavaHeight = world.getWorldHeight() - STARTING_HEIGHT;
+    /**
+     * Turns an event of the Simulation into what the player sees and hears.
+     *
+     * @param event the event that happened.
+     */
+    @Override
+    public void onEvent(GameEvent event) {
+        if (event.getSound() != null) {
+            soundEffects.add(new SoundEffect(event.getSound()));
+        }
+        switch (event.getType()) {
+        case EXPLOSION:
+            explosions.add(new Explosion(new Coord(event.getX(), event.getY()), event.getRadius()));
+            break;
+        case ROBOT_CHANGED:
+            if (onClient && igh != null)
+                updateGameHUD();
+            break;
+        case ROBOT_DIED:
+            Coord centre = new Coord(event.getX(), event.getY());
+            blood.add(new Blood(centre, 80));
+            heads.add(new Head(centre, 50));
+            break;
+        default:
+            break;
+        }
     }
 
     /**
      * <p>
-     * This method advances time forward in the physics simulation. It checks to
-     * see if any objects have collided, and handles the collision if they have.
+     * This method advances time forward in the physics simulation, and moves
+     * the heads of the dead robots.
      * </p>
      *
      * @param timePassed The amount of time that the physics simulation should move
      *                   forward by.
      */
+    @Override
     public void step(double timePassed) {
-        int index = 0;
-        String name;
-        int length = projectiles.size();
-
-        if (currentCharacter.getHealth() < 1) {
-            endedTurn = true;
-            endTurn();
-        }
-
-        checkLavaDeaths();
-
-        if (currentCharacter.isDead()) {
-            endedTurn = true;
-            endTurn();
-        }
-
-        if ((!onClient || singlePlayer) && !isOnGround(currentCharacter) && !currentCharacter.getFalling()) {
-            for (Robot r : robots) {
-                r.setYPos(r.getYPos() + 4);
-                r.setFalling(true);
-            }
-        }
-        while (index < length) {
-            if (length > 0) {
-                projectiles.get(index).incrementCounter();
-            }
-
-            projectiles.get(index).moveObject(timePassed);
-            projectileCollisions(projectiles.get(index));
-
-            index++;
-            length = projectiles.size();
-        }
-
-        for (SupplyDrop drop : drops) {
-            drop.moveObject(timePassed);
-            if (isColliding(drop, drop.getXPos(), drop.getYPos())) {
-                soundEffects.add(drop.getImpactSound());
-                drop.stopY();
-                drop.setFalling(false);
-            }
-        }
+        super.step(timePassed);
         for (Head aHead : heads) {
-            aHead.moveObject(timePassed);
+            aHead.moveObject(timePassed, gravity);
             if (isColliding(aHead, aHead.getXPos(), aHead.getYPos())) {
                 aHead.stopY();
                 aHead.setFalling(false);
             }
         }
-        try {
-            if ((!onClient || singlePlayer))
-                for (Robot robot : robots) {
-                    checkCollisions(robot, timePassed);
-                }
-        } catch (ConcurrentModificationException c) {
-        }
     }
 
     /**
@@ -294,7 +193,7 @@ public class GameState {
      * </p>
      */
     public void updateGameHUD() {
-        igh.updateHUD(currentCharacter);
+        igh.updateHUD(getCurrentChar());
         hudComponents = igh.getHud();
     }
 
@@ -320,738 +219,31 @@ public class GameState {
     }
 
     /**
-     * <p>
-     * This creates an explosion at the given position and checks to see if any
-     * objects fall within it's radius. If they do, it damages them and launches
-     * them based on how close they are to the centre of the explosion.
-     * </p>
-     *
-     * @param p The projectile that is exploding.
-     */
-    public void explosion(Projectile p) {
-        Coord centre = p.getCentre();
-        double xPos = centre.getX();
-        double yPos = centre.getY();
-        // ////System.out.println(xPos + "," + yPos + "," + p.getXPos() + "," +
-        // p.getYPos());
-        double radius = p.getExplosiveRadius();
-        // ////System.out.println("radius is " + radius);
-        // moved these out of the loop so destructTerrain can use them,
-        // shouldn't be an issue hopefully?
-
-        for (Robot obj : robots) {
-            double objX = obj.getXPos();
-            double objY = obj.getYPos();
-
-            // Check all 4 corners of the object
-            double minX = obj.getXPos();
-            double maxX = minX + obj.getWidth();
-            double minY = obj.getYPos();
-            double maxY = minY + obj.getHeight();
-
-            double dist1 = Math.sqrt(Math.pow((xPos - minX), 2) + Math.pow((yPos - minY), 2));
-            double dist2 = Math.sqrt(Math.pow((xPos - minX), 2) + Math.pow((yPos - maxY), 2));
-            double dist3 = Math.sqrt(Math.pow((xPos - maxX), 2) + Math.pow((yPos - minY), 2));
-            double dist4 = Math.sqrt(Math.pow((xPos - maxX), 2) + Math.pow((yPos - maxY), 2));
-            // Finds the smallest distance
-            double distance = Math.min(Math.min(dist1, dist2), Math.min(dist3, dist4));
-            if (distance < radius) {
-                double damFraction = 1 - (distance / radius);
-                obj.takeDamage((int) (damFraction * p.getDamage()));
-                if (onClient)
-                    updateGameHUD();
-                double angle = Math.tan((xPos - obj.getXPos()) / (yPos - obj.getYPos()));
-                double dy = Math.abs(objY - yPos);
-                double dx = Math.abs(objX - xPos);
-                if (xPos > objX && yPos > objY) {
-                    angle = 90 + Math.toDegrees(Math.atan(dx / dy));
-                } else if (xPos > objX && yPos < objY) {
-                    angle = 180 + Math.toDegrees(Math.atan(dy / dx));
-                } else if (xPos < objX && yPos < objY) {
-                    angle = 270 + Math.toDegrees(Math.atan(dx / dy));
-                } else {
-                    angle = Math.toDegrees(Math.atan(dy / dx));
-                }
-                // ////System.out.println("damage fraction is " + damFraction);
-                // ////System.out.println("ANGLE IS " + angle);
-                obj.launch(angle, 200 * damFraction);
-            }
-        }
-
-        int x = centre.getX() - 50;
-        int y = centre.getY();
-        Coord location = new Coord(x, y);
-        Explosion explosion = new Explosion(centre, (int) radius);
-        explosions.add(explosion);
-
-        if (singlePlayer || !onClient) {
-            world.destructTerrain((int) xPos, (int) yPos, (int) radius);
-        }
-        // do some damage
-
-        soundEffects.add(p.getImpactSound());
-    }
-
-    /**
-     * A method for shifting Robots a fixed distance upward.
-     * <p>
-     * This method is used to shift any Robot within a radius from a point
-     * upwards a given distance. This is only used when a GravGrenade explosion
-     * occurs.
-     * </p>
-     *
-     * @param xPos     the X of the centre of the explosion.
-     * @param yPos     the Y of the centre of the explosion.
-     * @param radius   the radius of the explosion.
-     * @param distance the distance for which each Robot is shifted upward.
-     */
-    public void shiftRobots(int xPos, int yPos, int radius, int distance) {
-        Coord c = new Coord(xPos, yPos);
-        for (Robot r : robots) {
-            if (c.getDistance(r.getCentre()) < radius + 20) {
-                r.setYPos(r.getYPos() - distance);
-            }
-        }
-    }
-
-    /**
-     * Checks to see if the given Robot is colliding with the GameWorld or a
-     * SupplyDrop and moves the Robot.
-     * <p>
-     * Check to see if the given Robot is currently colliding with the GameWorld
-     * or a SupplyDrop. If they are, they are moved in the correct direction to
-     * end the collision and the appropriate collision event takes place.
-     * </p>
-     *
-     * @param obj  The Robot that is being checked.
-     * @param time the time passed which determines how far the Robot will be
-     *             moved.
-     */
-    public void checkCollisions(Robot obj, double time) {
-        Rectangle collisionBox = obj.getCollisionBox();
-        Coord location = new Coord((int) obj.getXPos(), (int) obj.getYPos());
-        int maxX = (int) (location.getX() + collisionBox.getWidth());
-        int maxY = (int) (location.getY() + collisionBox.getHeight());
-        // Move the robots
-        obj.stepX(world, time);
-        obj.stepY(world, time);
-        obj.friction();
-        // Move back onto the map
-        if (location.getX() < 0) {
-            obj.setXPos(0);
-        } else if (maxX > world.worldWidth) {
-            obj.setXPos(world.worldWidth - 1 - collisionBox.getWidth());
-        }
-        // Checks to see if colliding with supply box
-        int index = 0;
-        int length = drops.size();
-        while (index < length) {
-            SupplyDrop drop = drops.get(index);
-            if (collisionBox.intersects(drop.getCollisionBox().getBoundsInParent())) {
-                drops.remove(drop);
-                obj.pickupSupplies();
-                length = drops.size();
-                soundEffects.add(drop.getCollectSound());
-            }
-            index++;
-        }
-
-        if (onClient)
-            updateGameHUD();
-        if (obj.isDead()) {
-
-            for (Team team : teams) {
-                team.removeRobot(obj);
-            }
-            if (obj.getRobotId() == currentCharacter.getRobotId()) {
-                endedTurn = true;
-                endTurn();
-            }
-        }
-        // robots.remove(obj);
-        // }
-        // Moves back to ground if moving down slope
-        for (int i = 0; i < 10; i++) {
-            if (!obj.getFalling() && isOnGround(obj)) {
-                return;
-            }
-            obj.setYPos(obj.getYPos() + 1);
-        }
-        obj.setFalling(true);
-        obj.setYPos(obj.getYPos() - 10);
-    }
-
-    /**
-     * Checks to see if the given Projectile is colliding with a Robot or with
-     * the GameWorld.
-     * <p>
-     * Checks to see if the given Projectile has collided with a Robot or the
-     * GameWorld. If a collision has occurred, then the appropriate collision
-     * event takes place.
-     * </p>
-     *
-     * @param p the Projectile which will be checked.
-     */
-    public void projectileCollisions(Projectile p) {
-        Rectangle pBox = p.getCollisionBox();
-
-        int index = 0;
-        int length = robots.size();
-        // Check all robots
-        while (index < length) {
-            Robot r = robots.get(index);
-            // Ignore the robot that fired the projectile
-            if (r == p.getCreator()) {
-                index++;
-                continue;
-            }
-            Rectangle rBox = r.getCollisionBox();
-            if (pBox.intersects(rBox.getX(), rBox.getY(), rBox.getWidth(), rBox.getHeight())) {
-                // Deal damage if it's a bullet
-                if (p.isBullet()) {
-                    r.takeDamage(p.getDamage());
-                } else {
-                    r.takeDamage(p.getDamage() * (int) 0.25);
-                }
-                if (onClient)
-                    updateGameHUD();
-                p.collided(this);
-                this.explosion(p);
-                projectiles.remove(p);
-                if (r.isDead()) {
-                    for (Team team : teams) {
-                        team.removeRobot(r);
-                    }
-                    if (r.getRobotId() == currentCharacter.getRobotId()) {
-                        endedTurn = true;
-                        endTurn();
-                    }
-                }
-            }
-            length = robots.size();
-            index++;
-        }
-
-        index = 0;
-        length = drops.size();
-        while (index < length) {
-            SupplyDrop s = drops.get(index);
-            Rectangle sBox = s.getCollisionBox();
-            if (pBox.intersects(sBox.getX(), sBox.getY(), sBox.getWidth(), sBox.getHeight())) {
-                // Deal damage
-                this.explosion(p);
-                p.collided(this);
-                projectiles.remove(p);
-                drops.remove(s);
-            }
-            length = drops.size();
-            index++;
-        }
-
-        Coord location = new Coord((int) p.getXPos(), (int) p.getYPos());
-        int maxX = (int) (location.getX() + pBox.getWidth());
-        int maxY = (int) (location.getY() + pBox.getHeight());
-        for (int i = location.getX(); i < maxX; i++) {
-            for (int j = location.getY(); j < maxY; j++) {
-                if (i < 0 || i > world.worldWidth - 1 || j < 0 || j > world.worldHeight - 1) {
-                    projectiles.remove(p);
-                    return;
-                } else if (!world.map[i][j] && p.collided(this)) {
-                    // ////System.out.println("Collided with the world");
-                    this.explosion(p);
-                    projectiles.remove(p);
-                    return;
-                }
-            }
-        }
-    }
-
-    /**
-     * Check if the given Projectile is colliding with the GameWorld or is
-     * attempting to leave the GameWorld.
-     * <p>
-     * Check to see if the given Projectile is currently colliding with the
-     * GameWorld. If it is then returns true. Will also return true if the
-     * Projectile is attempting to leave the edges of the GameWorld.
-     * </p>
-     *
-     * @param p the object to check.
-     * @return true if the object is colliding with the level.
-     */
-    public boolean isColliding(PhysicsObject p, double simX, double simY) {
-        Rectangle pBox = p.getCollisionBox();
-
-        int maxX = (int) (simX + pBox.getWidth());
-        int maxY = (int) (simY + pBox.getHeight());
-        for (int i = (int) simX; i < maxX; i++) {
-            for (int j = (int) simY; j < maxY; j++) {
-                if (i < 0 || i > 1919 || j < 0 || j > 1079) {
-                    // ////System.out.println("OUT OF BOUNDS");
-                    return true;
-                }
-                if (!world.map[i][j]) {
-                    // ////System.out.println("TERRAIN HERE");
-                    // ////System.out.println(i + " " + j);
-                    return true;
-                }
-            }
-        }
-
-        return false;
-    }
-
-    /**
-     * Adds a Projectile to the world.
-     * <p>
-     * Pass a projectile to the GameState. This is usually called when a Weapon
-     * is fired, but also when a SupplyDrop spawns.
-     * </p>
-     *
-     * @param projectile The Projectile object that should be added.
-     */
-    public void addProjectile(Projectile projectile) {
-        projectiles.add(projectile);
-        this.addSoundEffect(projectile.getFireSound());
-    }
-
-    // /**
-    // * Calculate how much fall damage a character should take
-    // *
-    // * @param
-    // * The character who should take damage
-    // * @return The damage taken
-    // */
-    // public double calcFallDamage(Robot robot) {
-    // double damage = Math.abs(robot.getYVelocity()) / 15;
-    // if(damage > 0)
-    // if (damage > 13) {
-    // return damage;
-    // }
-    // return 0;
-    // }
-
-    /**
-     * Get the current character.
-     * <p>
-     * Request the current Robot which is being controlled. This Robot could
-     * either be player controlled or AI controlled.
-     * </p>
-     *
-     * @return the Robot which is currently taking its turn.
-     */
-    public Robot getCurrentChar() {
-        return currentCharacter;
-    }
-
-    /**
-     * Fire a Weapon from the current player.
-     * <p>
-     * Fires a Weapon from the current Robot. Returns a Projectile that
-     * corresponds to that Weapon. Checks that the it is the given players turn,
-     * the Weapon has ammo, the turn has not ended and that the Robot firing is
-     * not falling.
-     * </p>
-     *
-     * @param player that is firing.
-     * @return the Projectile that is created by the Weapon fired.
-     */
-    public Projectile fireWeapon(int player) {
-        Weapon weapon = currentCharacter.getWeapon();
-        if (player != whosTurn || endedTurn || weapon.getAmmo() < 1 || currentCharacter.getFalling()) {
-            return null;
-        }
-        endedTurn = true;
-        weapon.fired();
-        double xPos = (currentCharacter.getXPos() + (currentCharacter.getWidth() / 4));
-        double yPos = (currentCharacter.getYPos() + (currentCharacter.getHeight() / 4));
-        // if(!currentCharacter.isFacingLeft()){
-        // xPos = (currentCharacter.getXPos() + (currentCharacter.width / 2));
-        // }
-        int angle = currentCharacter.getAngle();
-        int power = currentCharacter.getPower();
-        Projectile p = weapon.createProjectile(new Coord((int) xPos, (int) yPos), angle);
-        p.setCreator(currentCharacter);
-        p.launch(angle, power * p.getMax() / 200);
-        // ////System.out.println(power );
-        this.addProjectile(p);
-
-        return p;
-    }
-
-    /**
-     * The same as fireWeapon but used on multiplayer.
-     * <p>
-     * Fires a Weapon from the current character. Only called when the server
-     * tells it to so there is no conflict between current Robot.
-     * </p>
-     *
-     * @return the Projectile that is created by te Weapon fired.
-     */
-    public Projectile onlineFireWeapon() {
-        Weapon weapon = currentCharacter.getWeapon();
-        weapon.fired();
-        double xPos = (currentCharacter.getXPos() + (currentCharacter.getWidth() / 4));
-        double yPos = (currentCharacter.getYPos() + (currentCharacter.getHeight() / 4));
-
-        int angle = currentCharacter.getAngle();
-        int power = currentCharacter.getPower();
-
-        Projectile p = weapon.createProjectile(new Coord((int) xPos, (int) yPos), angle);
-        p.setCreator(currentCharacter);
-        p.launch(angle, power * p.getMax() / 200);
-        // ////System.out.println(power );
-        this.addProjectile(p);
-        return p;
-    }
-
-    public void onlineCheckDrops() {
-        Rectangle collisionBox = currentCharacter.getCollisionBox();
-        int index = 0;
-        int length = drops.size();
-        while (index < length) {
-            SupplyDrop drop = drops.get(index);
-            if (collisionBox.intersects(drop.getCollisionBox().getBoundsInParent())) {
-                drops.remove(drop);
-                length = drops.size();
-                soundEffects.add(drop.getCollectSound());
-            }
-            index++;
-        }
-    }
-
-    /**
-     * Ends the current turn.
-     * <p>
-     * Ends the current turn. This may spawn a SupplyDrop, it will increment the
-     * turn count (if lava needs to rise). And sets the currentCharacter to the
-     * next Robot on the next Team. It also checks to see if any Robot is dead.
-     * </p>
-     *
-     * @param dropCreated    whether or not a drop is to be spawned this turn.
-     * @param supplyDropXPos the xPosition of the SupplyDrop that will be created.
-     * @param turnNumber
-     * @param whosTurn
-     */
-    public void endTurn(boolean dropCreated, int supplyDropXPos, int turnNumber, int whosTurn) {
-        if (dropCreated) {
-            SupplyDrop supplyDrop = new SupplyDrop(new Coord(supplyDropXPos, 0));
-            drops.add(supplyDrop);
-            soundEffects.add(supplyDrop.getFireSound());
-        }
-
-        this.whosTurn = whosTurn;
-
-        // update the lava height
-        this.turnNumber = turnNumber;
-        if (turnNumber > SUDDEN_DEATH_TURN) {
-            lavaHeight = lavaHeight - RISE_PER_TURN;
-        }
-        // check for deaths due to lava
-        checkLavaDeaths();
-
-        // Sets the next character to move
-        currentCharacter.endTurn();
-
-        checkDeaths();
-        currentCharacter = teams.get(whosTurn).getNextPlayer();
-        currentCharacter.startTurn();
-
-    }
-
-    /**
-     * Checks if the turn has ended.
-     * <p>
-     * Checks to see if the turn has ended. This can only happen when all
-     * movement has stopped.
-     * </p>
-     *
-     * @return true when the turn has ended successfully.
-     */
-    public boolean endTurn() {
-        // Checks for movement
-        if (endedTurn && !isMovement()) {
-            endedTurn = false;
-            whosTurn++;
-            if (whosTurn >= noTeams) {
-                whosTurn = 0;
-            }
-
-            Random r = new Random();
-            if (r.nextInt(5) == 1) {
-                Coord location = new Coord(r.nextInt(world.worldWidth - 50), 0);
-                SupplyDrop drop = new SupplyDrop(location);
-                drops.add(drop);
-                dropCreated = true;
-                soundEffects.add(drop.getFireSound());
-            } else {
-                dropCreated = false;
-            }
-            // Gives the next player control
-
-            // Kills all robots in the range
-            checkLavaDeaths();
-            currentCharacter.endTurn();
-
-            checkDeaths();
-
-            // update the lava height
-            turnNumber++;
-            if (turnNumber > SUDDEN_DEATH_TURN) {
-                lavaHeight = lavaHeight - RISE_PER_TURN;
-            }
-
-            if (teams.get(0).hasLost()) {
-                if (teams.get(1).hasLost()) {
-                    gameResult = 2;
-                    return true;
-                } else {
-                    gameResult = 1;
-                    return true;
-                }
-            } else {
-                if (teams.get(1).hasLost()) {
-                    gameResult = 0;
-                    return true;
-                }
-            }
-
-            // Sets the next character to move
-
-            currentCharacter = teams.get(whosTurn).getNextPlayer();
-            currentCharacter.startTurn();
-
-            // Checks to see if the AI should play
-            if (singlePlayer) {
-                plan = null;
-
-                stuckFor = 0;
-                oldPos = currentCharacter.getPosition();
-                if (singlePlayer && whosTurn == 1) {
-                    // Creates a plan if it's the AI's turn to play
-                    plan = computer.generatePlan(currentCharacter);
-                    // executePlan(computer.generatePlan(currentCharacter));
-                }
-
-            }
-            return true;
-        }
-        return false;
-
-    }
-
-    /**
-     * Checks for any movement in the GameState.
-     * <p>
-     * Checks each Projectile and Robot to see if any of them are moving.
-     * Returns true if they are.
-     * </p>
-     *
-     * @return
+     * Lets the AI plan its move when it is given control of a Robot.
      */
-    public boolean isMovement() {
-        for (Projectile p : projectiles) {
-            if (Math.abs(p.getXVelocity()) > 0 || Math.abs(p.getYVelocity()) > 0) {
-                return true;
-            }
-        }
-        for (Robot r : robots) {
-            if (Math.abs(r.getYVelocity()) > 0 || Math.abs(r.getXVelocity()) > 0) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    public boolean projectileExists(Projectile p) {
-        return projectiles.contains(p);
-    }
-
-    public boolean robotExists(Robot robot) {
-        return teams.get(0).getRobots().contains(robot) || teams.get(1).getRobots().contains(robot);
-    }
-
-    /**
-     * Make the current Robot jump.
-     * <p>
-     * Responds to a Spacebar input, if the Robot ID given is the current Robot,
-     * then it performs a jump. Robot must have enough energy to jump, and will
-     * lose energy when it does.
-     * </p>
-     *
-     * @param player that is expected to jump.
-     */
-    public void jump(int player) {
-        // ////System.out.println("TRYING TO JUMP");
-        if (!endedTurn && currentCharacter.hasEnergy() && !currentCharacter.getFalling() && player == whosTurn) {
-            // ////System.out.println("JUMPED");
-            currentCharacter.launch(90, 150);
-            currentCharacter.decreaseEnergyJump();
-        }
-    }
-
-    /**
-     * Make the current Robot move left.
-     * <p>
-     * Responds to an A input. If the Robot ID given is the current Robot, then
-     * it performs a movement to the left. Robot must have enough energy and
-     * will lose energy when it does.
-     * </p>
-     *
-     * @param player that is expected to move left.
-     */
-    public void moveLeft(int player) {
-        if (!endedTurn && !currentCharacter.getFalling() && player == whosTurn) {
-            if (currentCharacter.hasEnergy()) {
-                currentCharacter.moveLeft();
-                currentCharacter.decreaseEnergy();
-                if (onClient)
-                    updateGameHUD();
-            }
-            currentCharacter.swapAngleLeft();
-        }
-    }
+    @Override
+    protected void turnStarted() {
+        // Checks to see if the AI should play
+        if (singlePlayer && computers != null) {
+            plan = null;
 
-    /**
-     * Make the current Robot move right.
-     * <p>
-     * Responds to a D input. If the Robot ID given is the current Robot, then
-     * it performs a movement to the right. Robot must have enough energy and
-     * will lose energy when it does.
-     * </p>
-     *
-     * @param player that is expected to move right.
-     */
-    public void moveRight(int player) {
-        if (!endedTurn && !currentCharacter.getFalling() && player == whosTurn) {
-            if (currentCharacter.hasEnergy()) {
-                currentCharacter.moveRight();
-                currentCharacter.decreaseEnergy();
-                if (onClient)
-                    updateGameHUD();
+            stuckFor = 0;
+            oldPos = getCurrentChar().getPosition();
+            if (computers[whosTurn] != null) {
+                // Creates a plan if it's the AI's turn to play
+                plan = computers[whosTurn].generatePlan(getCurrentChar());
             }
-            currentCharacter.swapAngleRight();
-        }
-    }
-
-    /**
-     * Make the current Robot increase its aim angle.
-     * <p>
-     * Responds to an Up input. If the Robot ID given is the current Robot, then
-     * its aim angle will increase.
-     * </p>
-     *
-     * @param player that is expected to increase its aim angle.
-     */
-    public void increaseAngle(int player) {
-        if (!endedTurn && !currentCharacter.getFalling() && player == whosTurn) {
-            currentCharacter.changeAngle(1);
-            // ////System.out.println(currentCharacter.getAngle());
         }
     }
 
-    /**
-     * Make the current Robot decrease its aim angle.
-     * <p>
-     * Responds to an Down input. If the Robot ID given is the current Robot,
-     * then its aim angle will decrease.
-     * </p>
-     *
-     * @param player that is expected to decrease its aim angle.
-     */
-    public void decreaseAngle(int player) {
-        if (!endedTurn && !currentCharacter.getFalling() && player == whosTurn) {
-            currentCharacter.changeAngle(-1);
-            // ////System.out.println(currentCharacter.getAngle());
-        }
-    }
-
-    /**
-     * Make the current Robot increase its shot power.
-     * <p>
-     * Responds to an Right input. If the Robot ID given is the current Robot,
-     * then its shot power will increase.
-     * </p>
-     *
-     * @param player that is expected to increase its shot power.
-     */
-    public void increasePower(int player) {
-        if (!endedTurn && !currentCharacter.getFalling() && player == whosTurn) {
-            currentCharacter.changePower(1);
-            if (onClient)
-                updateGameHUD();
-            // ////System.out.println(currentCharacter.getPower());
-        }
-    }
-
-    /**
-     * Make the current Robot decrease its shot power.
-     * <p>
-     * Responds to an Left input. If the Robot ID given is the current Robot,
-     * then its shot power will decrease.
-     * </p>
-     *
-     * @param player that is expected to decrease its shot power.
-     */
-    public void decreasePower(int player) {
-        if (!endedTurn && !currentCharacter.getFalling() && player == whosTurn) {
-            currentCharacter.changePower(-1);
-            if (onClient)
-                updateGameHUD();
-        }
-    }
-
-    /**
-     * Set the current Weapon slot for the current Robot.
-     * <p>
-     * Sets the currently equipped Weapon to the desired Weapon. Checks if the
-     * Robot ID is that of the current Robot.
-     * </p>
-     *
-     * @param slot   the slot id of the Weapon to be equipped.
-     * @param player the player who is expected to change Weapon.
-     */
-    public void setCurrentSlot(int slot, int player) {
-        if (!endedTurn && player == whosTurn) {
-            currentCharacter.setPlayerSlot(slot);
-            if (onClient)
-                updateGameHUD();
-        }
-    }
-
-    /**
-     * Get all of the robots currently in the world
-     *
-     * @return The current robots in the world
-     */
-    public ArrayList<Robot> getRobots() {
-        return robots;
-    }
-
-    /**
-     * Get all of the projectiles that currently exist in the world
-     *
-     * @return The current projectiles in the world
-     */
-    public ArrayList<Projectile> getProjectiles() {
-        return projectiles;
-    }
-
-    /**
-     * Get all of the supply drops that currently exist in the world
-     *
-     * @return The current supply drops
-     */
-    public ArrayList<SupplyDrop> getDrops() {
-        return drops;
-    }
-
     /**
      * Get the current terrain of the world
      *
      * @return The games terrain
      */
+    @Override
     public GameWorld getWorld() {
-        return world;
+        return (GameWorld) world;
     }
 
     /**
@@ -1081,25 +273,6 @@ public class GameState {
         return heads;
     }
 
-    /**
-     * Stops the current character from moving if they aren't falling currently
-     */
-    public void stop() {
-        if (!currentCharacter.getFalling()) {
-            currentCharacter.stop();
-        }
-    }
-
-    /**
-     * Get the height from the bottom of the screen that the top of the lava
-     * currently is
-     *
-     * @return The height of the lava currently
-     */
-    public int getSDArea() {
-        return lavaHeight;
-    }
-
     /**
      * Check to see if the AI has been stuck for more than 10 frames and end
      * it's turn if it has. If not then it checks the AI still has energy to
@@ -1109,6 +282,7 @@ public class GameState {
      * @return The code for the key press to move the AI
      */
     public KeyCode getNextInput() {
+        Robot currentCharacter = getCurrentChar();
         // Check for if stuck
         Coord currentPos = currentCharacter.getPosition();
         if (oldPos.getX() == currentPos.getX() && oldPos.getY() == currentPos.getY()) {
@@ -1129,6 +303,25 @@ public class GameState {
         return plan.getNextCode(currentCharacter.getPosition());
     }
 
+    /**
+     * Makes the Robot of the AI take its next step towards where its plan
+     * says it should go, jumping if it has been stuck.
+     */
+    public void followPlan() {
+        KeyCode input = getNextInput();
+        if (input == KeyCode.D) {
+            moveRight(whosTurn);
+        } else if (input == KeyCode.A) {
+            moveLeft(whosTurn);
+        } else if (input == KeyCode.E) {
+            moveRight(whosTurn);
+            jump(whosTurn);
+        } else {
+            moveLeft(whosTurn);
+            jump(whosTurn);
+        }
+    }
+
     /**
      * Check if the current plan generated by the AI has any commands as well as
      * if it's the AI's turn to execute them. It always returns false if it's
@@ -1137,7 +330,7 @@ public class GameState {
      * @return True if the AI has commands and it's the AI's turn
      */
     public boolean hasCommands() {
-        if (!singlePlayer || whosTurn == 0 || endedTurn) {
+        if (!singlePlayer || computers[whosTurn] == null || endedTurn) {
             return false;
         } else if (plan.hasMoreCommands()) {
             return true;
@@ -1153,6 +346,7 @@ public class GameState {
      * @param plan The plan to be executed
      */
     public void executePlan(Plan plan) {
+        Robot currentCharacter = getCurrentChar();
         // Execute fire commands if they exist
         if (plan.hasFireCommand()) {
             // Fire the weapon
@@ -1186,25 +380,6 @@ public class GameState {
         endTurn();
     }
 
-    /**
-     * Checks if the given robot is currently on the terrain
-     *
-     * @param obj The robot to check
-     * @return True if the robot is on the terrain
-     */
-    public boolean isOnGround(Robot obj) {
-        Rectangle collisionBox = obj.getCollisionBox();
-        Coord location = new Coord((int) obj.getXPos(), (int) obj.getYPos());
-        int maxX = (int) (location.getX() + collisionBox.getWidth());
-        int maxY = (int) (location.getY() + collisionBox.getHeight());
-        for (int i = location.getX() + 3; i < maxX - 3; i++) {
-            if (!world.map[i][maxY + 2]) {
-                return true;
-            }
-        }
-        return false;
-    }
-
     /**
      * Get the array list of sound effects that need to be played
      *
@@ -1223,151 +398,6 @@ public class GameState {
         this.soundEffects.add(soundEffect);
     }
 
-    /**
-     * Set the robots currently in the game world
-     *
-     * @param robots The robots in the world
-     */
-    public void setRobots(ArrayList<Robot> robots) {
-        this.robots = robots;
-    }
-
-    /**
-     * Set the robot that's the current character being controlled
-     *
-     * @param currentCharacter The current robot being controlled
-     */
-    public void setCurrentCharacter(Robot currentCharacter) {
-        this.currentCharacter = currentCharacter;
-    }
-
-    /**
-     * Get the map of the world represented as a seed
-     *
-     * @return The seed of the world
-     */
-    public long getSeed() {
-        return world.getSeed();
-    }
-
-    /**
-     * Sets the current difficulty of the AI
-     *
-     * @param difficulty The difficulty to set the AI to
-     */
-    public void setDifficulty(int difficulty) {
-        this.difficulty = difficulty;
-    }
-
-    /**
-     * Sets the random gravity if it's enabled. It generates a random value for
-     * gravity from a predefined range with it being equally likely to be a low
-     * or high gravity world
-     *
-     * @param randomGravity True if random gravity is enabled
-     */
-    public void setRandomGravity(boolean randomGravity) {
-        if (randomGravity) {
-            Random r = new Random();
-            if (!singlePlayer) {
-                r.setSeed(world.getSeed());
-            }
-
-            if (r.nextBoolean()) {
-                int randomNo = r.nextInt(11) + 5;
-                gravity *= randomNo;
-            } else {
-                int randomNo = r.nextInt(6) + 25;
-                gravity *= randomNo;
-            }
-        } else {
-            gravity *= 20;
-        }
-    }
-
-    /**
-     * Sets which players turn it currently is
-     *
-     * @param turn The value to set the current turn to
-     */
-    public void setTurn(int turn) {
-        whosTurn = turn;
-    }
-
-    /**
-     * This is used by the AI to move a given position until it's on the surface
-     * of the terrain. It finds the closest point to the surface of the terrain
-     * at the given point meaning that it can handle things like caves and holes
-     * from explosions
-     *
-     * @param x The x position to find the surface for
-     * @param y The current y position that it should start from
-     * @return The co-ordinates of the closest surface terrain to this point
-     */
-    // Moves the y coord for an ai node to the ground
-    public Coord getNodeYPos(int x, int y) {
-        // If in the ground
-        if (!world.map[x][y]) {
-            // ////System.out.println("Node is in the ground");
-            // Move up until the pixel is air
-            while (y > 0 && !world.map[x][y]) {
-                // ////System.out.println("CUrrent y " + y);
-                y--;
-            }
-            return new Coord(x, y);
-        } else {
-            // ////System.out.println("Node is in the air");
-            // Move down until the next pixel is ground
-            while (y < world.worldHeight && world.map[x][y + 1]) {
-                // ////System.out.println("Current y " + y);
-                y++;
-            }
-            return new Coord(x, y);
-        }
-
-    }
-
-    /**
-     * Checks to see if the lava has killed any robots
-     */
-    public void checkLavaDeaths() {
-        int index = 0;
-        int length = robots.size();
-        while (index < length) {
-            length = robots.size();
-            Robot rob = robots.get(index);
-            if (rob.getYPos() + (rob.getHeight() * 0.25) >= lavaHeight) {
-                rob.takeDamage(1000);
-                if (onClient) {
-                    updateGameHUD();
-                }
-                if (rob.isDead()) {
-                    for (Team team : teams) {
-                        team.removeRobot(rob);
-                    }
-                }
-            }
-            index++;
-        }
-    }
-
-    /**
-     * Checks all the robots in the world to see if they have died and performs
-     * any required actions if that's the case
-     */
-    private void checkDeaths() {
-        ArrayList<Robot> deadRobots = new ArrayList<>();
-        for (Robot r : robots) {
-            if (r.isDead())
-                deadRobots.add(r);
-        }
-        for (Robot r : deadRobots) {
-            blood.add(new Blood(r.getCentre(), 80));
-            heads.add(new Head(r.getCentre(), 50));
-            robots.remove(r);
-        }
-    }
-
     public void clearExplosions() {
         explosions.clear();
     }
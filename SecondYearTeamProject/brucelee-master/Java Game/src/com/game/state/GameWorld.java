@@ -6,59 +6,68 @@ import javafx.scene.image.*;
 import javafx.scene.paint.Color;
 
 import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
 import java.awt.image.PixelGrabber;
 import java.awt.image.RenderedImage;
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Random;
+import java.net.URL;
+import java.nio.IntBuffer;
+import java.util.stream.IntStream;
 
 /**
  * A class representing the 'world' or 'map' for a single Solar Legends match.
- * boolean[][] map is a pixel-level representation of the terrain of the world.
+ * The terrain itself is generated and stored by Terrain.
  * This class also stores the image used to visualise the GameWorld when the game is rendered.
  * @author Joshua Minton
  */
-public class GameWorld {
-    public static final int worldHeight = 1080;
-    public static final int worldWidth = 1920;
-    public static boolean[][] map = new boolean[worldWidth][worldHeight];
-    private int[] heightCurve;
+public class GameWorld extends Terrain {
 
     private Color topColourSky;
     private Color bottomColourSky;
     private Color topColourGround;
     private Color bottomColourGround;
     private Color caveColour; //= bottomColourGround.darker();
-    private Color starWhite;
 
-    private Image stars;
-
-    private HashMap<Integer, Color> groundColours = new HashMap<>();
-    private HashMap<Integer, Color> skyColours = new HashMap<>();
+    //which pixels of the sky have a star in them. The stars are the same in every world, so they are only loaded once.
+    private static final String STARS = "res/images/world/stars.png";
+    private static TerrainGrid loadedStars;
+    private TerrainGrid starMap;
+
+    //the colours of each row as ARGB ints, so the image can be written a rectangle at a time.
+    private int[] skyArgb;
+    private int[] starArgb;
+    private int[] groundArgb;
+    private int caveArgb;
+    private int[] dirtyPixels = new int[0];
     private Double redDiffGround, redDiffSky, greenDiffGround, greenDiffSky, blueDiffGround, blueDiffSky;
     private WorldType type;
 
-    Random randomiser = new Random();
-    private long seed;
     public WritableImage mapImage = null;
     private boolean onClient;
 
     /**
      * Default constructor for all GameWorlds.
-     * Calls methods to generate random terrain, selects a random WorldType, and calculates the colourings for the terrain depending on the WorldType.
+     * Generates the terrain, selects a random WorldType, and calculates the colourings for the terrain depending on the WorldType.
      * @param isFlat Whether the world is to be flat; all on the same level. For testing purposes.
      * @param seed The seed to be fed into the randomiser that is used to generate random terrain. This allows us to generate the same random terrain on two different machines.
      * @param onClient Whether or not the method is being called by a Client (rather than a Server)
      */
     public GameWorld(boolean isFlat, long seed, boolean onClient) {
+        this(isFlat, seed, onClient, onClient);
+    }
+
+    /**
+     * Creates a GameWorld whose colours are worked out on the client, without drawing the mapImage if drawImage is false.
+     * The mapImage needs the JavaFX toolkit, so this lets the pixels of the world be checked without it.
+     * @param isFlat Whether the world is to be flat; all on the same level. For testing purposes.
+     * @param seed The seed to be fed into the randomiser that is used to generate random terrain.
+     * @param onClient Whether or not the method is being called by a Client (rather than a Server)
+     * @param drawImage Whether the mapImage is drawn.
+     */
+    GameWorld(boolean isFlat, long seed, boolean onClient, boolean drawImage) {
+        super(isFlat, seed);
         this.onClient = onClient;
-        if(isFlat){
-            generateTerrainFlat();
-        }else{
-            this.seed = seed;
-            generateTerrain();
-        }
 
         if (onClient) {
             //find a random world type and set colours accordingly.
@@ -110,7 +119,10 @@ public class GameWorld {
             greenDiffSky = (topColourSky.getGreen() - bottomColourSky.getGreen()) / worldHeight;
             blueDiffSky = (topColourSky.getBlue() - bottomColourSky.getBlue()) / worldHeight;
 
-            updateWorldImage();
+            calculateColours();
+            if (drawImage) {
+                updateWorldImage();
+            }
         }
     }
 
@@ -122,85 +134,6 @@ public class GameWorld {
         return WorldType.values()[randomiser.nextInt(WorldType.values().length)];
     }
 
-    /**
-     * A method to populate the boolean[][] map with a representation of randomly generated terrain.
-     * <p>
-     *     We generate 5 random values with which we use the Math.sin function.
-     *     This essentially creates a number of different sine waves we can 'layer' over eachother to create a 'heightmap', from which the map[][] can be filled.
-     * The result is somewhat realistic-looking terrain.
-     * </p>
-     *
-     * http://www.riemers.net/eng/Tutorials/XNA/Csharp/Series2D/Random_terrain.php
-     */
-    public void generateTerrain() {
-        //the various numbers in this method are designed to create sensible looking terrain in a 1920x1080 array.
-
-        heightCurve = new int[worldWidth];
-
-        randomiser.setSeed(seed); //setting a seed to generate terrain from saves us sending a 1920x1080 boolean array across a network.
-
-        //code re-use starts here
-
-        double rand1 = randomiser.nextDouble() + 1;
-        double rand2 = randomiser.nextDouble() + 2;
-        double rand3 = randomiser.nextDouble() + 3;
-        double rand4 = randomiser.nextDouble() + 4;
-        double rand5 = randomiser.nextDouble() + 5;
-
-        float offset = (float) worldHeight - (worldHeight / (float) 2.5);
-        float peakheight = (float) (worldHeight * 0.12); //bigger numbers = less of that attribute
-        float flatness = (float) (worldWidth * 0.12);
-
-        for (int x = 0; x < worldWidth; x++) {
-            double height = peakheight / rand1 * Math.sin((float) x / flatness * rand1 + rand1);
-            height += peakheight / rand2 * Math.sin((float) x / flatness * rand2 + rand2);
-            height += peakheight / rand3 * Math.sin((float) x / flatness * rand3 + rand3);
-            height += peakheight / rand4 * Math.sin((float) x / flatness * rand4 + rand4);
-            height += peakheight / rand5 * Math.sin((float) x / flatness * rand5 + rand5);
-            height += 5 * Math.cos((float) x / (15));
-            height += offset;
-            heightCurve[x] = (int) height;
-        }
-
-        //code re-use ends here
-        //this code was adapted from:
-        //http://www.riemers.net/eng/Tutorials/XNA/Csharp/Series2D/Random_terrain.php
-
-        //fill the array using the heightCurve.
-        for(int x = 0; x < (worldWidth); x++){
-            for(int y = 0; y < (worldHeight); y++){
-                if(heightCurve[x] < y){
-                    map[x][y] = false;
-                }else{
-                    map[x][y] = true;
-                }
-            }
-        }
-    }
-
-
-    /**
-     * A method to fill the boolean[][] map with terrain all on a single level. Mainly for test purposes.
-     */
-    public void generateTerrainFlat() {
-        heightCurve = new int[worldWidth];
-
-        for (int x = 0; x < worldWidth; x++) {
-            heightCurve[x] = 500;
-        }
-
-        for(int x = 0; x < (worldWidth); x++){
-            for(int y = 0; y < (worldHeight); y++){
-                if(heightCurve[x] < y){
-                    map[x][y] = false;
-                }else{
-                    map[x][y] = true;
-                }
-            }
-        }
-    }
-
-
     /**
      * A method to save the Image representation of the world to an image file.
      * Used for development/testing.
@@ -219,38 +152,59 @@ public class GameWorld {
 
 
     /**
-     * A method to create a circle of 'true' values (representing empty space) around a particular point in the boolean[][] map.
+     * A method to create a circle of 'true' values (representing empty space) around a particular point in the TerrainGrid map.
      * Used to change the terrain as explosions happen.
      * The mapImage is also updated to reflect the changes.
      * @param xcentre The x coordinate of the centre of the circle of destruction.
      * @param ycentre The y coordinate of the centre of the circle of destruction.
      * @param radius The radius of the circle of destruction.
      */
+    @Override
     public void destructTerrain(int xcentre, int ycentre, int radius){
-        PixelReader preader = null;
-        PixelReader starreader = null;
-        PixelWriter pwriter = null;
-        if (onClient) {
-            starreader = stars.getPixelReader();
-            preader = mapImage.getPixelReader();
-            pwriter = mapImage.getPixelWriter();
+        super.destructTerrain(xcentre, ycentre, radius);
+        if (!onClient) {
+            return;
         }
-        for(int y = -radius; y <= radius; y++){
-            for(int x = -radius; x <= radius; x++){
-                if(x*x+y*y <= radius*radius){
-                    try {map[xcentre + x][ycentre + y] = true; //set that element in the array to true, that is, empty space.
-                        //if we're not changing a pixel that is already sky...
-                        if((onClient) && preader.getColor((xcentre + x), (ycentre + y)).hashCode() != (skyColours.get(ycentre + y)).hashCode()){
-                            //if there should be a star pixel in that position, draw the right coloured star pixel for that y coordinate.
-                            if(starreader.getColor(xcentre + x, ycentre + y).hashCode() != 0){
-                                pwriter.setColor(xcentre + x, ycentre + y, starWhite.interpolate(skyColours.get(ycentre + y), ((float) (ycentre + y) / (float) (worldHeight/1.5))));
-                            }else{
-                                //otherwise draw the correct sky colour.
-                                pwriter.setColor((xcentre + x), (ycentre + y), skyColours.get(ycentre + y));
-                            }
-                        }
-                    } catch (IndexOutOfBoundsException e) {}
-                }
+        //only the rectangle around the circle, cut to the edges of the image, is read and written back.
+        int left = Math.max(xcentre - radius, 0);
+        int top = Math.max(ycentre - radius, 0);
+        int right = Math.min(xcentre + radius, worldWidth - 1);
+        int bottom = Math.min(ycentre + radius, worldHeight - 1);
+        if (left > right || top > bottom) {
+            return;
+        }
+        int width = right - left + 1;
+        int height = bottom - top + 1;
+        if (dirtyPixels.length < width * height) {
+            dirtyPixels = new int[width * height];
+        }
+        int[] pixels = dirtyPixels;
+        WritablePixelFormat<IntBuffer> format = PixelFormat.getIntArgbInstance();
+        mapImage.getPixelReader().getPixels(left, top, width, height, format, pixels, 0, width);
+        clearCrater(pixels, left, top, right, bottom, xcentre, ycentre, radius);
+        mapImage.getPixelWriter().setPixels(left, top, width, height, format, pixels, 0, width);
+    }
+
+    /**
+     * Draws the sky over the pixels of a crater, in the rectangle of the image that the pixels hold.
+     * @param pixels The ARGB pixels of the rectangle, a row after the other.
+     * @param left The x coordinate of the left column of the rectangle.
+     * @param top The y coordinate of the top row of the rectangle.
+     * @param right The x coordinate of the right column of the rectangle.
+     * @param bottom The y coordinate of the bottom row of the rectangle.
+     * @param xcentre The x coordinate of the centre of the crater.
+     * @param ycentre The y coordinate of the centre of the crater.
+     * @param radius The radius of the crater.
+     */
+    void clearCrater(int[] pixels, int left, int top, int right, int bottom, int xcentre, int ycentre, int radius) {
+        int width = right - left + 1;
+        for (int y = top; y <= bottom; y++) {
+            int halfWidth = circleHalfWidth(radius, y - ycentre);
+            int from = Math.max(xcentre - halfWidth, left);
+            int to = Math.min(xcentre + halfWidth, right);
+            int row = (y - top) * width - left;
+            for (int x = from; x <= to; x++) {
+                pixels[row + x] = skyPixel(x, y);
             }
         }
     }
@@ -262,12 +216,11 @@ public class GameWorld {
      * @param radius The radius of the circle to be shifted.
      * @param distance How far upwards the circle is to be shifted.
      */
+    @Override
     public void shiftTerrain(int xcentre, int ycentre, int radius, int distance){
         PixelReader preader = null;
-        PixelReader starreader = null;
         PixelWriter pwriter = null;
         if (onClient) {
-            starreader = stars.getPixelReader();
             preader = mapImage.getPixelReader();
             pwriter = mapImage.getPixelWriter();
         }
@@ -275,20 +228,15 @@ public class GameWorld {
             for(int x = -radius; x <= radius; x++){
                 if(x*x+y*y <= radius*radius){
                     try {
-                        if(map[xcentre + x][ycentre + y] == false){
-                            map[xcentre + x][ycentre + y - distance] = false; //if a pixel is ground, make the pixel the specified distance above it ground also.
+                        if(map.isSolid(xcentre + x, ycentre + y)){
+                            map.setSolid(xcentre + x, ycentre + y - distance, true); //if a pixel is ground, make the pixel the specified distance above it ground also.
                             if (onClient) //if we're on the client, we also change the destination pixel to be the same colour as the source pixel.
-                                pwriter.setColor((xcentre + x), (ycentre + y - distance), preader.getColor(xcentre + x, ycentre + y));
+                                pwriter.setArgb((xcentre + x), (ycentre + y - distance), preader.getArgb(xcentre + x, ycentre + y));
                         }
-                        map[xcentre + x][ycentre + y] = true; //make the source pixel true, that is, empty space.
-                        if(onClient && preader.getColor((xcentre + x), (ycentre + y)).hashCode() == (groundColours.get(ycentre + y)).hashCode()) {
-                            //if there should be a star pixel in that position, draw the right coloured star pixel for that y coordinate.
-                            if (starreader.getColor(xcentre + x, ycentre + y).hashCode() != 0) {
-                                pwriter.setColor(xcentre + x, ycentre + y, starWhite.interpolate(skyColours.get(ycentre + y), ((float) (ycentre + y) / (float) (worldHeight / 1.5))));
-                            } else {
-                                //otherwise draw the correct sky colour.
-                                pwriter.setColor((xcentre + x), (ycentre + y), skyColours.get(ycentre + y));
-                            }
+                        map.setSolid(xcentre + x, ycentre + y, false); //clear the source pixel, that is, empty space.
+                        if(onClient && preader.getArgb((xcentre + x), (ycentre + y)) == groundArgb[ycentre + y]) {
+                            //draw the right coloured star pixel for that y coordinate if there should be one, otherwise the sky colour.
+                            pwriter.setArgb(xcentre + x, ycentre + y, skyPixel(xcentre + x, ycentre + y));
                         }
                     } catch (IndexOutOfBoundsException e) {}
                 }
@@ -297,61 +245,118 @@ public class GameWorld {
     }
 
 
+    /**
+     * Calculates the colour of the ground, the sky and a star on each row, as the gradients from the top colours to the bottom colours.
+     * The stars are loaded too, so every pixel of the sky is known.
+     */
+    private void calculateColours(){
+        starMap = loadStars();
+        Color starWhite = new Color(1, 1, 1, 1);
+        skyArgb = new int[worldHeight];
+        starArgb = new int[worldHeight];
+        groundArgb = new int[worldHeight];
+        for (int y = 0; y < worldHeight; y++) {
+            Color ground = new Color((topColourGround.getRed() - redDiffGround * y), (topColourGround.getGreen() - greenDiffGround * y), (topColourGround.getBlue() - blueDiffGround * y), 1.0);
+            Color sky = new Color((topColourSky.getRed() - redDiffSky * y), (topColourSky.getGreen() - greenDiffSky * y), (topColourSky.getBlue() - blueDiffSky * y), 1.0);
+            groundArgb[y] = toArgb(ground);
+            skyArgb[y] = toArgb(sky);
+            starArgb[y] = toArgb(starWhite.interpolate(sky, ((float) y/ (float) (worldHeight/1.5))));
+        }
+        caveArgb = toArgb(caveColour);
+    }
+
     /**
      * Updates the Image mapImage to reflect the current state of the world.
+     * The rows of the image are worked out on all the cores at once, and the whole image is then written in one go.
      */
     public void updateWorldImage(){
-        stars = new Image("res/images/world/stars.png");
-        starWhite = new Color(1, 1, 1, 1);
-        WritableImage image = new WritableImage(map.length, map[0].length);
-        PixelWriter pwriter = image.getPixelWriter();
-        PixelReader preader = stars.getPixelReader();
-        for (int y = 0; y < map[0].length; y++) {
-            groundColours.put(y, new Color((topColourGround.getRed() - redDiffGround * y), (topColourGround.getGreen() - greenDiffGround * y), (topColourGround.getBlue() - blueDiffGround * y), 1.0));
-            skyColours.put(y, new Color((topColourSky.getRed() - redDiffSky * y), (topColourSky.getGreen() - greenDiffSky * y), (topColourSky.getBlue() - blueDiffSky * y), 1.0));
-            for (int x = 0; x < map.length; x++) {
-                if (!map[x][y]) {
-                    pwriter.setColor(x, y, groundColours.get(y));
-                } else {
-                    if(heightCurve[x] < (y - 7)){
-                        pwriter.setColor(x, y, caveColour);
-                    } else {
-                        if(preader.getColor(x, y).hashCode() != 0){
-                            pwriter.setColor(x, y, starWhite.interpolate(skyColours.get(y), ((float) y/ (float) (worldHeight/1.5))));
-                        }else{
-                            pwriter.setColor(x, y, skyColours.get(y));
-                        }
+        int width = map.getWidth();
+        int height = map.getHeight();
+        WritableImage image = new WritableImage(width, height);
+        image.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), IntBuffer.wrap(worldPixels()), width);
+        mapImage = image;
+    }
 
-                    }
+    /**
+     * Works out the colour of every pixel of the world.
+     * @return The ARGB pixels of the world, a row after the other.
+     */
+    int[] worldPixels(){
+        int width = map.getWidth();
+        int height = map.getHeight();
+        int[] pixels = new int[width * height];
+        //each row only writes to its own part of the array.
+        IntStream.range(0, height).parallel().forEach(y -> {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                if (map.isSolid(x, y)) {
+                    pixels[row + x] = groundArgb[y];
+                } else if (heightCurve[x] < (y - 7)) {
+                    pixels[row + x] = caveArgb;
+                } else {
+                    pixels[row + x] = skyPixel(x, y);
                 }
             }
-        }
-        mapImage = image;
+        });
+        return pixels;
     }
 
-
     /**
-     * Returns the worldHeight value.
-     * @return the worldHeight.
+     * Loads which pixels of stars.png are stars, the first time it is needed.
+     * A pixel that is not fully transparent is a star. Without stars.png the sky has no stars.
+     * @return The star pixels of the sky.
      */
-    public int getWorldHeight() {
-        return worldHeight;
+    private static synchronized TerrainGrid loadStars(){
+        if (loadedStars == null) {
+            TerrainGrid stars = new TerrainGrid(worldWidth, worldHeight);
+            URL url = GameWorld.class.getClassLoader().getResource(STARS);
+            try {
+                //getResource gives null when the file is missing, which ImageIO.read does not accept.
+                BufferedImage image = url == null ? null : ImageIO.read(url);
+                if (image == null) {
+                    System.out.println("Could not load " + STARS + ", the sky has no stars");
+                } else {
+                    int width = Math.min(image.getWidth(), worldWidth);
+                    int[] row = new int[width];
+                    for (int y = 0; y < Math.min(image.getHeight(), worldHeight); y++) {
+                        image.getRGB(0, y, width, 1, row, 0, width);
+                        for (int x = 0; x < width; x++) {
+                            if ((row[x] >>> 24) != 0) {
+                                stars.setSolid(x, y, true);
+                            }
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            loadedStars = stars;
+        }
+        return loadedStars;
     }
 
     /**
-     * Returns the worldWidth value.
-     * @return the worldWidth.
+     * Returns the colour a pixel of the sky is drawn in.
+     * @param x The x coordinate of the pixel.
+     * @param y The y coordinate of the pixel.
+     * @return The right coloured star pixel for that y coordinate if there should be one there, otherwise the sky colour, as an ARGB int.
      */
-    public int getWorldWidth() {
-        return worldWidth;
+    int skyPixel(int x, int y) {
+        return starMap.isSolid(x, y) ? starArgb[y] : skyArgb[y];
     }
 
     /**
-     * Returns the seed that was used by the Random when generating terrain.
-     * @return the seed.
+     * Converts a Color to an ARGB int, rounding each component the same way as PixelWriter.setColor.
+     * @param colour The colour to convert.
+     * @return The colour as an ARGB int.
      */
-    public long getSeed() {
-        return seed;
+    private static int toArgb(Color colour) {
+        int a = (int) Math.round(colour.getOpacity() * 255);
+        int r = (int) Math.round(colour.getRed() * 255);
+        int g = (int) Math.round(colour.getGreen() * 255);
+        int b = (int) Math.round(colour.getBlue() * 255);
+        return (a << 24) | (r << 16) | (g << 8) | b;
     }
 
+
 }
@@ -0,0 +1,203 @@
+package com.game.state;
+
+import com.game.object.Projectile;
+import com.game.physics.Robot;
+
+/**
+ * A single player match in which the AI controls both teams, played without the UI.
+ * <p>
+ * The match is ticked the way the GameController ticks a single player game, 60 times a game
+ * second, but as fast as the CPU allows instead of in real time. Nothing is drawn or played, so
+ * the events of the Simulation are not turned into sound effects, explosions, blood and heads,
+ * which would also need the JavaFX toolkit.
+ * </p>
+ * <p>
+ * The time spent in each phase of the engine is kept. The phases do not overlap: the time of a
+ * collision check is not counted in the step that made it, and the time of an explosion or of the
+ * AI planning a turn is not counted in the collision check or step that caused it.
+ * </p>
+ */
+public class HeadlessMatch extends GameState {
+
+    /**
+     * The parts of the engine that are timed.
+     */
+    public enum Phase {
+        STEP, COLLISION, EXPLOSION, PLANNING
+    }
+
+    // The time that passes in a tick, as in the single player game loop
+    public static final double TICK = 1.0 / 60;
+
+    private long[] nanos = new long[Phase.values().length];
+    private Phase phase;
+    private long mark;
+    private int ticks;
+    private int turn;
+    private int turnTicks;
+
+    /**
+     * Creates a match on the world of the given seed. The robots of both teams get the Loadout of
+     * the AI.
+     *
+     * @param seed the seed of the world.
+     */
+    public HeadlessMatch(long seed) {
+        super(true, false, computerLoadouts(), seed);
+        setComputerOnly(true);
+    }
+
+    private static Loadout[] computerLoadouts() {
+        Loadout[] loadouts = new Loadout[noTeams * teamSize];
+        for (int i = 0; i < loadouts.length; i++) {
+            loadouts[i] = new Loadout(0);
+        }
+        return loadouts;
+    }
+
+    /**
+     * Plays the match until a team has won or a turn does not end.
+     * <p>
+     * A turn can fail to end, for example when the AI keeps walking back and forth around a place
+     * it cannot reach. The match is stopped when a turn has lasted longer than the given number of
+     * ticks.
+     * </p>
+     *
+     * @param maxTurnTicks the most ticks a turn may last.
+     * @return true if the match ended, false if it was stopped.
+     */
+    public boolean play(int maxTurnTicks) {
+        start();
+        while (gameResult == -1 && turnTicks < maxTurnTicks) {
+            tick();
+        }
+        return gameResult != -1;
+    }
+
+    /**
+     * Sets up the teams and gives the first turn to the AI, for a match that is ticked one tick at
+     * a time instead of played.
+     */
+    public void start() {
+        init();
+        turn = turnNumber;
+    }
+
+    /**
+     * Plays a single tick: the AI takes its next step, or the turn ends if it is over, and then
+     * the Simulation steps.
+     */
+    public void tick() {
+        if (hasCommands()) {
+            followPlan();
+        } else if (endedTurn) {
+            // The turn ends once the shot has landed and nothing moves
+            endTurn();
+        }
+        step(TICK);
+        stop();
+        ticks++;
+        if (turnNumber != turn) {
+            turn = turnNumber;
+            turnTicks = 0;
+        } else {
+            turnTicks++;
+        }
+    }
+
+    /**
+     * @return the number of ticks played.
+     */
+    public int getTicks() {
+        return ticks;
+    }
+
+    /**
+     * @param phase a phase of the engine.
+     * @return the time spent in it, in nanoseconds.
+     */
+    public long getNanos(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    /**
+     * Nobody watches the match, so the events are dropped.
+     *
+     * @param event the event that happened.
+     */
+    @Override
+    public void onEvent(GameEvent event) {
+    }
+
+    @Override
+    public void step(double timePassed) {
+        Phase outer = enter(Phase.STEP);
+        try {
+            super.step(timePassed);
+        } finally {
+            exit(outer);
+        }
+    }
+
+    @Override
+    public void checkCollisions(Robot obj, double time) {
+        Phase outer = enter(Phase.COLLISION);
+        try {
+            super.checkCollisions(obj, time);
+        } finally {
+            exit(outer);
+        }
+    }
+
+    @Override
+    public void projectileCollisions(Projectile p) {
+        Phase outer = enter(Phase.COLLISION);
+        try {
+            super.projectileCollisions(p);
+        } finally {
+            exit(outer);
+        }
+    }
+
+    @Override
+    public void explosion(Projectile p) {
+        Phase outer = enter(Phase.EXPLOSION);
+        try {
+            super.explosion(p);
+        } finally {
+            exit(outer);
+        }
+    }
+
+    @Override
+    protected void turnStarted() {
+        Phase outer = enter(Phase.PLANNING);
+        try {
+            super.turnStarted();
+        } finally {
+            exit(outer);
+        }
+    }
+
+    /**
+     * Gives the time so far to the phase that was running and starts the next one.
+     *
+     * @return the phase that was running, to go back to when the next one ends.
+     */
+    private Phase enter(Phase next) {
+        long now = System.nanoTime();
+        if (phase != null)
+            nanos[phase.ordinal()] += now - mark;
+        Phase outer = phase;
+        phase = next;
+        mark = now;
+        return outer;
+    }
+
+    private void exit(Phase outer) {
+        long now = System.nanoTime();
+        nanos[phase.ordinal()] += now - mark;
+        phase = outer;
+        mark = now;
+    }
+}
@@ -0,0 +1,72 @@
+package com.game.state;
+
+/**
+ * The commands a player can give to the Simulation. The keys pressed on the client are turned into
+ * these, so the rules of the game do not depend on the JavaFX KeyCode.
+ * <p>
+ * The network sends the ASCII value of the key that was pressed, fromByte turns it back into a command.
+ * Each command also has its own bit, so the inputs of a frame can be stored in a single int.
+ * </p>
+ */
+public enum Input {
+    END_TURN((byte) 0x0A),
+    FIRE((byte) 0x20),
+    POWER_DOWN((byte) 0x25),
+    ANGLE_UP((byte) 0x26),
+    POWER_UP((byte) 0x27),
+    ANGLE_DOWN((byte) 0x28),
+    SLOT_1((byte) 0x31),
+    SLOT_2((byte) 0x32),
+    LEFT((byte) 0x41),
+    RIGHT((byte) 0x44),
+    JUMP_RIGHT((byte) 0x45),
+    JUMP_LEFT((byte) 0x51),
+    JUMP((byte) 0x57);
+
+    private static final Input[] BY_CODE = new Input[128];
+
+    static {
+        for (Input input : values()) {
+            BY_CODE[input.code] = input;
+        }
+    }
+
+    private final byte code;
+
+    Input(byte code) {
+        this.code = code;
+    }
+
+    /**
+     * @return the ASCII value of the key for this command, as it is sent over the network
+     */
+    public byte getCode() {
+        return code;
+    }
+
+    /**
+     * @return the bit of this command in a mask of inputs
+     */
+    public int getMask() {
+        return 1 << ordinal();
+    }
+
+    /**
+     * @param mask a mask of inputs
+     * @return true if this command is in the mask
+     */
+    public boolean isIn(int mask) {
+        return (mask & getMask()) != 0;
+    }
+
+    /**
+     * @param code the ASCII value of a key
+     * @return the command for that key, or null if the key does nothing in the game
+     */
+    public static Input fromByte(byte code) {
+        if (code < 0) {
+            return null;
+        }
+        return BY_CODE[code];
+    }
+}
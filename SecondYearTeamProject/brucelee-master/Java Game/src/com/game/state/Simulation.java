@@ -0,0 +1,1612 @@
+package com.game.state;
+
+import com.game.object.Projectile;
+import com.game.object.SupplyDrop;
+import com.game.physics.AABB;
+import com.game.physics.BroadPhase;
+import com.game.physics.Coord;
+import com.game.physics.PhysicsObject;
+import com.game.physics.Robot;
+import com.game.weapon.Weapon;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Random;
+
+/**
+ * The rules and physics of a running game, without anything that needs the JavaFX toolkit.
+ * <p>
+ * This is where all the rules and logical aspects of the game are checked/managed. It stores the
+ * terrain, the robots, the projectiles and the supply drops, and moves them forward in fixed time
+ * steps. Hit boxes are AABBs, the players give Inputs, and everything the client may want to show
+ * or play is emitted as a GameEvent instead of creating sounds, animations or HUD updates.
+ * </p>
+ * <p>
+ * A server runs a Simulation directly, so many games can share one JVM. The client uses GameState,
+ * which extends this class with the sounds, the HUD, the AI and the objects that are only drawn.
+ * </p>
+ * <p>
+ * Everything random in a match, the spawns, the supply drops, the supplies in them and the aim of
+ * the AI, comes from one Random seeded with the seed of the world. Two Simulations on the same world
+ * that are given the same inputs at the same steps therefore stay the same, and checksum() lets them
+ * check that they do.
+ * </p>
+ * <p>
+ * On a client whose server relays the inputs instead of the game state, the client is put in
+ * lockstep: it runs the physics itself like the server does, and the inputs are scheduled for the
+ * step at which the server gives them too.
+ * </p>
+ */
+public class Simulation {
+    public static final int noTeams = 2;
+    public static final int teamSize = 3;
+    public static final int MAX_VELOCITY = 15;
+    public static final double DEFAULT_GRAVITY = 9.81;
+    /** The length in seconds of one step of advance. */
+    public static final double TIME_STEP = 0.03;
+    // The most steps a single call to advance may take to catch up
+    private static final int MAX_STEPS = 5;
+
+    protected double gravity;
+
+    protected ArrayList<Robot> robots;
+    protected ArrayList<Projectile> projectiles;
+    protected Terrain world;
+    protected ArrayList<Team> teams;
+    protected ArrayList<SupplyDrop> drops;
+    protected Loadout[] loadouts;
+
+    public int whosTurn;
+    private Robot currentCharacter;
+    public boolean endedTurn;
+    public boolean dropCreated;
+    public int gameResult;
+
+    public int turnNumber = 0;
+
+    private final int SUDDEN_DEATH_TURN = 20;
+    private final int RISE_PER_TURN = 50;
+    public final int STARTING_HEIGHT = 100;
+    protected int lavaHeight;
+
+    protected boolean onClient;
+    protected boolean singlePlayer;
+    protected boolean lockstep;
+    protected int difficulty = 0;
+
+    private GameEvent.Listener listener;
+    private double accumulator;
+    private Random random;
+    private int tick;
+    // The inputs waiting for their step, in the order of their steps
+    private ArrayDeque<ScheduledInput> scheduled = new ArrayDeque<>();
+    // The boxes of the robots and then the drops, which the projectiles are checked against
+    private BroadPhase targets = new BroadPhase();
+    private int[] candidates = new int[16];
+    private int targetsTick = -1;
+    private int targetDrops;
+    // Removed at the end of the projectile checks of a step instead of one at a time
+    private boolean projectilesRemoved;
+    private ArrayList<SupplyDrop> hitDrops = new ArrayList<>();
+    // Where the box of a fast projectile first hits the terrain on its way
+    private int[] sweepHit = new int[2];
+
+    /**
+     * An Input that a player gives at a given step.
+     */
+    private static class ScheduledInput {
+        final int tick;
+        final int player;
+        final Input input;
+
+        ScheduledInput(int tick, int player, Input input) {
+            this.tick = tick;
+            this.player = player;
+            this.input = input;
+        }
+    }
+
+    /**
+     * The constructor for Simulation. Requires some flags and the robot
+     * loadouts.
+     *
+     * @param singlePlayer boolean for if the game is in single player mode.
+     * @param onClient     boolean for if the game is in multiplayer mode.
+     * @param loadouts     the Loadout for each Robot in the game.
+     */
+    public Simulation(boolean singlePlayer, boolean onClient, Loadout[] loadouts) {
+        this(singlePlayer, onClient, loadouts, System.currentTimeMillis());
+    }
+
+    /**
+     * The constructor for Simulation, with the seed of the world of a single
+     * player game, so the same world can be played again.
+     *
+     * @param singlePlayer boolean for if the game is in single player mode.
+     * @param onClient     boolean for if the game is in multiplayer mode.
+     * @param loadouts     the Loadout for each Robot in the game.
+     * @param seed         the seed of the world, used in single player only.
+     */
+    public Simulation(boolean singlePlayer, boolean onClient, Loadout[] loadouts, long seed) {
+        gravity = DEFAULT_GRAVITY;
+        this.loadouts = loadouts;
+        gameResult = -1;
+        this.singlePlayer = singlePlayer;
+        this.onClient = onClient;
+        robots = new ArrayList<Robot>();
+        projectiles = new ArrayList<Projectile>();
+        drops = new ArrayList<SupplyDrop>();
+        if (singlePlayer) {
+            createGameWorld(seed);
+        }
+    }
+
+    /**
+     * Initialises the Simulation.
+     * <p>
+     * Initialises the team turn count - starting with team 1. Creates the team
+     * - with the expected Loadout for each Robot. Each Robot spawns in a random
+     * location that is not too close to another Robot.
+     * </p>
+     */
+    public void init() {
+        if (singlePlayer) {
+            whosTurn = 1;
+        }
+        teams = new ArrayList<>();
+        ArrayList<Integer> existingSpawns = new ArrayList<>();
+        // Generates the teams
+        for (int t = 0; t < noTeams; t++) {
+            ArrayList<Robot> members = new ArrayList<>();
+            for (int c = 0; c < teamSize; c++) {
+                // Randomise spawn positions
+                int position = random.nextInt(world.getWorldWidth() - 50);
+
+                // checking the new spawn isn't too close to an existing one
+                boolean goodSpawn = false;
+                while (!goodSpawn) {
+                    goodSpawn = true;
+                    position = random.nextInt(world.getWorldWidth() - 50);
+                    for (Integer spawn : existingSpawns) {
+                        if (Math.abs(spawn - position) < (100)) {
+                            goodSpawn = false;
+                        }
+                    }
+                }
+                existingSpawns.add(position);
+                Robot r;
+                if (t == 0) {
+                    r = new Robot(50, 23, new Coord(position, 0), loadouts[c], (t * 10 + c));
+                } else if (!singlePlayer) {
+                    r = new Robot(50, 23, new Coord(position, 0), loadouts[c], (t * 10 + c));
+                } else {
+                    r = new Robot(50, 23, new Coord(position, 0), new Loadout(difficulty), (t * 10 + c));
+                }
+                int y = 0;
+                while (!isOnGround(r)) {
+                    y += 5;
+                    r.setYPos(y);
+                }
+                r.setYPos(y - 5);
+                members.add(r);
+                robots.add(r);
+            }
+            Team team = new Team(members);
+            teams.add(team);
+        }
+
+        if (singlePlayer) {
+            endedTurn = true;
+            currentCharacter = teams.get(whosTurn).getNextPlayer();
+            this.endTurn();
+            endedTurn = false;
+        } else {
+            currentCharacter = robots.get(0);
+        }
+    }
+
+    /**
+     * Initialises the Simulation with any extra attributes for the multiplayer
+     * only.
+     * <p>
+     * Checks if the game host has random gravity on. Sets up the team of the
+     * opposing player.
+     * </p>
+     *
+     * @param randomGravity boolean saying whether the game has random gravity.
+     */
+    public void initOnline(boolean randomGravity) {
+        setRandomGravity(randomGravity);
+        teams = new ArrayList<>();
+        for (int t = 0; t < noTeams; t++) {
+            ArrayList<Robot> members = new ArrayList<>();
+            for (int c = 0; c < teamSize; c++) {
+                members.add(robots.get(t * teamSize + c));
+            }
+            Team team = new Team(members);
+            teams.add(team);
+        }
+        currentCharacter = robots.get(0);
+    }
+
+    /**
+     * Generate the terrain for the game.
+     * <p>
+     * Generate the terrain used in the current game. Takes a seed so that
+     * random generation can be the same over multiplayer (each client generates
+     * the same terrain).
+     * </p>
+     *
+     * @param seed a seed for random generation.
+     */
+    public void createGameWorld(long seed) {
+        world = createTerrain(seed);
+        random = new Random(seed);
+        lavaHeight = world.getWorldHeight() - STARTING_HEIGHT;
+    }
+
+    /**
+     * Creates the terrain of the game. The client overrides this to also create the image of the world.
+     *
+     * @param seed a seed for random generation.
+     * @return the new terrain.
+     */
+    protected Terrain createTerrain(long seed) {
+        return new Terrain(false, seed);
+    }
+
+    /**
+     * Sets the listener that receives every GameEvent of this Simulation.
+     *
+     * @param listener the listener, or null to emit no events.
+     */
+    public void setListener(GameEvent.Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Emits an event to the listener, if there is one. No event is created without a listener.
+     *
+     * @param type   the kind of event
+     * @param sound  the name of the sound for the event, or null
+     * @param x      the x position of the event
+     * @param y      the y position of the event
+     * @param radius the radius of an explosion, 0 for the other events
+     * @param robot  the Robot the event happened to, or null
+     */
+    protected void emit(GameEvent.Type type, String sound, int x, int y, int radius, Robot robot) {
+        if (listener != null) {
+            listener.onEvent(new GameEvent(type, sound, x, y, radius, robot));
+        }
+    }
+
+    /**
+     * Moves the simulation forward by the given real time, in steps of TIME_STEP.
+     * <p>
+     * The time that is left over is kept for the next call, so the game runs at
+     * the same speed however often this is called. If the caller falls too far
+     * behind, at most MAX_STEPS steps are taken and the rest of the time is dropped.
+     * </p>
+     *
+     * @param elapsed the real time in seconds since the last call.
+     * @return the number of steps taken.
+     */
+    public int advance(double elapsed) {
+        accumulator += elapsed;
+        int steps = 0;
+        while (accumulator >= TIME_STEP && steps < MAX_STEPS) {
+            step(TIME_STEP);
+            accumulator -= TIME_STEP;
+            steps++;
+        }
+        if (steps == MAX_STEPS) {
+            accumulator = 0;
+        }
+        return steps;
+    }
+
+    /**
+     * <p>
+     * This method advances time forward in the physics simulation. It checks to
+     * see if any objects have collided, and handles the collision if they have.
+     * </p>
+     *
+     * @param timePassed The amount of time that the physics simulation should move
+     *                   forward by.
+     */
+    public void step(double timePassed) {
+        applyScheduled();
+        tick++;
+        int index = 0;
+        int length = projectiles.size();
+
+        if (currentCharacter.getHealth() < 1) {
+            endedTurn = true;
+            endTurn();
+        }
+
+        checkLavaDeaths();
+
+        if (currentCharacter.isDead()) {
+            endedTurn = true;
+            endTurn();
+        }
+
+        if (runsPhysics() && !isOnGround(currentCharacter) && !currentCharacter.getFalling()) {
+            for (Robot r : robots) {
+                r.setYPos(r.getYPos() + 4);
+                r.setFalling(true);
+            }
+        }
+        buildTargets();
+        while (index < length) {
+            Projectile p = projectiles.get(index);
+            if (!p.isRemoved()) {
+                p.incrementCounter();
+                p.markPosition();
+                p.moveObject(timePassed, gravity);
+                projectileCollisions(p);
+            }
+
+            index++;
+            length = projectiles.size();
+        }
+        removeHits();
+
+        for (SupplyDrop drop : drops) {
+            drop.moveObject(timePassed, gravity);
+            if (isColliding(drop, drop.getXPos(), drop.getYPos())) {
+                if (drop.getFalling()) {
+                    Coord centre = drop.getCentre();
+                    emit(GameEvent.Type.DROP_LANDED, drop.getImpactSound(), centre.getX(), centre.getY(), 0, null);
+                }
+                drop.stopY();
+                drop.setFalling(false);
+            }
+        }
+        try {
+            if (runsPhysics())
+                for (Robot robot : robots) {
+                    checkCollisions(robot, timePassed);
+                }
+        } catch (ConcurrentModificationException c) {
+        }
+    }
+
+    /**
+     * <p>
+     * This creates an explosion at the given position and checks to see if any
+     * objects fall within it's radius. If they do, it damages them and launches
+     * them based on how close they are to the centre of the explosion.
+     * </p>
+     *
+     * @param p The projectile that is exploding.
+     */
+    public void explosion(Projectile p) {
+        Coord centre = p.getCentre();
+        double xPos = centre.getX();
+        double yPos = centre.getY();
+        double radius = p.getExplosiveRadius();
+
+        for (Robot obj : robots) {
+            double objX = obj.getXPos();
+            double objY = obj.getYPos();
+
+            // Check all 4 corners of the object
+            double minX = obj.getXPos();
+            double maxX = minX + obj.getWidth();
+            double minY = obj.getYPos();
+            double maxY = minY + obj.getHeight();
+
+            double dist1 = Math.sqrt(Math.pow((xPos - minX), 2) + Math.pow((yPos - minY), 2));
+            double dist2 = Math.sqrt(Math.pow((xPos - minX), 2) + Math.pow((yPos - maxY), 2));
+            double dist3 = Math.sqrt(Math.pow((xPos - maxX), 2) + Math.pow((yPos - minY), 2));
+            double dist4 = Math.sqrt(Math.pow((xPos - maxX), 2) + Math.pow((yPos - maxY), 2));
+            // Finds the smallest distance
+            double distance = Math.min(Math.min(dist1, dist2), Math.min(dist3, dist4));
+            if (distance < radius) {
+                double damFraction = 1 - (distance / radius);
+                obj.takeDamage((int) (damFraction * p.getDamage()));
+                emit(GameEvent.Type.ROBOT_CHANGED, null, (int) objX, (int) objY, 0, obj);
+                double angle;
+                double dy = Math.abs(objY - yPos);
+                double dx = Math.abs(objX - xPos);
+                if (xPos > objX && yPos > objY) {
+                    angle = 90 + Math.toDegrees(Math.atan(dx / dy));
+                } else if (xPos > objX && yPos < objY) {
+                    angle = 180 + Math.toDegrees(Math.atan(dy / dx));
+                } else if (xPos < objX && yPos < objY) {
+                    angle = 270 + Math.toDegrees(Math.atan(dx / dy));
+                } else {
+                    angle = Math.toDegrees(Math.atan(dy / dx));
+                }
+                obj.launch(angle, 200 * damFraction);
+            }
+        }
+
+        emit(GameEvent.Type.EXPLOSION, p.getImpactSound(), centre.getX(), centre.getY(), (int) radius, null);
+
+        if (runsPhysics()) {
+            world.destructTerrain((int) xPos, (int) yPos, (int) radius);
+        }
+    }
+
+    /**
+     * A method for shifting Robots a fixed distance upward.
+     * <p>
+     * This method is used to shift any Robot within a radius from a point
+     * upwards a given distance. This is only used when a GravGrenade explosion
+     * occurs.
+     * </p>
+     *
+     * @param xPos     the X of the centre of the explosion.
+     * @param yPos     the Y of the centre of the explosion.
+     * @param radius   the radius of the explosion.
+     * @param distance the distance for which each Robot is shifted upward.
+     */
+    public void shiftRobots(int xPos, int yPos, int radius, int distance) {
+        Coord c = new Coord(xPos, yPos);
+        for (Robot r : robots) {
+            if (c.getDistance(r.getCentre()) < radius + 20) {
+                r.setYPos(r.getYPos() - distance);
+            }
+        }
+    }
+
+    /**
+     * Checks to see if the given Robot is colliding with the terrain or a
+     * SupplyDrop and moves the Robot.
+     * <p>
+     * Check to see if the given Robot is currently colliding with the terrain
+     * or a SupplyDrop. If they are, they are moved in the correct direction to
+     * end the collision and the appropriate collision event takes place.
+     * </p>
+     *
+     * @param obj  The Robot that is being checked.
+     * @param time the time passed which determines how far the Robot will be
+     *             moved.
+     */
+    public void checkCollisions(Robot obj, double time) {
+        moveRobot(obj, time);
+        // Checks to see if colliding with supply box
+        int index = 0;
+        int length = drops.size();
+        AABB collisionBox = obj.getCollisionBox();
+        while (index < length) {
+            SupplyDrop drop = drops.get(index);
+            if (collisionBox.intersects(drop.getCollisionBox())) {
+                drops.remove(drop);
+                obj.pickupSupplies(random);
+                length = drops.size();
+                Coord centre = drop.getCentre();
+                emit(GameEvent.Type.DROP_COLLECTED, drop.getCollectSound(), centre.getX(), centre.getY(), 0, obj);
+            }
+            index++;
+        }
+
+        emit(GameEvent.Type.ROBOT_CHANGED, null, (int) obj.getXPos(), (int) obj.getYPos(), 0, obj);
+        if (obj.isDead()) {
+
+            for (Team team : teams) {
+                team.removeRobot(obj);
+            }
+            if (obj.getRobotId() == currentCharacter.getRobotId()) {
+                endedTurn = true;
+                endTurn();
+            }
+        }
+        settle(obj);
+    }
+
+    /**
+     * Moves the given Robot by its velocity against the terrain, and keeps it on the map.
+     *
+     * @param obj  The Robot that is moved.
+     * @param time the time passed which determines how far the Robot will be
+     *             moved.
+     */
+    private void moveRobot(Robot obj, double time) {
+        AABB collisionBox = obj.getCollisionBox();
+        Coord location = new Coord((int) obj.getXPos(), (int) obj.getYPos());
+        int maxX = (int) (location.getX() + collisionBox.getWidth());
+        // Move the robots
+        obj.stepX(world, time);
+        obj.stepY(world, time, gravity);
+        obj.friction();
+        // Move back onto the map
+        if (location.getX() < 0) {
+            obj.setXPos(0);
+        } else if (maxX > world.worldWidth) {
+            obj.setXPos(world.worldWidth - 1 - collisionBox.getWidth());
+        }
+    }
+
+    /**
+     * Moves the given Robot back down onto the ground when it walks down a slope,
+     * or makes it fall when there is no ground close below it. It also puts a
+     * Robot whose position was rounded by the network back on the ground.
+     *
+     * @param obj The Robot that is moved.
+     */
+    public void settle(Robot obj) {
+        for (int i = 0; i < 10; i++) {
+            if (!obj.getFalling() && isOnGround(obj)) {
+                return;
+            }
+            obj.setYPos(obj.getYPos() + 1);
+        }
+        obj.setFalling(true);
+        obj.setYPos(obj.getYPos() - 10);
+    }
+
+    /**
+     * Checks to see if the given Projectile is colliding with a Robot or with
+     * the terrain.
+     * <p>
+     * Checks to see if the given Projectile has collided with a Robot or the
+     * terrain. If a collision has occurred, then the appropriate collision
+     * event takes place.
+     * </p>
+     * <p>
+     * Only the robots and drops that the broad phase finds near the Projectile
+     * are checked. A Projectile that is removed is only marked, and taken out
+     * of the list once all of them have been checked in the step.
+     * </p>
+     * <p>
+     * A Projectile that moved further than its own size in the step is first
+     * swept through the terrain from where it was, so a fast one hits a thin
+     * wall instead of passing through it between two steps.
+     * </p>
+     *
+     * @param p the Projectile which will be checked.
+     */
+    public void projectileCollisions(Projectile p) {
+        if (sweptCollision(p)) {
+            return;
+        }
+        AABB pBox = p.getCollisionBox();
+        if (targetsTick != tick || targetDrops != drops.size()) {
+            buildTargets();
+        }
+        int found = targets.query(pBox, candidates);
+        int robotCount = robots.size();
+
+        // Check the robots and then the drops that are close enough to be hit
+        for (int i = 0; i < found; i++) {
+            int id = candidates[i];
+            if (id < robotCount) {
+                Robot r = robots.get(id);
+                // Ignore the robot that fired the projectile
+                if (r == p.getCreator() || !pBox.intersects(r.getCollisionBox())) {
+                    continue;
+                }
+                // Deal damage if it's a bullet
+                if (p.isBullet()) {
+                    r.takeDamage(p.getDamage());
+                } else {
+                    r.takeDamage(p.getDamage() * (int) 0.25);
+                }
+                emit(GameEvent.Type.ROBOT_CHANGED, null, (int) r.getXPos(), (int) r.getYPos(), 0, r);
+                p.collided(this);
+                this.explosion(p);
+                removeProjectile(p);
+                if (r.isDead()) {
+                    for (Team team : teams) {
+                        team.removeRobot(r);
+                    }
+                    if (r.getRobotId() == currentCharacter.getRobotId()) {
+                        endedTurn = true;
+                        endTurn();
+                    }
+                }
+            } else {
+                SupplyDrop s = drops.get(id - robotCount);
+                if (hitDrops.contains(s) || !pBox.intersects(s.getCollisionBox())) {
+                    continue;
+                }
+                // Deal damage
+                this.explosion(p);
+                p.collided(this);
+                removeProjectile(p);
+                hitDrops.add(s);
+            }
+        }
+
+        int x = (int) p.getXPos();
+        int y = (int) p.getYPos();
+        int maxX = (int) (x + pBox.getWidth());
+        int maxY = (int) (y + pBox.getHeight());
+        if (maxX <= x || maxY <= y) {
+            return;
+        }
+        // Leaving the world by the left or the top
+        if (x < 0 || y < 0) {
+            removeProjectile(p);
+            return;
+        }
+        // The box was scanned column by column, so past the bottom only the first
+        // column is checked before the projectile is removed
+        boolean pastBottom = maxY > world.worldHeight;
+        boolean pastRight = maxX > world.worldWidth;
+        int right = pastBottom ? Math.min(x + 1, world.worldWidth) : Math.min(maxX, world.worldWidth);
+        int bottom = Math.min(maxY, world.worldHeight);
+        if (world.map.anySolid(x, y, right - x, bottom - y) && p.collided(this)) {
+            this.explosion(p);
+            removeProjectile(p);
+            return;
+        }
+        if (pastBottom || pastRight) {
+            removeProjectile(p);
+        }
+    }
+
+    /**
+     * Sweeps the box of a Projectile through the terrain grid from where it was
+     * before the step to where it is now. If it hits the terrain before the end,
+     * it is moved back to where it hit and collides there.
+     *
+     * @param p the Projectile which will be checked.
+     * @return true if the Projectile exploded and was removed.
+     */
+    private boolean sweptCollision(Projectile p) {
+        if (p.isRemoved() || !p.hasLastPosition()) {
+            return false;
+        }
+        int x0 = (int) p.getLastXPos();
+        int y0 = (int) p.getLastYPos();
+        int x1 = (int) p.getXPos();
+        int y1 = (int) p.getYPos();
+        int w = p.getWidth();
+        int h = p.getHeight();
+        // A slower projectile is covered by the boxes where it was and where it is
+        if (Math.abs(x1 - x0) < w && Math.abs(y1 - y0) < h) {
+            return false;
+        }
+        if (!world.map.sweep(x0, y0, x1, y1, w, h, sweepHit)
+                || (sweepHit[0] == x1 && sweepHit[1] == y1)) {
+            return false;
+        }
+        double xPos = p.getXPos();
+        double yPos = p.getYPos();
+        p.setXPos(sweepHit[0]);
+        p.setYPos(sweepHit[1]);
+        if (p.collided(this)) {
+            this.explosion(p);
+            removeProjectile(p);
+            return true;
+        }
+        p.setXPos(xPos);
+        p.setYPos(yPos);
+        return false;
+    }
+
+    /**
+     * Puts the boxes of the robots and the drops in the broad phase. They do not
+     * move while the projectiles are checked, so this is done once a step, or
+     * again when a drop has been created in the meantime.
+     */
+    private void buildTargets() {
+        targets.clear();
+        int robotCount = robots.size();
+        for (int i = 0; i < robotCount; i++) {
+            targets.add(robots.get(i).getCollisionBox(), i);
+        }
+        for (int i = 0; i < drops.size(); i++) {
+            targets.add(drops.get(i).getCollisionBox(), robotCount + i);
+        }
+        if (candidates.length < robotCount + drops.size()) {
+            candidates = new int[robotCount + drops.size()];
+        }
+        targetsTick = tick;
+        targetDrops = drops.size();
+    }
+
+    /**
+     * Marks a Projectile as removed. It stays in the list until removeHits, so
+     * the indexes of the other projectiles do not change while they are checked.
+     *
+     * @param p the Projectile to remove.
+     */
+    private void removeProjectile(Projectile p) {
+        p.setRemoved();
+        projectilesRemoved = true;
+    }
+
+    /**
+     * Takes the projectiles and drops that were removed during the projectile
+     * checks out of their lists, in a single pass each.
+     */
+    private void removeHits() {
+        if (projectilesRemoved) {
+            projectiles.removeIf(Projectile::isRemoved);
+            projectilesRemoved = false;
+        }
+        if (!hitDrops.isEmpty()) {
+            drops.removeAll(hitDrops);
+            hitDrops.clear();
+        }
+    }
+
+    /**
+     * Check if the given object is colliding with the terrain or is
+     * attempting to leave the world.
+     * <p>
+     * Check to see if the given object would collide with the terrain at the
+     * given position. If it is then returns true. Will also return true if the
+     * object is attempting to leave the edges of the world.
+     * </p>
+     *
+     * @param p    the object to check.
+     * @param simX the x position to check the object at.
+     * @param simY the y position to check the object at.
+     * @return true if the object is colliding with the level.
+     */
+    public boolean isColliding(PhysicsObject p, double simX, double simY) {
+        AABB pBox = p.getCollisionBox();
+
+        int x = (int) simX;
+        int y = (int) simY;
+        int maxX = (int) (simX + pBox.getWidth());
+        int maxY = (int) (simY + pBox.getHeight());
+        if (maxX <= x || maxY <= y) {
+            return false;
+        }
+        if (x < 0 || maxX > world.worldWidth || y < 0 || maxY > world.worldHeight) {
+            return true;
+        }
+        return world.map.anySolid(x, y, maxX - x, maxY - y);
+    }
+
+    /**
+     * Adds a Projectile to the world.
+     * <p>
+     * Pass a projectile to the Simulation. This is usually called when a Weapon
+     * is fired, but also when a Projectile splits into others.
+     * </p>
+     *
+     * @param projectile The Projectile object that should be added.
+     */
+    public void addProjectile(Projectile projectile) {
+        projectiles.add(projectile);
+        Coord position = projectile.getPosition();
+        emit(GameEvent.Type.FIRED, projectile.getFireSound(), position.getX(), position.getY(), 0, projectile.getCreator());
+    }
+
+    /**
+     * Get the current character.
+     * <p>
+     * Request the current Robot which is being controlled. This Robot could
+     * either be player controlled or AI controlled.
+     * </p>
+     *
+     * @return the Robot which is currently taking its turn.
+     */
+    public Robot getCurrentChar() {
+        return currentCharacter;
+    }
+
+    /**
+     * Schedules the command of a player for a later step. Before the step that starts at the given
+     * tick, it is applied if it is still the turn of that player, so a command that arrives just
+     * before the turn ends does not move the Robot of the other player.
+     * <p>
+     * Commands must be scheduled in the order of their ticks, and never for a tick that has passed.
+     * </p>
+     *
+     * @param tick   the tick at which the command is given, see getTick.
+     * @param player the player who gave the command.
+     * @param input  the command.
+     * @return false if the tick has already passed, in which case the command is dropped.
+     */
+    public boolean schedule(int tick, int player, Input input) {
+        if (tick < this.tick) {
+            return false;
+        }
+        scheduled.add(new ScheduledInput(tick, player, input));
+        return true;
+    }
+
+    /**
+     * Applies the scheduled commands whose tick has come.
+     */
+    private void applyScheduled() {
+        while (!scheduled.isEmpty() && scheduled.peek().tick <= tick) {
+            ScheduledInput next = scheduled.poll();
+            if (next.player == whosTurn) {
+                apply(next.input);
+            }
+        }
+    }
+
+    /**
+     * Moves or aims the current Robot the way the server will when it takes the
+     * command, so a client can show it straight away instead of a round trip
+     * later. The Robot takes a single step of the given length against the
+     * terrain. Firing, ending the turn and changing the weapon are left to the
+     * server.
+     *
+     * @param input the command to predict.
+     * @param time  the length of the step.
+     * @return true if the command was predicted.
+     */
+    public boolean predict(Input input, double time) {
+        switch (input) {
+            case FIRE:
+            case END_TURN:
+            case SLOT_1:
+            case SLOT_2:
+                return false;
+            default:
+                break;
+        }
+        apply(input);
+        moveRobot(currentCharacter, time);
+        settle(currentCharacter);
+        return true;
+    }
+
+    /**
+     * Applies the command of the player whose turn it is, as the server receives it.
+     *
+     * @param input the command to apply.
+     * @return true if the command was END_TURN and the turn has ended.
+     */
+    public boolean apply(Input input) {
+        switch (input) {
+            case END_TURN:
+                return endTurn();
+            case JUMP:
+                jump(whosTurn);
+                break;
+            case LEFT:
+                moveLeft(whosTurn);
+                break;
+            case RIGHT:
+                moveRight(whosTurn);
+                break;
+            case JUMP_LEFT:
+                jump(whosTurn);
+                moveLeft(whosTurn);
+                break;
+            case JUMP_RIGHT:
+                jump(whosTurn);
+                moveRight(whosTurn);
+                break;
+            case ANGLE_UP:
+                increaseAngle(whosTurn);
+                break;
+            case ANGLE_DOWN:
+                decreaseAngle(whosTurn);
+                break;
+            case POWER_DOWN:
+                decreasePower(whosTurn);
+                break;
+            case POWER_UP:
+                increasePower(whosTurn);
+                break;
+            case FIRE:
+                fireWeapon(whosTurn);
+                break;
+            case SLOT_1:
+                setCurrentSlot(0, whosTurn);
+                break;
+            case SLOT_2:
+                setCurrentSlot(1, whosTurn);
+                break;
+            default:
+                break;
+        }
+        return false;
+    }
+
+    /**
+     * Fire a Weapon from the current player.
+     * <p>
+     * Fires a Weapon from the current Robot. Returns a Projectile that
+     * corresponds to that Weapon. Checks that the it is the given players turn,
+     * the Weapon has ammo, the turn has not ended and that the Robot firing is
+     * not falling.
+     * </p>
+     *
+     * @param player that is firing.
+     * @return the Projectile that is created by the Weapon fired.
+     */
+    public Projectile fireWeapon(int player) {
+        Weapon weapon = currentCharacter.getWeapon();
+        if (player != whosTurn || endedTurn || weapon.getAmmo() < 1 || currentCharacter.getFalling()) {
+            return null;
+        }
+        endedTurn = true;
+        return onlineFireWeapon();
+    }
+
+    /**
+     * The same as fireWeapon but used on multiplayer.
+     * <p>
+     * Fires a Weapon from the current character. Only called when the server
+     * tells it to so there is no conflict between current Robot.
+     * </p>
+     *
+     * @return the Projectile that is created by te Weapon fired.
+     */
+    public Projectile onlineFireWeapon() {
+        Weapon weapon = currentCharacter.getWeapon();
+        weapon.fired();
+        double xPos = (currentCharacter.getXPos() + (currentCharacter.getWidth() / 4));
+        double yPos = (currentCharacter.getYPos() + (currentCharacter.getHeight() / 4));
+
+        int angle = currentCharacter.getAngle();
+        int power = currentCharacter.getPower();
+
+        Projectile p = weapon.createProjectile(new Coord((int) xPos, (int) yPos), angle);
+        p.setCreator(currentCharacter);
+        p.launch(angle, power * p.getMax() / 200);
+        this.addProjectile(p);
+        return p;
+    }
+
+    /**
+     * Removes the supply drops that the current character is touching. Used on multiplayer,
+     * where the server gives the supplies to the Robot.
+     */
+    public void onlineCheckDrops() {
+        AABB collisionBox = currentCharacter.getCollisionBox();
+        int index = 0;
+        int length = drops.size();
+        while (index < length) {
+            SupplyDrop drop = drops.get(index);
+            if (collisionBox.intersects(drop.getCollisionBox())) {
+                drops.remove(drop);
+                length = drops.size();
+                Coord centre = drop.getCentre();
+                emit(GameEvent.Type.DROP_COLLECTED, drop.getCollectSound(), centre.getX(), centre.getY(), 0, currentCharacter);
+            }
+            index++;
+        }
+    }
+
+    /**
+     * Creates a SupplyDrop in the sky at the given x position.
+     *
+     * @param xPos the x position of the SupplyDrop.
+     */
+    private void spawnDrop(int xPos) {
+        SupplyDrop drop = new SupplyDrop(new Coord(xPos, 0));
+        drops.add(drop);
+        Coord centre = drop.getCentre();
+        emit(GameEvent.Type.DROP_SPAWNED, drop.getFireSound(), centre.getX(), centre.getY(), 0, null);
+    }
+
+    /**
+     * Ends the current turn.
+     * <p>
+     * Ends the current turn. This may spawn a SupplyDrop, it will increment the
+     * turn count (if lava needs to rise). And sets the currentCharacter to the
+     * next Robot on the next Team. It also checks to see if any Robot is dead.
+     * </p>
+     *
+     * @param dropCreated    whether or not a drop is to be spawned this turn.
+     * @param supplyDropXPos the xPosition of the SupplyDrop that will be created.
+     * @param turnNumber
+     * @param whosTurn
+     */
+    public void endTurn(boolean dropCreated, int supplyDropXPos, int turnNumber, int whosTurn) {
+        if (dropCreated) {
+            spawnDrop(supplyDropXPos);
+        }
+
+        this.whosTurn = whosTurn;
+
+        // update the lava height
+        this.turnNumber = turnNumber;
+        if (turnNumber > SUDDEN_DEATH_TURN) {
+            lavaHeight = lavaHeight - RISE_PER_TURN;
+        }
+        // check for deaths due to lava
+        checkLavaDeaths();
+
+        // Sets the next character to move
+        currentCharacter.endTurn();
+
+        checkDeaths();
+        currentCharacter = teams.get(whosTurn).getNextPlayer();
+        currentCharacter.startTurn();
+
+    }
+
+    /**
+     * Checks if the turn has ended.
+     * <p>
+     * Checks to see if the turn has ended. This can only happen when all
+     * movement has stopped.
+     * </p>
+     *
+     * @return true when the turn has ended successfully.
+     */
+    public boolean endTurn() {
+        // Checks for movement
+        if (endedTurn && !isMovement()) {
+            endedTurn = false;
+            whosTurn++;
+            if (whosTurn >= noTeams) {
+                whosTurn = 0;
+            }
+
+            if (random.nextInt(5) == 1) {
+                spawnDrop(random.nextInt(world.worldWidth - 50));
+                dropCreated = true;
+            } else {
+                dropCreated = false;
+            }
+            // Gives the next player control
+
+            // Kills all robots in the range
+            checkLavaDeaths();
+            currentCharacter.endTurn();
+
+            checkDeaths();
+
+            // update the lava height
+            turnNumber++;
+            if (turnNumber > SUDDEN_DEATH_TURN) {
+                lavaHeight = lavaHeight - RISE_PER_TURN;
+            }
+
+            if (teams.get(0).hasLost()) {
+                if (teams.get(1).hasLost()) {
+                    gameResult = 2;
+                    return true;
+                } else {
+                    gameResult = 1;
+                    return true;
+                }
+            } else {
+                if (teams.get(1).hasLost()) {
+                    gameResult = 0;
+                    return true;
+                }
+            }
+
+            // Sets the next character to move
+
+            currentCharacter = teams.get(whosTurn).getNextPlayer();
+            currentCharacter.startTurn();
+
+            turnStarted();
+            return true;
+        }
+        return false;
+
+    }
+
+    /**
+     * Called when endTurn has given control to the next Robot. The client overrides
+     * this to let the AI plan its turn.
+     */
+    protected void turnStarted() {
+    }
+
+    /**
+     * Checks for any movement in the Simulation.
+     * <p>
+     * Checks each Projectile and Robot to see if any of them are moving.
+     * Returns true if they are.
+     * </p>
+     *
+     * @return true if anything is still moving.
+     */
+    public boolean isMovement() {
+        for (Projectile p : projectiles) {
+            if (Math.abs(p.getXVelocity()) > 0 || Math.abs(p.getYVelocity()) > 0) {
+                return true;
+            }
+        }
+        for (Robot r : robots) {
+            if (Math.abs(r.getYVelocity()) > 0 || Math.abs(r.getXVelocity()) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean projectileExists(Projectile p) {
+        return projectiles.contains(p);
+    }
+
+    public boolean robotExists(Robot robot) {
+        return teams.get(0).getRobots().contains(robot) || teams.get(1).getRobots().contains(robot);
+    }
+
+    /**
+     * Make the current Robot jump.
+     * <p>
+     * Responds to a Spacebar input, if the Robot ID given is the current Robot,
+     * then it performs a jump. Robot must have enough energy to jump, and will
+     * lose energy when it does.
+     * </p>
+     *
+     * @param player that is expected to jump.
+     */
+    public void jump(int player) {
+        if (!endedTurn && currentCharacter.hasEnergy() && !currentCharacter.getFalling() && player == whosTurn) {
+            currentCharacter.launch(90, 150);
+            currentCharacter.decreaseEnergyJump();
+        }
+    }
+
+    /**
+     * Make the current Robot move left.
+     * <p>
+     * Responds to an A input. If the Robot ID given is the current Robot, then
+     * it performs a movement to the left. Robot must have enough energy and
+     * will lose energy when it does.
+     * </p>
+     *
+     * @param player that is expected to move left.
+     */
+    public void moveLeft(int player) {
+        if (!endedTurn && !currentCharacter.getFalling() && player == whosTurn) {
+            if (currentCharacter.hasEnergy()) {
+                currentCharacter.moveLeft();
+                currentCharacter.decreaseEnergy();
+                robotChanged(currentCharacter);
+            }
+            currentCharacter.swapAngleLeft();
+        }
+    }
+
+    /**
+     * Make the current Robot move right.
+     * <p>
+     * Responds to a D input. If the Robot ID given is the current Robot, then
+     * it performs a movement to the right. Robot must have enough energy and
+     * will lose energy when it does.
+     * </p>
+     *
+     * @param player that is expected to move right.
+     */
+    public void moveRight(int player) {
+        if (!endedTurn && !currentCharacter.getFalling() && player == whosTurn) {
+            if (currentCharacter.hasEnergy()) {
+                currentCharacter.moveRight();
+                currentCharacter.decreaseEnergy();
+                robotChanged(currentCharacter);
+            }
+            currentCharacter.swapAngleRight();
+        }
+    }
+
+    /**
+     * Make the current Robot increase its aim angle.
+     * <p>
+     * Responds to an Up input. If the Robot ID given is the current Robot, then
+     * its aim angle will increase.
+     * </p>
+     *
+     * @param player that is expected to increase its aim angle.
+     */
+    public void increaseAngle(int player) {
+        if (!endedTurn && !currentCharacter.getFalling() && player == whosTurn) {
+            currentCharacter.changeAngle(1);
+        }
+    }
+
+    /**
+     * Make the current Robot decrease its aim angle.
+     * <p>
+     * Responds to an Down input. If the Robot ID given is the current Robot,
+     * then its aim angle will decrease.
+     * </p>
+     *
+     * @param player that is expected to decrease its aim angle.
+     */
+    public void decreaseAngle(int player) {
+        if (!endedTurn && !currentCharacter.getFalling() && player == whosTurn) {
+            currentCharacter.changeAngle(-1);
+        }
+    }
+
+    /**
+     * Make the current Robot increase its shot power.
+     * <p>
+     * Responds to an Right input. If the Robot ID given is the current Robot,
+     * then its shot power will increase.
+     * </p>
+     *
+     * @param player that is expected to increase its shot power.
+     */
+    public void increasePower(int player) {
+        if (!endedTurn && !currentCharacter.getFalling() && player == whosTurn) {
+            currentCharacter.changePower(1);
+            robotChanged(currentCharacter);
+        }
+    }
+
+    /**
+     * Make the current Robot decrease its shot power.
+     * <p>
+     * Responds to an Left input. If the Robot ID given is the current Robot,
+     * then its shot power will decrease.
+     * </p>
+     *
+     * @param player that is expected to decrease its shot power.
+     */
+    public void decreasePower(int player) {
+        if (!endedTurn && !currentCharacter.getFalling() && player == whosTurn) {
+            currentCharacter.changePower(-1);
+            robotChanged(currentCharacter);
+        }
+    }
+
+    /**
+     * Set the current Weapon slot for the current Robot.
+     * <p>
+     * Sets the currently equipped Weapon to the desired Weapon. Checks if the
+     * Robot ID is that of the current Robot.
+     * </p>
+     *
+     * @param slot   the slot id of the Weapon to be equipped.
+     * @param player the player who is expected to change Weapon.
+     */
+    public void setCurrentSlot(int slot, int player) {
+        if (!endedTurn && player == whosTurn) {
+            currentCharacter.setPlayerSlot(slot);
+            robotChanged(currentCharacter);
+        }
+    }
+
+    /**
+     * Emits a ROBOT_CHANGED event for the given Robot.
+     *
+     * @param robot the Robot whose stats changed.
+     */
+    private void robotChanged(Robot robot) {
+        emit(GameEvent.Type.ROBOT_CHANGED, null, (int) robot.getXPos(), (int) robot.getYPos(), 0, robot);
+    }
+
+    /**
+     * Get all of the robots currently in the world
+     *
+     * @return The current robots in the world
+     */
+    public ArrayList<Robot> getRobots() {
+        return robots;
+    }
+
+    /**
+     * Get all of the projectiles that currently exist in the world
+     *
+     * @return The current projectiles in the world
+     */
+    public ArrayList<Projectile> getProjectiles() {
+        return projectiles;
+    }
+
+    /**
+     * Get all of the supply drops that currently exist in the world
+     *
+     * @return The current supply drops
+     */
+    public ArrayList<SupplyDrop> getDrops() {
+        return drops;
+    }
+
+    /**
+     * Get the current terrain of the world
+     *
+     * @return The games terrain
+     */
+    public Terrain getWorld() {
+        return world;
+    }
+
+    /**
+     * Get the gravity of this game
+     *
+     * @return The gravity that objects fall with
+     */
+    public double getGravity() {
+        return gravity;
+    }
+
+    /**
+     * Stops the current character from moving if they aren't falling currently
+     */
+    public void stop() {
+        if (!currentCharacter.getFalling()) {
+            currentCharacter.stop();
+        }
+    }
+
+    /**
+     * Get the height from the bottom of the screen that the top of the lava
+     * currently is
+     *
+     * @return The height of the lava currently
+     */
+    public int getSDArea() {
+        return lavaHeight;
+    }
+
+    /**
+     * Checks if the given robot is currently on the terrain
+     *
+     * @param obj The robot to check
+     * @return True if the robot is on the terrain
+     */
+    public boolean isOnGround(Robot obj) {
+        AABB collisionBox = obj.getCollisionBox();
+        Coord location = new Coord((int) obj.getXPos(), (int) obj.getYPos());
+        int maxX = (int) (location.getX() + collisionBox.getWidth());
+        int maxY = (int) (location.getY() + collisionBox.getHeight());
+        return world.map.anySolid(location.getX() + 3, maxY + 2, maxX - 3 - (location.getX() + 3), 1);
+    }
+
+    /**
+     * Set the robots currently in the game world
+     *
+     * @param robots The robots in the world
+     */
+    public void setRobots(ArrayList<Robot> robots) {
+        this.robots = robots;
+    }
+
+    /**
+     * Set the robot that's the current character being controlled
+     *
+     * @param currentCharacter The current robot being controlled
+     */
+    public void setCurrentCharacter(Robot currentCharacter) {
+        this.currentCharacter = currentCharacter;
+    }
+
+    /**
+     * Get the map of the world represented as a seed
+     *
+     * @return The seed of the world
+     */
+    public long getSeed() {
+        return world.getSeed();
+    }
+
+    /**
+     * Get the Random that everything random in this match must use, so that
+     * the match can be played again the same way.
+     *
+     * @return the Random of the match
+     */
+    public Random getRandom() {
+        return random;
+    }
+
+    /**
+     * Get the number of steps taken since the match started
+     *
+     * @return the number of steps
+     */
+    public int getTick() {
+        return tick;
+    }
+
+    /**
+     * Works out a checksum of everything that decides how the match goes on:
+     * the turn, the lava, the gravity, the robots, the projectiles, the supply
+     * drops and the terrain. Two Simulations that have not diverged have the
+     * same checksum after the same step, so comparing them every tick finds the
+     * step where they did.
+     *
+     * @return the checksum of the state of the match
+     */
+    public long checksum() {
+        long h = mix(0, tick);
+        h = mix(h, whosTurn);
+        h = mix(h, turnNumber);
+        h = mix(h, endedTurn ? 1 : 0);
+        h = mix(h, gameResult);
+        h = mix(h, lavaHeight);
+        h = mix(h, Double.doubleToLongBits(gravity));
+        h = mix(h, currentCharacter == null ? -1 : currentCharacter.getRobotId());
+        for (Robot r : robots) {
+            h = mix(h, r.getRobotId());
+            h = mix(h, r);
+            h = mix(h, r.getHealth());
+            h = mix(h, r.getEnergy());
+            h = mix(h, r.getAngle());
+            h = mix(h, r.getPower());
+            h = mix(h, r.getSlot());
+            h = mix(h, r.isDead() ? 1 : 0);
+            for (Weapon w : r.getAllWeapons()) {
+                h = mix(h, w.getAmmo());
+            }
+        }
+        for (Projectile p : projectiles) {
+            h = mix(h, p.getName() == null ? 0 : p.getName().hashCode());
+            h = mix(h, p);
+            h = mix(h, p.getCounter());
+        }
+        for (SupplyDrop drop : drops) {
+            h = mix(h, drop);
+        }
+        return mix(h, world.map.checksum());
+    }
+
+    private static long mix(long h, PhysicsObject o) {
+        h = mix(h, Double.doubleToLongBits(o.getXPos()));
+        h = mix(h, Double.doubleToLongBits(o.getYPos()));
+        h = mix(h, Double.doubleToLongBits(o.getXVelocity()));
+        h = mix(h, Double.doubleToLongBits(o.getYVelocity()));
+        return mix(h, o.getFalling() ? 1 : 0);
+    }
+
+    private static long mix(long h, long value) {
+        return (h ^ value) * 0x100000001b3L;
+    }
+
+    /**
+     * Puts a multiplayer client in lockstep with the server, which then relays
+     * the inputs instead of the game state. The client runs the physics, the
+     * collisions and the destruction of the terrain itself, like the server.
+     *
+     * @param lockstep true if the client simulates the game from the inputs.
+     */
+    public void setLockstep(boolean lockstep) {
+        this.lockstep = lockstep;
+    }
+
+    /**
+     * @return true if the robots are moved and the terrain destroyed here,
+     * false if the server sends where they are.
+     */
+    private boolean runsPhysics() {
+        return !onClient || singlePlayer || lockstep;
+    }
+
+    /**
+     * Sets the Loadout of each Robot, which init uses to create them.
+     *
+     * @param loadouts the Loadout for each Robot in the game.
+     */
+    public void setLoadouts(Loadout[] loadouts) {
+        this.loadouts = loadouts;
+    }
+
+    /**
+     * Get the listener that receives every GameEvent of this Simulation
+     *
+     * @return the listener, or null if no events are emitted
+     */
+    public GameEvent.Listener getListener() {
+        return listener;
+    }
+
+    /**
+     * Takes the match back to before createGameWorld and init, so it can be
+     * played again from the start. The robots, the projectiles, the supply
+     * drops and the scheduled commands are dropped, and the turn, the tick and
+     * the gravity start again.
+     */
+    public void reset() {
+        robots = new ArrayList<Robot>();
+        projectiles = new ArrayList<Projectile>();
+        drops = new ArrayList<SupplyDrop>();
+        scheduled.clear();
+        targetsTick = -1;
+        projectilesRemoved = false;
+        hitDrops.clear();
+        gravity = DEFAULT_GRAVITY;
+        whosTurn = 0;
+        turnNumber = 0;
+        endedTurn = false;
+        dropCreated = false;
+        gameResult = -1;
+        accumulator = 0;
+        tick = 0;
+    }
+
+    /**
+     * Sets the current difficulty of the AI
+     *
+     * @param difficulty The difficulty to set the AI to
+     */
+    public void setDifficulty(int difficulty) {
+        this.difficulty = difficulty;
+    }
+
+    /**
+     * Sets the random gravity if it's enabled. It generates a random value for
+     * gravity from a predefined range with it being equally likely to be a low
+     * or high gravity world
+     *
+     * @param randomGravity True if random gravity is enabled
+     */
+    public void setRandomGravity(boolean randomGravity) {
+        if (randomGravity) {
+            // Seeded with the world on its own, so the server and the clients agree
+            Random r = new Random(world.getSeed());
+
+            if (r.nextBoolean()) {
+                int randomNo = r.nextInt(11) + 5;
+                gravity *= randomNo;
+            } else {
+                int randomNo = r.nextInt(6) + 25;
+                gravity *= randomNo;
+            }
+        } else {
+            gravity *= 20;
+        }
+    }
+
+    /**
+     * Sets which players turn it currently is
+     *
+     * @param turn The value to set the current turn to
+     */
+    public void setTurn(int turn) {
+        whosTurn = turn;
+    }
+
+    /**
+     * This is used by the AI to move a given position until it's on the surface
+     * of the terrain. It finds the closest point to the surface of the terrain
+     * at the given point meaning that it can handle things like caves and holes
+     * from explosions
+     *
+     * @param x The x position to find the surface for
+     * @param y The current y position that it should start from
+     * @return The co-ordinates of the closest surface terrain to this point
+     */
+    public Coord getNodeYPos(int x, int y) {
+        // If in the ground
+        if (world.map.isSolid(x, y)) {
+            // Move up until the pixel is air
+            while (y > 0 && world.map.isSolid(x, y)) {
+                y--;
+            }
+            return new Coord(x, y);
+        } else {
+            // Move down until the next pixel is ground
+            return new Coord(x, world.map.firstSolidBelow(x, y + 1) - 1);
+        }
+
+    }
+
+    /**
+     * Checks to see if the lava has killed any robots
+     */
+    public void checkLavaDeaths() {
+        int index = 0;
+        int length = robots.size();
+        while (index < length) {
+            length = robots.size();
+            Robot rob = robots.get(index);
+            if (rob.getYPos() + (rob.getHeight() * 0.25) >= lavaHeight) {
+                rob.takeDamage(1000);
+                robotChanged(rob);
+                if (rob.isDead()) {
+                    for (Team team : teams) {
+                        team.removeRobot(rob);
+                    }
+                }
+            }
+            index++;
+        }
+    }
+
+    /**
+     * Removes the robots that have died from the world and emits a ROBOT_DIED
+     * event for each of them
+     */
+    protected void checkDeaths() {
+        ArrayList<Robot> deadRobots = new ArrayList<>();
+        for (Robot r : robots) {
+            if (r.isDead())
+                deadRobots.add(r);
+        }
+        for (Robot r : deadRobots) {
+            robots.remove(r);
+            Coord centre = r.getCentre();
+            emit(GameEvent.Type.ROBOT_DIED, null, centre.getX(), centre.getY(), 0, r);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.game.state;
+
+import java.util.Arrays;
+
+/**
+ * Finds the tick at which two copies of a match stopped being the same.
+ * <p>
+ * One copy records the checksum of its Simulation after every tick, and the checksums of the
+ * other copy, which may arrive later over the network, are checked against them. Only the
+ * checksums of the last ticks are kept, so a checksum that arrives too late is not checked.
+ * Once a copy has diverged it stays diverged, so the first tick at which they differed is kept.
+ * </p>
+ * <p>
+ * The game loop records and the network thread checks, so the methods are synchronized.
+ * </p>
+ */
+public class SyncChecker {
+    private final long[] checksums;
+    private final int[] ticks;
+    private int desyncTick = -1;
+
+    /**
+     * @param history the number of ticks whose checksums are kept.
+     */
+    public SyncChecker(int history) {
+        checksums = new long[history];
+        ticks = new int[history];
+        Arrays.fill(ticks, -1);
+    }
+
+    /**
+     * Keeps the checksum of a tick of this copy of the match.
+     *
+     * @param tick     the tick, from Simulation.getTick.
+     * @param checksum the checksum after that tick, from Simulation.checksum.
+     */
+    public synchronized void record(int tick, long checksum) {
+        int index = tick % ticks.length;
+        ticks[index] = tick;
+        checksums[index] = checksum;
+    }
+
+    /**
+     * Checks the checksum of a tick of the other copy of the match.
+     *
+     * @param tick     the tick.
+     * @param checksum the checksum of the other copy after that tick.
+     * @return false if this copy has a different checksum for that tick, true if it is the same
+     *         or the tick is no longer or not yet kept.
+     */
+    public synchronized boolean check(int tick, long checksum) {
+        int index = tick % ticks.length;
+        if (ticks[index] != tick || checksums[index] == checksum)
+            return true;
+        if (desyncTick == -1 || tick < desyncTick)
+            desyncTick = tick;
+        return false;
+    }
+
+    /**
+     * @return true if no checksum that was checked was different.
+     */
+    public synchronized boolean inSync() {
+        return desyncTick == -1;
+    }
+
+    /**
+     * @return the first tick whose checksums were different, or -1 if there is none.
+     */
+    public synchronized int getDesyncTick() {
+        return desyncTick;
+    }
+}
@@ -0,0 +1,198 @@
+package com.game.state;
+
+import java.util.Random;
+
+/**
+ * The terrain of a single Solar Legends match, without any of the images used to draw it.
+ * TerrainGrid map is a pixel-level representation of the terrain of the world, where a solid pixel is ground.
+ * The Simulation only needs this class, so a server can generate and destroy terrain without the JavaFX toolkit.
+ * Every Terrain owns its own map, so one server can run many matches at once.
+ * GameWorld extends it with the image of the world that the Renderer draws.
+ * @author Joshua Minton
+ */
+public class Terrain {
+    public static final int worldHeight = 1080;
+    public static final int worldWidth = 1920;
+    public final TerrainGrid map = new TerrainGrid(worldWidth, worldHeight);
+    protected int[] heightCurve;
+
+    Random randomiser = new Random();
+    protected long seed;
+
+    /**
+     * Default constructor for all Terrains.
+     * Calls methods to generate random terrain, or flat terrain for testing purposes.
+     * @param isFlat Whether the world is to be flat; all on the same level. For testing purposes.
+     * @param seed The seed to be fed into the randomiser that is used to generate random terrain. This allows us to generate the same random terrain on two different machines.
+     */
+    public Terrain(boolean isFlat, long seed) {
+        if(isFlat){
+            generateTerrainFlat();
+        }else{
+            this.seed = seed;
+            generateTerrain();
+        }
+    }
+
+    /**
+     * A method to populate the TerrainGrid map with a representation of randomly generated terrain.
+     * <p>
+     *     We generate 5 random values with which we use the Math.sin function.
+     *     This essentially creates a number of different sine waves we can 'layer' over eachother to create a 'heightmap', from which the map can be filled.
+     * The result is somewhat realistic-looking terrain.
+     * </p>
+     *
+     * http://www.riemers.net/eng/Tutorials/XNA/Csharp/Series2D/Random_terrain.php
+     */
+    public void generateTerrain() {
+        //the various numbers in this method are designed to create sensible looking terrain in a 1920x1080 array.
+
+        heightCurve = new int[worldWidth];
+
+        randomiser.setSeed(seed); //setting a seed to generate terrain from saves us sending a 1920x1080 boolean array across a network.
+
+        //code re-use starts here
+
+        double rand1 = randomiser.nextDouble() + 1;
+        double rand2 = randomiser.nextDouble() + 2;
+        double rand3 = randomiser.nextDouble() + 3;
+        double rand4 = randomiser.nextDouble() + 4;
+        double rand5 = randomiser.nextDouble() + 5;
+
+        float offset = (float) worldHeight - (worldHeight / (float) 2.5);
+        float peakheight = (float) (worldHeight * 0.12); //bigger numbers = less of that attribute
+        float flatness = (float) (worldWidth * 0.12);
+
+        for (int x = 0; x < worldWidth; x++) {
+            double height = peakheight / rand1 * Math.sin((float) x / flatness * rand1 + rand1);
+            height += peakheight / rand2 * Math.sin((float) x / flatness * rand2 + rand2);
+            height += peakheight / rand3 * Math.sin((float) x / flatness * rand3 + rand3);
+            height += peakheight / rand4 * Math.sin((float) x / flatness * rand4 + rand4);
+            height += peakheight / rand5 * Math.sin((float) x / flatness * rand5 + rand5);
+            height += 5 * Math.cos((float) x / (15));
+            height += offset;
+            heightCurve[x] = (int) height;
+        }
+
+        //code re-use ends here
+        //this code was adapted from:
+        //http://www.riemers.net/eng/Tutorials/XNA/Csharp/Series2D/Random_terrain.php
+
+        //fill the array using the heightCurve.
+        fillFromHeightCurve();
+    }
+
+
+    /**
+     * Fills the map from the heightCurve, every pixel below the curve is ground.
+     * The grid is filled 64 columns at a time rather than a pixel at a time.
+     */
+    protected void fillFromHeightCurve() {
+        map.fillBelow(heightCurve);
+    }
+
+
+    /**
+     * A method to fill the TerrainGrid map with terrain all on a single level. Mainly for test purposes.
+     */
+    public void generateTerrainFlat() {
+        heightCurve = new int[worldWidth];
+
+        for (int x = 0; x < worldWidth; x++) {
+            heightCurve[x] = 500;
+        }
+
+        fillFromHeightCurve();
+    }
+
+
+    /**
+     * A method to create a circle of 'true' values (representing empty space) around a particular point in the TerrainGrid map.
+     * Used to change the terrain as explosions happen.
+     * Each row of the circle is cleared as one span, cut to the edges of the map.
+     * @param xcentre The x coordinate of the centre of the circle of destruction.
+     * @param ycentre The y coordinate of the centre of the circle of destruction.
+     * @param radius The radius of the circle of destruction.
+     */
+    public void destructTerrain(int xcentre, int ycentre, int radius){
+        int top = Math.max(ycentre - radius, 0);
+        int bottom = Math.min(ycentre + radius, worldHeight - 1);
+        for(int y = top; y <= bottom; y++){
+            int halfWidth = circleHalfWidth(radius, y - ycentre);
+            int from = Math.max(xcentre - halfWidth, 0);
+            int to = Math.min(xcentre + halfWidth + 1, worldWidth);
+            map.fillRow(y, from, to, false); //clear that span, that is, empty space.
+        }
+    }
+
+    /**
+     * Returns how far a row of a circle reaches either side of its centre.
+     * The pixels x of the row are those with x*x + y*y &lt;= radius*radius, the same as testing each one.
+     * @param radius The radius of the circle.
+     * @param y The row, from the centre of the circle.
+     * @return The largest x in the circle on that row, or -1 if the row is outside the circle.
+     */
+    protected static int circleHalfWidth(int radius, int y){
+        int rest = radius * radius - y * y;
+        if(rest < 0){
+            return -1;
+        }
+        int x = (int) Math.sqrt(rest);
+        //the square root of a double can be a little off either way
+        while(x * x > rest){
+            x--;
+        }
+        while((x + 1) * (x + 1) <= rest){
+            x++;
+        }
+        return x;
+    }
+
+    /**
+     * A method to move a circular area of terrain around a certain point a certain distance upwards.
+     * @param xcentre The x coordinate of the centre of the area to be shifted.
+     * @param ycentre The y coordinate of the centre of the area to be shifted.
+     * @param radius The radius of the circle to be shifted.
+     * @param distance How far upwards the circle is to be shifted.
+     */
+    public void shiftTerrain(int xcentre, int ycentre, int radius, int distance){
+        for(int y = -radius; y <= radius; y++){
+            for(int x = -radius; x <= radius; x++){
+                if(x*x+y*y <= radius*radius){
+                    try {
+                        if(map.isSolid(xcentre + x, ycentre + y)){
+                            map.setSolid(xcentre + x, ycentre + y - distance, true); //if a pixel is ground, make the pixel the specified distance above it ground also.
+                        }
+                        map.setSolid(xcentre + x, ycentre + y, false); //clear the source pixel, that is, empty space.
+                    } catch (IndexOutOfBoundsException e) {}
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Returns the worldHeight value.
+     * @return the worldHeight.
+     */
+    public int getWorldHeight() {
+        return worldHeight;
+    }
+
+    /**
+     * Returns the worldWidth value.
+     * @return the worldWidth.
+     */
+    public int getWorldWidth() {
+        return worldWidth;
+    }
+
+    /**
+     * Returns the seed that was used by the Random when generating terrain.
+     * @return the seed.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+}
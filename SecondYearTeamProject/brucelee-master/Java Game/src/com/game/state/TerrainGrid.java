@@ -0,0 +1,354 @@
+package com.game.state;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * A pixel-level grid of the terrain, packed one bit per pixel into long words.
+ * <p>
+ * The grid is stored row by row, each row starting on a new word, and a set bit is solid ground.
+ * A 1920x1080 world takes 30 words a row, 259KB in total instead of the 2MB of a boolean[][].
+ * Because a row of pixels sits next to each other in memory, the collision checks can test up to
+ * 64 pixels at a time with a mask instead of looking at them one by one.
+ * </p>
+ * <p>
+ * Every query and update outside of the grid throws an IndexOutOfBoundsException, like the
+ * boolean[][] map it replaces.
+ * </p>
+ * @author Joshua Minton
+ */
+public class TerrainGrid {
+    private static final int WORD_BITS = 64;
+    private static final int WORD_SHIFT = 6;
+    private static final long ALL = -1L;
+
+    private final int width;
+    private final int height;
+    private final int wordsPerRow;
+    private final long[] words;
+    // The checksum of the words, worked out again only after the grid has changed
+    private long checksum;
+    private boolean checksumValid;
+
+    /**
+     * Creates a grid of empty space.
+     * @param width The width of the grid in pixels.
+     * @param height The height of the grid in pixels.
+     */
+    public TerrainGrid(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.wordsPerRow = (width + WORD_BITS - 1) >>> WORD_SHIFT;
+        this.words = new long[wordsPerRow * height];
+    }
+
+    /**
+     * Returns whether a pixel is solid ground.
+     * @param x The x coordinate of the pixel.
+     * @param y The y coordinate of the pixel.
+     * @return true if the pixel is ground, false if it is empty space.
+     */
+    public boolean isSolid(int x, int y) {
+        checkBounds(x, y);
+        return (words[y * wordsPerRow + (x >>> WORD_SHIFT)] & (1L << x)) != 0;
+    }
+
+    /**
+     * Sets a single pixel to ground or empty space.
+     * @param x The x coordinate of the pixel.
+     * @param y The y coordinate of the pixel.
+     * @param solid true to make the pixel ground, false to make it empty space.
+     */
+    public void setSolid(int x, int y, boolean solid) {
+        checkBounds(x, y);
+        int index = y * wordsPerRow + (x >>> WORD_SHIFT);
+        checksumValid = false;
+        if (solid) {
+            words[index] |= 1L << x;
+        } else {
+            words[index] &= ~(1L << x);
+        }
+    }
+
+    /**
+     * Sets a horizontal span of pixels to ground or empty space, a word at a time.
+     * @param y The row of the span.
+     * @param fromX The first x coordinate of the span.
+     * @param toX The x coordinate after the end of the span.
+     * @param solid true to make the span ground, false to make it empty space.
+     */
+    public void fillRow(int y, int fromX, int toX, boolean solid) {
+        if (fromX >= toX) {
+            return;
+        }
+        checkBounds(fromX, y);
+        checkBounds(toX - 1, y);
+        checksumValid = false;
+        int row = y * wordsPerRow;
+        int first = fromX >>> WORD_SHIFT;
+        int last = (toX - 1) >>> WORD_SHIFT;
+        long firstMask = ALL << fromX;
+        long lastMask = ALL >>> -toX;
+        if (first == last) {
+            fill(row + first, firstMask & lastMask, solid);
+            return;
+        }
+        fill(row + first, firstMask, solid);
+        if (last > first + 1) {
+            Arrays.fill(words, row + first + 1, row + last, solid ? ALL : 0L);
+        }
+        fill(row + last, lastMask, solid);
+    }
+
+    /**
+     * Fills the whole grid from the surface of each column, every pixel below the surface is ground and the rest is empty space.
+     * A pixel stays ground all the way down once its column has passed the surface, so each word is the word above it with
+     * the pixels whose surface is on the row above added. Each column of words only depends on its own pixels, so the
+     * columns are filled on all the cores at once.
+     * @param surface The y coordinate of the surface of each column, the pixels of column x below surface[x] are ground.
+     */
+    public void fillBelow(int[] surface) {
+        if (surface.length != width) {
+            throw new IllegalArgumentException("There are " + surface.length + " columns in the surface instead of " + width);
+        }
+        checksumValid = false;
+        IntStream.range(0, wordsPerRow).parallel().forEach(column -> fillBelow(surface, column));
+    }
+
+    private void fillBelow(int[] surface, int column) {
+        // The pixels of this column of words that become ground on each row
+        long[] starts = new long[height];
+        int first = column << WORD_SHIFT;
+        int last = Math.min(first + WORD_BITS, width);
+        for (int x = first; x < last; x++) {
+            if (surface[x] < height - 1) {
+                starts[Math.max(surface[x] + 1, 0)] |= 1L << x;
+            }
+        }
+        long word = 0;
+        for (int index = column, y = 0; y < height; index += wordsPerRow, y++) {
+            word |= starts[y];
+            words[index] = word;
+        }
+    }
+
+    private void fill(int index, long mask, boolean solid) {
+        if (solid) {
+            words[index] |= mask;
+        } else {
+            words[index] &= ~mask;
+        }
+    }
+
+    /**
+     * Returns whether there is any ground in a rectangle of pixels.
+     * Each row of the rectangle is checked a word at a time.
+     * @param x The left of the rectangle.
+     * @param y The top of the rectangle.
+     * @param w The width of the rectangle.
+     * @param h The height of the rectangle.
+     * @return true if at least one pixel in the rectangle is ground. An empty rectangle has no ground.
+     */
+    public boolean anySolid(int x, int y, int w, int h) {
+        if (w <= 0 || h <= 0) {
+            return false;
+        }
+        checkBounds(x, y);
+        checkBounds(x + w - 1, y + h - 1);
+        int first = x >>> WORD_SHIFT;
+        int last = (x + w - 1) >>> WORD_SHIFT;
+        long firstMask = ALL << x;
+        long lastMask = ALL >>> -(x + w);
+        if (first == last) {
+            long mask = firstMask & lastMask;
+            for (int index = y * wordsPerRow + first, end = index + h * wordsPerRow; index < end; index += wordsPerRow) {
+                if ((words[index] & mask) != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        for (int row = y * wordsPerRow, end = row + h * wordsPerRow; row < end; row += wordsPerRow) {
+            if ((words[row + first] & firstMask) != 0 || (words[row + last] & lastMask) != 0) {
+                return true;
+            }
+            for (int index = row + first + 1; index < row + last; index++) {
+                if (words[index] != 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Moves a box in a straight line from one position to another, a pixel at a time along the
+     * line that Bresenham's algorithm draws, and finds the first position where it overlaps ground.
+     * After each step only the column and the row of pixels that the box has moved into are checked,
+     * since the rest of the box was already checked at the position before.
+     * The start is not a hit, and the sweep stops without a hit where the box would leave the grid.
+     * @param x0 The left of the box at the start.
+     * @param y0 The top of the box at the start.
+     * @param x1 The left of the box at the end.
+     * @param y1 The top of the box at the end.
+     * @param w The width of the box.
+     * @param h The height of the box.
+     * @param hit Where the left and the top of the box at the first hit are written.
+     * @return true if the box hits ground on the way, the end included.
+     */
+    public boolean sweep(int x0, int y0, int x1, int y1, int w, int h, int[] hit) {
+        if (w <= 0 || h <= 0 || !contains(x0, y0, w, h)) {
+            return false;
+        }
+        int dx = Math.abs(x1 - x0);
+        int dy = Math.abs(y1 - y0);
+        int sx = x0 < x1 ? 1 : -1;
+        int sy = y0 < y1 ? 1 : -1;
+        int error = dx - dy;
+        int x = x0;
+        int y = y0;
+        // A box that starts in the ground is checked whole until it is out of it
+        boolean whole = anySolid(x, y, w, h);
+        while (x != x1 || y != y1) {
+            int error2 = 2 * error;
+            boolean stepX = error2 > -dy;
+            boolean stepY = error2 < dx;
+            if (stepX) {
+                error -= dy;
+                x += sx;
+            }
+            if (stepY) {
+                error += dx;
+                y += sy;
+            }
+            if (!contains(x, y, w, h)) {
+                return false;
+            }
+            if (whole) {
+                whole = anySolid(x, y, w, h);
+            } else if ((stepX && anySolid(sx > 0 ? x + w - 1 : x, y, 1, h))
+                    || (stepY && anySolid(x, sy > 0 ? y + h - 1 : y, w, 1))) {
+                hit[0] = x;
+                hit[1] = y;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean contains(int x, int y, int w, int h) {
+        return x >= 0 && y >= 0 && x + w <= width && y + h <= height;
+    }
+
+    /**
+     * Finds the first ground pixel in a horizontal span, a word at a time.
+     * @param y The row of the span.
+     * @param fromX The first x coordinate of the span.
+     * @param toX The x coordinate after the end of the span.
+     * @return the x coordinate of the leftmost ground pixel in the span, or -1 if it is all empty space.
+     */
+    public int firstSolidInRow(int y, int fromX, int toX) {
+        if (fromX >= toX) {
+            return -1;
+        }
+        checkBounds(fromX, y);
+        checkBounds(toX - 1, y);
+        int row = y * wordsPerRow;
+        int last = (toX - 1) >>> WORD_SHIFT;
+        long lastMask = ALL >>> -toX;
+        int wordIndex = fromX >>> WORD_SHIFT;
+        long word = words[row + wordIndex] & (ALL << fromX);
+        while (true) {
+            if (wordIndex == last) {
+                word &= lastMask;
+            }
+            if (word != 0) {
+                return (wordIndex << WORD_SHIFT) + Long.numberOfTrailingZeros(word);
+            }
+            if (wordIndex == last) {
+                return -1;
+            }
+            wordIndex++;
+            word = words[row + wordIndex];
+        }
+    }
+
+    /**
+     * Finds the first ground pixel at or below a point, walking down the column.
+     * @param x The x coordinate of the column.
+     * @param y The y coordinate to start from.
+     * @return the y coordinate of the highest ground pixel at or below y, or the height of the grid if there is none.
+     */
+    public int firstSolidBelow(int x, int y) {
+        checkBounds(x, y);
+        int index = y * wordsPerRow + (x >>> WORD_SHIFT);
+        long bit = 1L << x;
+        for (; y < height; y++, index += wordsPerRow) {
+            if ((words[index] & bit) != 0) {
+                return y;
+            }
+        }
+        return height;
+    }
+
+    /**
+     * Returns the width of the grid.
+     * @return the width in pixels.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the grid.
+     * @return the height in pixels.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns a 64 bit checksum of the ground, so two copies of a world can be compared cheaply.
+     * It is only worked out again after the grid has changed, so it costs nothing between explosions.
+     * @return the checksum of the grid.
+     */
+    public long checksum() {
+        if (!checksumValid) {
+            long h = width;
+            for (long word : words) {
+                h = (h ^ word) * 0x100000001b3L;
+            }
+            checksum = h;
+            checksumValid = true;
+        }
+        return checksum;
+    }
+
+    /**
+     * Two grids are equal when they are the same size and have ground in the same pixels.
+     * @param o The object to compare with.
+     * @return true if o is an equal TerrainGrid.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TerrainGrid)) {
+            return false;
+        }
+        TerrainGrid other = (TerrainGrid) o;
+        return width == other.width && height == other.height && Arrays.equals(words, other.words);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * width + Arrays.hashCode(words);
+    }
+
+    private void checkBounds(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            throw new IndexOutOfBoundsException("Pixel " + x + ", " + y + " is outside of the terrain");
+        }
+    }
+}
@@ -3,8 +3,6 @@ package com.game.weapon;
 import com.game.object.ClusterBomb;
 import com.game.object.Projectile;
 import com.game.physics.Coord;
-
-import javafx.scene.image.Image;
 //Fires a bomb that deals little damage but that launches multiple little bombs on impact
 public class ClusterLauncher extends Weapon{
 	
@@ -4,8 +4,6 @@ import com.game.object.Grenade;
 import com.game.object.Projectile;
 import com.game.physics.Coord;
 
-import javafx.scene.image.Image;
-
 //Has a bigger radius than the Rocket launcher but deals less damage
 public class GrenadeLauncher extends Weapon{
 	
@@ -4,8 +4,6 @@ import com.game.object.Projectile;
 import com.game.object.Rocket;
 import com.game.physics.Coord;
 
-import javafx.scene.image.Image;
-
 //Most common weapon. Deals a lot of damage on a direct hit, but has a small explosion radius
 public class RocketLauncher extends Weapon {
     public RocketLauncher(int ammo) {
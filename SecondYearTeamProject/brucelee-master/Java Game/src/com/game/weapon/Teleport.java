@@ -4,8 +4,6 @@ import com.game.object.Projectile;
 import com.game.object.Teleporter;
 import com.game.physics.Coord;
 
-import javafx.scene.image.Image;
-
 //Teleports the player to where the projectile lands. Used for positioning and not damage
 public class Teleport extends Weapon{
 	public Teleport(int ammo) {
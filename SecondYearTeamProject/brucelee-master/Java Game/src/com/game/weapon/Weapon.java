@@ -2,8 +2,6 @@ package com.game.weapon;
 
 import com.game.object.Projectile;
 import com.game.physics.Coord;
-import com.game.sound.SoundEffect;
-import javafx.scene.image.Image;
 
 /**
  * An abstract class that stores all the variables and methods that any weapon
@@ -17,7 +15,7 @@ public abstract class Weapon {
 	private double maxRange;
 	private int ammo;
 	private boolean firesBullet;
-	private static int dropRarity;
+	private int dropRarity;
 
 	protected String name;
 
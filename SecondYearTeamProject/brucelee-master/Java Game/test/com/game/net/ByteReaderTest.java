@@ -0,0 +1,64 @@
+package com.game.net;
+
+import javafx.scene.input.KeyCode;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ByteReaderTest {
+
+    @Test
+    public void getInt() {
+        byte[] data = new byte[]{5, (byte) 0xFF, (byte) 0xFE, 0x1D, (byte) 0xC0};
+        assertEquals(ByteUtils.getInt(data, 1), ByteReader.getInt(data, 1));
+    }
+
+    @Test
+    public void getShort() {
+        byte[] data = new byte[]{5, 0, 0, (byte) 0x80, 1};
+        assertEquals(ByteUtils.getShort(data, 3), ByteReader.getShort(data, 3));
+    }
+
+    @Test
+    public void getLong() {
+        byte[] data = new byte[]{5, (byte) 0x80, 0, 0, 0, (byte) 0xFF, 0, 0, 1};
+        assertEquals(ByteUtils.getLong(data, 1), ByteReader.getLong(data, 1));
+    }
+
+    @Test
+    public void getKeyCode() {
+        for (byte b = 0; b < 0x60; b++) {
+            assertEquals(new ByteUtils().getKeyCode(b), ByteReader.getKeyCode(b));
+        }
+        assertNull(ByteReader.getKeyCode((byte) 0x7F));
+    }
+
+    @Test
+    public void readFields() {
+        ByteWriter byteWriter = new ByteWriter();
+        byteWriter.write((byte) 3);
+        byteWriter.write((short) -7);
+        byteWriter.write(70000);
+        byteWriter.write(1234567890123L);
+        byteWriter.write(true);
+        byteWriter.write(false);
+        byteWriter.write("EU1234");
+        byteWriter.write("Robert");
+        byteWriter.write(KeyCode.W);
+
+        ByteReader reader = new ByteReader(byteWriter.getBuffer(), 0);
+        assertEquals(3, reader.readByte());
+        assertEquals(-7, reader.readShort());
+        assertEquals(70000, reader.readInt());
+        assertEquals(1234567890123L, reader.readLong());
+        assertTrue(reader.readBoolean());
+        assertFalse(reader.readBoolean());
+        assertEquals("EU1234", reader.readString());
+        assertEquals("Robert", reader.readString());
+        assertEquals(KeyCode.W, reader.readKeyCode());
+        assertEquals(byteWriter.size(), reader.position());
+    }
+}
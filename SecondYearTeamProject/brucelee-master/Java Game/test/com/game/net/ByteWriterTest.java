@@ -0,0 +1,66 @@
+package com.game.net;
+
+import javafx.scene.input.KeyCode;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class ByteWriterTest {
+
+    private ByteWriter byteWriter;
+    private ByteUtils byteUtils;
+
+    @Before
+    public void init() {
+        byteWriter = new ByteWriter(4);
+        byteUtils = new ByteUtils();
+    }
+
+    @Test
+    public void sameBytesAsByteUtils() {
+        byteWriter.write((byte) 7);
+        byteUtils.write((byte) 7);
+        byteWriter.write(new byte[]{1, 2});
+        byteUtils.write(new byte[]{1, 2});
+        byteWriter.write(-123456);
+        byteUtils.write(-123456);
+        byteWriter.write((short) -2);
+        byteUtils.write((short) -2);
+        byteWriter.write(Long.MIN_VALUE + 5);
+        byteUtils.write(Long.MIN_VALUE + 5);
+        byteWriter.write("Robert");
+        byteUtils.write("Robert");
+        byteWriter.write(false);
+        byteUtils.write(false);
+        byteWriter.write(KeyCode.DIGIT2);
+        byteUtils.write(KeyCode.DIGIT2);
+        assertArrayEquals(byteUtils.getBuffer(), byteWriter.getBuffer());
+    }
+
+    @Test
+    public void writeNonAsciiString() {
+        byteWriter.write("abé");
+        byteUtils.write("abé");
+        assertArrayEquals(byteUtils.getBuffer(), byteWriter.getBuffer());
+    }
+
+    @Test
+    public void flushKeepsArray() {
+        byteWriter.write(new byte[]{1, 2, 3, 4, 5, 6});
+        byte[] array = byteWriter.array();
+        byteWriter.flush();
+        assertEquals(0, byteWriter.size());
+        byteWriter.write((short) 1);
+        assertSame(array, byteWriter.array());
+        assertArrayEquals(new byte[]{0, 1}, byteWriter.getBuffer());
+    }
+
+    @Test
+    public void writeRange() {
+        byteWriter.write(new byte[]{1, 2, 3, 4, 5}, 1, 3);
+        assertArrayEquals(new byte[]{2, 3, 4}, byteWriter.getBuffer());
+    }
+}
@@ -41,34 +41,36 @@ public class ClientTest {
 
         private void listen(Socket clientSocket) {
             InputStream inputStream;
+            FrameCodec decoder = new FrameCodec();
             connected = true;
             try {
                 inputStream = clientSocket.getInputStream();
-                byte[] data = new byte[32];
-                while (!clientSocket.isClosed()) {
-                    inputStream.read(data);
-                    switch (data[2]) {
-                        case MessageHeaders.CONNECTION:
-                            connected = true;
-                            break;
-                        case MessageHeaders.CREATE_SERVER:
-                            gameCreated = true;
-                            break;
-                        case MessageHeaders.JOIN_SERVER:
-                            gameJoined = true;
-                            break;
-                        case MessageHeaders.LEADERBOARD:
-                            leaderboard = true;
-                            break;
-                        case MessageHeaders.LEAVE_GAME:
-                            leaveGame = true;
-                            break;
-                        case MessageHeaders.SERVERS_LIST:
-                            serversList = true;
-                            System.out.println("hererere");
-                            break;
-                        default:
-                            break;
+                byte[] data;
+                while (!clientSocket.isClosed() && decoder.read(inputStream) >= 0) {
+                    while ((data = decoder.nextMessage()) != null) {
+                        switch (data[2]) {
+                            case MessageHeaders.CONNECTION:
+                                connected = true;
+                                break;
+                            case MessageHeaders.CREATE_SERVER:
+                                gameCreated = true;
+                                break;
+                            case MessageHeaders.JOIN_SERVER:
+                                gameJoined = true;
+                                break;
+                            case MessageHeaders.LEADERBOARD:
+                                leaderboard = true;
+                                break;
+                            case MessageHeaders.LEAVE_GAME:
+                                leaveGame = true;
+                                break;
+                            case MessageHeaders.SERVERS_LIST:
+                                serversList = true;
+                                System.out.println("hererere");
+                                break;
+                            default:
+                                break;
+                        }
                     }
                 }
             } catch (IOException e) {
@@ -0,0 +1,111 @@
+package com.game.net;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class FrameCodecTest {
+
+    private FrameCodec decoder;
+    private byte[] message = new byte[]{0x12, 0x11, MessageHeaders.INPUT_PACKET, 65};
+    private byte[] otherMessage = new byte[]{0x12, 0x11, MessageHeaders.GAME_STATE, 1, 2, 3, 4, 5};
+
+    @Before
+    public void init() {
+        decoder = new FrameCodec(new BufferPool(BufferPool.BUFFER_SIZE, 1));
+    }
+
+    @After
+    public void release() {
+        decoder.release();
+    }
+
+    @Test
+    public void encode() {
+        byte[] actualResult = new byte[]{0x12, 0x11, 0, 2, MessageHeaders.INPUT_PACKET, 65};
+        assertArrayEquals(actualResult, FrameCodec.encode(message));
+        assertEquals(actualResult.length, FrameCodec.frameLength(message));
+    }
+
+    @Test
+    public void encodeToBuffer() {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        FrameCodec.encode(message, buffer);
+        FrameCodec.encode(otherMessage, buffer);
+        assertEquals(FrameCodec.frameLength(message) + FrameCodec.frameLength(otherMessage), buffer.position());
+    }
+
+    @Test
+    public void decodeSingleMessage() throws IOException {
+        byte[] frame = FrameCodec.encode(message);
+        decoder.feed(frame, 0, frame.length);
+        assertArrayEquals(message, decoder.nextMessage());
+        assertNull(decoder.nextMessage());
+    }
+
+    @Test
+    public void decodeSplitMessage() throws IOException {
+        byte[] frame = FrameCodec.encode(otherMessage);
+        for (int i = 0; i < frame.length - 1; i++) {
+            decoder.feed(frame, i, 1);
+            assertNull(decoder.nextMessage());
+        }
+        decoder.feed(frame, frame.length - 1, 1);
+        assertArrayEquals(otherMessage, decoder.nextMessage());
+    }
+
+    @Test
+    public void decodeCoalescedMessages() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        FrameCodec.encode(message, buffer);
+        FrameCodec.encode(otherMessage, buffer);
+        FrameCodec.encode(message, buffer);
+        decoder.read(new ByteArrayInputStream(buffer.array(), 0, buffer.position()));
+        assertArrayEquals(message, decoder.nextMessage());
+        assertArrayEquals(otherMessage, decoder.nextMessage());
+        assertArrayEquals(message, decoder.nextMessage());
+        assertNull(decoder.nextMessage());
+    }
+
+    @Test
+    public void decodeAcrossCompaction() throws IOException {
+        byte[] first = FrameCodec.encode(message);
+        byte[] second = FrameCodec.encode(otherMessage);
+        byte[] stream = new byte[first.length + second.length];
+        System.arraycopy(first, 0, stream, 0, first.length);
+        System.arraycopy(second, 0, stream, first.length, second.length);
+
+        decoder.feed(stream, 0, first.length + 3);
+        assertArrayEquals(message, decoder.nextMessage());
+        assertNull(decoder.nextMessage());
+        decoder.feed(stream, first.length + 3, second.length - 3);
+        assertArrayEquals(otherMessage, decoder.nextMessage());
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidHeader() throws IOException {
+        byte[] frame = new byte[]{0x13, 0x11, 0, 1, 0x01};
+        decoder.feed(frame, 0, frame.length);
+        decoder.nextMessage();
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidLength() throws IOException {
+        byte[] frame = new byte[]{0x12, 0x11, (byte) 0xFF, (byte) 0xFF, 0x01};
+        decoder.feed(frame, 0, frame.length);
+        decoder.nextMessage();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void encodeEmptyMessage() {
+        FrameCodec.encode(MessageHeaders.PACKET_HEADER);
+    }
+}
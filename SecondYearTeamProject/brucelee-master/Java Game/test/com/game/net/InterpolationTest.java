@@ -0,0 +1,118 @@
+package com.game.net;
+
+import com.game.physics.Coord;
+import com.game.physics.Robot;
+import com.game.state.Loadout;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+public class InterpolationTest {
+
+    private static final long INTERVAL = Interpolation.SNAPSHOT_INTERVAL;
+    private static final long DELAY = 3 * INTERVAL;
+
+    private Interpolation interpolation;
+    private ArrayList<Robot> server;
+    private ArrayList<Robot> client;
+
+    @Before
+    public void init() {
+        interpolation = new Interpolation(DELAY, 2);
+        server = new ArrayList<>();
+        client = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            server.add(new Robot(50, 23, new Coord(100, 200), new Loadout(), i));
+            client.add(new Robot(50, 23, new Coord(100, 200), new Loadout(), i));
+        }
+    }
+
+    /**
+     * Adds the game state in which the first robot is at the given x.
+     */
+    private void add(int sequence, long arrival, int x) {
+        server.get(0).setXPos(x);
+        ByteWriter writer = new ByteWriter();
+        Serializer.serializeRobots(server, writer);
+        interpolation.add(sequence, arrival, writer.getBuffer());
+    }
+
+    @Test
+    public void testInterpolates() {
+        for (int i = 0; i < 10; i++) {
+            add(i, i * INTERVAL, 100 + 10 * i);
+        }
+        // Between the game states of the delay before
+        interpolation.apply(9 * INTERVAL, client, null);
+        assertEquals(160, client.get(0).getXPos(), 0.5);
+        interpolation.apply(9 * INTERVAL + INTERVAL / 2, client, null);
+        assertEquals(100 + 10 * 6 + 5, client.get(0).getXPos(), 0.5);
+        // The robots are not drawn back in time
+        interpolation.apply(8 * INTERVAL, client, null);
+        assertEquals(165, client.get(0).getXPos(), 0.5);
+        assertEquals(200, client.get(0).getYPos(), 0);
+        assertEquals(100, client.get(1).getXPos(), 0);
+    }
+
+    @Test
+    public void testSmoothsJitter() {
+        // The game states arrive up to half an interval early or late
+        long[] jitter = {0, INTERVAL / 2, -INTERVAL / 3, INTERVAL / 4, 0, -INTERVAL / 2, INTERVAL / 2, 0};
+        // The robot keeps moving forward at a steady pace in the frames between them
+        double last = -1;
+        for (int i = 0; i < 40; i++) {
+            add(i, i * INTERVAL + jitter[i % jitter.length], 10 * i);
+            for (int frame = 0; frame < 2; frame++) {
+                interpolation.apply(i * INTERVAL + frame * INTERVAL / 2, client, null);
+                double x = client.get(0).getXPos();
+                if (i > 5) {
+                    assertTrue(x >= last);
+                    assertEquals(5, x - last, 2);
+                }
+                last = x;
+            }
+        }
+    }
+
+    @Test
+    public void testExtrapolates() {
+        add(0, 0, 100);
+        add(1, INTERVAL, 110);
+        // Late game states are covered for a while by going on the same way
+        interpolation.apply(2 * INTERVAL + DELAY, client, null);
+        assertEquals(120, client.get(0).getXPos(), 0.5);
+        interpolation.apply(100 * INTERVAL, client, null);
+        assertEquals(110 + 10 * Interpolation.MAX_EXTRAPOLATION / INTERVAL, client.get(0).getXPos(), 0.5);
+    }
+
+    @Test
+    public void testSkipsPredictedRobot() {
+        add(0, 0, 100);
+        add(1, INTERVAL, 300);
+        client.get(0).setXPos(50);
+        interpolation.apply(INTERVAL + DELAY, client, client.get(0));
+        assertEquals(50, client.get(0).getXPos(), 0);
+    }
+
+    @Test
+    public void testSequenceWraps() {
+        int first = SnapshotHistory.SEQUENCE_MODULO - 2;
+        for (int i = 0; i < 4; i++) {
+            add((first + i) % SnapshotHistory.SEQUENCE_MODULO, i * INTERVAL, 100 + 10 * i);
+        }
+        interpolation.apply(3 * INTERVAL + DELAY - INTERVAL / 2 - INTERVAL, client, null);
+        assertEquals(115, client.get(0).getXPos(), 0.5);
+    }
+
+    @Test
+    public void testClear() {
+        add(0, 0, 100);
+        interpolation.clear();
+        client.get(0).setXPos(50);
+        interpolation.apply(DELAY, client, null);
+        assertEquals(50, client.get(0).getXPos(), 0);
+    }
+}
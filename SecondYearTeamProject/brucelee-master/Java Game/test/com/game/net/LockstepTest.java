@@ -0,0 +1,205 @@
+package com.game.net;
+
+import com.game.state.Input;
+import com.game.state.Loadout;
+import com.game.state.Simulation;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LockstepTest {
+
+    private static final long SEED = 7;
+
+    private Simulation server;
+    private Simulation client;
+    private Lockstep lockstep;
+    private ByteWriter inputLog;
+
+    private static Loadout[] loadouts() {
+        Loadout[] loadouts = new Loadout[Simulation.noTeams * Simulation.teamSize];
+        for (int i = 0; i < loadouts.length; i++) {
+            loadouts[i] = new Loadout();
+        }
+        return loadouts;
+    }
+
+    @Before
+    public void init() {
+        // Set up the way the GameServer sets up its game
+        server = new Simulation(false, false, loadouts());
+        server.createGameWorld(SEED);
+        server.setRandomGravity(false);
+        server.init();
+        client = new Simulation(false, true, new Loadout[0]);
+        lockstep = new Lockstep(client, 1, SEED, false, loadouts());
+        lockstep.start();
+        inputLog = new ByteWriter();
+    }
+
+    /**
+     * The inputs of a player who walks, aims, fires and ends the turn, over and over.
+     */
+    private static Input script(int tick) {
+        int t = tick % 60;
+        if (t < 15)
+            return tick / 60 % 2 == 0 ? Input.RIGHT : Input.LEFT;
+        if (t < 20)
+            return Input.ANGLE_UP;
+        if (t == 20)
+            return Input.FIRE;
+        if (t % 10 == 0)
+            return Input.END_TURN;
+        return null;
+    }
+
+    /**
+     * Plays ticks of the server, relaying the inputs of the script to the client unless they are
+     * dropped, and advances the client by the same time.
+     */
+    private void play(int ticks, int dropTick) {
+        for (int i = 0; i < ticks; i++) {
+            Input input = script(server.getTick());
+            if (input != null) {
+                int tick = server.getTick() + Lockstep.INPUT_DELAY;
+                server.schedule(tick, server.whosTurn, input);
+                Lockstep.writeInput(tick, server.whosTurn, input, inputLog);
+                if (server.getTick() != dropTick)
+                    lockstep.inputReceived(tick, server.whosTurn, input);
+            }
+            server.step(Simulation.TIME_STEP);
+            if (server.getTick() % Lockstep.SYNC_INTERVAL == 0)
+                lockstep.checksumReceived(server.getTick(), server.checksum());
+            lockstep.advance(Simulation.TIME_STEP);
+        }
+    }
+
+    @Test
+    public void testStart() {
+        assertEquals(server.checksum(), client.checksum());
+        assertEquals(server.getGravity(), client.getGravity(), 0.001);
+    }
+
+    @Test
+    public void testStaysInSync() {
+        play(900, -1);
+        assertTrue(server.turnNumber > 2);
+        assertFalse(lockstep.needsResync());
+        assertEquals(server.getTick(), client.getTick());
+        assertEquals(server.checksum(), client.checksum());
+        assertEquals(server.turnNumber, client.turnNumber);
+    }
+
+    @Test
+    public void testWaitsForTheServer() {
+        // Without any message from the server, the client cannot go past the delay of the inputs
+        for (int i = 0; i < 20; i++) {
+            lockstep.advance(1);
+        }
+        assertEquals(Lockstep.INPUT_DELAY, client.getTick());
+        lockstep.checksumReceived(2, server.checksum());
+        lockstep.advance(1);
+        assertEquals(2 + Lockstep.INPUT_DELAY, client.getTick());
+    }
+
+    @Test
+    public void testCatchesUp() {
+        lockstep.checksumReceived(40, 0);
+        // Behind the server, it takes the most steps it can without waiting for the time
+        assertEquals(5, lockstep.advance(0));
+        assertEquals(5, client.getTick());
+    }
+
+    @Test
+    public void testLateInput() {
+        lockstep.advance(1);
+        assertEquals(Lockstep.INPUT_DELAY, client.getTick());
+        lockstep.inputReceived(2, 0, Input.FIRE);
+        lockstep.advance(0);
+        assertTrue(lockstep.needsResync());
+        lockstep.resyncRequested();
+        assertFalse(lockstep.needsResync());
+    }
+
+    @Test
+    public void testResync() {
+        // The client misses an input that turns the aim
+        play(200, 15);
+        assertTrue(lockstep.needsResync());
+        lockstep.resyncRequested();
+        assertNotEquals(server.checksum(), client.checksum());
+
+        lockstep.resyncReceived(inputLog.getBuffer(), 0, true);
+        play(300, -1);
+        assertFalse(lockstep.needsResync());
+        assertEquals(server.getTick(), client.getTick());
+        assertEquals(server.checksum(), client.checksum());
+    }
+
+    @Test
+    public void testReplayIsSpreadOverFrames() {
+        play(700, 15);
+        assertTrue(lockstep.needsResync());
+        lockstep.resyncRequested();
+        int[] events = new int[1];
+        client.setListener(event -> events[0]++);
+
+        lockstep.resyncReceived(inputLog.getBuffer(), 0, true);
+        assertEquals(Lockstep.REPLAY_STEPS, lockstep.advance(0));
+        assertEquals(Lockstep.REPLAY_STEPS, client.getTick());
+        assertTrue(lockstep.isReplaying());
+        assertFalse(lockstep.needsResync());
+        while (lockstep.isReplaying()) {
+            assertTrue(lockstep.advance(0) <= Lockstep.REPLAY_STEPS);
+        }
+        // Nothing of the replay is shown, and the listener is given back once it has caught up
+        assertEquals(0, events[0]);
+        assertNotNull(client.getListener());
+
+        play(300, -1);
+        assertFalse(lockstep.needsResync());
+        assertEquals(server.getTick(), client.getTick());
+        assertEquals(server.checksum(), client.checksum());
+    }
+
+    @Test
+    public void testReplayThatDoesNotConverge() {
+        play(200, 15);
+        int requests = 0;
+        int lastRequest = -1;
+        for (int i = 0; i < 3000; i++) {
+            if (lockstep.needsResync()) {
+                if (lastRequest >= 0)
+                    assertTrue(client.getTick() - lastRequest >= Lockstep.RESYNC_COOLDOWN);
+                lastRequest = client.getTick();
+                requests++;
+                lockstep.resyncRequested();
+                // The replay never comes out like the game of the server, as when the client is not deterministic
+                lockstep.resyncReceived(new byte[0], 0, true);
+            }
+            play(1, -1);
+        }
+        // The first resync, and MAX_RESYNCS more that were asked for soon after the last one
+        assertEquals(Lockstep.MAX_RESYNCS + 1, requests);
+        assertFalse(lockstep.needsResync());
+        assertEquals(server.getTick(), client.getTick());
+        assertNotEquals(server.checksum(), client.checksum());
+    }
+
+    @Test
+    public void testResult() {
+        lockstep.serverEnded(1);
+        lockstep.advance(0);
+        assertEquals(1, client.gameResult);
+        // The result of the game of the client is turned into the result for this player
+        init();
+        client.gameResult = 1;
+        lockstep.advance(0);
+        assertEquals(0, client.gameResult);
+        init();
+        client.gameResult = 0;
+        lockstep.advance(0);
+        assertEquals(1, client.gameResult);
+    }
+}
@@ -0,0 +1,150 @@
+package com.game.net;
+
+import com.game.physics.Robot;
+import com.game.state.Input;
+import com.game.state.Loadout;
+import com.game.state.Simulation;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+
+import static org.junit.Assert.*;
+
+public class PredictionTest {
+
+    private static final long SEED = 1;
+    // The inputs that are on their way to the server
+    private static final int LATENCY = 4;
+
+    private Simulation server;
+    private Simulation client;
+    private Prediction prediction;
+    private ArrayDeque<Input> inFlight;
+    private int taken;
+
+    private static Loadout[] loadouts() {
+        Loadout[] loadouts = new Loadout[Simulation.noTeams * Simulation.teamSize];
+        for (int i = 0; i < loadouts.length; i++) {
+            loadouts[i] = new Loadout();
+        }
+        return loadouts;
+    }
+
+    @Before
+    public void init() {
+        server = new Simulation(false, false, loadouts());
+        server.createGameWorld(SEED);
+        server.init();
+        for (int i = 0; i < 200 && server.getCurrentChar().getFalling(); i++) {
+            server.step(Simulation.TIME_STEP);
+        }
+        // Set up the way the Client sets up the game it is sent
+        client = new Simulation(false, true, new Loadout[0]);
+        client.createGameWorld(SEED);
+        client.setRobots(Serializer.deserializeRobots(Serializer.serializeRobots(server.getRobots())));
+        client.initOnline(false);
+        client.whosTurn = server.whosTurn;
+        prediction = new Prediction(client, server.whosTurn);
+        inFlight = new ArrayDeque<>();
+        taken = 0;
+        snapshot();
+    }
+
+    /**
+     * Sets the robots of the client to the robots of the server and reconciles, as for a game state.
+     */
+    private void snapshot() {
+        for (int i = 0; i < server.getRobots().size(); i++) {
+            Robot from = server.getRobots().get(i);
+            Robot to = client.getRobots().get(i);
+            to.setXPos((short) from.getXPos());
+            to.setYPos((short) from.getYPos());
+            to.setAngle(from.getAngle());
+            to.setPower(from.getPower());
+            to.setEnergy(from.getEnergy());
+        }
+        client.setCurrentCharacter(client.getRobots().get(server.getRobots().indexOf(server.getCurrentChar())));
+        prediction.reconcile(taken);
+    }
+
+    /**
+     * Plays a tick of the server, which takes the oldest input on its way, and sends a game state.
+     */
+    private void tick() {
+        if (inFlight.size() > LATENCY) {
+            server.apply(inFlight.poll());
+            taken++;
+        }
+        server.step(Simulation.TIME_STEP);
+        snapshot();
+    }
+
+    private void send(Input input) {
+        inFlight.add(input);
+        prediction.sent(input);
+    }
+
+    @Test
+    public void testMovesAtOnce() {
+        double x = client.getCurrentChar().getXPos();
+        send(Input.RIGHT);
+        assertTrue(client.getCurrentChar().getXPos() > x);
+        int angle = client.getCurrentChar().getAngle();
+        send(Input.ANGLE_UP);
+        assertEquals(angle + 1, client.getCurrentChar().getAngle());
+        assertEquals(2, prediction.getPending());
+    }
+
+    @Test
+    public void testKeepsInputsOnTheirWay() {
+        int angle = server.getCurrentChar().getAngle();
+        for (int i = 0; i < 10; i++) {
+            send(Input.ANGLE_UP);
+            tick();
+        }
+        // The server is LATENCY inputs behind, but the client shows all of them
+        assertEquals(angle + 10 - LATENCY, server.getCurrentChar().getAngle());
+        assertEquals(angle + 10, client.getCurrentChar().getAngle());
+        assertEquals(LATENCY, prediction.getPending());
+        for (int i = 0; i < LATENCY; i++) {
+            send(Input.FIRE);
+            tick();
+        }
+        assertEquals(angle + 10, server.getCurrentChar().getAngle());
+        assertEquals(angle + 10, client.getCurrentChar().getAngle());
+    }
+
+    @Test
+    public void testMatchesTheServer() {
+        for (int i = 0; i < 10; i++) {
+            send(Input.RIGHT);
+            tick();
+        }
+        Robot robot = client.getCurrentChar();
+        assertTrue(robot.getXPos() > server.getCurrentChar().getXPos());
+        // Once the server has taken every input, the client is where the server is
+        while (!inFlight.isEmpty()) {
+            server.apply(inFlight.poll());
+            taken++;
+            server.step(Simulation.TIME_STEP);
+        }
+        snapshot();
+        assertEquals(0, prediction.getPending());
+        assertEquals((int) server.getCurrentChar().getXPos(), (int) robot.getXPos());
+        assertEquals((int) server.getCurrentChar().getYPos(), (int) robot.getYPos());
+    }
+
+    @Test
+    public void testOnlyOnItsTurn() {
+        client.whosTurn = 1 - client.whosTurn;
+        double x = client.getCurrentChar().getXPos();
+        send(Input.RIGHT);
+        assertEquals(x, client.getCurrentChar().getXPos(), 0);
+        // The input is still counted, since the server drops it
+        assertEquals(1, prediction.getPending());
+        taken = 1;
+        snapshot();
+        assertEquals(0, prediction.getPending());
+    }
+}
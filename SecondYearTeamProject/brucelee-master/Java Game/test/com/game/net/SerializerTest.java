@@ -144,6 +144,50 @@ public class SerializerTest {
         }
     }
 
+    @Test
+    public void serializeRobotsKeyframe() {
+        ArrayList<Robot> robots = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            robots.add(new Robot(50, 23, new Coord(400 + i, 0), new Loadout(), i));
+        }
+        byte[] serializedRobots = Serializer.serializeRobots(robots);
+        byte[] delta = Serializer.serializeRobotsDelta(null, serializedRobots);
+        byte[] result = new byte[serializedRobots.length];
+        int end = Serializer.applyRobotsDelta(delta, 0, result);
+        assertEquals(delta.length, end);
+        assertArrayEquals(serializedRobots, result);
+    }
+
+    @Test
+    public void serializeRobotsDeltaUnchanged() {
+        ArrayList<Robot> robots = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            robots.add(new Robot(50, 23, new Coord(400, 0), new Loadout(), i));
+        }
+        byte[] serializedRobots = Serializer.serializeRobots(robots);
+        byte[] delta = Serializer.serializeRobotsDelta(serializedRobots, serializedRobots.clone());
+        assertArrayEquals(new byte[]{0}, delta);
+    }
+
+    @Test
+    public void serializeRobotsDelta() {
+        ArrayList<Robot> robots = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            robots.add(new Robot(50, 23, new Coord(400, 0), new Loadout(), i));
+        }
+        byte[] baseline = Serializer.serializeRobots(robots);
+        robots.get(1).setXPos(650);
+        robots.get(1).setAngle(60);
+        byte[] serializedRobots = Serializer.serializeRobots(robots);
+
+        byte[] delta = Serializer.serializeRobotsDelta(baseline, serializedRobots);
+        // count, index, 2 byte mask, 2 bytes of x and 2 bytes of angle
+        assertEquals(8, delta.length);
+        byte[] result = baseline.clone();
+        Serializer.applyRobotsDelta(delta, 0, result);
+        assertArrayEquals(serializedRobots, result);
+    }
+
     @Test
     public void deserializeGameServer() {
         GameServer deserializedGameServer = Serializer.deserializeGameServer(new byte[]
@@ -157,7 +201,8 @@ public class SerializerTest {
     @Test
     public void deserializeGameServers() {
         ArrayList<GameServer> gameServers = Serializer.deserializeGameServers(new byte[]
-                {3, 1, 69, 85, 49, 50, 51, 52, 0, 82, 111, 98, 101, 114, 116, 0,
+                {0, 0, 0, 3, 0, 0, 0, 0, 0, 3,
+                        1, 69, 85, 49, 50, 51, 52, 0, 82, 111, 98, 101, 114, 116, 0,
                         2, 85, 83, 55, 55, 55, 55, 0, 75, 97, 105, 0,
                         1, 65, 83, 73, 65, 50, 53, 48, 0, 74, 101, 114, 114, 121, 0}, 0);
         ArrayList<GameServer> actualResult = new ArrayList<>();
@@ -185,16 +230,56 @@ public class SerializerTest {
 
     @Test
     public void deserializeLeaderboard() {
-        ArrayList<Player> leaderboard = Serializer.deserializeLeaderboard(new byte[]{
-                2, 8, 6, 1, 82, 111, 98, 101, 114, 116, 0, 4, 4, 0, 75, 97, 105, 0}, 0);
+        ByteWriter page = new ByteWriter();
+        page.write(1000000);
+        page.write(299);
+        page.write((short) 2);
+        page.write(300);
+        page.write(6);
+        page.write(1);
+        page.write("Robert");
+        page.write(4);
+        page.write(4);
+        page.write(0);
+        page.write("Kai");
+        ArrayList<Player> leaderboard = Serializer.deserializeLeaderboard(page.getBuffer(), 0);
         ArrayList<Player> actualResult = new ArrayList<>();
-        actualResult.add(new Player("Robert", 8, 6, 1));
+        actualResult.add(new Player("Robert", 300, 6, 1));
         actualResult.add(new Player("Kai", 4, 4, 0));
+        assertEquals(2, leaderboard.size());
         for (int i = 0; i < 2; i++) {
             assertEquals(leaderboard.get(i).getUsername(), actualResult.get(i).getUsername());
             assertEquals(leaderboard.get(i).getWins(), actualResult.get(i).getWins());
             assertEquals(leaderboard.get(i).getLoses(), actualResult.get(i).getLoses());
             assertEquals(leaderboard.get(i).getDraws(), actualResult.get(i).getDraws());
+            assertEquals(300 + i, leaderboard.get(i).getPosition());
         }
     }
+
+    @Test
+    public void applyGameServerUpdates() {
+        ArrayList<GameServer> page = new ArrayList<>();
+        page.add(new GameServer("alpha", 1, "Robert"));
+        page.add(new GameServer("charlie", 1, "Kai"));
+        ByteWriter updates = new ByteWriter();
+        updates.write(300);
+        updates.write((short) 3);
+        updates.write(MessageHeaders.SERVER_ADDED);
+        updates.write((byte) 1);
+        updates.write("bravo");
+        updates.write("Guest");
+        updates.write(MessageHeaders.SERVER_UPDATED);
+        updates.write((byte) 2);
+        updates.write("alpha");
+        updates.write("Robert");
+        updates.write(MessageHeaders.SERVER_REMOVED);
+        updates.write("charlie");
+
+        assertEquals(300, Serializer.applyGameServerUpdates(page, updates.getBuffer(), 0));
+        assertEquals(2, page.size());
+        assertEquals("alpha", page.get(0).getName());
+        assertEquals(2, page.get(0).getCapacity());
+        assertEquals("bravo", page.get(1).getName());
+        assertEquals("Guest", page.get(1).getHostName());
+    }
 }
\ No newline at end of file
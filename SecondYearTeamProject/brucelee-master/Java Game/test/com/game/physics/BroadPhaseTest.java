@@ -0,0 +1,70 @@
+package com.game.physics;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BroadPhaseTest {
+
+	@Test
+	public void testQuery() {
+		BroadPhase phase = new BroadPhase();
+		phase.add(new AABB(100, 100, 23, 50), 0);
+		phase.add(new AABB(10, 100, 23, 50), 1);
+		phase.add(new AABB(300, 40, 40, 40), 2);
+		int[] out = new int[3];
+		assertEquals(1, phase.query(new AABB(110, 140, 10, 10), out));
+		assertEquals(0, out[0]);
+		// Boxes that only touch at an edge do not overlap
+		assertEquals(0, phase.query(new AABB(123, 100, 10, 10), out));
+		assertEquals(0, phase.query(new AABB(200, 300, 10, 10), out));
+		// The ids come back in ascending order
+		assertEquals(3, phase.query(new AABB(0, 0, 400, 400), out));
+		assertArrayEquals(new int[] { 0, 1, 2 }, out);
+	}
+
+	@Test
+	public void testEmptyBoxes() {
+		BroadPhase phase = new BroadPhase();
+		phase.add(new AABB(100, 100, 0, 50), 0);
+		assertEquals(0, phase.size());
+		phase.add(new AABB(100, 100, 10, 10), 1);
+		assertEquals(0, phase.query(new AABB(100, 100, 0, 10), new int[1]));
+	}
+
+	@Test
+	public void testMatchesAABB() {
+		Random random = new Random(3);
+		BroadPhase phase = new BroadPhase();
+		AABB[] boxes = new AABB[40];
+		for (int i = 0; i < boxes.length; i++) {
+			boxes[i] = new AABB(random.nextInt(1800), random.nextInt(900), 1 + random.nextInt(60), 1 + random.nextInt(60));
+			phase.add(boxes[i], i);
+		}
+		int[] out = new int[boxes.length];
+		for (int q = 0; q < 500; q++) {
+			AABB query = new AABB(random.nextInt(1800) + random.nextDouble(), random.nextInt(900), 1 + random.nextInt(30),
+					1 + random.nextInt(30));
+			int found = phase.query(query, out);
+			int expected = 0;
+			for (int i = 0; i < boxes.length; i++) {
+				if (query.intersects(boxes[i])) {
+					assertEquals(i, out[expected]);
+					expected++;
+				}
+			}
+			assertEquals(expected, found);
+		}
+	}
+
+	@Test
+	public void testClear() {
+		BroadPhase phase = new BroadPhase();
+		phase.add(new AABB(0, 0, 10, 10), 0);
+		phase.clear();
+		assertEquals(0, phase.size());
+		assertEquals(0, phase.query(new AABB(0, 0, 10, 10), new int[1]));
+	}
+}
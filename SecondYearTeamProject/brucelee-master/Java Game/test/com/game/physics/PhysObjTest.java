@@ -8,8 +8,6 @@ import org.junit.Test;
 
 import com.game.state.GameState;
 
-import javafx.scene.shape.Rectangle;
-
 public class PhysObjTest {
 
 	PhysicsObject obj;
@@ -94,7 +92,7 @@ public class PhysObjTest {
 	@Test
 	public void testCollisionBox() {
 		obj.yPos = 0;
-		Rectangle result = obj.getCollisionBox();
+		AABB result = obj.getCollisionBox();
 		assertEquals(200, result.getX(), 0.001);
 		assertEquals(0, result.getY(), 0.001);
 	}
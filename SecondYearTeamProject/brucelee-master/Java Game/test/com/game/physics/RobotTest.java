@@ -169,9 +169,8 @@ public class RobotTest {
 	@Test
 	public void testPickupSupplies() {
 		Random rand = new Random(0);
-		r.r = rand;
 		r.setHealth(50);
-		r.pickupSupplies();
+		r.pickupSupplies(rand);
 		r.setSlot(6);
 		assertEquals(r.getWeapon().getAmmo(), 2);
 		assertEquals(75, r.getHealth());
@@ -212,6 +211,18 @@ public class RobotTest {
 		assertEquals(90.19, r.yVelocity, 0.001);
 	}
 
+	@Test
+	public void testStepYTopOfWorld() {
+		r.setYPos(20);
+		r.yVelocity = 100;
+		r.stepY(w, 1);
+		// Stopped at the top, and gravity starts bringing it back down
+		assertEquals(20, r.yPos, 0.001);
+		assertEquals(-9.81, r.yVelocity, 0.001);
+		r.stepY(w, 1);
+		assertTrue(r.yPos > 20);
+	}
+
 	@Test
 	public void testHasCollisionYFalse() {
 		boolean result = r.hasCollisionY(w);
@@ -0,0 +1,121 @@
+package com.game.state;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.game.net.ByteWriter;
+import com.game.net.Serializer;
+import com.game.physics.Coord;
+import com.game.physics.Robot;
+
+/**
+ * Plays many matches at the same time in one JVM, the way the lobby server runs a GameServer for
+ * every game, and checks that each of them ends exactly like the same match played on its own.
+ */
+public class ConcurrentMatchesTest {
+
+	private static final int MATCHES = 32;
+	private static final int TURNS = 6;
+	private static final long[] SEEDS = { 1, 235132451, 42, 1520000000000L };
+
+	/**
+	 * The terrain and the robots after every turn of a match
+	 */
+	private static class Result {
+		TerrainGrid map;
+		ArrayList<byte[]> robots = new ArrayList<byte[]>();
+	}
+
+	/**
+	 * Plays a match the same way every time: the robots stand at fixed places and each of them
+	 * aims a little higher than the last one before firing.
+	 */
+	private static Result play(long seed) {
+		Loadout[] loadouts = new Loadout[Simulation.noTeams * Simulation.teamSize];
+		for (int i = 0; i < loadouts.length; i++) {
+			loadouts[i] = new Loadout();
+		}
+		Simulation sim = new Simulation(false, false, loadouts);
+		sim.createGameWorld(seed);
+
+		// The same robots that init would make, but without the random spawns
+		ArrayList<Robot> robots = new ArrayList<Robot>();
+		for (int i = 0; i < loadouts.length; i++) {
+			Robot r = new Robot(50, 23, new Coord(150 + 300 * i, 0), loadouts[i], (i / Simulation.teamSize) * 10 + i % Simulation.teamSize);
+			int y = 0;
+			while (!sim.isOnGround(r)) {
+				y += 5;
+				r.setYPos(y);
+			}
+			r.setYPos(y - 5);
+			robots.add(r);
+		}
+		sim.setRobots(robots);
+		sim.initOnline(false);
+
+		Result result = new Result();
+		ByteWriter writer = new ByteWriter();
+		for (int turn = 0; turn < TURNS; turn++) {
+			for (int i = 0; i < 200 && sim.getCurrentChar().getFalling(); i++) {
+				sim.step(Simulation.TIME_STEP);
+			}
+			for (int i = 0; i < turn * 7; i++) {
+				sim.apply(Input.ANGLE_UP);
+			}
+			sim.apply(Input.FIRE);
+			for (int i = 0; i < 1000 && sim.isMovement(); i++) {
+				sim.step(Simulation.TIME_STEP);
+			}
+			sim.endedTurn = false;
+			sim.endTurn(false, 0, turn + 1, (turn + 1) % Simulation.noTeams);
+
+			writer.flush();
+			Serializer.serializeRobots(sim.getRobots(), writer);
+			result.robots.add(Arrays.copyOf(writer.array(), writer.size()));
+		}
+		result.map = sim.getWorld().map;
+		return result;
+	}
+
+	@Test
+	public void testMatchesDoNotShareState() throws Exception {
+		Result[] expected = new Result[SEEDS.length];
+		for (int s = 0; s < SEEDS.length; s++) {
+			expected[s] = play(SEEDS[s]);
+		}
+		// Different seeds must give different worlds, otherwise the test proves nothing
+		assertNotEquals(expected[0].map, expected[1].map);
+
+		ExecutorService executor = Executors.newFixedThreadPool(MATCHES);
+		try {
+			ArrayList<Future<Result>> matches = new ArrayList<Future<Result>>();
+			for (int m = 0; m < MATCHES; m++) {
+				final long seed = SEEDS[m % SEEDS.length];
+				matches.add(executor.submit(new Callable<Result>() {
+					@Override
+					public Result call() {
+						return play(seed);
+					}
+				}));
+			}
+			for (int m = 0; m < MATCHES; m++) {
+				Result actual = matches.get(m).get();
+				Result single = expected[m % SEEDS.length];
+				assertEquals("Terrain of match " + m, single.map, actual.map);
+				for (int turn = 0; turn < TURNS; turn++) {
+					assertArrayEquals("Robots of match " + m + " after turn " + turn, single.robots.get(turn), actual.robots.get(turn));
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
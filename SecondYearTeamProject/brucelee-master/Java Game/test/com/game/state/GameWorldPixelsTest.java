@@ -0,0 +1,102 @@
+package com.game.state;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the colours the world is drawn in. The mapImage needs the JavaFX toolkit, so the pixels are
+ * checked before they are written to it, and these tests run without a display.
+ */
+public class GameWorldPixelsTest {
+
+    @Test
+    public void imageTest() {
+        GameWorld world = new GameWorld(false, 1, true, false);
+        int[] pixels = world.worldPixels();
+        int width = world.getWorldWidth();
+        assertEquals(width * world.getWorldHeight(), pixels.length);
+        int cave = 0;
+        int stars = 0;
+        for(int y = 0; y < world.getWorldHeight(); y++){
+            int ground = 0;
+            for(int x = 0; x < width; x++){
+                int pixel = pixels[y * width + x];
+                if(world.map.isSolid(x, y)){
+                    //the ground is one colour on each row.
+                    if(ground == 0){
+                        ground = pixel;
+                    }
+                    assertEquals(ground, pixel);
+                }else if(world.heightCurve[x] < y - 7){
+                    //and the caves are one colour everywhere.
+                    if(cave == 0){
+                        cave = pixel;
+                    }
+                    assertEquals(cave, pixel);
+                }else{
+                    assertEquals(world.skyPixel(x, y), pixel);
+                    if(pixel != pixels[0] && y == 0){
+                        stars++;
+                    }
+                }
+            }
+        }
+        //stars.png was found and loaded.
+        assertTrue(stars > 0);
+    }
+
+    @Test
+    public void destructionImageTest() {
+        GameWorld world = new GameWorld(false, 1, true, false);
+        int width = world.getWorldWidth();
+        int height = world.getWorldHeight();
+        int[] before = world.worldPixels();
+        int[] pixels = before.clone();
+        int xcentre = 1500;
+        int ycentre = 900;
+        int radius = 100;
+        world.clearCrater(pixels, 0, 0, width - 1, height - 1, xcentre, ycentre, radius);
+        for(int x = 0; x < width; x++){
+            for(int y = 0; y < height; y++){
+                if((x - xcentre) * (x - xcentre) + (y - ycentre) * (y - ycentre) <= radius * radius){
+                    assertEquals(world.skyPixel(x, y), pixels[y * width + x]);
+                }else{
+                    assertEquals(before[y * width + x], pixels[y * width + x]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void destructionImageEdgeTest() {
+        GameWorld world = new GameWorld(false, 1, true, false);
+        int width = world.getWorldWidth();
+        int xcentre = 1918;
+        int ycentre = 1079;
+        int radius = 100;
+        //the rectangle around the crater, cut to the edges of the image, as destructTerrain reads it.
+        int left = xcentre - radius;
+        int top = ycentre - radius;
+        int right = width - 1;
+        int bottom = world.getWorldHeight() - 1;
+        int rectWidth = right - left + 1;
+        int[] before = world.worldPixels();
+        int[] pixels = new int[rectWidth * (bottom - top + 1)];
+        for(int y = top; y <= bottom; y++){
+            System.arraycopy(before, y * width + left, pixels, (y - top) * rectWidth, rectWidth);
+        }
+        world.clearCrater(pixels, left, top, right, bottom, xcentre, ycentre, radius);
+        for(int x = left; x <= right; x++){
+            for(int y = top; y <= bottom; y++){
+                int pixel = pixels[(y - top) * rectWidth + x - left];
+                if((x - xcentre) * (x - xcentre) + (y - ycentre) * (y - ycentre) <= radius * radius){
+                    assertEquals(world.skyPixel(x, y), pixel);
+                }else{
+                    assertEquals(before[y * width + x], pixel);
+                }
+            }
+        }
+    }
+}
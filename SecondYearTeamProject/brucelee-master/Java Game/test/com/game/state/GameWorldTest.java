@@ -1,7 +1,6 @@
 package com.game.state;
 
 import com.game.UI.JavaFXTestingRule;
-import javafx.scene.image.PixelReader;
 import org.junit.Rule;
 import org.junit.Test;
 
@@ -20,9 +19,9 @@ public class GameWorldTest {
         assert(world.mapImage != null);
         assert(world.mapImage.getWidth() == world.getWorldWidth());
         assert(world.mapImage.getHeight() == world.getWorldHeight());
-        for(int x = 0; x < world.map.length; x++){
-            for(int y = 0; y < world.map[0].length; y++){
-                assert(world.map[x][y] || ! world.map[x][y]); //that is, every pixel in the map is set to true, or false.
+        for(int x = 0; x < world.map.getWidth(); x++){
+            for(int y = 0; y < world.map.getHeight(); y++){
+                assert(world.map.isSolid(x, y) || ! world.map.isSolid(x, y)); //that is, every pixel in the map is ground, or empty space.
             }
         }
     }
@@ -36,7 +35,7 @@ public class GameWorldTest {
         assert(worldOne.mapImage.getWidth() == worldTwo.mapImage.getWidth());
         for(int x = 0; x < worldOne.mapImage.getWidth(); x++){
             for(int y = 0; y < worldOne.mapImage.getHeight(); y++){
-                assert(worldOne.map[x][y] == worldTwo.map[x][y]);
+                assert(worldOne.map.isSolid(x, y) == worldTwo.map.isSolid(x, y));
             }
         }
     }
@@ -49,13 +48,13 @@ public class GameWorldTest {
         int ycentre = 900;
         int radius = 100;
         world.destructTerrain(xcentre, ycentre, radius);
-        for(int x = 0; x < world.map.length; x++){
-            for(int y = 0; y < world.map[0].length; y++){
+        for(int x = 0; x < world.map.getWidth(); x++){
+            for(int y = 0; y < world.map.getHeight(); y++){
                 Double distance = Math.sqrt(Math.abs(Math.pow((x - xcentre), 2) + Math.pow((y - ycentre), 2)));
                 if(distance <= radius){
-                    assert(world.map[x][y] == true);
+                    assert(world.map.isSolid(x, y) == false);
                 }else{
-                    assert(world.map[x][y] == worldClone.map[x][y]);
+                    assert(world.map.isSolid(x, y) == worldClone.map.isSolid(x, y));
                 }
             }
         }
@@ -74,13 +73,13 @@ public class GameWorldTest {
         }catch(ArrayIndexOutOfBoundsException e){
             fail("destructTerrain should cope with destructions partly off-screen.");
         }
-        for(int x = 0; x < world.map.length; x++){
-            for(int y = 0; y < world.map[0].length; y++){
+        for(int x = 0; x < world.map.getWidth(); x++){
+            for(int y = 0; y < world.map.getHeight(); y++){
                 Double distance = Math.sqrt(Math.abs(Math.pow((x - xcentre), 2) + Math.pow((y - ycentre), 2)));
                 if(distance <= radius){
-                    assert(world.map[x][y] == true);
+                    assert(world.map.isSolid(x, y) == false);
                 }else{
-                    assert(world.map[x][y] == worldClone.map[x][y]);
+                    assert(world.map.isSolid(x, y) == worldClone.map.isSolid(x, y));
                 }
             }
         }
@@ -98,13 +97,13 @@ public class GameWorldTest {
         }catch(ArrayIndexOutOfBoundsException e){
             fail("destructTerrain should cope with destructions centered off-screen.");
         }
-        for(int x = 0; x < world.map.length; x++){
-            for(int y = 0; y < world.map[0].length; y++){
+        for(int x = 0; x < world.map.getWidth(); x++){
+            for(int y = 0; y < world.map.getHeight(); y++){
                 Double distance = Math.sqrt(Math.abs(Math.pow((x - xcentre), 2) + Math.pow((y - ycentre), 2)));
                 if(distance <= radius){
-                    assert(world.map[x][y] == true);
+                    assert(world.map.isSolid(x, y) == false);
                 }else{
-                    assert(world.map[x][y] == worldClone.map[x][y]);
+                    assert(world.map.isSolid(x, y) == worldClone.map.isSolid(x, y));
                 }
             }
         }
@@ -119,14 +118,14 @@ public class GameWorldTest {
         int radius = 100;
         int shiftDistance = 300;
         world.shiftTerrain(xcentre, ycentre, radius, shiftDistance);
-        for(int x = 0; x < world.map.length; x++){
-            for(int y = 0; y < world.map[0].length; y++){
+        for(int x = 0; x < world.map.getWidth(); x++){
+            for(int y = 0; y < world.map.getHeight(); y++){
                 Double distance = Math.sqrt(Math.abs(Math.pow((x - xcentre), 2) + Math.pow((y - ycentre), 2)));
                 if(distance <= radius){
-                    assert(world.map[x][y] == true);
-                    assert(world.map[x][y - shiftDistance] == false);
+                    assert(world.map.isSolid(x, y) == false);
+                    assert(world.map.isSolid(x, y - shiftDistance) == true);
                 }else if(y < (ycentre - shiftDistance - radius) || y > (ycentre - shiftDistance + radius)){
-                    assert(world.map[x][y] == worldClone.map[x][y]);
+                    assert(world.map.isSolid(x, y) == worldClone.map.isSolid(x, y));
                 }
             }
         }
@@ -146,13 +145,13 @@ public class GameWorldTest {
         }catch(ArrayIndexOutOfBoundsException e){
             fail("shiftTerrain should cope with shifts partly off-screen.");
         }
-        for(int x = 0; x < world.map.length; x++){
-            for(int y = 0; y < world.map[0].length; y++){
+        for(int x = 0; x < world.map.getWidth(); x++){
+            for(int y = 0; y < world.map.getHeight(); y++){
                 Double distance = Math.sqrt(Math.abs(Math.pow((x - xcentre), 2) + Math.pow((y - ycentre), 2)));
                 if(distance <= radius){
-                    assert(world.map[x][y] == true);
+                    assert(world.map.isSolid(x, y) == false);
                 }else{
-                    assert(world.map[x][y] == worldClone.map[x][y]);
+                    assert(world.map.isSolid(x, y) == worldClone.map.isSolid(x, y));
                 }
             }
         }
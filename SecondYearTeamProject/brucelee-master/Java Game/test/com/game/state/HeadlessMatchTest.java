@@ -0,0 +1,85 @@
+package com.game.state;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class HeadlessMatchTest {
+
+	private static final int MAX_TURN_TICKS = 3600;
+
+	@Test
+	public void testPlay() {
+		int ended = 0;
+		for (long seed = 1; seed <= 4; seed++) {
+			HeadlessMatch match = new HeadlessMatch(seed);
+			if (match.play(MAX_TURN_TICKS)) {
+				ended++;
+				// One team is out, or both are for a draw
+				assertTrue(match.gameResult >= 0 && match.gameResult <= 2);
+				assertTrue(match.turnNumber > 0);
+			} else {
+				assertEquals(-1, match.gameResult);
+			}
+			assertTrue(match.getTicks() > 0);
+			for (HeadlessMatch.Phase phase : HeadlessMatch.Phase.values()) {
+				assertTrue(match.getNanos(phase) >= 0);
+			}
+			assertTrue(match.getNanos(HeadlessMatch.Phase.STEP) > 0);
+			assertTrue(match.getNanos(HeadlessMatch.Phase.COLLISION) > 0);
+			assertTrue(match.getNanos(HeadlessMatch.Phase.PLANNING) > 0);
+		}
+		// A match can still be stopped when the AI cannot finish its turn, but not most of them
+		assertTrue(ended >= 2);
+	}
+
+	@Test
+	public void testSameSeedPlaysTheSameMatch() {
+		for (long seed = 1; seed <= 3; seed++) {
+			HeadlessMatch first = new HeadlessMatch(seed);
+			HeadlessMatch second = new HeadlessMatch(seed);
+			SyncChecker checker = new SyncChecker(8);
+			first.start();
+			second.start();
+			assertEquals(first.checksum(), second.checksum());
+			while (first.gameResult == -1 && first.getTicks() < 30000) {
+				first.tick();
+				second.tick();
+				checker.record(first.getTick(), first.checksum());
+				assertTrue("Diverged at tick " + first.getTick(), checker.check(second.getTick(), second.checksum()));
+			}
+			assertEquals(first.gameResult, second.gameResult);
+			assertEquals(first.turnNumber, second.turnNumber);
+			assertEquals(first.getWorld().map, second.getWorld().map);
+		}
+	}
+
+	@Test
+	public void testDesyncIsFound() {
+		HeadlessMatch first = new HeadlessMatch(1);
+		HeadlessMatch second = new HeadlessMatch(1);
+		SyncChecker checker = new SyncChecker(8);
+		first.start();
+		second.start();
+		for (int i = 0; i < 100; i++) {
+			first.tick();
+			second.tick();
+		}
+		// One robot is hit a little harder in one of the copies
+		second.getRobots().get(3).takeDamage(1);
+		first.tick();
+		second.tick();
+		checker.record(first.getTick(), first.checksum());
+		assertFalse(checker.check(second.getTick(), second.checksum()));
+		assertEquals(101, checker.getDesyncTick());
+		assertFalse(checker.inSync());
+	}
+
+	@Test
+	public void testBothTeamsPlay() {
+		HeadlessMatch match = new HeadlessMatch(1);
+		match.play(MAX_TURN_TICKS);
+		// The AI of the first team must take its turns too, or the match never gets past the first
+		assertTrue(match.turnNumber > 2);
+	}
+}
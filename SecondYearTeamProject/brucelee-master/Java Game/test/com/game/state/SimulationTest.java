@@ -0,0 +1,216 @@
+package com.game.state;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.game.object.Grenade;
+import com.game.object.Projectile;
+import com.game.object.SniperBullet;
+import com.game.physics.Coord;
+import com.game.physics.Robot;
+
+public class SimulationTest {
+
+	Simulation sim;
+	ArrayList<GameEvent> events;
+
+	@Before
+	public void setUp() throws Exception {
+		Loadout[] loadouts = new Loadout[Simulation.noTeams * Simulation.teamSize];
+		for (int i = 0; i < loadouts.length; i++) {
+			loadouts[i] = new Loadout();
+		}
+		sim = new Simulation(false, false, loadouts);
+		sim.createGameWorld(1);
+		sim.init();
+		events = new ArrayList<GameEvent>();
+		sim.setListener(events::add);
+	}
+
+	/**
+	 * Steps the simulation until the current character has landed
+	 */
+	private void land() {
+		for (int i = 0; i < 200 && sim.getCurrentChar().getFalling(); i++) {
+			sim.step(Simulation.TIME_STEP);
+		}
+		assertFalse(sim.getCurrentChar().getFalling());
+	}
+
+	@Test
+	public void testInit() {
+		assertEquals(Simulation.noTeams * Simulation.teamSize, sim.getRobots().size());
+		// The robots spawn on the terrain, at least 100 pixels apart
+		for (Robot r : sim.getRobots()) {
+			assertTrue(r.getYPos() > 0 && r.getYPos() < Terrain.worldHeight);
+			for (Robot other : sim.getRobots()) {
+				assertTrue(r == other || Math.abs(r.getXPos() - other.getXPos()) >= 100);
+			}
+		}
+		assertEquals(Simulation.DEFAULT_GRAVITY, sim.getGravity(), 0.001);
+	}
+
+	@Test
+	public void testAdvance() {
+		assertEquals(2, sim.advance(0.07));
+		// The 0.01 left over is kept for the next call
+		assertEquals(1, sim.advance(0.025));
+		assertEquals(0, sim.advance(0.001));
+	}
+
+	@Test
+	public void testAdvanceCatchUpLimit() {
+		assertEquals(5, sim.advance(10));
+		assertEquals(0, sim.advance(0.001));
+	}
+
+	@Test
+	public void testGravityPerGame() {
+		Simulation other = new Simulation(false, false, new Loadout[6]);
+		other.createGameWorld(1);
+		other.setRandomGravity(false);
+		assertEquals(Simulation.DEFAULT_GRAVITY * 20, other.getGravity(), 0.001);
+		assertEquals(Simulation.DEFAULT_GRAVITY, sim.getGravity(), 0.001);
+	}
+
+	@Test
+	public void testApplyAngle() {
+		land();
+		int angle = sim.getCurrentChar().getAngle();
+		assertFalse(sim.apply(Input.ANGLE_UP));
+		assertEquals(angle + 1, sim.getCurrentChar().getAngle());
+	}
+
+	@Test
+	public void testApplyFire() {
+		land();
+		sim.apply(Input.FIRE);
+		assertEquals(1, sim.getProjectiles().size());
+		assertTrue(sim.endedTurn);
+		GameEvent fired = events.get(events.size() - 1);
+		assertEquals(GameEvent.Type.FIRED, fired.getType());
+		assertEquals(sim.getCurrentChar(), fired.getRobot());
+		assertNotNull(fired.getSound());
+	}
+
+	@Test
+	public void testSchedule() {
+		land();
+		int angle = sim.getCurrentChar().getAngle();
+		int tick = sim.getTick();
+		assertTrue(sim.schedule(tick + 2, sim.whosTurn, Input.ANGLE_UP));
+		// The command of the other player is dropped when its tick comes
+		assertTrue(sim.schedule(tick + 2, 1 - sim.whosTurn, Input.ANGLE_UP));
+		sim.step(Simulation.TIME_STEP);
+		sim.step(Simulation.TIME_STEP);
+		assertEquals(angle, sim.getCurrentChar().getAngle());
+		sim.step(Simulation.TIME_STEP);
+		assertEquals(angle + 1, sim.getCurrentChar().getAngle());
+		sim.step(Simulation.TIME_STEP);
+		assertEquals(angle + 1, sim.getCurrentChar().getAngle());
+		// Too late for a tick that has passed
+		assertFalse(sim.schedule(tick + 1, sim.whosTurn, Input.ANGLE_UP));
+	}
+
+	@Test
+	public void testPredict() {
+		land();
+		Robot robot = sim.getCurrentChar();
+		double x = robot.getXPos();
+		int tick = sim.getTick();
+		assertTrue(sim.predict(Input.RIGHT, Simulation.TIME_STEP));
+		assertTrue(robot.getXPos() > x);
+		int angle = robot.getAngle();
+		assertTrue(sim.predict(Input.ANGLE_UP, Simulation.TIME_STEP));
+		assertEquals(angle + 1, robot.getAngle());
+		// Firing is left to the server
+		assertFalse(sim.predict(Input.FIRE, Simulation.TIME_STEP));
+		assertTrue(sim.getProjectiles().isEmpty());
+		assertEquals(tick, sim.getTick());
+	}
+
+	@Test
+	public void testReset() {
+		sim.advance(1);
+		sim.schedule(sim.getTick() + 1, sim.whosTurn, Input.FIRE);
+		sim.reset();
+		sim.createGameWorld(1);
+		sim.init();
+		Loadout[] loadouts = new Loadout[Simulation.noTeams * Simulation.teamSize];
+		for (int i = 0; i < loadouts.length; i++) {
+			loadouts[i] = new Loadout();
+		}
+		Simulation fresh = new Simulation(false, false, loadouts);
+		fresh.createGameWorld(1);
+		fresh.init();
+		assertEquals(0, sim.getTick());
+		assertEquals(fresh.checksum(), sim.checksum());
+		sim.step(Simulation.TIME_STEP);
+		fresh.step(Simulation.TIME_STEP);
+		assertEquals(0, sim.getProjectiles().size());
+		assertEquals(fresh.checksum(), sim.checksum());
+	}
+
+	@Test
+	public void testRemovedProjectiles() {
+		// Both leave the world by the left in the same step
+		sim.addProjectile(new Grenade(new Coord(-50, 100)));
+		sim.addProjectile(new Grenade(new Coord(-50, 200)));
+		sim.step(Simulation.TIME_STEP);
+		assertTrue(sim.getProjectiles().isEmpty());
+	}
+
+	@Test
+	public void testFastProjectileHitsThinWall() {
+		TerrainGrid map = sim.getWorld().map;
+		for (int y = 0; y < 300; y++) {
+			map.fillRow(y, 0, 300, false);
+			map.setSolid(121, y, true);
+			map.setSolid(122, y, true);
+		}
+		// 24 pixels a step, more than the box of the bullet, so it would skip the wall
+		Projectile bullet = new SniperBullet(new Coord(100, 100), 0);
+		bullet.launch(0, 800);
+		sim.addProjectile(bullet);
+		sim.step(Simulation.TIME_STEP);
+		assertTrue(bullet.isRemoved());
+		assertTrue(sim.getProjectiles().isEmpty());
+		GameEvent explosion = null;
+		for (GameEvent event : events) {
+			if (event.getType() == GameEvent.Type.EXPLOSION) {
+				explosion = event;
+			}
+		}
+		assertNotNull(explosion);
+		assertTrue(explosion.getX() < 121);
+	}
+
+	@Test
+	public void testExplosionEvent() {
+		Grenade grenade = new Grenade(new Coord(500, 100));
+		sim.explosion(grenade);
+		GameEvent explosion = events.get(events.size() - 1);
+		assertEquals(GameEvent.Type.EXPLOSION, explosion.getType());
+		assertEquals(grenade.getCentre().getX(), explosion.getX());
+		assertEquals(grenade.getCentre().getY(), explosion.getY());
+		assertEquals(60, explosion.getRadius());
+		assertEquals("grenade_impact", explosion.getSound());
+	}
+
+	@Test
+	public void testInputFromByte() {
+		assertEquals(Input.FIRE, Input.fromByte((byte) 0x20));
+		assertEquals(Input.END_TURN, Input.fromByte((byte) 0x0A));
+		assertEquals(Input.JUMP_LEFT, Input.fromByte((byte) 0x51));
+		assertNull(Input.fromByte((byte) 0x53));
+		assertNull(Input.fromByte((byte) -1));
+		for (Input input : Input.values()) {
+			assertEquals(input, Input.fromByte(input.getCode()));
+			assertTrue(input.isIn(input.getMask()));
+		}
+	}
+}
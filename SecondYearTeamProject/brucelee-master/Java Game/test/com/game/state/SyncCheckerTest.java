@@ -0,0 +1,44 @@
+package com.game.state;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class SyncCheckerTest {
+
+	@Test
+	public void testSameChecksums() {
+		SyncChecker checker = new SyncChecker(4);
+		for (int tick = 1; tick <= 10; tick++) {
+			checker.record(tick, tick * 31L);
+			assertTrue(checker.check(tick, tick * 31L));
+		}
+		assertTrue(checker.inSync());
+		assertEquals(-1, checker.getDesyncTick());
+	}
+
+	@Test
+	public void testFirstDesyncIsKept() {
+		SyncChecker checker = new SyncChecker(4);
+		for (int tick = 1; tick <= 4; tick++) {
+			checker.record(tick, tick);
+		}
+		assertFalse(checker.check(3, 0));
+		assertFalse(checker.check(4, 0));
+		// A checksum of an earlier tick that arrives late moves the desync back
+		assertFalse(checker.check(2, 0));
+		assertEquals(2, checker.getDesyncTick());
+	}
+
+	@Test
+	public void testUnknownTicksAreNotChecked() {
+		SyncChecker checker = new SyncChecker(4);
+		for (int tick = 1; tick <= 8; tick++) {
+			checker.record(tick, tick);
+		}
+		// Tick 2 is no longer kept and tick 9 is not recorded yet
+		assertTrue(checker.check(2, 0));
+		assertTrue(checker.check(9, 0));
+		assertTrue(checker.inSync());
+	}
+}
@@ -0,0 +1,211 @@
+package com.game.state;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TerrainGridTest {
+
+	TerrainGrid grid;
+	boolean[][] reference;
+	Random random;
+
+	@Before
+	public void setUp() throws Exception {
+		// Not a multiple of 64, so the last word of each row is only partly used
+		grid = new TerrainGrid(200, 50);
+		reference = new boolean[200][50];
+		random = new Random(7);
+		for (int x = 0; x < 200; x++) {
+			for (int y = 0; y < 50; y++) {
+				boolean solid = random.nextInt(40) == 0;
+				grid.setSolid(x, y, solid);
+				reference[x][y] = solid;
+			}
+		}
+	}
+
+	private boolean referenceAnySolid(int x, int y, int w, int h) {
+		for (int i = x; i < x + w; i++) {
+			for (int j = y; j < y + h; j++) {
+				if (reference[i][j]) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	@Test
+	public void testSetSolid() {
+		for (int x = 0; x < 200; x++) {
+			for (int y = 0; y < 50; y++) {
+				assertEquals(reference[x][y], grid.isSolid(x, y));
+			}
+		}
+		grid.setSolid(63, 0, true);
+		grid.setSolid(64, 0, false);
+		assertTrue(grid.isSolid(63, 0));
+		assertFalse(grid.isSolid(64, 0));
+	}
+
+	@Test
+	public void testAnySolid() {
+		for (int i = 0; i < 2000; i++) {
+			int x = random.nextInt(200);
+			int y = random.nextInt(50);
+			int w = random.nextInt(200 - x + 1);
+			int h = random.nextInt(50 - y + 1);
+			assertEquals(referenceAnySolid(x, y, w, h), grid.anySolid(x, y, w, h));
+		}
+		assertFalse(grid.anySolid(10, 10, 0, 5));
+	}
+
+	@Test
+	public void testFirstSolidInRow() {
+		for (int i = 0; i < 2000; i++) {
+			int y = random.nextInt(50);
+			int from = random.nextInt(200);
+			int to = from + random.nextInt(200 - from + 1);
+			int expected = -1;
+			for (int x = from; x < to && expected == -1; x++) {
+				if (reference[x][y]) {
+					expected = x;
+				}
+			}
+			assertEquals(expected, grid.firstSolidInRow(y, from, to));
+		}
+	}
+
+	@Test
+	public void testFirstSolidBelow() {
+		TerrainGrid column = new TerrainGrid(100, 30);
+		assertEquals(30, column.firstSolidBelow(70, 0));
+		column.setSolid(70, 12, true);
+		assertEquals(12, column.firstSolidBelow(70, 0));
+		assertEquals(12, column.firstSolidBelow(70, 12));
+		assertEquals(30, column.firstSolidBelow(70, 13));
+		assertEquals(30, column.firstSolidBelow(71, 0));
+	}
+
+	@Test
+	public void testFillRow() {
+		TerrainGrid rows = new TerrainGrid(200, 3);
+		rows.fillRow(1, 5, 190, true);
+		rows.fillRow(1, 60, 130, false);
+		for (int x = 0; x < 200; x++) {
+			assertFalse(rows.isSolid(x, 0));
+			assertFalse(rows.isSolid(x, 2));
+			assertEquals((x >= 5 && x < 60) || (x >= 130 && x < 190), rows.isSolid(x, 1));
+		}
+	}
+
+	@Test
+	public void testSweep() {
+		TerrainGrid wall = new TerrainGrid(200, 50);
+		for (int y = 0; y < 50; y++) {
+			wall.setSolid(120, y, true);
+			wall.setSolid(121, y, true);
+		}
+		int[] hit = new int[2];
+		// A 20 pixel box that jumps over the wall in one step still hits it
+		assertTrue(wall.sweep(90, 10, 130, 18, 20, 20, hit));
+		assertEquals(101, hit[0]);
+		assertEquals(12, hit[1]);
+		assertFalse(wall.anySolid(hit[0] - 1, hit[1], 20, 20));
+		// Back the other way
+		assertTrue(wall.sweep(160, 10, 100, 10, 20, 20, hit));
+		assertEquals(121, hit[0]);
+		// Vertical lines and lines short of the wall hit nothing
+		assertFalse(wall.sweep(10, 0, 10, 30, 20, 20, hit));
+		assertFalse(wall.sweep(0, 0, 99, 30, 20, 20, hit));
+		// Leaving the grid stops the sweep
+		assertFalse(wall.sweep(90, 10, 90, 60, 20, 20, hit));
+		// A box that starts in the wall hits only once it has been out of it
+		assertFalse(wall.sweep(110, 10, 150, 10, 20, 20, hit));
+		wall.setSolid(185, 20, true);
+		assertTrue(wall.sweep(110, 10, 170, 10, 20, 20, hit));
+		assertEquals(166, hit[0]);
+	}
+
+	@Test
+	public void testSweepMatchesSteps() {
+		int[] hit = new int[2];
+		for (int i = 0; i < 200; i++) {
+			int x0 = random.nextInt(190);
+			int y0 = random.nextInt(40);
+			int x1 = random.nextInt(190);
+			int y1 = random.nextInt(40);
+			if (referenceAnySolid(x0, y0, 10, 10)) {
+				continue;
+			}
+			// The same line, with the whole box checked at every position
+			int dx = Math.abs(x1 - x0), dy = Math.abs(y1 - y0);
+			int sx = x0 < x1 ? 1 : -1, sy = y0 < y1 ? 1 : -1;
+			int error = dx - dy, x = x0, y = y0;
+			boolean expected = false;
+			while (x != x1 || y != y1) {
+				int error2 = 2 * error;
+				if (error2 > -dy) {
+					error -= dy;
+					x += sx;
+				}
+				if (error2 < dx) {
+					error += dx;
+					y += sy;
+				}
+				if (referenceAnySolid(x, y, 10, 10)) {
+					expected = true;
+					break;
+				}
+			}
+			assertEquals(expected, grid.sweep(x0, y0, x1, y1, 10, 10, hit));
+			if (expected) {
+				assertEquals(x, hit[0]);
+				assertEquals(y, hit[1]);
+			}
+		}
+	}
+
+	@Test
+	public void testFillBelow() {
+		int[] surface = new int[200];
+		for (int x = 0; x < surface.length; x++) {
+			surface[x] = random.nextInt(60) - 5;
+		}
+		// Above and below the whole grid
+		surface[0] = Integer.MIN_VALUE;
+		surface[199] = Integer.MAX_VALUE;
+		surface[64] = 48;
+		surface[65] = 49;
+		grid.fillBelow(surface);
+		TerrainGrid cells = new TerrainGrid(200, 50);
+		for (int y = 0; y < 50; y++) {
+			for (int x = 0; x < 200; x++) {
+				assertEquals(surface[x] < y, grid.isSolid(x, y));
+				cells.setSolid(x, y, surface[x] < y);
+			}
+		}
+		assertEquals(cells, grid);
+		assertEquals(cells.checksum(), grid.checksum());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testFillBelowWidth() {
+		grid.fillBelow(new int[199]);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testOutOfBounds() {
+		// Past the end of a row must not read the start of the next one
+		grid.isSolid(200, 0);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testAnySolidOutOfBounds() {
+		grid.anySolid(190, 0, 20, 1);
+	}
+}
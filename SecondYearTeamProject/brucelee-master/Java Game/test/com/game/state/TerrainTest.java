@@ -0,0 +1,69 @@
+package com.game.state;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class TerrainTest {
+
+    @Test
+    public void circleSpanTest() {
+        for(int radius = 0; radius < 60; radius++){
+            for(int y = -radius - 1; y <= radius + 1; y++){
+                int halfWidth = Terrain.circleHalfWidth(radius, y);
+                for(int x = 0; x <= radius + 1; x++){
+                    assertEquals(x * x + y * y <= radius * radius, x <= halfWidth);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void generationTest() {
+        Terrain terrain = new Terrain(false, 235132451);
+        for(int y = 0; y < terrain.getWorldHeight(); y++){
+            for(int x = 0; x < terrain.getWorldWidth(); x++){
+                assertEquals(terrain.heightCurve[x] < y, terrain.map.isSolid(x, y));
+            }
+        }
+        assertEquals(terrain.map, new Terrain(false, 235132451).map);
+    }
+
+    @Test
+    public void destructionTest() {
+        Terrain terrain = new Terrain(false, 1);
+        Terrain terrainClone = new Terrain(false, 1);
+        int xcentre = 1500;
+        int ycentre = 900;
+        int radius = 100;
+        terrain.destructTerrain(xcentre, ycentre, radius);
+        for(int x = xcentre - radius - 2; x <= xcentre + radius + 2; x++){
+            for(int y = ycentre - radius - 2; y <= ycentre + radius + 2; y++){
+                if((x - xcentre) * (x - xcentre) + (y - ycentre) * (y - ycentre) <= radius * radius){
+                    assertFalse(terrain.map.isSolid(x, y));
+                }else{
+                    assertEquals(terrainClone.map.isSolid(x, y), terrain.map.isSolid(x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void destructionEdgeTest() {
+        //the flat terrain is ground below 500, and the circle is mostly off the left of the world.
+        Terrain terrain = new Terrain(true, 0);
+        terrain.destructTerrain(-50, 520, 80);
+        for(int x = 0; x < 40; x++){
+            for(int y = 440; y < 600; y++){
+                assertEquals((x + 50) * (x + 50) + (y - 520) * (y - 520) > 80 * 80 && y > 500, terrain.map.isSolid(x, y));
+            }
+        }
+        //off every edge at once, and entirely off the world.
+        terrain.destructTerrain(960, 540, 2000);
+        terrain.destructTerrain(-500, -500, 100);
+        for(int y = 0; y < terrain.getWorldHeight(); y++){
+            assertEquals(-1, terrain.map.firstSolidInRow(y, 0, terrain.getWorldWidth()));
+        }
+    }
+}
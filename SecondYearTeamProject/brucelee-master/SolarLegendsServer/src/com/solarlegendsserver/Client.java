@@ -1,14 +1,22 @@
 package com.solarlegendsserver;
 
+import com.game.state.Input;
 import com.solarlegendsserver.utils.Player;
 
 import java.net.InetAddress;
-import java.net.Socket;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Data class used for storing information about the client. The InetAddress and port were used
  * at some point for identification. The server name is the name of the last game that the client
- * was part of.
+ * was part of. The acked snapshot is the sequence number of the last game state the client confirmed
+ * it received, which the next game state is encoded against. The input holds the commands of the
+ * client that the game has not taken yet, and the inputs taken are the number of its commands that
+ * the game has taken or dropped, which the client predicts until they are in a game state. A client
+ * whose game has diverged asks for a resync, and the resync tick is the tick of the game at which it
+ * was last sent one. The connection is its connection to the game, null until it has sent its
+ * PORT_PACKET. The token is the secret that the client has to send with
+ * its PORT_PACKET, so only the players that the main server put in a game can connect to it.
  *
  * @author Robert Chiper
  */
@@ -16,8 +24,14 @@ public class Client {
     public InetAddress address;
     public int port;
     public Player player;
-    public Socket socket;
+    public volatile GameConnection connection;
     public String serverName;
+    public volatile int ackedSnapshot = -1;
+    public ConcurrentLinkedQueue<Input> input = new ConcurrentLinkedQueue<>();
+    public int inputsTaken;
+    public volatile boolean resyncRequested;
+    public int resyncTick = -1;
+    public long token;
 
     /**
      * @param address the InetAddress of the client's Socket
@@ -0,0 +1,153 @@
+package com.solarlegendsserver;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded pool of connections to the database. The connections are opened when they are first
+ * needed, up to the size of the pool, and a thread that borrows one when they are all in use waits
+ * for one to be released.
+ * <p>
+ * Each connection keeps the PreparedStatements made on it, so a query is only prepared once per
+ * connection instead of every time it runs.
+ * </p>
+ *
+ * @author Robert Chiper
+ */
+public class ConnectionPool {
+
+    /**
+     * A connection of the pool, with its cache of PreparedStatements.
+     */
+    public static class PooledConnection {
+        private final Connection connection;
+        private final HashMap<String, PreparedStatement> statements = new HashMap<>();
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        /**
+         * Returns the PreparedStatement for a query, preparing it the first time it is used on this
+         * connection.
+         *
+         * @param sql the query
+         * @return the PreparedStatement of the query
+         * @throws SQLException if the query cannot be prepared
+         */
+        public PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            if (statement == null) {
+                statement = connection.prepareStatement(sql);
+                statements.put(sql, statement);
+            }
+            return statement;
+        }
+
+        /**
+         * @return the connection to the database
+         */
+        public Connection getConnection() {
+            return connection;
+        }
+
+        private void close() {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static final long BORROW_TIMEOUT_SECONDS = 10;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final ArrayBlockingQueue<PooledConnection> idle;
+    private final AtomicInteger opened = new AtomicInteger();
+    private final int size;
+    private volatile boolean shutdown = false;
+
+    /**
+     * @param url      the JDBC url of the database
+     * @param user     the user to connect as
+     * @param password the password of the user
+     * @param size     the most connections that are open at the same time
+     */
+    public ConnectionPool(String url, String user, String password, int size) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.size = size;
+        idle = new ArrayBlockingQueue<>(size);
+    }
+
+    /**
+     * Takes a connection from the pool, opening a new one if none is idle and the pool is not full.
+     * It must be given back with release.
+     *
+     * @return the connection
+     * @throws SQLException if a new connection cannot be opened, or none is released in time
+     */
+    public PooledConnection borrow() throws SQLException {
+        PooledConnection connection = idle.poll();
+        if (connection != null)
+            return connection;
+        if (opened.incrementAndGet() <= size) {
+            try {
+                return new PooledConnection(DriverManager.getConnection(url, user, password));
+            } catch (SQLException e) {
+                opened.decrementAndGet();
+                throw e;
+            }
+        }
+        opened.decrementAndGet();
+        try {
+            connection = idle.poll(BORROW_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (connection == null)
+            throw new SQLException("No database connection was released in " + BORROW_TIMEOUT_SECONDS + " seconds");
+        return connection;
+    }
+
+    /**
+     * Gives a connection back to the pool. A connection that has been closed is dropped, so a new one
+     * can be opened in its place.
+     *
+     * @param connection the connection that was borrowed
+     */
+    public void release(PooledConnection connection) {
+        boolean closed;
+        try {
+            closed = connection.connection.isClosed();
+        } catch (SQLException e) {
+            closed = true;
+        }
+        if (closed || shutdown || !idle.offer(connection)) {
+            connection.close();
+            opened.decrementAndGet();
+        }
+    }
+
+    /**
+     * Closes the idle connections. The connections that are borrowed are closed when they are released.
+     */
+    public void close() {
+        shutdown = true;
+        PooledConnection connection;
+        while ((connection = idle.poll()) != null) {
+            connection.close();
+            opened.decrementAndGet();
+        }
+    }
+}
@@ -4,19 +4,77 @@ import com.solarlegendsserver.utils.Player;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * The class is responsible for all the communication with the database hosted on
  * the machine that the server is running.
+ * <p>
+ * The players are read straight from the LeaderboardStore, on the threads of the DatabaseManager when
+ * they are loaded with loadPlayer, so the main server does not wait for the database. The results of
+ * the games are written behind: updatePlayer only queues the result, and a background thread takes
+ * everything that is queued, adds up the results of each player and writes them to the store as one
+ * batch. A slow database then no longer holds up the end of a game. The queue is bounded, when it is
+ * full the results are added up by player in an overflow instead, which the writer takes with its next
+ * batch, so a game never waits for the writer and the memory used only grows with the number of
+ * players.
+ * </p>
+ * <p>
+ * The leaderboard is also kept in a LeaderboardIndex, which is read from the store once when the
+ * writer starts and then kept up to date with the players that connect and the results that are
+ * written, so the leaderboard requests do not go to the database.
+ * </p>
  *
  * @author Robert Chiper
  */
 public class DatabaseManager {
-    private Connection dbConnection = null;
     private static final String url = "jdbc:postgresql://localhost/solarlegends";
+    private static final int POOL_SIZE = 4;
+    private static final int READER_THREADS = 2;
+    static final int MAX_PENDING_RESULTS = 10000;
+    private static final int MAX_BATCH = 512;
+    private static final long RETRY_MILLIS = 1000;
+
+    private LeaderboardStore store;
+    private LeaderboardIndex leaderboard = new LeaderboardIndex();
+    private LinkedBlockingQueue<Player> pendingResults = new LinkedBlockingQueue<>(MAX_PENDING_RESULTS);
+    private Thread writer;
+    private ExecutorService readers;
+    private volatile boolean running;
+    // Guarded by this, used by flush to wait for the results queued before it
+    private long queuedResults = 0;
+    private long writtenResults = 0;
+    // Guarded by this, the results that did not fit in the queue added up by player, and how many there were
+    private HashMap<String, Player> overflow = new HashMap<>();
+    private long overflowResults = 0;
+
+    /**
+     * Creates a DatabaseManager for the PostgreSQL database, connectToDB must be called before it is used.
+     */
+    public DatabaseManager() {
+    }
+
+    /**
+     * Creates a DatabaseManager that keeps the leaderboard in the given store, such as a
+     * MemoryLeaderboardStore for testing.
+     *
+     * @param store the store of the leaderboard
+     */
+    public DatabaseManager(LeaderboardStore store) {
+        this.store = store;
+        startWriter();
+    }
 
     /**
-     * Establishes the connection to the database.
+     * Creates the pool of connections to the database, checks that the database can be accessed
+     * and starts the threads that load the players and write the results of the games.
+     *
+     * @throws IllegalStateException if the leaderboard cannot be given its unique index on the names
      */
     public void connectToDB() {
         try {
@@ -27,183 +85,225 @@ public class DatabaseManager {
 
         System.out.println("PostgreSQL driver registered");
 
+        ConnectionPool pool = new ConnectionPool(url, "robert", "robert", POOL_SIZE);
         try {
-            dbConnection = DriverManager
-                    .getConnection(url, "robert", "robert");
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-
-        if (dbConnection != null) {
+            pool.release(pool.borrow());
             if (SolarLegendsServer.DEBUG) {
                 System.out.println("Database accessed.");
             }
+        } catch (SQLException e) {
+            e.printStackTrace();
         }
+        try {
+            store = new JdbcLeaderboardStore(pool);
+        } catch (SQLException e) {
+            // Every write of the leaderboard needs the unique index, without it the results would only pile up
+            pool.close();
+            throw new IllegalStateException("The leaderboard cannot be given a unique index on the names", e);
+        }
+        startWriter();
+    }
+
+    private void startWriter() {
+        leaderboard.addAll(getPlayers());
+        running = true;
+        writer = new Thread(() -> writeResults(), "Database writer");
+        writer.start();
+        readers = Executors.newFixedThreadPool(READER_THREADS, task -> {
+            Thread reader = new Thread(task, "Database reader");
+            reader.setDaemon(true);
+            return reader;
+        });
     }
 
     /**
-     * Updates the values of an entry in the leaderboard based on the game result. 1 means a win,
-     * 0 is draw, and -1 is loss.
+     * Queues the result of a game for a player, to be added to their entry in the leaderboard.
+     * 1 means a win, 0 is draw, and -1 is loss. It never waits, since it is called at the end of a
+     * game by the threads that run the matches: when the queue is full the result goes to the overflow.
      *
      * @param username the name of the player
      * @param result   the result of the game
      */
     public void updatePlayer(String username, int result) {
+        Player delta = new Player(username);
+        switch (result) {
+            case 1:
+                delta.wins = 1;
+                break;
+            case 0:
+                delta.draws = 1;
+                break;
+            case -1:
+                delta.loses = 1;
+                break;
+            default:
+                return;
+        }
+        synchronized (this) {
+            queuedResults++;
+            if (pendingResults.offer(delta))
+                return;
+            if (overflow.isEmpty())
+                System.out.println("Database: the results queue is full, adding up the results until the writer catches up");
+            Player total = overflow.get(username);
+            if (total == null) {
+                total = new Player(username);
+                overflow.put(username, total);
+            }
+            total.wins += delta.wins;
+            total.draws += delta.draws;
+            total.loses += delta.loses;
+            overflowResults++;
+        }
+    }
 
-        try {
-            if (isRegistered(username))
-                switch (result) {
-                    case 1:
-                        PreparedStatement getWins = dbConnection.prepareStatement("SELECT wins FROM leaderboard " +
-                                "WHERE name = ?");
-                        getWins.setString(1, username);
-                        ResultSet resultSet = getWins.executeQuery();
-                        resultSet.next();
-                        int currentWins = resultSet.getInt(1) + 1;
-                        PreparedStatement updateWins = dbConnection.prepareStatement("UPDATE leaderboard SET wins = ? " +
-                                "WHERE name = ?");
-                        updateWins.setInt(1, currentWins);
-                        updateWins.setString(2, username);
-                        updateWins.executeUpdate();
-                        break;
-
-                    case 0:
-                        PreparedStatement getDraws = dbConnection.prepareStatement("SELECT draws FROM leaderboard " +
-                                "WHERE name = ?");
-                        getDraws.setString(1, username);
-                        resultSet = getDraws.executeQuery();
-                        resultSet.next();
-                        int currentDraws = resultSet.getInt(1) + 1;
-                        PreparedStatement updateDraws = dbConnection.prepareStatement("UPDATE leaderboard SET draws = ?" +
-                                "WHERE name = ?");
-                        updateDraws.setInt(1, currentDraws);
-                        updateDraws.setString(2, username);
-                        updateDraws.executeUpdate();
-                        break;
+    /**
+     * @return the number of players with results in the overflow
+     */
+    synchronized int getOverflowSize() {
+        return overflow.size();
+    }
 
-                    case -1:
-                        PreparedStatement getLoses = dbConnection.prepareStatement("SELECT loses FROM leaderboard " +
-                                "WHERE name = ?");
-                        getLoses.setString(1, username);
-                        resultSet = getLoses.executeQuery();
-                        resultSet.next();
-                        int currentLoses = resultSet.getInt(1) + 1;
-                        PreparedStatement updateLoses = dbConnection.prepareStatement("UPDATE leaderboard SET loses = ?" +
-                                "WHERE name = ?");
-                        updateLoses.setInt(1, currentLoses);
-                        updateLoses.setString(2, username);
-                        updateLoses.executeUpdate();
-                        break;
+    /**
+     * Run by the writer thread. Waits for results, takes all the queued ones up to MAX_BATCH and the
+     * overflow, merges them by player and adds them to the store in one go. A batch that fails is
+     * retried until the DatabaseManager is closed.
+     */
+    private void writeResults() {
+        ArrayList<Player> batch = new ArrayList<>();
+        HashMap<String, Player> merged = new HashMap<>();
+        while (running || !pendingResults.isEmpty() || getOverflowSize() > 0) {
+            Player first;
+            try {
+                first = pendingResults.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (first != null) {
+                batch.add(first);
+                pendingResults.drainTo(batch, MAX_BATCH - 1);
+            }
+            long results = batch.size();
+            synchronized (this) {
+                batch.addAll(overflow.values());
+                results += overflowResults;
+                overflow.clear();
+                overflowResults = 0;
+            }
+            if (batch.isEmpty())
+                continue;
+            for (Player result : batch) {
+                Player total = merged.get(result.username);
+                if (total == null) {
+                    total = new Player(result.username);
+                    merged.put(result.username, total);
+                }
+                total.wins += result.wins;
+                total.draws += result.draws;
+                total.loses += result.loses;
+            }
 
-                    default:
+            while (true) {
+                try {
+                    store.addResults(merged.values());
+                    leaderboard.addResults(merged.values());
+                    break;
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                    if (!running) {
+                        System.out.println("Database writer: dropped the results of " + merged.size() + " players");
                         break;
+                    }
+                    try {
+                        Thread.sleep(RETRY_MILLIS);
+                    } catch (InterruptedException interrupted) {
+                        return;
+                    }
                 }
-        } catch (SQLException e) {
-            e.printStackTrace();
+            }
+
+            synchronized (this) {
+                writtenResults += results;
+                notifyAll();
+            }
+            batch.clear();
+            merged.clear();
         }
     }
 
     /**
-     * Checks if a given player is registered (present in the leaderboard already).
+     * Waits until every result queued before this call has been written.
      *
-     * @param username the name of the player.
-     * @return the status of whether is registered
+     * @throws InterruptedException if the thread is interrupted while waiting
      */
-    private boolean isRegistered(String username) {
-        boolean result = false;
-        try {
-            PreparedStatement checkIfRegistered = dbConnection.prepareStatement("SELECT EXISTS (SELECT name FROM " +
-                    "leaderboard WHERE name = ?);");
-            checkIfRegistered.setString(1, username);
-            ResultSet validRs = checkIfRegistered.executeQuery();
-            validRs.next();
-            result = validRs.getBoolean(1);
-        } catch (SQLException e) {
-            e.printStackTrace();
+    public synchronized void flush() throws InterruptedException {
+        long target = queuedResults;
+        while (writtenResults < target && writer.isAlive()) {
+            wait(100);
         }
-        return result;
     }
 
     /**
-     * Inserts a new player in the table. Is only called when the connected user is not already
-     * registered. The default values for games played are all 0.
-     *
-     * @param username the name of the new player
+     * @return the leaderboard, in order, as it is in the store
      */
-    private void insertPlayer(String username) {
-        try {
-            PreparedStatement insert = dbConnection.prepareStatement("INSERT INTO leaderboard VALUES (?, 0, 0, " +
-                    "0);");
-            insert.setString(1, username);
-            insert.executeUpdate();
-
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+    public LeaderboardIndex getLeaderboard() {
+        return leaderboard;
     }
 
     /**
+     * Reads the whole leaderboard from the store. The leaderboard requests use getLeaderboard instead.
+     *
      * @return a collection of all the players in the leaderboard
      */
     public ArrayList<Player> getPlayers() {
-        ArrayList<Player> players = new ArrayList<>();
         try {
-            PreparedStatement getQuery = dbConnection.prepareStatement("SELECT * FROM leaderboard");
-            ResultSet resultSet = getQuery.executeQuery();
-
-            while (resultSet.next()) {
-                Player player = new Player();
-                player.username = resultSet.getString(1);
-                player.wins = resultSet.getInt(2);
-                player.draws = resultSet.getInt(3);
-                player.loses = resultSet.getInt(4);
-                players.add(player);
-            }
-
+            return store.loadPlayers();
         } catch (SQLException e) {
             e.printStackTrace();
+            return new ArrayList<>();
         }
-
-        return players;
     }
 
     /**
+     * Returns a player, who is added to the leaderboard if they are not in it yet. The results that
+     * are still queued are not counted.
+     *
      * @param username the name of the player
      * @return returns a specific player
      */
     public Player getPlayer(String username) {
-        Player player = null;
         try {
-            if (isRegistered(username)) {
-                player = new Player();
-
-                PreparedStatement getQuery = dbConnection.prepareStatement("SELECT * FROM leaderboard WHERE name = ?");
-                getQuery.setString(1, username);
-                ResultSet resultSet = getQuery.executeQuery();
-                resultSet.next();
-                player.username = resultSet.getString(1);
-                player.wins = resultSet.getInt(2);
-                player.draws = resultSet.getInt(3);
-                player.loses = resultSet.getInt(4);
-            } else {
-                insertPlayer(username);
-                player = getPlayer(username);
-
-            }
+            Player player = store.loadPlayer(username);
+            leaderboard.add(player);
+            return player;
         } catch (SQLException e) {
             e.printStackTrace();
+            return new Player(username);
         }
-        return player;
     }
 
     /**
-     * Closes the connection to the database.
+     * Loads a player on a reader thread, like getPlayer, and hands them to the callback on that thread.
+     *
+     * @param username the name of the player
+     * @param loaded   called with the player once they are loaded
+     */
+    public void loadPlayer(String username, Consumer<Player> loaded) {
+        readers.execute(() -> loaded.accept(getPlayer(username)));
+    }
+
+    /**
+     * Writes the results that are still queued and closes the connections to the database.
      */
     public void closeDBConnection() {
+        running = false;
+        readers.shutdown();
         try {
-            dbConnection.close();
-        } catch (SQLException e) {
+            readers.awaitTermination(10, TimeUnit.SECONDS);
+            writer.join();
+        } catch (InterruptedException e) {
             e.printStackTrace();
         }
+        store.close();
     }
 }
@@ -0,0 +1,103 @@
+package com.solarlegendsserver;
+
+import com.game.net.BufferPool;
+import com.game.net.FrameCodec;
+import com.game.net.MessageHeaders;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+/**
+ * Measures the throughput of the framing layer over a loopback TCP connection. A writer thread
+ * packs a batch of GAME_STATE sized messages into one pooled buffer and sends the whole batch with
+ * a single write, while the reading side decodes them with a FrameCodec. For every batch size it
+ * prints the messages decoded per second, the bandwidth and how many messages a single read returned
+ * on average.
+ * <p>
+ * Usage: {@code FramingBenchmark [seconds per batch size]}
+ * </p>
+ *
+ * @author Robert Chiper
+ */
+public class FramingBenchmark {
+
+    private static final int[] BATCH_SIZES = {1, 4, 16, 48};
+    private static final int MESSAGE_LENGTH = 5 + 6 * 24 + 1;
+
+    private static volatile boolean running;
+
+    /**
+     * @param args the number of seconds to run every batch size for, 3 by default
+     * @throws Exception if the loopback connection cannot be opened
+     */
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        byte[] message = new byte[MESSAGE_LENGTH];
+        message[0] = MessageHeaders.PACKET_HEADER[0];
+        message[1] = MessageHeaders.PACKET_HEADER[1];
+        message[2] = MessageHeaders.GAME_STATE;
+
+        for (int batch : BATCH_SIZES) {
+            run(message, batch, seconds);
+        }
+    }
+
+    private static void run(byte[] message, int batch, int seconds) throws Exception {
+        try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+             Socket writer = new Socket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort());
+             Socket reader = serverSocket.accept()) {
+            writer.setTcpNoDelay(true);
+            running = true;
+            Thread writeThread = new Thread(() -> write(writer, message, batch), "Benchmark WriteThread");
+            writeThread.start();
+
+            FrameCodec decoder = new FrameCodec();
+            InputStream inputStream = reader.getInputStream();
+            long messages = 0;
+            long reads = 0;
+            long start = System.nanoTime();
+            long end = start + seconds * 1_000_000_000L;
+            while (System.nanoTime() < end) {
+                if (decoder.read(inputStream) < 0)
+                    break;
+                reads++;
+                while (decoder.nextMessage() != null) {
+                    messages++;
+                }
+            }
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            running = false;
+            reader.close();
+            writeThread.join();
+            decoder.release();
+
+            double megabytes = messages * (double) FrameCodec.frameLength(message) / (1024 * 1024);
+            System.out.printf("batch %3d: %,12.0f messages/s  %8.1f MB/s  %6.1f messages per read%n",
+                    batch, messages / elapsed, megabytes / elapsed, messages / (double) reads);
+        }
+    }
+
+    private static void write(Socket socket, byte[] message, int batch) {
+        BufferPool pool = BufferPool.SHARED;
+        ByteBuffer buffer = pool.acquire();
+        try {
+            OutputStream outputStream = socket.getOutputStream();
+            while (running) {
+                buffer.clear();
+                for (int i = 0; i < batch; i++) {
+                    FrameCodec.encode(message, buffer);
+                }
+                outputStream.write(buffer.array(), 0, buffer.position());
+            }
+        } catch (IOException e) {
+            // The reading side closed the connection when the time was up
+        } finally {
+            pool.release(buffer);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.solarlegendsserver;
+
+import com.game.net.ByteWriter;
+import com.game.net.FrameCodec;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The connection of a player to a game, kept by the GameListener. It owns the non-blocking channel,
+ * the FrameCodec that the bytes of the channel are accumulated in and the queue of the frames that
+ * are waiting to be written.
+ * <p>
+ * The workers of the MatchScheduler send the game states from their ticks, so send only puts the
+ * frame in the queue and asks the thread of the GameListener to write it: a tick never waits for
+ * the network. A player who stops reading and lets more than MAX_QUEUED bytes pile up is
+ * disconnected instead of being queued for without end. Everything else is only used by the thread
+ * of the GameListener.
+ * </p>
+ *
+ * @author Robert Chiper
+ */
+public class GameConnection {
+    // The most bytes waiting to be written before the player is taken to have stopped reading
+    static final int MAX_QUEUED = 1 << 20;
+
+    private SocketChannel channel;
+    private SelectionKey key;
+    private GameListener listener;
+    private String name;
+    private FrameCodec decoder = new FrameCodec();
+    private long acceptTime;
+    private ConcurrentLinkedQueue<ByteBuffer> writeQueue = new ConcurrentLinkedQueue<>();
+    private AtomicInteger queuedBytes = new AtomicInteger();
+    // Set while the connection waits in the queue of the GameListener to be flushed
+    final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private volatile boolean closing;
+    // The game that accepted the PORT_PACKET, null during the handshake
+    GameServer game;
+
+    /**
+     * @param channel    the accepted channel, already in non-blocking mode
+     * @param key        the key of the channel in the selector of the GameListener
+     * @param listener   the GameListener that writes the queued frames
+     * @param acceptTime the System.nanoTime at which the connection was accepted
+     */
+    GameConnection(SocketChannel channel, SelectionKey key, GameListener listener, long acceptTime) {
+        this.channel = channel;
+        this.key = key;
+        this.listener = listener;
+        this.acceptTime = acceptTime;
+        InetSocketAddress address = (InetSocketAddress) channel.socket().getRemoteSocketAddress();
+        name = address.getAddress().toString() + ":" + address.getPort();
+    }
+
+    /**
+     * Reads whatever is available on the channel into the read buffer.
+     *
+     * @return the number of bytes read, -1 if the player closed the connection
+     * @throws IOException if the read fails
+     */
+    int read() throws IOException {
+        return decoder.read(channel);
+    }
+
+    /**
+     * Takes the next complete message out of the read buffer.
+     *
+     * @return the bytes of the message, or null if the buffer does not hold a whole message yet
+     * @throws IOException if the player sent something that is not a valid frame
+     */
+    byte[] nextMessage() throws IOException {
+        return decoder.nextMessage();
+    }
+
+    /**
+     * Frames the message and queues it to be written by the thread of the GameListener. Can be
+     * called from any thread and never blocks. Nothing is sent once the connection is closing.
+     *
+     * @param message the writer holding the message to be sent
+     */
+    public void send(ByteWriter message) {
+        if (closing)
+            return;
+        ByteBuffer frame = ByteBuffer.allocate(message.size() + FrameCodec.PREFIX_SIZE);
+        FrameCodec.encode(message, frame);
+        frame.flip();
+        if (queuedBytes.addAndGet(frame.remaining()) > MAX_QUEUED) {
+            System.out.println(name + " is not reading the game, disconnected");
+            closing = true;
+            writeQueue.clear();
+            listener.flushLater(this);
+            return;
+        }
+        writeQueue.add(frame);
+        listener.flushLater(this);
+    }
+
+    /**
+     * Writes as much of the queue as the channel accepts, and waits for the channel to become
+     * writable while some is left. A closing connection is closed once its queue is written.
+     * Called by the thread of the GameListener.
+     *
+     * @throws IOException if the write fails
+     */
+    void flushQueue() throws IOException {
+        if (!channel.isOpen())
+            return;
+        ByteBuffer buffer;
+        while ((buffer = writeQueue.peek()) != null) {
+            int written = channel.write(buffer);
+            queuedBytes.addAndGet(-written);
+            if (buffer.hasRemaining()) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                return;
+            }
+            writeQueue.poll();
+        }
+        if (closing) {
+            closeNow();
+        } else {
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        }
+    }
+
+    /**
+     * Closes the connection once what has been sent so far is written. Can be called from any thread.
+     */
+    public void close() {
+        closing = true;
+        listener.flushLater(this);
+    }
+
+    /**
+     * Cancels the key, closes the channel and gives the read buffer back to the pool. Called by the
+     * thread of the GameListener.
+     */
+    void closeNow() {
+        closing = true;
+        if (!channel.isOpen())
+            return;
+        key.cancel();
+        decoder.release();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return true once the connection is closing, after which its messages are ignored
+     */
+    boolean isClosing() {
+        return closing;
+    }
+
+    /**
+     * @return the System.nanoTime at which the connection was accepted
+     */
+    long getAcceptTime() {
+        return acceptTime;
+    }
+
+    /**
+     * @return the address and port of the player
+     */
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,284 @@
+package com.solarlegendsserver;
+
+import com.game.net.ByteReader;
+import com.game.net.MessageHeaders;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The single listener that the players of every game connect to, instead of a ServerSocket on a random
+ * port for each game.
+ * <p>
+ * Every GameServer is registered with a match id, which the main server sends to both players together
+ * with the port of this listener and the token of the player. The first message a player sends on the
+ * game connection is the PORT_PACKET, with the player id, the match id and the token. The connection is
+ * then handed to the GameServer of that match, which checks the token and is given every message of the
+ * connection after it. A connection for an unknown match, or with the wrong token, is closed, and so is a
+ * connection that does not send its PORT_PACKET within HANDSHAKE_TIMEOUT milliseconds.
+ * </p>
+ * <p>
+ * Like the main server, one thread runs a Selector for the connections of all the players, so the number
+ * of threads does not grow with the number of players. It also writes what the games send: the ticks only
+ * queue their messages in the GameConnection, and the connections with something queued are flushed
+ * here, so a player whose connection is slow cannot hold up the worker that ticks the games.
+ * </p>
+ *
+ * @author Robert Chiper
+ */
+public class GameListener {
+    static final int HANDSHAKE_TIMEOUT = 10_000;
+
+    private int port;
+    private final int handshakeTimeout;
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private volatile boolean running;
+    private ConcurrentHashMap<Integer, GameServer> matches = new ConcurrentHashMap<>();
+    private AtomicInteger nextMatchId = new AtomicInteger();
+    // The connections with frames to write or that are closing, queued by any thread for the selector thread
+    private ConcurrentLinkedQueue<GameConnection> flushes = new ConcurrentLinkedQueue<>();
+    // Only used by the selector thread, the connections that have not sent their PORT_PACKET yet
+    private ArrayList<GameConnection> handshakes = new ArrayList<>();
+
+    /**
+     * @param port the port number of the ServerSocketChannel shared by all the games, 0 for any free port
+     */
+    public GameListener(int port) {
+        this(port, HANDSHAKE_TIMEOUT);
+    }
+
+    /**
+     * @param port             the port number of the ServerSocketChannel shared by all the games, 0 for any free port
+     * @param handshakeTimeout the milliseconds a player has to send the PORT_PACKET
+     */
+    GameListener(int port, int handshakeTimeout) {
+        this.port = port;
+        this.handshakeTimeout = handshakeTimeout;
+    }
+
+    /**
+     * Binds the ServerSocketChannel and launches the thread that runs the Selector of all the games.
+     *
+     * @throws IOException if the port cannot be bound
+     */
+    public void start() throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        port = serverChannel.socket().getLocalPort();
+        running = true;
+        if (SolarLegendsServer.DEBUG)
+            System.out.println("Started game listener on port " + port + "...");
+        (new Thread(() -> run(), "Game listener")).start();
+    }
+
+    /**
+     * Stops the selector thread, which closes the ServerSocketChannel and every connection.
+     */
+    public void stop() {
+        running = false;
+        if (selector != null)
+            selector.wakeup();
+    }
+
+    /**
+     * The event loop: accepts the players, reads their messages, writes what the games queued for
+     * them and closes the handshakes that took too long, until the listener is stopped.
+     */
+    private void run() {
+        try {
+            while (running) {
+                if (handshakes.isEmpty()) {
+                    selector.select();
+                } else {
+                    selector.select(Math.max(handshakeTimeout / 10, 1));
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid())
+                        continue;
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        GameConnection connection = (GameConnection) key.attachment();
+                        try {
+                            if (key.isWritable())
+                                connection.flushQueue();
+                            if (key.isValid() && key.isReadable())
+                                listen(connection);
+                        } catch (IOException e) {
+                            if (SolarLegendsServer.DEBUG)
+                                System.out.println("Game listener: " + connection.getName() + " dropped: " + e.getMessage());
+                            connection.closeNow();
+                        } catch (RuntimeException e) {
+                            // Only the player whose message could not be handled is dropped
+                            e.printStackTrace();
+                            connection.closeNow();
+                        }
+                    }
+                }
+                GameConnection connection;
+                while ((connection = flushes.poll()) != null) {
+                    connection.flushScheduled.set(false);
+                    try {
+                        connection.flushQueue();
+                    } catch (IOException e) {
+                        if (SolarLegendsServer.DEBUG)
+                            System.out.println("Game listener: " + connection.getName() + " dropped: " + e.getMessage());
+                        connection.closeNow();
+                    }
+                }
+                expireHandshakes();
+            }
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof GameConnection)
+                    ((GameConnection) key.attachment()).closeNow();
+            }
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Accepts a pending connection and registers it with the Selector for reading.
+     *
+     * @throws IOException if the connection cannot be accepted
+     */
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null)
+            return;
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        GameConnection connection = new GameConnection(channel, key, this, System.nanoTime());
+        key.attach(connection);
+        handshakes.add(connection);
+    }
+
+    /**
+     * Reads the available input of a player. The first message is the PORT_PACKET, which hands the
+     * connection to the GameServer of its match; every message after it goes to that GameServer.
+     *
+     * @param connection the connection that has input available
+     * @throws IOException if the read fails or the player sent an invalid frame
+     */
+    private void listen(GameConnection connection) throws IOException {
+        if (connection.read() < 0) {
+            connection.closeNow();
+            return;
+        }
+        byte[] data;
+        while (!connection.isClosing() && (data = connection.nextMessage()) != null) {
+            if (connection.game != null) {
+                connection.game.process(connection, data);
+            } else if (!handshake(connection, data)) {
+                if (SolarLegendsServer.DEBUG)
+                    System.out.println("Game listener: no game for " + connection.getName());
+                connection.closeNow();
+            }
+        }
+    }
+
+    /**
+     * Hands the connection to the GameServer of the match in its PORT_PACKET.
+     *
+     * @param connection the connection of the player
+     * @param data       the first message of the connection
+     * @return false if it is not a PORT_PACKET, or the game refused it
+     */
+    private boolean handshake(GameConnection connection, byte[] data) {
+        handshakes.remove(connection);
+        // PACKET_HEADER, PORT_PACKET, player id, match id, token
+        if (data.length < 16 || data[0] != 0x12 || data[1] != 0x11 || data[2] != MessageHeaders.PORT_PACKET)
+            return false;
+        GameServer gameServer = matches.get(ByteReader.getInt(data, 4));
+        if (gameServer == null || !gameServer.connect(connection, data))
+            return false;
+        connection.game = gameServer;
+        return true;
+    }
+
+    /**
+     * Closes the connections that have not sent their PORT_PACKET within the handshake timeout.
+     */
+    private void expireHandshakes() {
+        long now = System.nanoTime();
+        Iterator<GameConnection> pending = handshakes.iterator();
+        while (pending.hasNext()) {
+            GameConnection connection = pending.next();
+            if (connection.isClosing()) {
+                pending.remove();
+            } else if (now - connection.getAcceptTime() >= TimeUnit.MILLISECONDS.toNanos(handshakeTimeout)) {
+                if (SolarLegendsServer.DEBUG)
+                    System.out.println("Game listener: handshake timed out for " + connection.getName());
+                pending.remove();
+                connection.closeNow();
+            }
+        }
+    }
+
+    /**
+     * Queues a connection to be flushed by the selector thread, which is woken up for it. A
+     * connection that is already queued is not queued again.
+     *
+     * @param connection the connection with frames to write, or that is closing
+     */
+    void flushLater(GameConnection connection) {
+        if (connection.flushScheduled.compareAndSet(false, true)) {
+            flushes.add(connection);
+            if (selector != null)
+                selector.wakeup();
+        }
+    }
+
+    /**
+     * Registers a game so that its players can connect to it.
+     *
+     * @param gameServer the game
+     * @return the match id that the players send in their PORT_PACKET
+     */
+    public int register(GameServer gameServer) {
+        int matchId = nextMatchId.incrementAndGet();
+        matches.put(matchId, gameServer);
+        return matchId;
+    }
+
+    /**
+     * Removes a game that has ended, new connections for it are refused.
+     *
+     * @param matchId the match id of the game
+     */
+    public void unregister(int matchId) {
+        matches.remove(matchId);
+    }
+
+    /**
+     * @return the port number of the ServerSocketChannel
+     */
+    public int getPort() {
+        return port;
+    }
+}
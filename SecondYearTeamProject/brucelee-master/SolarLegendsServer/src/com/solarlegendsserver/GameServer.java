@@ -1,281 +1,337 @@
 package com.solarlegendsserver;
 
-import com.game.net.ByteUtils;
+import com.game.net.ByteReader;
+import com.game.net.ByteWriter;
+import com.game.net.FrameCodec;
+import com.game.net.Lockstep;
 import com.game.net.MessageHeaders;
 import com.game.net.Serializer;
-import com.game.state.GameState;
+import com.game.net.SnapshotHistory;
+import com.game.state.GameEvent;
+import com.game.state.Input;
 import com.game.state.Loadout;
-import javafx.scene.input.KeyCode;
-
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.util.ArrayDeque;
+import com.game.state.Simulation;
+
+import java.security.SecureRandom;
 import java.util.ArrayList;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 /**
  * The class responsible for starting and maintaining a multiplayer game. It's used to communicate with the
  * 2 players by receiving their input and informing them with the current game state of the server.
+ * <p>
+ * When the game relays the inputs, which it only does when the server is started with -Dlockstep=true,
+ * the players are not sent the game state. Every input of the player whose turn it is gets the tick at
+ * which the game takes it, and is sent to both players, whose own games take it at the same tick, as
+ * described in Lockstep. The checksum of the game is sent every
+ * Lockstep.SYNC_INTERVAL ticks, and a player whose game has diverged is sent every input relayed so far.
+ * </p>
  *
  * @author Robert Chiper
  */
 public class GameServer {
-    private int port;
-    private boolean listening = false;
-    private ArrayList<Client> clients = new ArrayList<>();
+    private int matchId;
+    // Read by the worker that ticks the game while the GameListener and the main server change it
+    private CopyOnWriteArrayList<Client> clients = new CopyOnWriteArrayList<>();
     private String serverName;
     private String serverPassword;
-    private GameState gameState;
+    // Created by the GameListener when the second client connects, read by the worker and the GameListener
+    private volatile Simulation gameState;
     private int playersConnected;
-    private ArrayDeque<KeyCode> userInput;
     private String hostName;
     private ArrayList<Loadout> loadouts;
     private boolean randomGravity;
+    private MatchScheduler scheduler;
+    private GameListener gameListener;
+    private LobbyRegistry registry;
     private boolean receivedEnter = false;
     public volatile boolean online = true;
+    // The client that sent LEAVE_GAME, which the next tick takes out of the game
+    private volatile Client leaving;
+    // Set by the first of closeServer and forceCloseServer, so a game only ends once
+    private final AtomicBoolean ended = new AtomicBoolean();
+    private boolean relay = SolarLegendsServer.RELAY_INPUTS;
+    // Every input relayed since the start, for the players that need a resync
+    private ByteWriter inputLog = new ByteWriter();
+    private int checksumTick;
+
+    private static final int KEYFRAME_INTERVAL = 90;
+    // The tokens that the players connect to the game with
+    private static final SecureRandom TOKENS = new SecureRandom();
+    private SnapshotHistory snapshots = new SnapshotHistory();
+    private int snapshotSequence = 0;
+
+    // Only used by the worker of the MatchScheduler that ticks this game, so the game states are built without allocating
+    private ByteWriter stateWriter = new ByteWriter();
+    private ByteWriter robotsWriter = new ByteWriter();
+    private ByteWriter explosionsWriter = new ByteWriter();
+    // The EXPLOSION events since the last game state was sent
+    private ArrayList<GameEvent> explosions = new ArrayList<>();
 
 
     /**
      * The constructor sets the name and password for the game. It initializes the ArrayList
-     * of loadouts and sets the number of connected players to 0.
+     * of loadouts and sets the number of connected players to 0. The game is registered with
+     * the GameListener, so the players can connect to it with its match id. It is added to the
+     * LobbyRegistry by the main server and removes itself from it when it ends.
      *
      * @param serverName     the name of the game which a client started
      * @param serverPassword the password of that game
+     * @param scheduler      the MatchScheduler that runs the game loop once both players connect
+     * @param gameListener   the GameListener that the players connect to
+     * @param registry       the LobbyRegistry that lists the open games
      */
-    public GameServer(String serverName, String serverPassword) {
+    public GameServer(String serverName, String serverPassword, MatchScheduler scheduler, GameListener gameListener,
+                      LobbyRegistry registry) {
         this.serverName = serverName;
         this.serverPassword = serverPassword;
+        this.scheduler = scheduler;
+        this.gameListener = gameListener;
+        this.registry = registry;
         loadouts = new ArrayList<>();
         playersConnected = 0;
-
-    }
-
-    /**
-     * Launches a new thread used for listening for client messages and selects a port number
-     * for the ServerSocket.
-     */
-    public void start() {
-        (new Thread(() -> listen())).start();
-
-        while (port == 0) {
-            Thread.yield();
-        }
-    }
-
-    /**
-     * Initializes the ServerSocket that accepts connections from the 2 players, initializes the
-     * ArrayList for user input and starts a new listen thread for every client that connects.
-     */
-    private void listen() {
-        try {
-            port = ThreadLocalRandom.current().nextInt(40000, 59999);
-            ServerSocket tcpSocket = new ServerSocket(port);
-            if (SolarLegendsServer.DEBUG)
-                System.out.println("Started game server (" + serverName + ") on port " + port + "...");
-            listening = true;
-            userInput = new ArrayDeque<>();
-            while (listening) {
-                Socket clientSocket = tcpSocket.accept();
-                Thread listenThread = new Thread(() -> listen(clientSocket), serverName + " ListenThread for " +
-                        clientSocket.getInetAddress() + ":" + clientSocket.getPort());
-                listenThread.start();
-            }
-            tcpSocket.close();
-        } catch (IOException e) {
-            System.out.println(e.getMessage());
-        }
+        matchId = gameListener.register(this);
+        if (SolarLegendsServer.DEBUG)
+            System.out.println("Started game server (" + serverName + ") with match id " + matchId + "...");
     }
 
     /**
-     * While the game is underway, the game state is updated at rate of 30 times a second. When
+     * One tick of the game, run 30 times a second by the MatchScheduler while the game is underway. The
+     * Simulation is advanced by the real time that has passed, in its fixed time steps, so the game
+     * keeps the same speed when a tick is late. When
      * boolean for ending the turn becomes true, a turn message is sent if the game is not completed
      * or, if it is, the server closes down. While the end turn boolean is false, the game state
-     * is sent to the clients.
+     * is sent to the clients. When the game relays the inputs, the input is relayed instead, and
+     * the checksum and the resyncs are sent. A game that was force closed is not ticked again, and a
+     * player who left ends the game at the next tick.
+     *
+     * @param elapsed the nanoseconds since the previous tick
+     * @return false once the game has ended
      */
-    private void update() {
-        long lastLoopTime = System.nanoTime();
-        final int TARGET_FPS = 30;
-        final long OPTIMAL_TIME = 1000000000 / TARGET_FPS;
-        int lastFpsTime = 0;
-
-        while (gameState.gameResult == -1) {
-            long now = System.nanoTime();
-            long updateLength = now - lastLoopTime;
-            lastLoopTime = now;
-
-            // update the frame counter
-            lastFpsTime += updateLength;
-
-            // update our FPS counter if a second has passed since we last recorded
-            if (lastFpsTime >= 1000000000) {
-                lastFpsTime = 0;
-
-            }
-
+    private boolean tick(long elapsed) {
+        if (!online)
+            return false;
+        Client left = leaving;
+        if (left != null && gameState.gameResult == -1) {
+            clients.remove(left);
+            registry.gameChanged(this);
+            gameState.gameResult = 3;
+        }
+        if (gameState.gameResult == -1 && relay) {
+            relayInput();
+            gameState.advance(elapsed / 1e9);
+            sendResyncs();
+            if (gameState.getTick() - checksumTick >= Lockstep.SYNC_INTERVAL)
+                sendChecksum();
+        } else if (gameState.gameResult == -1) {
             updateGameState();
-            gameState.step(0.03);
+            gameState.advance(elapsed / 1e9);
 
             if (receivedEnter) {
-                switch (gameState.gameResult) {
-                    case -1:
-                        sendTurnChange();
-                        break;
-                    default:
-                        closeServer();
-                        break;
-                }
+                if (gameState.gameResult == -1)
+                    sendTurnChange();
                 receivedEnter = false;
             } else {
                 sendGameState();
             }
-
-            try {
-                long sleepTime = (lastLoopTime - System.nanoTime() + OPTIMAL_TIME) / 1000000;
-                if (sleepTime > 0)
-                    Thread.sleep(sleepTime);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
         }
 
-        closeServer();
-
-    }
-
-    /**
-     * Listens for messages for a particular client, stores the message and calls the method to process it.
-     *
-     * @param clientSocket the Socket of the client
-     */
-    private void listen(Socket clientSocket) {
-        InputStream inputStream;
-        try {
-            inputStream = clientSocket.getInputStream();
-            byte[] data = new byte[16];
-            while (listening) {
-                inputStream.read(data);
-                process(clientSocket, data);
-            }
-            clientSocket.close();
-        } catch (IOException e) {
-            e.printStackTrace();
+        if (gameState.gameResult != -1) {
+            if (online)
+                closeServer();
+            return false;
         }
-
+        return true;
     }
 
     /**
-     * Sends data to the client
+     * Queues the message for the client, to be written by the GameListener, so the tick does not
+     * wait for the network. Nothing is sent to a client that has not connected to the game yet.
      *
-     * @param clientSocket the Socket of the client
-     * @param data         the content of the message
+     * @param connection the connection of the client, null if it has not connected yet
+     * @param message    the writer holding the message
      */
-    private synchronized void send(Socket clientSocket, byte[] data) {
-        try {
-            OutputStream outputStream = clientSocket.getOutputStream();
-            outputStream.write(data);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    private void send(GameConnection connection, ByteWriter message) {
+        if (connection != null)
+            connection.send(message);
     }
 
     /**
-     * Processes the data sent by the client. First it validates the packet header, then
+     * Processes the data sent by the client, called by the GameListener for every message after the
+     * PORT_PACKET, and by connect for the PORT_PACKET itself. First it validates the packet header, then
      * checks the type of the received message. The possible types are: PORT_PACKET, INPUT_PACKET,
-     * LEAVE_GAME. One port packet is sent by each client at the start of the game in which
-     * they specify whether they hosted or joined (id 0 - host, id 1 - join). When two players connect,
+     * SNAPSHOT_ACK, RESYNC, LEAVE_GAME. One port packet is sent by each client at the start of the game in which
+     * they specify whether they hosted or joined (id 0 - host, id 1 - join), followed by the match id
+     * that the GameListener used to find this game and the token the client was given. A port packet
+     * whose token is not the token of that player, or for a player that has already connected, is
+     * refused. When two players connect,
      * the GameState is initialized and a message is sent to each client with its details.
      * <p>
-     * An input packet only contains the bytes of the KeyCode pressed by the client. This KeyCode
-     * is added to the Collection of input. A leave game packet removes the leaving client from
-     * the collection of clients and initializes server shutdown.
+     * An input packet only contains the byte of the key pressed by the client. The Input for that
+     * key is added to the input of the client. A leave game packet is handed to the next tick, which
+     * removes the leaving client from the collection of clients and shuts the server down; before
+     * both players have connected there is no game to leave and it is ignored. A snapshot ack stores the sequence
+     * number of the last game state the client received, and a resync asks for every input relayed.
+     * </p>
+     * <p>
+     * When the game relays the inputs, the BEGIN_GAME message also holds the Loadout of every Robot,
+     * so the clients can set the game up exactly like the server.
      * </p>
      *
-     * @param clientSocket the Socket of the client
-     * @param data         the content of the message
+     * @param connection the connection of the client
+     * @param data       the content of the message
+     * @return false when the message was a refused port packet
      */
-    private void process(Socket clientSocket, byte[] data) {
-        ByteUtils byteUtils = new ByteUtils();
+    boolean process(GameConnection connection, byte[] data) {
 
         // Validate packet header
         if (!(data[0] == 0x12 && data[1] == 0x11))
-            return;
+            return true;
 
         switch (data[2]) {
             case MessageHeaders.PORT_PACKET:
-                int id = data[3];
+                return connect(connection, data);
+
+            case MessageHeaders.INPUT_PACKET:
+                Input input = Input.fromByte(data[3]);
                 for (Client client : clients) {
-                    if (client.player.id == id) {
-                        client.socket = clientSocket;
-                        playersConnected++;
-                    }
-                    if (client.player.id == 0) {
-                        hostName = client.player.username;
-                    }
+                    if (client.connection == connection && input != null)
+                        client.input.add(input);
                 }
-                if (playersConnected == 2) {
-                    Loadout[] loadoutsArray = new Loadout[6];
-                    for (int i = 0; i < 6; i++) {
-                        loadoutsArray[i] = loadouts.get(i);
-                    }
-                    gameState = new GameState(false, false, loadoutsArray);
-                    gameState.createGameWorld(System.currentTimeMillis());
-                    gameState.setRandomGravity(randomGravity);
-                    gameState.init();
-                    byteUtils.flush();
-                    byteUtils.write(MessageHeaders.PACKET_HEADER);
-                    byteUtils.write(MessageHeaders.BEGIN_GAME);
-                    byteUtils.write(randomGravity ? (byte) 1 : (byte) 2);
-                    byteUtils.write(gameState.getSeed());
-                    byteUtils.write(Serializer.serializeRobots(gameState.getRobots()));
-                    for (Client client : clients) {
-                        if (SolarLegendsServer.DEBUG)
-                            System.out.println("Sent BEGIN_GAME to " + client.address + ":" + client.socket.getPort());
-                        send(client.socket, byteUtils.getBuffer());
-                    }
-                    (new Thread(() -> update(), serverName + " GameState Thread")).start();
+                break;
+            case MessageHeaders.RESYNC:
+                for (Client client : clients) {
+                    if (client.connection == connection)
+                        client.resyncRequested = true;
                 }
                 break;
-
-            case MessageHeaders.INPUT_PACKET:
-                KeyCode input = byteUtils.getKeyCode(data[3]);
-                userInput.add(input);
+            case MessageHeaders.SNAPSHOT_ACK:
+                int sequence = ByteReader.getShort(data, 3) & 0xFFFF;
+                for (Client client : clients) {
+                    if (client.connection == connection)
+                        client.ackedSnapshot = sequence;
+                }
                 break;
             case MessageHeaders.LEAVE_GAME:
-                gameState.gameResult = 3;
-                int clientsSize = clients.size();
-                for (int i = 0; i < clientsSize; i++) {
-                    if (clients.get(i).port == clientSocket.getPort()) {
-                        clients.remove(i);
-                        break;
-                    }
+                if (gameState == null)
+                    break;
+                for (Client client : clients) {
+                    if (client.connection == connection)
+                        leaving = client;
                 }
-                closeServer();
                 break;
             default:
                 break;
         }
+        return true;
+    }
+
+    /**
+     * Connects the client whose player id and token are in the port packet to this game. When both
+     * players have connected, the game starts.
+     *
+     * @param connection the connection of the client
+     * @param data       the port packet
+     * @return false if no player of this game has that id and token, or that player has already connected
+     */
+    synchronized boolean connect(GameConnection connection, byte[] data) {
+        int id = data[3];
+        long token = ByteReader.getLong(data, 8);
+        Client connecting = null;
+        for (Client client : clients) {
+            if (client.player.id == id && client.token == token && client.connection == null)
+                connecting = client;
+        }
+        if (connecting == null)
+            return false;
+        connecting.connection = connection;
+        playersConnected++;
+        if (playersConnected == 2) {
+            Loadout[] loadoutsArray = new Loadout[6];
+            for (int i = 0; i < 6; i++) {
+                loadoutsArray[i] = loadouts.get(i);
+            }
+            gameState = new Simulation(false, false, loadoutsArray);
+            gameState.setListener(event -> {
+                if (event.getType() == GameEvent.Type.EXPLOSION)
+                    explosions.add(event);
+            });
+            gameState.createGameWorld(System.currentTimeMillis());
+            gameState.setRandomGravity(randomGravity);
+            gameState.init();
+            ByteWriter byteWriter = new ByteWriter();
+            byteWriter.write(MessageHeaders.PACKET_HEADER);
+            byteWriter.write(MessageHeaders.BEGIN_GAME);
+            byteWriter.write(randomGravity ? (byte) 1 : (byte) 2);
+            byteWriter.write(gameState.getSeed());
+            Serializer.serializeRobots(gameState.getRobots(), byteWriter);
+            byteWriter.write(relay);
+            if (relay) {
+                for (Loadout loadout : loadoutsArray)
+                    Serializer.serializeLoadout(loadout, byteWriter);
+            }
+            for (Client client : clients) {
+                if (SolarLegendsServer.DEBUG)
+                    System.out.println("Sent BEGIN_GAME to " + client.connection.getName());
+                send(client.connection, byteWriter);
+            }
+            scheduler.schedule(serverName, new MatchScheduler.Match() {
+                @Override
+                public boolean tick(long elapsed) {
+                    return GameServer.this.tick(elapsed);
+                }
+
+                @Override
+                public void abort() {
+                    GameServer.this.abort();
+                }
+            });
+        }
+        return true;
     }
 
     /**
-     * Sends the game state to both players. This contains the bytes for the robots, the id of the current
-     * character and the id of the current player.
+     * Sends the game state to both players. This contains the id of the current character, the id of
+     * the current player, the number of inputs of the player that the game has taken, the explosions
+     * since the last game state and the robots.
+     * <p>
+     * The robots are sent as the changes since the last snapshot that the client acknowledged, so a
+     * game state where nothing moved only costs a few bytes. Every KEYFRAME_INTERVAL snapshots, or when
+     * the client has not acknowledged a snapshot that is still in the history, all the robots are sent
+     * in full. A keyframe is marked by a baseline sequence number equal to its own sequence number.
+     * </p>
      */
     private void sendGameState() {
-        ByteUtils byteUtils = new ByteUtils();
-        byteUtils.write(MessageHeaders.PACKET_HEADER);
-        byteUtils.write(MessageHeaders.GAME_STATE);
-        byteUtils.write((byte) gameState.getCurrentChar().getRobotId());
-        byteUtils.write((byte) gameState.whosTurn);
-        byteUtils.write(Serializer.serializeRobots(gameState.getRobots()));
-        byteUtils.write(Serializer.serializeExplosions(gameState.getExplosions()));
-        gameState.clearExplosions();
+        robotsWriter.flush();
+        Serializer.serializeRobots(gameState.getRobots(), robotsWriter);
+        explosionsWriter.flush();
+        Serializer.serializeExplosions(explosions, explosionsWriter);
+        explosions.clear();
+
+        int sequence = snapshotSequence;
+        snapshotSequence = SnapshotHistory.next(snapshotSequence);
+        snapshots.put(sequence, robotsWriter.array(), robotsWriter.size());
+        byte[] robots = snapshots.get(sequence);
+        boolean keyframe = sequence % KEYFRAME_INTERVAL == 0;
 
         for (Client c : clients) {
-            send(c.socket, byteUtils.getBuffer());
+            int baselineSequence = c.ackedSnapshot;
+            byte[] baseline = keyframe ? null : snapshots.get(baselineSequence);
+            if (baseline == null)
+                baselineSequence = sequence;
+            stateWriter.flush();
+            stateWriter.write(MessageHeaders.PACKET_HEADER);
+            stateWriter.write(MessageHeaders.GAME_STATE);
+            stateWriter.write((short) sequence);
+            stateWriter.write((short) baselineSequence);
+            stateWriter.write((byte) gameState.getCurrentChar().getRobotId());
+            stateWriter.write((byte) gameState.whosTurn);
+            stateWriter.write(c.inputsTaken);
+            stateWriter.write(explosionsWriter.array(), 0, explosionsWriter.size());
+            Serializer.serializeRobotsDelta(baseline, robots, stateWriter);
+            send(c.connection, stateWriter);
         }
     }
 
@@ -286,23 +342,21 @@ public class GameServer {
      * used for controlling the level of lava and the id of the players whos turn it is.
      */
     private void sendTurnChange() {
-        ByteUtils byteUtils = new ByteUtils();
-        byteUtils.flush();
-        byteUtils.write(MessageHeaders.PACKET_HEADER);
-        byteUtils.write(MessageHeaders.TURN_CHANGE);
+        stateWriter.flush();
+        stateWriter.write(MessageHeaders.PACKET_HEADER);
+        stateWriter.write(MessageHeaders.TURN_CHANGE);
         if (gameState.dropCreated) {
-            byteUtils.write(true);
-            byteUtils.write((short) gameState.getDrops().get(gameState.getDrops().size() - 1).getXPos());
+            stateWriter.write(true);
+            stateWriter.write((short) gameState.getDrops().get(gameState.getDrops().size() - 1).getXPos());
         } else {
-            byteUtils.write(false);
-            byteUtils.write((short) 0);
+            stateWriter.write(false);
+            stateWriter.write((short) 0);
         }
-        byteUtils.write((short) gameState.turnNumber);
-        byteUtils.write((byte) gameState.whosTurn);
-        byte[] data = byteUtils.getBuffer();
+        stateWriter.write((short) gameState.turnNumber);
+        stateWriter.write((byte) gameState.whosTurn);
 
         for (Client c : clients) {
-            send(c.socket, data);
+            send(c.connection, stateWriter);
             if (SolarLegendsServer.DEBUG)
                 System.out.println("Sent turn change message to id " + c.player.id + "; the turn is " + gameState.whosTurn);
         }
@@ -313,151 +367,239 @@ public class GameServer {
      * fired its weapon.
      */
     private void sendWeaponFired() {
-        ByteUtils byteUtils = new ByteUtils();
-        byteUtils.write(MessageHeaders.PACKET_HEADER);
-        byteUtils.write(MessageHeaders.WEAPON_FIRED);
-        byteUtils.write((byte) gameState.getCurrentChar().getRobotId());
+        stateWriter.flush();
+        stateWriter.write(MessageHeaders.PACKET_HEADER);
+        stateWriter.write(MessageHeaders.WEAPON_FIRED);
+        stateWriter.write((byte) gameState.getCurrentChar().getRobotId());
         for (Client c : clients) {
-            send(c.socket, byteUtils.getBuffer());
+            send(c.connection, stateWriter);
+        }
+    }
+
+    /**
+     * Takes the next input of the player whose turn it is. The input of the other player is
+     * dropped, since it cannot move the Robot of the current player. Every input that is taken or
+     * dropped is counted, so the game state can tell each client how many of its inputs it holds.
+     *
+     * @return the input, or null if there is none
+     */
+    private Input pollInput() {
+        Input input = null;
+        for (Client c : clients) {
+            if (c.player.id == gameState.whosTurn) {
+                input = c.input.poll();
+                if (input != null)
+                    c.inputsTaken++;
+            } else {
+                while (c.input.poll() != null) {
+                    c.inputsTaken++;
+                }
+            }
         }
+        return input;
     }
 
     /**
-     * Tries to get the first input in the Collection of user input and if it is not null
+     * Tries to get the next input of the player whose turn it is and if it is not null
      * then it uses it to update the game state.
      */
     private void updateGameState() {
-        KeyCode input = userInput.poll();
+        Input input = pollInput();
         if (input != null) {
-            if (input == KeyCode.ENTER) {
-                if (gameState.endTurn()) {
-                    receivedEnter = true;
-                }
-            }
-            if (input == KeyCode.W) {
-                gameState.jump(gameState.whosTurn);
-            }
-            if (input == KeyCode.A) {
-                gameState.moveLeft(gameState.whosTurn);
-            }
-            if (input == KeyCode.D) {
-                gameState.moveRight(gameState.whosTurn);
-            }
-            if (input == KeyCode.Q) {
-                gameState.jump(gameState.whosTurn);
-                gameState.moveLeft(gameState.whosTurn);
-            }
-            if (input == KeyCode.E) {
-                gameState.jump(gameState.whosTurn);
-                gameState.moveRight(gameState.whosTurn);
+            if (gameState.apply(input)) {
+                receivedEnter = true;
             }
-            if (input == KeyCode.UP) {
-                gameState.increaseAngle(gameState.whosTurn);
-            }
-            if (input == KeyCode.DOWN) {
-                gameState.decreaseAngle(gameState.whosTurn);
-            }
-            if (input == KeyCode.LEFT) {
-                gameState.decreasePower(gameState.whosTurn);
-            }
-            if (input == KeyCode.RIGHT) {
-                gameState.increasePower(gameState.whosTurn);
-            }
-            if (input == KeyCode.SPACE) {
-                gameState.fireWeapon(gameState.whosTurn);
+            if (input == Input.FIRE) {
                 sendWeaponFired();
             }
-            if (input == KeyCode.DIGIT1) {
-                gameState.setCurrentSlot(0, gameState.whosTurn);
-            }
-            if (input == KeyCode.DIGIT2) {
-                gameState.setCurrentSlot(1, gameState.whosTurn);
-            }
         }
     }
 
     /**
-     * Stops all the threads running on the server and notifies the players with the
-     * result of the game. It makes sure that the server is also removed from the collection
-     * of active games that the main server has.
+     * Takes the next input of the player whose turn it is and schedules it Lockstep.INPUT_DELAY ticks
+     * ahead, both in the game of the server and, through an INPUT_RELAY message, in the games of
+     * the players. The game takes it at that tick only if it is still the turn of that player.
+     */
+    private void relayInput() {
+        Input input = pollInput();
+        if (input == null)
+            return;
+        int tick = gameState.getTick() + Lockstep.INPUT_DELAY;
+        int player = gameState.whosTurn;
+        gameState.schedule(tick, player, input);
+        Lockstep.writeInput(tick, player, input, inputLog);
+
+        stateWriter.flush();
+        stateWriter.write(MessageHeaders.PACKET_HEADER);
+        stateWriter.write(MessageHeaders.INPUT_RELAY);
+        Lockstep.writeInput(tick, player, input, stateWriter);
+        for (Client c : clients) {
+            send(c.connection, stateWriter);
+        }
+    }
+
+    /**
+     * Sends the tick the game is at and its checksum to both players. It also tells them that
+     * they may go on up to Lockstep.INPUT_DELAY ticks past it.
+     */
+    private void sendChecksum() {
+        checksumTick = gameState.getTick();
+        stateWriter.flush();
+        stateWriter.write(MessageHeaders.PACKET_HEADER);
+        stateWriter.write(MessageHeaders.CHECKSUM);
+        stateWriter.write(checksumTick);
+        stateWriter.write(gameState.checksum());
+        for (Client c : clients) {
+            send(c.connection, stateWriter);
+        }
+    }
+
+    /**
+     * Sends every input relayed so far to the players that asked for a resync, split into RESYNC
+     * messages that fit in a frame. The first byte of a message is 1 for the last one. A player who
+     * asks again within Lockstep.RESYNC_COOLDOWN ticks of the last resync waits for the cooldown, so a
+     * client that keeps diverging cannot make the server send the whole log every few ticks.
+     */
+    private void sendResyncs() {
+        int perMessage = (FrameCodec.MAX_MESSAGE_LENGTH - 4) / Lockstep.INPUT_SIZE * Lockstep.INPUT_SIZE;
+        for (Client c : clients) {
+            if (!c.resyncRequested)
+                continue;
+            if (c.resyncTick >= 0 && gameState.getTick() - c.resyncTick < Lockstep.RESYNC_COOLDOWN)
+                continue;
+            c.resyncRequested = false;
+            c.resyncTick = gameState.getTick();
+            if (SolarLegendsServer.DEBUG)
+                System.out.println(serverName + ": sent resync to id " + c.player.id + " at tick " + gameState.getTick());
+            int offset = 0;
+            do {
+                int length = Math.min(perMessage, inputLog.size() - offset);
+                stateWriter.flush();
+                stateWriter.write(MessageHeaders.PACKET_HEADER);
+                stateWriter.write(MessageHeaders.RESYNC);
+                stateWriter.write(offset + length == inputLog.size());
+                stateWriter.write(inputLog.array(), offset, length);
+                send(c.connection, stateWriter);
+                offset += length;
+            } while (offset < inputLog.size());
+        }
+    }
+
+    /**
+     * Notifies the players with the result of the game and closes their connections once it
+     * has been written. It makes sure that the server is also removed from the collection
+     * of active games that the main server has. Nothing happens if the game has already ended.
      */
     private void closeServer() {
-        listening = false;
-        ByteUtils byteUtils = new ByteUtils();
-        byteUtils.write(MessageHeaders.PACKET_HEADER);
-        byteUtils.write(MessageHeaders.GAME_ENDED);
+        if (!ended.compareAndSet(false, true))
+            return;
+        ByteWriter byteWriter = new ByteWriter(4);
+        byteWriter.write(MessageHeaders.PACKET_HEADER);
+        byteWriter.write(MessageHeaders.GAME_ENDED);
         switch (gameState.gameResult) {
             case 0:
             case 1:
                 for (Client c : clients) {
                     if (c.player.id == gameState.gameResult) {
                         c.player.addWin();
-                        byteUtils.write((byte) 0);
+                        byteWriter.write((byte) 0);
                     } else {
                         c.player.addLoss();
-                        byteUtils.write((byte) 1);
+                        byteWriter.write((byte) 1);
                     }
-                    send(c.socket, byteUtils.getBuffer());
-                    byteUtils.flush();
-                    byteUtils.write(MessageHeaders.PACKET_HEADER);
-                    byteUtils.write(MessageHeaders.GAME_ENDED);
+                    send(c.connection, byteWriter);
+                    byteWriter.flush();
+                    byteWriter.write(MessageHeaders.PACKET_HEADER);
+                    byteWriter.write(MessageHeaders.GAME_ENDED);
                 }
                 break;
             case 2:
-                byteUtils.write((byte) 2);
+                byteWriter.write((byte) 2);
                 for (Client c : clients) {
                     c.player.addDraw();
-                    send(c.socket, byteUtils.getBuffer());
+                    send(c.connection, byteWriter);
                 }
                 break;
             case 3:
-                byteUtils.write((byte) 3);
+                byteWriter.write((byte) 3);
                 for (Client c : clients) {
-                    send(c.socket, byteUtils.getBuffer());
+                    send(c.connection, byteWriter);
                 }
                 break;
             default:
                 break;
         }
+        closeConnections();
         clients.clear();
+        gameListener.unregister(matchId);
         online = false;
         System.out.println("Game " + serverName + " ended");
-        SolarLegendsServer.serverChecker();
+        registry.removeGame(this);
+    }
+
+    /**
+     * Ends the game when a tick has failed, so the players are told that it ended and it is removed
+     * from the games of the main server like a game that a player left.
+     */
+    private void abort() {
+        if (ended.get())
+            return;
+        System.out.println(serverName + ": game aborted");
+        gameState.gameResult = 3;
+        closeServer();
     }
 
     /**
-     * Terminates the threads running on the server and notifies the player who hasn't force closed
-     * that the game has ended.
+     * Notifies the player who hasn't force closed that the game has ended and closes the connections
+     * of both players. Nothing happens if the game has already ended.
      *
      * @param id the id of the player who forcefully closed his/hers client
      */
     public void forceCloseServer(int id) {
-        listening = false;
+        if (!ended.compareAndSet(false, true))
+            return;
 
-        ByteUtils byteUtils = new ByteUtils();
-        byteUtils.write(MessageHeaders.PACKET_HEADER);
-        byteUtils.write(MessageHeaders.LEAVE_GAME);
-        byte[] message = byteUtils.getBuffer();
+        ByteWriter message = new ByteWriter(3);
+        message.write(MessageHeaders.PACKET_HEADER);
+        message.write(MessageHeaders.LEAVE_GAME);
         for (Client c : clients) {
             if (c.player.id != id) {
-                send(c.socket, message);
+                send(c.connection, message);
                 if (SolarLegendsServer.DEBUG)
-                    System.out.println(serverName + ": sent termination message to " + c.socket.getPort());
+                    System.out.println(serverName + ": sent termination message to " + c.port);
             }
         }
+        closeConnections();
         clients.clear();
+        gameListener.unregister(matchId);
         online = false;
         System.out.println(serverName + ": game ended");
-        SolarLegendsServer.serverChecker();
+        registry.removeGame(this);
+    }
+
+    /**
+     * Closes the connections of the clients after what has been sent to them.
+     */
+    private void closeConnections() {
+        for (Client c : clients) {
+            if (c.connection != null)
+                c.connection.close();
+        }
     }
 
     /**
-     * Adds a client to the collection of clients
+     * Adds a client to the collection of clients. The player with id 0 is the host of the game.
+     * The client is given a new token, which it has to send to connect to the game.
      *
      * @param client the client to be added
      */
     public void addClient(Client client) {
+        client.token = TOKENS.nextLong();
+        client.connection = null;
         clients.add(client);
+        if (client.player.id == 0)
+            hostName = client.player.username;
+        registry.gameChanged(this);
         if (SolarLegendsServer.DEBUG)
             System.out.println(serverName + ": added client " + client.address + ":" + client.port);
     }
@@ -498,10 +640,10 @@ public class GameServer {
     }
 
     /**
-     * @return the port number of the ServerSocket
+     * @return the match id that the players send in their PORT_PACKET
      */
-    public int getPort() {
-        return port;
+    public int getMatchId() {
+        return matchId;
     }
 
     /**
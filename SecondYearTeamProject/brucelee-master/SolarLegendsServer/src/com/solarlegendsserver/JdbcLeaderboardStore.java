@@ -0,0 +1,158 @@
+package com.solarlegendsserver;
+
+import com.solarlegendsserver.ConnectionPool.PooledConnection;
+import com.solarlegendsserver.utils.Player;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * The leaderboard table of the PostgreSQL database, accessed through a ConnectionPool.
+ * <p>
+ * The names of the players are kept unique by an index, which the store creates if it is missing, so
+ * the players and their results are added with upserts that stay correct when several servers or
+ * threads write the same player at once. Every upsert needs that index, so a store whose index cannot
+ * be created is not made at all.
+ * </p>
+ *
+ * @author Robert Chiper
+ */
+public class JdbcLeaderboardStore implements LeaderboardStore {
+    /**
+     * Removes the players that the old check-then-insert added twice, which would stop the index from being
+     * created. The old updates changed every row of a name, so the copies hold the same results; the one
+     * with the most games is kept.
+     */
+    static final String REMOVE_DUPLICATES = "DELETE FROM leaderboard a USING leaderboard b " +
+            "WHERE a.name = b.name AND (a.wins + a.draws + a.loses, a.ctid) < (b.wins + b.draws + b.loses, b.ctid)";
+    static final String CREATE_NAME_INDEX = "CREATE UNIQUE INDEX IF NOT EXISTS leaderboard_name " +
+            "ON leaderboard (name)";
+    /**
+     * Adds the player if they are not in the leaderboard and returns their row, in one round trip. The
+     * update that changes nothing is only there so that RETURNING also gives the row of a player who is
+     * in the leaderboard already.
+     */
+    static final String LOAD_ONE = "INSERT INTO leaderboard (name, wins, draws, loses) VALUES (?, 0, 0, 0) " +
+            "ON CONFLICT (name) DO UPDATE SET name = EXCLUDED.name RETURNING name, wins, draws, loses";
+    private static final String SELECT_ALL = "SELECT * FROM leaderboard";
+    /**
+     * Adds a whole batch of results in one statement. The batch is sent as four arrays of the same length,
+     * the increments are done by the database so no update is lost whatever else writes to the table, and
+     * a player who is not in the leaderboard yet is added with their results.
+     */
+    static final String ADD_RESULTS = "INSERT INTO leaderboard (name, wins, draws, loses) " +
+            "SELECT * FROM unnest(?::text[], ?::int[], ?::int[], ?::int[]) AS r(name, wins, draws, loses) " +
+            "ON CONFLICT (name) DO UPDATE SET wins = leaderboard.wins + EXCLUDED.wins, " +
+            "draws = leaderboard.draws + EXCLUDED.draws, loses = leaderboard.loses + EXCLUDED.loses";
+
+    private ConnectionPool pool;
+
+    /**
+     * Creates the unique index on the names of the players if the leaderboard does not have it yet,
+     * after removing the players that are in it twice, in one transaction.
+     *
+     * @param pool the connections to the database
+     * @throws SQLException if the index cannot be created, in which case nothing is changed
+     */
+    public JdbcLeaderboardStore(ConnectionPool pool) throws SQLException {
+        this.pool = pool;
+        PooledConnection connection = pool.borrow();
+        Connection dbConnection = connection.getConnection();
+        try (Statement statement = dbConnection.createStatement()) {
+            dbConnection.setAutoCommit(false);
+            try {
+                int removed = statement.executeUpdate(REMOVE_DUPLICATES);
+                if (removed > 0)
+                    System.out.println("Database: removed " + removed + " players who were in the leaderboard twice");
+                statement.execute(CREATE_NAME_INDEX);
+                dbConnection.commit();
+            } catch (SQLException e) {
+                dbConnection.rollback();
+                throw e;
+            } finally {
+                dbConnection.setAutoCommit(true);
+            }
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    @Override
+    public Player loadPlayer(String username) throws SQLException {
+        PooledConnection connection = pool.borrow();
+        try {
+            PreparedStatement loadQuery = connection.prepare(LOAD_ONE);
+            loadQuery.setString(1, username);
+            try (ResultSet resultSet = loadQuery.executeQuery()) {
+                resultSet.next();
+                return readPlayer(resultSet);
+            }
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    @Override
+    public ArrayList<Player> loadPlayers() throws SQLException {
+        ArrayList<Player> players = new ArrayList<>();
+        PooledConnection connection = pool.borrow();
+        try (ResultSet resultSet = connection.prepare(SELECT_ALL).executeQuery()) {
+            while (resultSet.next()) {
+                players.add(readPlayer(resultSet));
+            }
+        } finally {
+            pool.release(connection);
+        }
+        return players;
+    }
+
+    @Override
+    public void addResults(Collection<Player> results) throws SQLException {
+        if (results.isEmpty())
+            return;
+        String[] names = new String[results.size()];
+        Integer[] wins = new Integer[names.length];
+        Integer[] draws = new Integer[names.length];
+        Integer[] loses = new Integer[names.length];
+        int i = 0;
+        for (Player result : results) {
+            names[i] = result.username;
+            wins[i] = result.wins;
+            draws[i] = result.draws;
+            loses[i] = result.loses;
+            i++;
+        }
+
+        PooledConnection connection = pool.borrow();
+        Connection dbConnection = connection.getConnection();
+        try {
+            PreparedStatement addResults = connection.prepare(ADD_RESULTS);
+            addResults.setArray(1, dbConnection.createArrayOf("text", names));
+            addResults.setArray(2, dbConnection.createArrayOf("integer", wins));
+            addResults.setArray(3, dbConnection.createArrayOf("integer", draws));
+            addResults.setArray(4, dbConnection.createArrayOf("integer", loses));
+            addResults.executeUpdate();
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+    }
+
+    private Player readPlayer(ResultSet resultSet) throws SQLException {
+        Player player = new Player();
+        player.username = resultSet.getString(1);
+        player.wins = resultSet.getInt(2);
+        player.draws = resultSet.getInt(3);
+        player.loses = resultSet.getInt(4);
+        return player;
+    }
+}
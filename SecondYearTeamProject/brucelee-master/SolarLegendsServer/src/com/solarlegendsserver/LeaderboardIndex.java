@@ -0,0 +1,292 @@
+package com.solarlegendsserver;
+
+import com.solarlegendsserver.utils.Player;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * The leaderboard kept in memory and in order, so the main server can answer leaderboard requests
+ * without reading the whole table from the database.
+ * <p>
+ * The players are ranked by their win ratio, then by the number of wins, then by name. They are
+ * kept in a treap where every node also stores the size of its subtree, so finding the rank of a
+ * player, the player at a given rank and updating a player after a game all take O(log n), and a
+ * page of the leaderboard takes O(log n) plus its length.
+ * </p>
+ * <p>
+ * The DatabaseManager fills the index when it starts, adds the players as they connect and adds the
+ * results of the games once they are written, so it always matches the database. It is used by the
+ * thread of the main server and the writer of the DatabaseManager, so the methods are synchronized.
+ * </p>
+ *
+ * @author Robert Chiper
+ */
+public class LeaderboardIndex {
+
+    /**
+     * A part of the leaderboard, as sent to the clients.
+     */
+    public static class Page {
+        public final int total;
+        public final int first;
+        public final ArrayList<Player> players;
+
+        /**
+         * @param total   the number of players in the leaderboard
+         * @param first   the rank of the first player of the page, starting from 0
+         * @param players the players of the page, in order
+         */
+        Page(int total, int first, ArrayList<Player> players) {
+            this.total = total;
+            this.first = first;
+            this.players = players;
+        }
+    }
+
+    private static class Node {
+        final String username;
+        int wins;
+        int draws;
+        int loses;
+        final int priority;
+        Node left;
+        Node right;
+        int size = 1;
+
+        Node(Player player, int priority) {
+            username = player.username;
+            wins = player.wins;
+            draws = player.draws;
+            loses = player.loses;
+            this.priority = priority;
+        }
+    }
+
+    private HashMap<String, Node> players = new HashMap<>();
+    private Node root;
+    private Random random = new Random();
+
+    /**
+     * Adds the players that are not in the index yet.
+     *
+     * @param players the players, as read from the database
+     */
+    public synchronized void addAll(Collection<Player> players) {
+        for (Player player : players) {
+            add(player);
+        }
+    }
+
+    /**
+     * Adds a player if they are not in the index yet. A player that is already in it keeps the
+     * results it has, which are never older than the ones in the database.
+     *
+     * @param player the player, as read from the database
+     */
+    public synchronized void add(Player player) {
+        if (players.containsKey(player.username))
+            return;
+        Node node = new Node(player, random.nextInt());
+        players.put(player.username, node);
+        root = insert(root, node);
+    }
+
+    /**
+     * Adds the results of games to the players. Players who are not in the index are added with
+     * those results, the same as in the database.
+     *
+     * @param results the number of wins, draws and loses to add for each username
+     */
+    public synchronized void addResults(Collection<Player> results) {
+        for (Player result : results) {
+            Node node = players.get(result.username);
+            if (node == null) {
+                node = new Node(result, random.nextInt());
+                players.put(result.username, node);
+                root = insert(root, node);
+                continue;
+            }
+            root = remove(root, node);
+            node.wins += result.wins;
+            node.draws += result.draws;
+            node.loses += result.loses;
+            node.left = null;
+            node.right = null;
+            node.size = 1;
+            root = insert(root, node);
+        }
+    }
+
+    /**
+     * @return the number of players in the leaderboard
+     */
+    public synchronized int size() {
+        return size(root);
+    }
+
+    /**
+     * @param username the name of the player
+     * @return the rank of the player starting from 0, or -1 if they are not in the leaderboard
+     */
+    public synchronized int getRank(String username) {
+        Node node = players.get(username);
+        if (node == null)
+            return -1;
+        int rank = 0;
+        Node current = root;
+        while (current != null) {
+            int compare = compare(node, current);
+            if (compare < 0) {
+                current = current.left;
+            } else if (compare > 0) {
+                rank += size(current.left) + 1;
+                current = current.right;
+            } else {
+                return rank + size(current.left);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param first the rank of the first player, starting from 0
+     * @param count the most players to return
+     * @return the players ranked from first, fewer than count at the end of the leaderboard
+     */
+    public synchronized Page getPage(int first, int count) {
+        first = Math.max(0, first);
+        ArrayList<Player> page = new ArrayList<>(Math.max(0, Math.min(count, size(root) - first)));
+        collect(root, first, first + count, 0, page);
+        return new Page(size(root), first, page);
+    }
+
+    /**
+     * Returns the page with the player in the middle, or the top of the leaderboard if the
+     * player is not in it.
+     *
+     * @param username the name of the player
+     * @param count    the most players to return
+     * @return the players ranked around the player
+     */
+    public synchronized Page getPageAround(String username, int count) {
+        int rank = getRank(username);
+        if (rank < 0)
+            return getPage(0, count);
+        return getPage(Math.min(rank - count / 2, size(root) - count), count);
+    }
+
+    /**
+     * Adds the players ranked from first to last, not included, of a subtree to the page.
+     *
+     * @param offset the rank of the first player of the subtree
+     */
+    private void collect(Node node, int first, int last, int offset, ArrayList<Player> page) {
+        if (node == null)
+            return;
+        int rank = offset + size(node.left);
+        if (first < rank)
+            collect(node.left, first, last, offset, page);
+        if (first <= rank && rank < last)
+            page.add(toPlayer(node));
+        if (rank + 1 < last)
+            collect(node.right, first, last, rank + 1, page);
+    }
+
+    /**
+     * Orders the players by win ratio, then wins, then name. A player with no games has a ratio of 0.
+     * The ratios are compared by multiplying across, so there is no rounding.
+     */
+    private static int compare(Node a, Node b) {
+        long aGames = Math.max(1, (long) a.wins + a.draws + a.loses);
+        long bGames = Math.max(1, (long) b.wins + b.draws + b.loses);
+        int compare = Long.compare(b.wins * aGames, a.wins * bGames);
+        if (compare != 0)
+            return compare;
+        compare = Integer.compare(b.wins, a.wins);
+        if (compare != 0)
+            return compare;
+        return a.username.compareTo(b.username);
+    }
+
+    private static Node insert(Node root, Node node) {
+        if (root == null)
+            return node;
+        if (compare(node, root) < 0) {
+            root.left = insert(root.left, node);
+            if (root.left.priority > root.priority)
+                root = rotateRight(root);
+        } else {
+            root.right = insert(root.right, node);
+            if (root.right.priority > root.priority)
+                root = rotateLeft(root);
+        }
+        update(root);
+        return root;
+    }
+
+    private static Node remove(Node root, Node node) {
+        if (root == null)
+            return null;
+        if (root == node)
+            return merge(root.left, root.right);
+        if (compare(node, root) < 0) {
+            root.left = remove(root.left, node);
+        } else {
+            root.right = remove(root.right, node);
+        }
+        update(root);
+        return root;
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null)
+            return right;
+        if (right == null)
+            return left;
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        }
+        right.left = merge(left, right.left);
+        update(right);
+        return right;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        update(node);
+        left.right = node;
+        update(left);
+        return left;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        update(node);
+        right.left = node;
+        update(right);
+        return right;
+    }
+
+    private static void update(Node node) {
+        node.size = size(node.left) + size(node.right) + 1;
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static Player toPlayer(Node node) {
+        Player player = new Player(node.username);
+        player.wins = node.wins;
+        player.draws = node.draws;
+        player.loses = node.loses;
+        return player;
+    }
+}
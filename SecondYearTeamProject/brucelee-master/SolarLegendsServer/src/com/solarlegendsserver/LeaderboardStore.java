@@ -0,0 +1,46 @@
+package com.solarlegendsserver;
+
+import com.solarlegendsserver.utils.Player;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Where the leaderboard is kept. The DatabaseManager reads the players from it and writes the results
+ * of the games to it, in batches, from its own thread.
+ *
+ * @author Robert Chiper
+ */
+public interface LeaderboardStore {
+
+    /**
+     * Returns a player, adding them to the leaderboard with no games played if they are not in it yet.
+     *
+     * @param username the name of the player
+     * @return the player
+     * @throws SQLException if the leaderboard cannot be read
+     */
+    Player loadPlayer(String username) throws SQLException;
+
+    /**
+     * @return all the players in the leaderboard
+     * @throws SQLException if the leaderboard cannot be read
+     */
+    ArrayList<Player> loadPlayers() throws SQLException;
+
+    /**
+     * Adds a batch of results to the leaderboard, all of them or none. Each Player holds the number of
+     * wins, draws and loses to add for that username. Players who are not in the leaderboard are added
+     * with those results.
+     *
+     * @param results the results to add, at most one per username
+     * @throws SQLException if the results cannot be written
+     */
+    void addResults(Collection<Player> results) throws SQLException;
+
+    /**
+     * Releases the resources of the store.
+     */
+    void close();
+}
@@ -0,0 +1,157 @@
+package com.solarlegendsserver;
+
+import com.game.net.FrameCodec;
+import com.game.net.MessageHeaders;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+/**
+ * Opens a large number of lobby connections against a running main server and keeps every one of
+ * them busy asking for the server list, printing the number of connected clients, the requests
+ * answered per second and the average round trip time once a second.
+ * <p>
+ * To see how many clients a single core can sustain, start the main server pinned to one core
+ * (for example {@code taskset -c 0 java com.solarlegendsserver.SolarLegendsServer}) and raise the
+ * number of clients until the request rate stops growing or the round trip time takes off.
+ * </p>
+ * Usage: {@code LoadGenerator [host] [port] [clients] [seconds]}
+ *
+ * @author Robert Chiper
+ */
+public class LoadGenerator {
+
+    private static final byte[] SERVERS_LIST_REQUEST = FrameCodec.encode(new byte[]{MessageHeaders.PACKET_HEADER[0], MessageHeaders.PACKET_HEADER[1], MessageHeaders.SERVERS_LIST});
+
+    /**
+     * The state of one simulated client.
+     */
+    private static class Bot {
+        FrameCodec decoder = new FrameCodec();
+        ByteBuffer request;
+        boolean connected;
+        long sentAt;
+    }
+
+    private String host;
+    private int port;
+    private int clients;
+    private int seconds;
+
+    private int connectedClients;
+    private long answered;
+    private long latencyNanos;
+
+    private LoadGenerator(String host, int port, int clients, int seconds) {
+        this.host = host;
+        this.port = port;
+        this.clients = clients;
+        this.seconds = seconds;
+    }
+
+    /**
+     * Connects all the clients and drives them from a single Selector until the time is up.
+     *
+     * @throws IOException if the Selector cannot be opened
+     */
+    private void run() throws IOException {
+        Selector selector = Selector.open();
+        for (int i = 0; i < clients; i++) {
+            SocketChannel channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            channel.connect(new InetSocketAddress(host, port));
+            channel.register(selector, SelectionKey.OP_CONNECT, new Bot());
+        }
+
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        long nextReport = System.nanoTime() + 1_000_000_000L;
+        while (System.nanoTime() < end) {
+            selector.select(100);
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                try {
+                    handle(key);
+                } catch (IOException e) {
+                    System.out.println("Client dropped: " + e.getMessage());
+                    key.cancel();
+                    key.channel().close();
+                }
+            }
+            if (System.nanoTime() >= nextReport) {
+                report();
+                nextReport += 1_000_000_000L;
+            }
+        }
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+    }
+
+    private void handle(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Bot bot = (Bot) key.attachment();
+
+        if (key.isConnectable()) {
+            channel.finishConnect();
+            byte[] name = ("bot" + channel.socket().getLocalPort()).getBytes();
+            ByteBuffer message = ByteBuffer.allocate(name.length + 4);
+            message.put(MessageHeaders.PACKET_HEADER).put(MessageHeaders.CONNECTION).put(name).put((byte) 0);
+            send(key, bot, ByteBuffer.wrap(FrameCodec.encode(message.array())));
+            return;
+        }
+        if (key.isWritable()) {
+            channel.write(bot.request);
+            if (!bot.request.hasRemaining())
+                key.interestOps(SelectionKey.OP_READ);
+        }
+        if (key.isValid() && key.isReadable()) {
+            if (bot.decoder.read(channel) < 0)
+                throw new IOException("connection closed by the server");
+            if (bot.decoder.nextMessage() == null)
+                return;
+            if (!bot.connected) {
+                bot.connected = true;
+                connectedClients++;
+            } else {
+                answered++;
+                latencyNanos += System.nanoTime() - bot.sentAt;
+            }
+            send(key, bot, ByteBuffer.wrap(SERVERS_LIST_REQUEST));
+        }
+    }
+
+    private void send(SelectionKey key, Bot bot, ByteBuffer request) throws IOException {
+        bot.request = request;
+        bot.sentAt = System.nanoTime();
+        ((SocketChannel) key.channel()).write(request);
+        key.interestOps(request.hasRemaining() ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    private void report() {
+        double averageMillis = answered == 0 ? 0 : latencyNanos / (double) answered / 1_000_000;
+        System.out.printf("connected: %d/%d  requests/s: %d  average rtt: %.3f ms%n", connectedClients, clients, answered, averageMillis);
+        answered = 0;
+        latencyNanos = 0;
+    }
+
+    /**
+     * @param args host, port, number of clients and duration in seconds, all optional
+     * @throws IOException if the Selector cannot be opened
+     */
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 4445;
+        int clients = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 30;
+        new LoadGenerator(host, port, clients, seconds).run();
+    }
+}
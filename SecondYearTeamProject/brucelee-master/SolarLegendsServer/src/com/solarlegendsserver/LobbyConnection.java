@@ -0,0 +1,129 @@
+package com.solarlegendsserver;
+
+import com.game.net.ByteWriter;
+import com.game.net.FrameCodec;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+
+/**
+ * The state the main server keeps for every connected socket. It owns the non-blocking channel,
+ * the FrameCodec that the bytes of the channel are accumulated in until a whole message is available,
+ * and a queue of the messages that could not be written straight away.
+ * <p>
+ * Only the selector thread of the main server uses this class, so it is not synchronized.
+ * </p>
+ *
+ * @author Robert Chiper
+ */
+public class LobbyConnection {
+    private SocketChannel channel;
+    private SelectionKey key;
+    private String name;
+    private FrameCodec decoder = new FrameCodec();
+    private ArrayDeque<ByteBuffer> writeQueue = new ArrayDeque<>();
+
+    /**
+     * @param channel the accepted channel, already in non-blocking mode
+     * @param key     the key of the channel in the selector of the main server
+     */
+    public LobbyConnection(SocketChannel channel, SelectionKey key) {
+        this.channel = channel;
+        this.key = key;
+        InetSocketAddress address = (InetSocketAddress) channel.socket().getRemoteSocketAddress();
+        name = address.getAddress().toString() + ":" + address.getPort();
+    }
+
+    /**
+     * Reads whatever is available on the channel into the read buffer.
+     *
+     * @return the number of bytes read, -1 if the client closed the connection
+     * @throws IOException if the read fails
+     */
+    public int read() throws IOException {
+        return decoder.read(channel);
+    }
+
+    /**
+     * Takes the next complete message out of the read buffer.
+     *
+     * @return the bytes of the message, or null if the buffer does not hold a whole message yet
+     * @throws IOException if the client sent something that is not a valid frame
+     */
+    public byte[] nextMessage() throws IOException {
+        return decoder.nextMessage();
+    }
+
+    /**
+     * Frames the message and writes it to the channel. Whatever the socket does not accept straight
+     * away is copied to the queue and the key is switched to wait for the channel to become writable.
+     *
+     * @param message    the writer holding the message to be sent
+     * @param sendBuffer the buffer the frame is put together in, shared by all the connections
+     * @throws IOException if the write fails
+     */
+    public void send(ByteWriter message, ByteBuffer sendBuffer) throws IOException {
+        sendBuffer.clear();
+        FrameCodec.encode(message, sendBuffer);
+        sendBuffer.flip();
+        if (writeQueue.isEmpty()) {
+            channel.write(sendBuffer);
+        }
+        if (sendBuffer.hasRemaining()) {
+            ByteBuffer pending = ByteBuffer.allocate(sendBuffer.remaining());
+            pending.put(sendBuffer).flip();
+            writeQueue.add(pending);
+            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+        }
+    }
+
+    /**
+     * Writes as much of the queued data as the channel accepts. Stops waiting for the channel to
+     * become writable once the queue is empty.
+     *
+     * @throws IOException if the write fails
+     */
+    public void flushQueue() throws IOException {
+        while (!writeQueue.isEmpty()) {
+            ByteBuffer buffer = writeQueue.peek();
+            channel.write(buffer);
+            if (buffer.hasRemaining())
+                return;
+            writeQueue.poll();
+        }
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+    }
+
+    /**
+     * Cancels the key, closes the channel and gives the read buffer back to the pool.
+     */
+    public void close() {
+        if (!channel.isOpen())
+            return;
+        key.cancel();
+        decoder.release();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return the channel of the connection
+     */
+    public SocketChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * @return the address and port of the client, used as its key in the collection of online clients
+     */
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,135 @@
+package com.solarlegendsserver;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Keeps the clients that are connected to the main server, by the name of their connection, and the
+ * games that are open, by their name. The main server adds and looks up the entries on its thread
+ * while the games remove themselves from the threads that end them, so both are kept in
+ * ConcurrentHashMaps, which do not lock to read.
+ * <p>
+ * Nothing is swept: a client is removed when its connection is closed and a game removes itself
+ * when it ends. A game is only removed by the GameServer that was added, so a game that ends late
+ * cannot remove a newer game with the same name.
+ * </p>
+ * <p>
+ * Every game that is added, removed or changes its players is also queued for the ServerBrowser,
+ * which takes the queue on the thread of the main server and tells the subscribed clients what
+ * changed. The listener is run after a game is queued, so the main server can wake up its Selector.
+ * </p>
+ *
+ * @author Robert Chiper
+ */
+public class LobbyRegistry {
+    private ConcurrentHashMap<String, Client> clients = new ConcurrentHashMap<>();
+    private ConcurrentHashMap<String, GameServer> games = new ConcurrentHashMap<>();
+    private ConcurrentLinkedQueue<GameServer> changedGames = new ConcurrentLinkedQueue<>();
+    private volatile Runnable changeListener;
+
+    /**
+     * Adds a client, replacing the one that had the same connection before.
+     *
+     * @param connectionName the name of the connection of the client
+     * @param client         the client
+     */
+    public void addClient(String connectionName, Client client) {
+        clients.put(connectionName, client);
+    }
+
+    /**
+     * @param connectionName the name of the connection of the client
+     * @return the client, or null if no client connected with that connection
+     */
+    public Client getClient(String connectionName) {
+        return clients.get(connectionName);
+    }
+
+    /**
+     * @param connectionName the name of the connection of the client
+     * @return the client that was removed, or null if there was none
+     */
+    public Client removeClient(String connectionName) {
+        return clients.remove(connectionName);
+    }
+
+    /**
+     * @return the number of clients connected to the main server
+     */
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    /**
+     * Adds a game if there is no open game with the same name.
+     *
+     * @param game the game
+     * @return true if the game was added, false if the name is in use
+     */
+    public boolean addGame(GameServer game) {
+        if (games.putIfAbsent(game.getServerName(), game) != null)
+            return false;
+        gameChanged(game);
+        return true;
+    }
+
+    /**
+     * @param name the name of the game
+     * @return the open game with that name, or null if there is none
+     */
+    public GameServer getGame(String name) {
+        return games.get(name);
+    }
+
+    /**
+     * Removes a game that ended. Called by the GameServer itself, from any thread, and may be called
+     * more than once.
+     *
+     * @param game the game that ended
+     */
+    public void removeGame(GameServer game) {
+        if (games.remove(game.getServerName(), game))
+            gameChanged(game);
+    }
+
+    /**
+     * Queues a game whose players changed, or which was added or removed, for the ServerBrowser.
+     *
+     * @param game the game that changed
+     */
+    public void gameChanged(GameServer game) {
+        changedGames.add(game);
+        Runnable listener = changeListener;
+        if (listener != null)
+            listener.run();
+    }
+
+    /**
+     * @return the next game that changed, or null if there are no more
+     */
+    public GameServer pollChangedGame() {
+        return changedGames.poll();
+    }
+
+    /**
+     * @param changeListener run every time a game is queued as changed, from the thread that changed it
+     */
+    public void setChangeListener(Runnable changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    /**
+     * @return a copy of the open games, which does not change while it is being sent
+     */
+    public ArrayList<GameServer> getGames() {
+        return new ArrayList<>(games.values());
+    }
+
+    /**
+     * @return the number of open games
+     */
+    public int getGameCount() {
+        return games.size();
+    }
+}
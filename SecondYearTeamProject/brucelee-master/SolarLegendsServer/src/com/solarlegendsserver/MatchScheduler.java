@@ -0,0 +1,193 @@
+package com.solarlegendsserver;
+
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the game loops of all the matches on the server from a fixed number of worker threads, instead
+ * of a sleeping thread for every match.
+ * <p>
+ * Every match has a deadline for its next tick. The matches wait in a DelayQueue ordered by deadline
+ * and a free worker always takes the match whose deadline is the earliest, so a slow match cannot keep
+ * the others waiting for more than one tick. A match is only ever ticked by one worker at a time. After
+ * a tick the deadline moves on by one period; when the tick finished after its next deadline, the match
+ * has overrun and its next tick is due straight away instead of running the missed ticks back to back.
+ * The Simulation is advanced by the real time that has passed, so a late tick does not slow the game
+ * down. A match whose tick throws is aborted and taken out of the schedule.
+ * </p>
+ *
+ * @author Robert Chiper
+ */
+public class MatchScheduler {
+
+    /**
+     * A match that is driven by the MatchScheduler.
+     */
+    public interface Match {
+        /**
+         * Runs one tick of the match.
+         *
+         * @param elapsed the nanoseconds since the previous tick of this match
+         * @return false when the match has ended and should not be ticked again
+         */
+        boolean tick(long elapsed);
+
+        /**
+         * Called once, instead of the next tick, when a tick has thrown, so the match can end
+         * itself cleanly. The match is not ticked again.
+         */
+        default void abort() {
+        }
+    }
+
+    /**
+     * The schedule of one match, with its overrun accounting.
+     */
+    private static class Entry implements Delayed {
+        private final String name;
+        private final Match match;
+        private long deadline;
+        private long lastTick;
+        private long ticks;
+        private long overruns;
+        private long worstLateness;
+
+        Entry(String name, Match match, long now) {
+            this.name = name;
+            this.match = match;
+            this.deadline = now;
+            this.lastTick = now;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(deadline, ((Entry) other).deadline);
+        }
+    }
+
+    private final long period;
+    private final DelayQueue<Entry> queue = new DelayQueue<>();
+    private final Thread[] workers;
+    private final AtomicInteger activeMatches = new AtomicInteger();
+    private final AtomicLong ticks = new AtomicLong();
+    private final AtomicLong overruns = new AtomicLong();
+
+    /**
+     * Creates the scheduler and starts its worker threads.
+     *
+     * @param threads        the number of worker threads
+     * @param ticksPerSecond how many times a second every match is ticked
+     */
+    public MatchScheduler(int threads, int ticksPerSecond) {
+        period = 1_000_000_000L / ticksPerSecond;
+        workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(() -> work(), "Match worker " + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Adds a match to the scheduler. Its first tick is due straight away.
+     *
+     * @param name  the name of the match, used in the debug output
+     * @param match the match to tick
+     */
+    public void schedule(String name, Match match) {
+        activeMatches.incrementAndGet();
+        queue.put(new Entry(name, match, System.nanoTime()));
+    }
+
+    /**
+     * Takes the match with the earliest deadline when it is due, ticks it and puts it back in the
+     * queue with its next deadline, until the worker is interrupted.
+     */
+    private void work() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Entry entry;
+            try {
+                entry = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            long start = System.nanoTime();
+            entry.worstLateness = Math.max(entry.worstLateness, start - entry.deadline);
+            boolean running;
+            try {
+                running = entry.match.tick(start - entry.lastTick);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                running = false;
+                try {
+                    entry.match.abort();
+                } catch (RuntimeException abortError) {
+                    abortError.printStackTrace();
+                }
+            }
+            entry.lastTick = start;
+            entry.ticks++;
+            ticks.incrementAndGet();
+            if (!running) {
+                activeMatches.decrementAndGet();
+                if (SolarLegendsServer.DEBUG)
+                    System.out.println(entry.name + ": " + entry.ticks + " ticks, " + entry.overruns
+                            + " overruns, worst lateness " + entry.worstLateness / 1_000_000 + " ms");
+                continue;
+            }
+            long end = System.nanoTime();
+            entry.deadline += period;
+            if (entry.deadline < end) {
+                entry.overruns++;
+                overruns.incrementAndGet();
+                entry.deadline = end;
+            }
+            queue.put(entry);
+        }
+    }
+
+    /**
+     * Stops the worker threads. The matches still in the queue are not ticked again.
+     */
+    public void shutdown() {
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * @return the number of matches that are being ticked
+     */
+    public int getActiveMatches() {
+        return activeMatches.get();
+    }
+
+    /**
+     * @return the number of ticks run for all the matches so far
+     */
+    public long getTicks() {
+        return ticks.get();
+    }
+
+    /**
+     * @return the number of ticks that finished after the next deadline of their match
+     */
+    public long getOverruns() {
+        return overruns.get();
+    }
+
+    /**
+     * @return the number of worker threads
+     */
+    public int getThreadCount() {
+        return workers.length;
+    }
+}
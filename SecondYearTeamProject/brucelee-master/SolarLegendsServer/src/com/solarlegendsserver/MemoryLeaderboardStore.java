@@ -0,0 +1,71 @@
+package com.solarlegendsserver;
+
+import com.solarlegendsserver.utils.Player;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+
+/**
+ * A leaderboard kept in memory, which stands in for the database when testing the server without
+ * PostgreSQL. It behaves like the leaderboard table, the players are listed in the order they were added.
+ *
+ * @author Robert Chiper
+ */
+public class MemoryLeaderboardStore implements LeaderboardStore {
+    private LinkedHashMap<String, Player> players = new LinkedHashMap<>();
+    private int batches = 0;
+
+    @Override
+    public synchronized Player loadPlayer(String username) {
+        Player player = players.get(username);
+        if (player == null) {
+            player = new Player(username);
+            players.put(username, player);
+        }
+        return copy(player);
+    }
+
+    @Override
+    public synchronized ArrayList<Player> loadPlayers() {
+        ArrayList<Player> result = new ArrayList<>();
+        for (Player player : players.values()) {
+            result.add(copy(player));
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void addResults(Collection<Player> results) {
+        for (Player result : results) {
+            Player player = players.get(result.username);
+            if (player == null) {
+                player = new Player(result.username);
+                players.put(result.username, player);
+            }
+            player.wins += result.wins;
+            player.draws += result.draws;
+            player.loses += result.loses;
+        }
+        batches++;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * @return the number of batches of results that have been added
+     */
+    public synchronized int getBatches() {
+        return batches;
+    }
+
+    private Player copy(Player player) {
+        Player copy = new Player(player.username);
+        copy.wins = player.wins;
+        copy.draws = player.draws;
+        copy.loses = player.loses;
+        return copy;
+    }
+}
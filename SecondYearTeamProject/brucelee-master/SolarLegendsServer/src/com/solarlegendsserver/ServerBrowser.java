@@ -0,0 +1,325 @@
+package com.solarlegendsserver;
+
+import com.game.net.ByteWriter;
+import com.game.net.FrameCodec;
+import com.game.net.MessageHeaders;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The list of open games that the clients browse. A client subscribes once, with a filter and the
+ * page it wants, and gets a snapshot of that page in a SERVERS_LIST message. After that it is only
+ * sent what changes, in SERVERS_UPDATE messages: a game of its page that is updated, and the games
+ * that move into or out of its page. The page stays the games at the same positions in the games
+ * that match the filter, so when a game that matches opens or closes before the end of the page, the
+ * page is worked out again and the games that shifted in or out are added or removed. What a client
+ * is sent depends on the size of its page and not on the number of games.
+ * <p>
+ * The games tell the LobbyRegistry when they change, from any thread. update() takes those changes
+ * on the thread of the main server, keeps its own copy of the games sorted by name and works out
+ * what each subscriber needs to be told. Only the thread of the main server uses this class, so it
+ * is not synchronized.
+ * </p>
+ * <p>
+ * A SERVERS_LIST message has the number of games that match the filter, the index of the first game
+ * of the page and the number of games in it, followed by the player count, name and host name of each.
+ * A SERVERS_UPDATE message has the number of games that match the filter and the number of events,
+ * followed by the events: SERVER_ADDED or SERVER_UPDATED with the player count, name and host name,
+ * or SERVER_REMOVED with the name.
+ * </p>
+ *
+ * @param <C> the type of the subscribers, the connections of the clients
+ * @author Robert Chiper
+ */
+public class ServerBrowser<C> {
+
+    /**
+     * Sends a message to a subscriber.
+     *
+     * @param <C> the type of the subscribers
+     */
+    public interface Sender<C> {
+        void send(C subscriber, ByteWriter message);
+    }
+
+    // The most games in one page
+    public static final int MAX_PAGE_SIZE = 50;
+    // Room left at the end of a message for one more game, with a name and host name of up to 255 characters each
+    private static final int MESSAGE_LIMIT = FrameCodec.MAX_MESSAGE_LENGTH - 1 - 2 * (255 * 3 + 1);
+
+    /**
+     * What the browser knows about a game.
+     */
+    private static class Listing {
+        final String name;
+        final String hostName;
+        final String lowerName;
+        final String lowerHostName;
+        final int players;
+
+        Listing(GameServer game) {
+            name = game.getServerName();
+            hostName = game.getHostName() == null ? "" : game.getHostName();
+            lowerName = name.toLowerCase();
+            lowerHostName = hostName.toLowerCase();
+            players = game.getPlayerCount();
+        }
+
+        boolean sameAs(Listing other) {
+            return other != null && players == other.players && hostName.equals(other.hostName);
+        }
+    }
+
+    /**
+     * The filter and page of a subscriber, the names of the games it has been sent and the events
+     * that are waiting to be sent to it.
+     */
+    private class Subscription {
+        final C subscriber;
+        final String nameFilter;
+        final String hostFilter;
+        final int maxPlayers;
+        final int first;
+        int count;
+        int total;
+        TreeSet<String> shown = new TreeSet<>();
+        ByteWriter updates = new ByteWriter();
+        int events;
+        boolean closed;
+
+        Subscription(C subscriber, String nameFilter, String hostFilter, int maxPlayers, int first, int count) {
+            this.subscriber = subscriber;
+            this.nameFilter = nameFilter.toLowerCase();
+            this.hostFilter = hostFilter.toLowerCase();
+            this.maxPlayers = maxPlayers;
+            this.first = first;
+            this.count = count;
+        }
+
+        boolean matches(Listing listing) {
+            return listing != null && listing.players <= maxPlayers
+                    && listing.lowerName.contains(nameFilter) && listing.lowerHostName.contains(hostFilter);
+        }
+
+        /**
+         * Works out what the subscriber needs to be told about a game that changed. The games have
+         * already been changed in the listings. A game that starts or stops matching the filter after
+         * the end of a full page does not move the page.
+         *
+         * @param old     the game as it was, null if it was not open
+         * @param current the game as it is now, null if it is not open anymore
+         */
+        void changed(Listing old, Listing current) {
+            boolean matched = matches(old);
+            boolean matches = matches(current);
+            String name = old != null ? old.name : current.name;
+            if (matched != matches) {
+                total += matches ? 1 : -1;
+                if (count > 0 && (shown.size() < count || name.compareTo(shown.last()) <= 0))
+                    repage(old);
+            } else if (matches && shown.contains(name)) {
+                addEvent(MessageHeaders.SERVER_UPDATED, current);
+            }
+        }
+
+        /**
+         * Works out the games of the page again from the listings, removes the games that have left
+         * it and adds the games that have moved into it.
+         *
+         * @param old the game that changed as it was, which may not be in the listings anymore
+         */
+        private void repage(Listing old) {
+            HashSet<String> page = new HashSet<>();
+            ArrayList<Listing> added = new ArrayList<>();
+            int index = 0;
+            for (Listing listing : listings.values()) {
+                if (!matches(listing))
+                    continue;
+                if (index++ < first)
+                    continue;
+                page.add(listing.name);
+                if (!shown.contains(listing.name))
+                    added.add(listing);
+                if (page.size() == count)
+                    break;
+            }
+            Iterator<String> names = shown.iterator();
+            while (names.hasNext()) {
+                String name = names.next();
+                if (!page.contains(name)) {
+                    names.remove();
+                    Listing listing = listings.get(name);
+                    addEvent(MessageHeaders.SERVER_REMOVED, listing != null ? listing : old);
+                }
+            }
+            for (Listing listing : added) {
+                shown.add(listing.name);
+                addEvent(MessageHeaders.SERVER_ADDED, listing);
+            }
+        }
+
+        private void addEvent(byte type, Listing listing) {
+            if (events == 0) {
+                updates.flush();
+                updates.write(MessageHeaders.PACKET_HEADER);
+                updates.write(MessageHeaders.SERVERS_UPDATE);
+                updates.write(0);
+                updates.write((short) 0);
+            }
+            updates.write(type);
+            if (type == MessageHeaders.SERVER_REMOVED) {
+                updates.write(listing.name);
+            } else {
+                writeListing(updates, listing);
+            }
+            events++;
+            if (updates.size() > MESSAGE_LIMIT)
+                sendUpdates();
+        }
+
+        void sendUpdates() {
+            if (events == 0 || closed)
+                return;
+            patchInt(updates, 3, total);
+            patchShort(updates, 7, events);
+            events = 0;
+            sender.send(subscriber, updates);
+        }
+    }
+
+    private LobbyRegistry registry;
+    private Sender<C> sender;
+    private TreeMap<String, Listing> listings = new TreeMap<>();
+    private HashMap<C, Subscription> subscriptions = new HashMap<>();
+    private ByteWriter writer = new ByteWriter();
+
+    /**
+     * @param registry the registry that tells the browser which games changed
+     * @param sender   sends the messages to the subscribers
+     */
+    public ServerBrowser(LobbyRegistry registry, Sender<C> sender) {
+        this.registry = registry;
+        this.sender = sender;
+    }
+
+    /**
+     * Subscribes a client, or changes the filter and page of a client that is subscribed already,
+     * and sends it the snapshot of its page.
+     *
+     * @param subscriber the connection of the client
+     * @param nameFilter only games whose name contains it, ignoring the case
+     * @param hostFilter only games whose host name contains it, ignoring the case
+     * @param maxPlayers only games with at most this many players, 1 for the games that can be joined
+     * @param first      the index of the first game of the page, in the games that match the filter sorted by name
+     * @param count      the number of games in the page, at most MAX_PAGE_SIZE
+     */
+    public void subscribe(C subscriber, String nameFilter, String hostFilter, int maxPlayers, int first, int count) {
+        update();
+        unsubscribe(subscriber);
+        Subscription subscription = new Subscription(subscriber, nameFilter, hostFilter, maxPlayers,
+                Math.max(0, first), Math.max(0, Math.min(count, MAX_PAGE_SIZE)));
+        subscriptions.put(subscriber, subscription);
+
+        writer.flush();
+        writer.write(MessageHeaders.PACKET_HEADER);
+        writer.write(MessageHeaders.SERVERS_LIST);
+        writer.write(0);
+        writer.write(Math.max(0, first));
+        writer.write((short) 0);
+        int index = 0;
+        for (Listing listing : listings.values()) {
+            if (!subscription.matches(listing))
+                continue;
+            if (index >= first && subscription.shown.size() < subscription.count) {
+                if (writer.size() <= MESSAGE_LIMIT) {
+                    subscription.shown.add(listing.name);
+                    writeListing(writer, listing);
+                } else {
+                    // The page is cut to what fits in the message, and stays that size
+                    subscription.count = subscription.shown.size();
+                }
+            }
+            index++;
+        }
+        subscription.total = index;
+        patchInt(writer, 3, index);
+        patchShort(writer, 11, subscription.shown.size());
+        sender.send(subscriber, writer);
+    }
+
+    /**
+     * Stops sending the changes to a client. Nothing happens if it is not subscribed.
+     *
+     * @param subscriber the connection of the client
+     */
+    public void unsubscribe(C subscriber) {
+        Subscription subscription = subscriptions.remove(subscriber);
+        if (subscription != null)
+            subscription.closed = true;
+    }
+
+    /**
+     * Takes the games that changed since the last call and sends the subscribers what they need to
+     * know about them. The changes of a game that are queued more than once are only sent once.
+     */
+    public void update() {
+        GameServer game = registry.pollChangedGame();
+        if (game == null)
+            return;
+        // Sending can close a connection, which unsubscribes it while the loops run
+        ArrayList<Subscription> current = new ArrayList<>(subscriptions.values());
+        while (game != null) {
+            String name = game.getServerName();
+            GameServer open = registry.getGame(name);
+            Listing old = listings.get(name);
+            Listing listing = open == null ? null : new Listing(open);
+            if (listing == null ? old != null : !listing.sameAs(old)) {
+                if (listing == null) {
+                    listings.remove(name);
+                } else {
+                    listings.put(name, listing);
+                }
+                for (Subscription subscription : current) {
+                    if (!subscription.closed)
+                        subscription.changed(old, listing);
+                }
+            }
+            game = registry.pollChangedGame();
+        }
+        for (Subscription subscription : current) {
+            subscription.sendUpdates();
+        }
+    }
+
+    /**
+     * @return the number of subscribed clients
+     */
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    private static void writeListing(ByteWriter out, Listing listing) {
+        out.write((byte) listing.players);
+        out.write(listing.name);
+        out.write(listing.hostName);
+    }
+
+    private static void patchInt(ByteWriter out, int index, int value) {
+        byte[] buffer = out.array();
+        buffer[index] = (byte) (value >> 24);
+        buffer[index + 1] = (byte) (value >> 16);
+        buffer[index + 2] = (byte) (value >> 8);
+        buffer[index + 3] = (byte) value;
+    }
+
+    private static void patchShort(ByteWriter out, int index, int value) {
+        byte[] buffer = out.array();
+        buffer[index] = (byte) (value >> 8);
+        buffer[index + 1] = (byte) value;
+    }
+}
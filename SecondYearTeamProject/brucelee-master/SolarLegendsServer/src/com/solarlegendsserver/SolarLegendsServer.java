@@ -1,20 +1,26 @@
 package com.solarlegendsserver;
 
-import com.game.net.ByteUtils;
+import com.game.net.BufferPool;
+import com.game.net.ByteReader;
+import com.game.net.ByteWriter;
+import com.game.net.FrameCodec;
 import com.game.net.MessageHeaders;
 import com.game.net.Serializer;
 import com.game.state.Loadout;
 import com.solarlegendsserver.utils.Player;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.net.InetAddress;
-import java.net.ServerSocket;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.function.Predicate;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * This class is responsible for creating the main server. The main server is the one
@@ -28,20 +34,41 @@ public class SolarLegendsServer {
 
     public static boolean DATABASE = false;
     public static boolean DEBUG = true;
+    // The games send the game state, which the clients predict their own inputs on, so a key press moves the
+    // robot straight away. -Dlockstep=true makes them relay the inputs instead: far less is sent, but every
+    // input takes effect Lockstep.INPUT_DELAY ticks after it is pressed, with no prediction, and a client whose
+    // game diverges has to be resynced.
+    public static boolean RELAY_INPUTS = Boolean.getBoolean("lockstep");
     public static DatabaseManager databaseManager;
+    // The most players sent in one leaderboard page
+    public static final int LEADERBOARD_PAGE_SIZE = 50;
 
     private int port;
-    private static HashMap<String, GameServer> gameServers = new HashMap<>();
-    private HashMap<String, Client> onlineClients = new HashMap<>();
+    private MatchScheduler matchScheduler;
+    private GameListener gameListener;
+    private LobbyRegistry registry = new LobbyRegistry();
+    private ServerBrowser<LobbyConnection> serverBrowser = new ServerBrowser<>(registry, this::send);
+
+    private Selector selector;
+    // Run by the selector thread for the other threads, such as the replies to the players loaded from the database
+    private ConcurrentLinkedQueue<Runnable> selectorTasks = new ConcurrentLinkedQueue<>();
+
+    // Only used by the selector thread, so the replies are built without allocating
+    private ByteWriter writer = new ByteWriter();
+    private ByteBuffer sendBuffer = ByteBuffer.allocate(BufferPool.BUFFER_SIZE);
 
     /**
      * Creates the DatabaseManager and then uses it to connect to the database.
-     * Sets the port number for the Server Socket.
+     * Sets the port number for the Server Socket and starts the MatchScheduler for the games.
      *
      * @param port the port number of the ServerSocket
      */
     private SolarLegendsServer(int port) {
         this.port = port;
+        // The game loops of all the matches share one worker thread per core, -DmatchThreads overrides it
+        matchScheduler = new MatchScheduler(Integer.getInteger("matchThreads", Runtime.getRuntime().availableProcessors()), 30);
+        // The players of every game connect to the port after the main server, -DgamePort overrides it
+        gameListener = new GameListener(Integer.getInteger("gamePort", port + 1));
         if (DATABASE) {
             databaseManager = new DatabaseManager();
             databaseManager.connectToDB();
@@ -49,15 +76,58 @@ public class SolarLegendsServer {
     }
 
     /**
-     * Opens the ServerSocket which accepts connections from clients and launches a listen thread for each of them.
+     * Opens a non-blocking ServerSocketChannel and runs the event loop of the main server on the
+     * calling thread. A single Selector watches the server channel for new connections and every
+     * client channel for input, so the number of threads does not grow with the number of clients.
+     * The GameListener that the players of the games connect to is started with it.
      */
     private void start() {
-        try {
-            ServerSocket tcpSocket = new ServerSocket(port);
+        try (Selector selector = Selector.open();
+             ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            this.selector = selector;
+            serverChannel.bind(new InetSocketAddress(port));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
             if (DEBUG) System.out.println("Started main server on port " + port + "...");
+            // The games change from other threads, the Selector is woken up to send the changes to the browsing clients
+            registry.setChangeListener(selector::wakeup);
+            gameListener.start();
             while (true) {
-                Socket clientSocket = tcpSocket.accept();
-                (new Thread(() -> listen(clientSocket), "ListenThread for " + clientSocket.getInetAddress() + ":" + clientSocket.getPort())).start();
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid())
+                        continue;
+                    if (key.isAcceptable()) {
+                        accept(selector, serverChannel);
+                    } else {
+                        LobbyConnection connection = (LobbyConnection) key.attachment();
+                        try {
+                            if (key.isWritable())
+                                connection.flushQueue();
+                            if (key.isValid() && key.isReadable())
+                                listen(connection);
+                        } catch (IOException e) {
+                            if (DEBUG) System.out.println(connection.getName() + " dropped: " + e.getMessage());
+                            disconnect(connection);
+                        } catch (RuntimeException e) {
+                            // Only the client whose message could not be handled is dropped, the lobby keeps running
+                            e.printStackTrace();
+                            disconnect(connection);
+                        }
+                    }
+                }
+                Runnable task;
+                while ((task = selectorTasks.poll()) != null) {
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();
+                    }
+                }
+                serverBrowser.update();
             }
         } catch (IOException e) {
             System.out.println(e.getMessage());
@@ -69,121 +139,148 @@ public class SolarLegendsServer {
     }
 
     /**
-     * Checks the status of every game server and removes the ones which are not online anymore
+     * Runs the task on the selector thread, which is woken up for it.
+     *
+     * @param task the task to run
      */
-    public static void serverChecker() {
-        Predicate<GameServer> gameServerPredicate = server -> !server.online;
-        gameServers.values().removeIf(gameServerPredicate);
+    private void runOnSelector(Runnable task) {
+        selectorTasks.add(task);
+        selector.wakeup();
     }
 
     /**
-     * While the Socket is not closed, it waits for it to receive input, it reads the input
-     * and calls the method to process it.
+     * Accepts a pending connection and registers it with the Selector for reading.
      *
-     * @param clientSocket the Socket specific for the listen thread
+     * @param selector      the Selector of the main server
+     * @param serverChannel the channel that has a pending connection
+     * @throws IOException if the connection cannot be accepted
      */
-    private void listen(Socket clientSocket) {
-        InputStream inputStream;
-        try {
-            inputStream = clientSocket.getInputStream();
-            byte[] data = new byte[128];
-            while (!clientSocket.isClosed()) {
-                inputStream.read(data);
-                process(clientSocket, data);
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+    private void accept(Selector selector, ServerSocketChannel serverChannel) throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null)
+            return;
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new LobbyConnection(channel, key));
+    }
+
+    /**
+     * Reads the available input of a client and calls the method to process every complete
+     * message that has been received. A partial message stays in the read buffer of the
+     * connection until the rest of it arrives.
+     *
+     * @param connection the connection that has input available
+     * @throws IOException if the read fails or the client sent an invalid frame
+     */
+    private void listen(LobbyConnection connection) throws IOException {
+        if (connection.read() < 0) {
+            disconnect(connection);
+            return;
+        }
+        byte[] data;
+        while (connection.getChannel().isOpen() && (data = connection.nextMessage()) != null) {
+            process(connection, data);
         }
+    }
 
+    /**
+     * Closes the connection of a client that went away without sending FORCE_QUIT
+     * and forgets about it.
+     *
+     * @param connection the connection to be closed
+     */
+    private void disconnect(LobbyConnection connection) {
+        registry.removeClient(connection.getName());
+        serverBrowser.unsubscribe(connection);
+        connection.close();
     }
 
+    /**
+     * Adds the client of a player that has been loaded and replies to their connection request. A
+     * client that disconnected while the player was loaded is forgotten.
+     *
+     * @param connection the connection that sent the connection request
+     * @param player     the player
+     */
+    private void connected(LobbyConnection connection, Player player) {
+        if (!connection.getChannel().isOpen())
+            return;
+        Socket clientSocket = connection.getChannel().socket();
+        Client client = new Client(clientSocket.getInetAddress(), clientSocket.getPort(), player);
+        registry.addClient(connection.getName(), client);
+
+        writer.flush();
+        writer.write(MessageHeaders.PACKET_HEADER);
+        writer.write(MessageHeaders.CONNECTION);
+
+        send(connection, writer);
+        if (DEBUG)
+            System.out.println(client.address.toString() + ":" + client.port + " connected: " + player.username);
+    }
 
     /**
      * Processes the input. First it validates the package header and then checks to see
      * which type of message it is. The possible types are: CONNECTION, SERVERS_LIST,
      * LEADERBOARD, FORCE_QUIT, CREATE_SERVER, JOIN_SERVER. Based on the received message,
-     * it changes its state accordingly and then send a message back to the client.
+     * it changes its state accordingly and then send a message back to the client. A message that
+     * is too short for its type is ignored.
      *
-     * @param clientSocket the Socket that sent the message
-     * @param data         the content of the message
+     * @param connection the connection that sent the message
+     * @param data       the content of the message, exactly one message long
      */
-    private void process(Socket clientSocket, byte[] data) {
-        ByteUtils byteUtils = new ByteUtils();
-
+    private void process(LobbyConnection connection, byte[] data) {
+        Socket clientSocket = connection.getChannel().socket();
         InetAddress clientAddress = clientSocket.getInetAddress();
         int clientPort = clientSocket.getPort();
-        Client client = new Client(clientAddress, clientPort, null);
 
         // Validate packet header
-        if (!(data[0] == 0x12 && data[1] == 0x11))
+        if (!isWellFormed(data) || !(data[0] == 0x12 && data[1] == 0x11))
             return;
 
         if (data[2] > 0x10) {
 
-            ArrayList<Byte> nameList = new ArrayList<>();
-            int index = 3;
-            while (data[index] != (byte) 0) {
-                nameList.add(data[index]);
-                index++;
-            }
-
-            String playerName = new String(byteUtils.toByteArray(nameList));
-
             switch (data[2]) {
                 // Connection request
                 case MessageHeaders.CONNECTION:
+                    String playerName = new String(data, 3, data.length - 4);
                     if (DATABASE) {
-                        client.player = databaseManager.getPlayer(playerName);
+                        // The player is loaded off the selector thread, which replies once they are loaded
+                        databaseManager.loadPlayer(playerName, player -> runOnSelector(() -> connected(connection, player)));
                     } else {
-                        client.player = new Player(playerName);
+                        connected(connection, new Player(playerName));
                     }
-                    onlineClients.put(clientAddress.toString() + ":" + clientPort, client);
-
-                    byteUtils.flush();
-                    byteUtils.write(MessageHeaders.PACKET_HEADER);
-                    byteUtils.write(MessageHeaders.CONNECTION);
-
-                    send(clientSocket, byteUtils.getBuffer());
-                    if (DEBUG)
-                        System.out.println(clientAddress.toString() + ":" + clientPort + " connected: " + playerName);
                     break;
 
                 // Server list request
                 case MessageHeaders.SERVERS_LIST:
-                    serverChecker();
-                    byteUtils.flush();
-                    byteUtils.write(MessageHeaders.PACKET_HEADER);
-                    byteUtils.write(MessageHeaders.SERVERS_LIST);
-                    byteUtils.write(getServerList());
-                    send(clientSocket, byteUtils.getBuffer());
+                    subscribeToServers(connection, data);
+                    break;
+
+                case MessageHeaders.SERVERS_UNSUBSCRIBE:
+                    serverBrowser.unsubscribe(connection);
                     break;
 
                 // Leaderboard request
                 case MessageHeaders.LEADERBOARD:
-                    System.out.println("Received leaderboard request");
-                    byteUtils.flush();
-                    byteUtils.write(MessageHeaders.PACKET_HEADER);
-                    byteUtils.write(MessageHeaders.LEADERBOARD);
-                    if (DATABASE) {
-                        byteUtils.write(getLeaderboard());
-                    }
-                    send(clientSocket, byteUtils.getBuffer());
+                    if (DEBUG) System.out.println("Received leaderboard request");
+                    writer.flush();
+                    writer.write(MessageHeaders.PACKET_HEADER);
+                    writer.write(MessageHeaders.LEADERBOARD);
+                    writeLeaderboard(writer, connection, data);
+                    send(connection, writer);
                     break;
 
                 case MessageHeaders.FORCE_QUIT:
-                    String clientName = clientAddress.toString() + ":" + clientPort;
-                    if (onlineClients.containsKey(clientName)) {
-                        String serverName = onlineClients.get(clientName).serverName;
-                        if (serverName != null && gameServers.containsKey(serverName)) {
-                            gameServers.get(serverName).forceCloseServer(onlineClients.get(clientName).player.id);
+                    serverBrowser.unsubscribe(connection);
+                    Client quitting = registry.removeClient(connection.getName());
+                    if (quitting != null && quitting.serverName != null) {
+                        GameServer game = registry.getGame(quitting.serverName);
+                        if (game != null) {
+                            game.forceCloseServer(quitting.player.id);
                         }
-                        onlineClients.remove(clientName);
-                    }
-                    try {
-                        clientSocket.close();
-                    } catch (IOException e) {
-                        e.printStackTrace();
                     }
+                    connection.close();
                     break;
 
                 default:
@@ -191,52 +288,53 @@ public class SolarLegendsServer {
             }
 
         } else {
+            // Only clients that sent a connection request can create or join a game
+            Client client = registry.getClient(connection.getName());
+            if (client == null)
+                return;
+
             ArrayList<Loadout> loadouts = Serializer.deserializeLoadouts(data, 4);
 
-            ArrayList<Byte> nameList = new ArrayList<>();
-            int index = 40;
-            while (data[index] != (byte) 0) {
-                nameList.add(data[index]);
-                index++;
-            }
-            String gameServerName = new String(byteUtils.toByteArray(nameList));
-
-            index++;
-            ArrayList<Byte> passList = new ArrayList<>();
-            while (data[index] != (byte) 0) {
-                passList.add(data[index]);
-                index++;
-            }
-            String gameServerPassword = new String(byteUtils.toByteArray(passList));
+            ByteReader reader = new ByteReader(data, 40);
+            String gameServerName = reader.readString();
+            String gameServerPassword = reader.readString();
 
             switch (data[2]) {
                 // Create server request
                 case MessageHeaders.CREATE_SERVER:
+                    GameServer createdServer = null;
+                    if (registry.getGame(gameServerName) == null) {
+                        createdServer = new GameServer(gameServerName, gameServerPassword, matchScheduler, gameListener, registry);
+                        if (!registry.addGame(createdServer)) {
+                            createdServer.forceCloseServer(-1);
+                            createdServer = null;
+                        }
+                    }
 
-                    if (gameServers.containsKey(gameServerName)) {
-                        byteUtils.flush();
-                        byteUtils.write(MessageHeaders.PACKET_HEADER);
-                        byteUtils.write(MessageHeaders.SERVER_NAME_IN_USE);
-                        send(clientSocket, byteUtils.getBuffer());
+                    if (createdServer == null) {
+                        writer.flush();
+                        writer.write(MessageHeaders.PACKET_HEADER);
+                        writer.write(MessageHeaders.SERVER_NAME_IN_USE);
+                        send(connection, writer);
                         if (DEBUG)
                             System.out.println("Main Server: sent SERVER_NAME_IN_USE message to " + clientAddress + ":" + clientPort);
 
                     } else {
-                        GameServer gameServer = new GameServer(gameServerName, gameServerPassword);
-                        onlineClients.get(clientAddress.toString() + ":" + clientPort).serverName = gameServerName;
-                        onlineClients.get(clientAddress.toString() + ":" + clientPort).player.id = 0;
-                        gameServer.addClient(onlineClients.get(clientAddress.toString() + ":" + clientPort));
-                        gameServer.addLoadouts(loadouts);
-                        gameServer.setRandomGravity(data[3] == 1);
-                        gameServer.start();
-                        gameServers.put(gameServerName, gameServer);
-
-                        byteUtils.flush();
-                        byteUtils.write(MessageHeaders.PACKET_HEADER);
-                        byteUtils.write(MessageHeaders.CREATE_SERVER);
-
-                        byteUtils.write(gameServer.getPort());
-                        send(clientSocket, byteUtils.getBuffer());
+                        serverBrowser.unsubscribe(connection);
+                        client.serverName = gameServerName;
+                        client.player.id = 0;
+                        createdServer.addClient(client);
+                        createdServer.addLoadouts(loadouts);
+                        createdServer.setRandomGravity(data[3] == 1);
+
+                        writer.flush();
+                        writer.write(MessageHeaders.PACKET_HEADER);
+                        writer.write(MessageHeaders.CREATE_SERVER);
+
+                        writer.write(gameListener.getPort());
+                        writer.write(createdServer.getMatchId());
+                        writer.write(client.token);
+                        send(connection, writer);
                         if (DEBUG)
                             System.out.println("Main Server: sent SERVER_CREATED message to " + clientAddress + ":" + clientPort);
 
@@ -245,44 +343,47 @@ public class SolarLegendsServer {
 
                 // Join request
                 case MessageHeaders.JOIN_SERVER:
-                    if (!gameServers.containsKey(gameServerName)) {
-                        byteUtils.flush();
-                        byteUtils.write(MessageHeaders.PACKET_HEADER);
-                        byteUtils.write(MessageHeaders.SERVER_NOT_FOUND);
-                        send(clientSocket, byteUtils.getBuffer());
+                    GameServer gameServer = registry.getGame(gameServerName);
+                    if (gameServer == null) {
+                        writer.flush();
+                        writer.write(MessageHeaders.PACKET_HEADER);
+                        writer.write(MessageHeaders.SERVER_NOT_FOUND);
+                        send(connection, writer);
                         if (DEBUG)
                             System.out.println("Main Server: sent SERVER_NOT_FOUND message to " + clientAddress + ":" + clientPort);
 
 
-                    } else if (gameServers.get(gameServerName).getPlayerCount() >= 2) {
-                        byteUtils.flush();
-                        byteUtils.write(MessageHeaders.PACKET_HEADER);
-                        byteUtils.write(MessageHeaders.SERVER_FULL);
-                        send(clientSocket, byteUtils.getBuffer());
+                    } else if (gameServer.getPlayerCount() >= 2) {
+                        writer.flush();
+                        writer.write(MessageHeaders.PACKET_HEADER);
+                        writer.write(MessageHeaders.SERVER_FULL);
+                        send(connection, writer);
                         if (DEBUG)
                             System.out.println("Main Server: sent SERVER_FULL message to " + clientAddress + ":" + clientPort);
 
-                    } else if (!gameServers.get(gameServerName).getServerPassword().equals(gameServerPassword)) {
-                        byteUtils.flush();
-                        byteUtils.write(MessageHeaders.PACKET_HEADER);
-                        byteUtils.write(MessageHeaders.INVALID_PASSWORD);
-                        send(clientSocket, byteUtils.getBuffer());
+                    } else if (!gameServer.getServerPassword().equals(gameServerPassword)) {
+                        writer.flush();
+                        writer.write(MessageHeaders.PACKET_HEADER);
+                        writer.write(MessageHeaders.INVALID_PASSWORD);
+                        send(connection, writer);
                         if (DEBUG)
                             System.out.println("Main Server: sent INVALID_PASSWORD message to " + clientAddress + ":" + clientPort);
 
 
                     } else {
-                        GameServer gameServer = gameServers.get(gameServerName);
-                        onlineClients.get(clientAddress.toString() + ":" + clientPort).serverName = gameServerName;
-                        onlineClients.get(clientAddress.toString() + ":" + clientPort).player.id = 1;
-                        gameServer.addClient(onlineClients.get(clientAddress.toString() + ":" + clientPort));
+                        serverBrowser.unsubscribe(connection);
+                        client.serverName = gameServerName;
+                        client.player.id = 1;
+                        gameServer.addClient(client);
                         gameServer.addLoadouts(loadouts);
 
-                        byteUtils.flush();
-                        byteUtils.write(MessageHeaders.PACKET_HEADER);
-                        byteUtils.write(MessageHeaders.JOIN_SERVER);
-                        byteUtils.write(gameServer.getPort());
-                        send(clientSocket, byteUtils.getBuffer());
+                        writer.flush();
+                        writer.write(MessageHeaders.PACKET_HEADER);
+                        writer.write(MessageHeaders.JOIN_SERVER);
+                        writer.write(gameListener.getPort());
+                        writer.write(gameServer.getMatchId());
+                        writer.write(client.token);
+                        send(connection, writer);
                         if (DEBUG)
                             System.out.println("Main Server: sent SERVER_JOINED message to " + clientAddress + ":" + clientPort);
                     }
@@ -295,52 +396,140 @@ public class SolarLegendsServer {
     }
 
     /**
-     * Converts to bytes the player count, the server name and the host name of each game server.
+     * Checks that a message is long enough for everything process reads from it: the header and
+     * type, the name of a CONNECTION, the gravity, loadouts, name and password of a CREATE_SERVER or
+     * JOIN_SERVER and the filters and page of a SERVERS_LIST request. The other messages a game sends
+     * below 0x10 are not for the main server and are refused too.
      *
-     * @return the byte array of the game servers
+     * @param data the message
+     * @return true if the message can be processed
      */
-    private byte[] getServerList() {
-        ByteUtils byteUtils = new ByteUtils();
-        byteUtils.write((byte) gameServers.size());
-        for (GameServer server : gameServers.values()) {
-            byteUtils.write((byte) server.getPlayerCount());
-            byteUtils.write(server.getServerName());
-            byteUtils.write(server.getHostName());
+    static boolean isWellFormed(byte[] data) {
+        if (data.length < 3)
+            return false;
+        switch (data[2]) {
+            case MessageHeaders.CONNECTION:
+                return data.length >= 4;
+            case MessageHeaders.SERVERS_LIST:
+                if (data.length == 3)
+                    return true;
+                int end = skipStrings(data, 3, 2);
+                return end >= 0 && end + 6 <= data.length;
+            case MessageHeaders.CREATE_SERVER:
+            case MessageHeaders.JOIN_SERVER:
+                return data.length >= 40 && skipStrings(data, 40, 2) >= 0;
+            default:
+                return data[2] > 0x10;
         }
-        return byteUtils.getBuffer();
     }
 
     /**
-     * Gets the Player objects from the DatabaseManager and converts the usernames, number of wins
-     * number of loses, and draws to bytes.
+     * @param data   the message
+     * @param offset the index of the first String
+     * @param count  the number of Strings, each ended by a byte of 0
+     * @return the index after the last String, or -1 if the message ends before it
+     */
+    private static int skipStrings(byte[] data, int offset, int count) {
+        for (int i = offset; i < data.length && count > 0; i++) {
+            if (data[i] == 0) {
+                count--;
+                if (count == 0)
+                    return i + 1;
+            }
+        }
+        return count == 0 ? offset : -1;
+    }
+
+    /**
+     * Subscribes the client to the ServerBrowser, which sends it the page of games it asked for and
+     * then the changes to them. The request is the name filter, the host name filter, the most players
+     * a game can have, the index of the first game and the number of games. A request with nothing
+     * after the header asks for the first page of all the games.
+     *
+     * @param connection the connection that sent the request
+     * @param data       the request
+     */
+    private void subscribeToServers(LobbyConnection connection, byte[] data) {
+        if (data.length <= 3) {
+            serverBrowser.subscribe(connection, "", "", 2, 0, ServerBrowser.MAX_PAGE_SIZE);
+            return;
+        }
+        ByteReader reader = new ByteReader(data, 3);
+        String nameFilter = reader.readString();
+        String hostFilter = reader.readString();
+        int maxPlayers = reader.readByte();
+        int first = reader.readInt();
+        int count = reader.readByte() & 0xFF;
+        serverBrowser.subscribe(connection, nameFilter, hostFilter, maxPlayers, first, count);
+    }
+
+    /**
+     * Writes the page of the leaderboard asked for by the request: the total number of players, the
+     * rank of the first player of the page, the number of players in it and then the wins, loses,
+     * draws and username of each. The page comes from the LeaderboardIndex of the DatabaseManager,
+     * the database is not read.
+     * <p>
+     * The request is either LEADERBOARD_PAGE followed by the rank of the first player, or
+     * LEADERBOARD_AROUND for the page centred on the player who sent it, and then the number of
+     * players wanted. A request with nothing after the header asks for the top of the leaderboard.
+     * The page is cut short if it would not fit in one message.
+     * </p>
      *
-     * @return the byte array of the players
+     * @param out        the writer of the message
+     * @param connection the connection that sent the request
+     * @param data       the request
      */
-    private byte[] getLeaderboard() {
-        ByteUtils byteUtils = new ByteUtils();
-        ArrayList<Player> players = databaseManager.getPlayers();
-        byteUtils.write((byte) players.size());
-        for (Player p : players) {
-            byteUtils.write((byte) p.wins);
-            byteUtils.write((byte) p.loses);
-            byteUtils.write((byte) p.draws);
-            byteUtils.write(p.username);
+    private void writeLeaderboard(ByteWriter out, LobbyConnection connection, byte[] data) {
+        if (!DATABASE) {
+            out.write(0);
+            out.write(0);
+            out.write((short) 0);
+            return;
+        }
+        LeaderboardIndex leaderboard = databaseManager.getLeaderboard();
+        int count = LEADERBOARD_PAGE_SIZE;
+        LeaderboardIndex.Page page;
+        Client client = registry.getClient(connection.getName());
+        if (data.length >= 9 && data[3] == MessageHeaders.LEADERBOARD_AROUND && client != null) {
+            count = Math.min(count, data[8] & 0xFF);
+            page = leaderboard.getPageAround(client.player.username, count);
+        } else if (data.length >= 9) {
+            count = Math.min(count, data[8] & 0xFF);
+            page = leaderboard.getPage(ByteReader.getInt(data, 4), count);
+        } else {
+            page = leaderboard.getPage(0, count);
+        }
+
+        out.write(page.total);
+        out.write(page.first);
+        int countIndex = out.size();
+        out.write((short) 0);
+        short written = 0;
+        for (Player p : page.players) {
+            if (out.size() + 12 + p.username.length() * 3 + 1 > FrameCodec.MAX_MESSAGE_LENGTH)
+                break;
+            out.write(p.wins);
+            out.write(p.loses);
+            out.write(p.draws);
+            out.write(p.username);
+            written++;
         }
-        return byteUtils.getBuffer();
+        out.array()[countIndex] = (byte) (written >> 8);
+        out.array()[countIndex + 1] = (byte) written;
     }
 
     /**
-     * Send a message to the specified Socket
+     * Send a message to the specified client
      *
-     * @param clientSocket the receiving Socket
-     * @param data         the bytes to be sent
+     * @param connection the receiving connection
+     * @param message    the writer holding the message
      */
-    private void send(Socket clientSocket, byte[] data) {
+    private void send(LobbyConnection connection, ByteWriter message) {
         try {
-            OutputStream outputStream = clientSocket.getOutputStream();
-            outputStream.write(data);
+            connection.send(message, sendBuffer);
         } catch (IOException e) {
             e.printStackTrace();
+            disconnect(connection);
         }
 
     }
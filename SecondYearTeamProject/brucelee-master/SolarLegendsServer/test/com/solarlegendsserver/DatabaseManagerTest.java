@@ -0,0 +1,228 @@
+package com.solarlegendsserver;
+
+import com.solarlegendsserver.utils.Player;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class DatabaseManagerTest {
+
+    MemoryLeaderboardStore store;
+    DatabaseManager databaseManager;
+
+    @Before
+    public void setUp() throws Exception {
+        store = new MemoryLeaderboardStore();
+        databaseManager = new DatabaseManager(store);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        databaseManager.closeDBConnection();
+    }
+
+    @Test
+    public void testGetPlayerRegisters() {
+        Player player = databaseManager.getPlayer("robert");
+        assertEquals("robert", player.username);
+        assertEquals(0, player.wins);
+        assertEquals(1, databaseManager.getPlayers().size());
+        databaseManager.getPlayer("robert");
+        assertEquals(1, databaseManager.getPlayers().size());
+    }
+
+    @Test
+    public void testResultsAreWritten() throws Exception {
+        databaseManager.getPlayer("robert");
+        databaseManager.updatePlayer("robert", 1);
+        databaseManager.updatePlayer("robert", 1);
+        databaseManager.updatePlayer("robert", 0);
+        databaseManager.updatePlayer("robert", -1);
+        // Not in the leaderboard, so the player is added with the result
+        databaseManager.updatePlayer("nobody", 1);
+        databaseManager.flush();
+
+        Player player = databaseManager.getPlayer("robert");
+        assertEquals(2, player.wins);
+        assertEquals(1, player.draws);
+        assertEquals(1, player.loses);
+        assertEquals(2, databaseManager.getPlayers().size());
+        assertEquals(1, databaseManager.getPlayer("nobody").wins);
+    }
+
+    @Test
+    public void testConcurrentResultsAreBatched() throws Exception {
+        final int writers = 8;
+        final int results = 2000;
+        databaseManager.getPlayer("host");
+        databaseManager.getPlayer("guest");
+        ArrayList<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < writers; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < results; i++) {
+                    databaseManager.updatePlayer("host", 1);
+                    databaseManager.updatePlayer("guest", -1);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        databaseManager.flush();
+
+        assertEquals(writers * results, databaseManager.getPlayer("host").wins);
+        assertEquals(writers * results, databaseManager.getPlayer("guest").loses);
+        // The results are written in batches, not one by one
+        assertTrue(store.getBatches() < writers * results);
+    }
+
+    @Test
+    public void testCloseWritesQueuedResults() {
+        databaseManager.getPlayer("robert");
+        for (int i = 0; i < 100; i++) {
+            databaseManager.updatePlayer("robert", 0);
+        }
+        databaseManager.closeDBConnection();
+        assertEquals(100, store.loadPlayer("robert").draws);
+    }
+
+    @Test
+    public void testFailedBatchIsRetried() throws Exception {
+        databaseManager.closeDBConnection();
+        FlakyStore flakyStore = new FlakyStore();
+        databaseManager = new DatabaseManager(flakyStore);
+        databaseManager.getPlayer("robert");
+        databaseManager.updatePlayer("robert", 1);
+        databaseManager.flush();
+        assertTrue(flakyStore.failed);
+        assertEquals(1, databaseManager.getPlayer("robert").wins);
+    }
+
+    @Test
+    public void testLoadPlayerOffThread() throws Exception {
+        CountDownLatch loaded = new CountDownLatch(1);
+        AtomicReference<Player> player = new AtomicReference<>();
+        AtomicReference<Thread> thread = new AtomicReference<>();
+        databaseManager.loadPlayer("robert", p -> {
+            player.set(p);
+            thread.set(Thread.currentThread());
+            loaded.countDown();
+        });
+        assertTrue(loaded.await(10, TimeUnit.SECONDS));
+        assertEquals("robert", player.get().username);
+        assertNotSame(Thread.currentThread(), thread.get());
+        assertEquals(1, databaseManager.getLeaderboard().size());
+    }
+
+    @Test
+    public void testFullQueueOverflows() throws Exception {
+        databaseManager.closeDBConnection();
+        StalledStore stalledStore = new StalledStore();
+        databaseManager = new DatabaseManager(stalledStore);
+        databaseManager.getPlayer("robert");
+        databaseManager.getPlayer("kai");
+        int results = DatabaseManager.MAX_PENDING_RESULTS * 2;
+        // The writer is stalled, so the queue fills up and the rest is added up without waiting
+        for (int i = 0; i < results; i++) {
+            databaseManager.updatePlayer(i % 2 == 0 ? "robert" : "kai", 1);
+        }
+        assertEquals(2, databaseManager.getOverflowSize());
+        stalledStore.release.countDown();
+        databaseManager.flush();
+        assertEquals(0, databaseManager.getOverflowSize());
+        assertEquals(results / 2, databaseManager.getPlayer("robert").wins);
+        assertEquals(results / 2, databaseManager.getPlayer("kai").wins);
+    }
+
+    @Test
+    public void testLeaderboardFollowsResults() throws Exception {
+        databaseManager.getPlayer("robert");
+        databaseManager.getPlayer("kai");
+        databaseManager.updatePlayer("kai", 1);
+        databaseManager.updatePlayer("robert", -1);
+        databaseManager.flush();
+
+        LeaderboardIndex.Page page = databaseManager.getLeaderboard().getPage(0, 10);
+        assertEquals(2, page.total);
+        assertEquals("kai", page.players.get(0).username);
+        assertEquals(1, page.players.get(0).wins);
+        assertEquals("robert", page.players.get(1).username);
+        assertEquals(1, page.players.get(1).loses);
+    }
+
+    /**
+     * Fails the first batch of results, as if the database was down for a moment.
+     */
+    static class FlakyStore implements LeaderboardStore {
+        MemoryLeaderboardStore store = new MemoryLeaderboardStore();
+        volatile boolean failed = false;
+
+        @Override
+        public Player loadPlayer(String username) {
+            return store.loadPlayer(username);
+        }
+
+        @Override
+        public ArrayList<Player> loadPlayers() {
+            return store.loadPlayers();
+        }
+
+        @Override
+        public void addResults(Collection<Player> results) throws SQLException {
+            if (!failed) {
+                failed = true;
+                throw new SQLException("database down");
+            }
+            store.addResults(results);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Holds up the writer until it is released, as if the database had stopped answering.
+     */
+    static class StalledStore implements LeaderboardStore {
+        MemoryLeaderboardStore store = new MemoryLeaderboardStore();
+        CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public Player loadPlayer(String username) {
+            return store.loadPlayer(username);
+        }
+
+        @Override
+        public ArrayList<Player> loadPlayers() {
+            return store.loadPlayers();
+        }
+
+        @Override
+        public void addResults(Collection<Player> results) throws SQLException {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new SQLException(e);
+            }
+            store.addResults(results);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
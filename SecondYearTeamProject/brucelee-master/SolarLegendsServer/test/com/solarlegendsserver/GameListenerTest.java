@@ -0,0 +1,176 @@
+package com.solarlegendsserver;
+
+import com.game.net.ByteWriter;
+import com.game.net.FrameCodec;
+import com.game.net.MessageHeaders;
+import com.solarlegendsserver.utils.Player;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GameListenerTest {
+
+    private GameListener gameListener;
+    private MatchScheduler scheduler;
+    private GameServer game;
+    private Client host;
+    private boolean debug;
+
+    @Before
+    public void init() throws IOException {
+        debug = SolarLegendsServer.DEBUG;
+        SolarLegendsServer.DEBUG = false;
+        scheduler = new MatchScheduler(1, 30);
+        gameListener = new GameListener(0);
+        gameListener.start();
+        game = new GameServer("game", "", scheduler, gameListener, new LobbyRegistry());
+        Player player = new Player("host");
+        player.id = 0;
+        host = new Client(null, 0, player);
+        game.addClient(host);
+    }
+
+    @After
+    public void release() {
+        gameListener.stop();
+        scheduler.shutdown();
+        SolarLegendsServer.DEBUG = debug;
+    }
+
+    /**
+     * Connects to the listener and sends a PORT_PACKET.
+     */
+    private Socket connect(int id, int matchId, long token) throws IOException {
+        Socket socket = new Socket("localhost", gameListener.getPort());
+        socket.setSoTimeout(5000);
+        ByteWriter message = new ByteWriter();
+        message.write(MessageHeaders.PACKET_HEADER);
+        message.write(MessageHeaders.PORT_PACKET);
+        message.write((byte) id);
+        message.write(matchId);
+        message.write(token);
+        socket.getOutputStream().write(FrameCodec.encode(message.getBuffer()));
+        return socket;
+    }
+
+    /**
+     * Checks that the game kept the connection open, waiting for the other player.
+     */
+    private void assertOpen(Socket socket) throws IOException {
+        socket.setSoTimeout(300);
+        try {
+            socket.getInputStream().read();
+            fail("the connection was closed");
+        } catch (SocketTimeoutException e) {
+            // Still connected
+        }
+    }
+
+    @Test
+    public void testTokenAccepted() throws IOException {
+        try (Socket socket = connect(0, game.getMatchId(), host.token)) {
+            assertOpen(socket);
+        }
+    }
+
+    @Test
+    public void testWrongTokenRefused() throws IOException {
+        try (Socket socket = connect(0, game.getMatchId(), host.token + 1)) {
+            assertEquals(-1, socket.getInputStream().read());
+        }
+    }
+
+    @Test
+    public void testWrongPlayerRefused() throws IOException {
+        try (Socket socket = connect(1, game.getMatchId(), host.token)) {
+            assertEquals(-1, socket.getInputStream().read());
+        }
+    }
+
+    @Test
+    public void testSecondConnectionRefused() throws IOException {
+        try (Socket first = connect(0, game.getMatchId(), host.token)) {
+            assertOpen(first);
+            try (Socket second = connect(0, game.getMatchId(), host.token)) {
+                assertEquals(-1, second.getInputStream().read());
+            }
+            assertOpen(first);
+        }
+    }
+
+    @Test
+    public void testUnknownMatchRefused() throws IOException {
+        try (Socket socket = connect(0, game.getMatchId() + 1000, host.token)) {
+            assertEquals(-1, socket.getInputStream().read());
+        }
+    }
+
+    @Test
+    public void testSilentConnectionTimesOut() throws IOException {
+        GameListener listener = new GameListener(0, 200);
+        listener.start();
+        try (Socket silent = new Socket("localhost", listener.getPort());
+             Socket partial = new Socket("localhost", listener.getPort())) {
+            // Half of the prefix of a frame is not a PORT_PACKET either
+            partial.getOutputStream().write(MessageHeaders.PACKET_HEADER);
+            long start = System.nanoTime();
+            silent.setSoTimeout(5000);
+            partial.setSoTimeout(5000);
+            assertEquals(-1, silent.getInputStream().read());
+            assertEquals(-1, partial.getInputStream().read());
+            assertTrue(System.nanoTime() - start < 5_000_000_000L);
+        } finally {
+            listener.stop();
+        }
+    }
+
+    @Test
+    public void testHandshakeTimeoutEndsWithPortPacket() throws IOException, InterruptedException {
+        gameListener.stop();
+        gameListener = new GameListener(0, 200);
+        gameListener.start();
+        game = new GameServer("game", "", scheduler, gameListener, new LobbyRegistry());
+        game.addClient(host);
+        try (Socket socket = connect(0, game.getMatchId(), host.token)) {
+            // The player waits for the other player for longer than the handshake timeout
+            Thread.sleep(400);
+            assertOpen(socket);
+        }
+    }
+
+    @Test
+    public void testPlayerWhoStopsReadingIsDropped() throws IOException, InterruptedException {
+        try (Socket socket = connect(0, game.getMatchId(), host.token)) {
+            assertOpen(socket);
+            GameConnection connection = host.connection;
+            assertNotNull(connection);
+            ByteWriter message = new ByteWriter();
+            message.write(MessageHeaders.PACKET_HEADER);
+            message.write(MessageHeaders.GAME_STATE);
+            message.write(new byte[FrameCodec.MAX_MESSAGE_LENGTH - 3]);
+
+            // Sending never waits for the player, who reads nothing, until too much is queued for them
+            long start = System.nanoTime();
+            for (int i = 0; i < 2 * GameConnection.MAX_QUEUED / FrameCodec.MAX_MESSAGE_LENGTH; i++) {
+                connection.send(message);
+            }
+            assertTrue(System.nanoTime() - start < 1_000_000_000L);
+            assertTrue(connection.isClosing());
+
+            socket.setSoTimeout(5000);
+            byte[] buffer = new byte[FrameCodec.MAX_MESSAGE_LENGTH];
+            while (socket.getInputStream().read(buffer) >= 0) {
+                // What was written before the connection was closed
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.solarlegendsserver;
+
+import com.game.net.ByteWriter;
+import com.game.net.FrameCodec;
+import com.game.net.MessageHeaders;
+import com.game.state.Loadout;
+import com.solarlegendsserver.utils.Player;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class GameServerTest {
+
+    private GameListener gameListener;
+    private MatchScheduler scheduler;
+    private LobbyRegistry registry;
+    private GameServer game;
+    private Client host;
+    private Client guest;
+    private boolean debug;
+
+    @Before
+    public void init() throws IOException {
+        debug = SolarLegendsServer.DEBUG;
+        SolarLegendsServer.DEBUG = false;
+        scheduler = new MatchScheduler(1, 30);
+        gameListener = new GameListener(0);
+        gameListener.start();
+        registry = new LobbyRegistry();
+        game = new GameServer("game", "", scheduler, gameListener, registry);
+        registry.addGame(game);
+        host = addPlayer("host", 0);
+        guest = addPlayer("guest", 1);
+    }
+
+    @After
+    public void release() {
+        gameListener.stop();
+        scheduler.shutdown();
+        SolarLegendsServer.DEBUG = debug;
+    }
+
+    private Client addPlayer(String name, int id) {
+        Player player = new Player(name);
+        player.id = id;
+        Client client = new Client(null, id, player);
+        game.addClient(client);
+        ArrayList<Loadout> loadouts = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            loadouts.add(new Loadout());
+        }
+        game.addLoadouts(loadouts);
+        return client;
+    }
+
+    /**
+     * Connects a player to the game with its PORT_PACKET.
+     */
+    private Socket connect(Client client) throws IOException {
+        Socket socket = new Socket("localhost", gameListener.getPort());
+        socket.setSoTimeout(5000);
+        ByteWriter message = new ByteWriter();
+        message.write(MessageHeaders.PACKET_HEADER);
+        message.write(MessageHeaders.PORT_PACKET);
+        message.write((byte) client.player.id);
+        message.write(game.getMatchId());
+        message.write(client.token);
+        socket.getOutputStream().write(FrameCodec.encode(message.getBuffer()));
+        return socket;
+    }
+
+    private static void sendLeave(Socket socket) throws IOException {
+        ByteWriter message = new ByteWriter();
+        message.write(MessageHeaders.PACKET_HEADER);
+        message.write(MessageHeaders.LEAVE_GAME);
+        socket.getOutputStream().write(FrameCodec.encode(message.getBuffer()));
+    }
+
+    private static byte[] nextMessage(Socket socket, FrameCodec decoder) throws IOException {
+        byte[] data;
+        while ((data = decoder.nextMessage()) == null) {
+            if (decoder.read(socket.getInputStream()) < 0)
+                throw new EOFException();
+        }
+        return data;
+    }
+
+    private static byte[] waitFor(Socket socket, FrameCodec decoder, byte type) throws IOException {
+        byte[] data;
+        do {
+            data = nextMessage(socket, decoder);
+        } while (data[2] != type);
+        return data;
+    }
+
+    private static boolean isEnd(byte[] data) {
+        return data[2] == MessageHeaders.GAME_ENDED || data[2] == MessageHeaders.LEAVE_GAME;
+    }
+
+    /**
+     * Reads what the game still sends for a while and checks that none of it ends the game again.
+     */
+    private static void assertNoMoreEnds(Socket socket, FrameCodec decoder) throws IOException {
+        socket.setSoTimeout(300);
+        try {
+            while (true) {
+                assertFalse(isEnd(nextMessage(socket, decoder)));
+            }
+        } catch (SocketTimeoutException | EOFException e) {
+            // Nothing more was sent
+        }
+    }
+
+    private void awaitRemoved() throws InterruptedException {
+        for (int i = 0; i < 100 && registry.getGame("game") != null; i++) {
+            Thread.sleep(20);
+        }
+        assertNull(registry.getGame("game"));
+    }
+
+    @Test
+    public void testLeaveEndsGameOnce() throws IOException, InterruptedException {
+        try (Socket hostSocket = connect(host); Socket guestSocket = connect(guest)) {
+            FrameCodec hostDecoder = new FrameCodec();
+            waitFor(hostSocket, hostDecoder, MessageHeaders.BEGIN_GAME);
+            waitFor(guestSocket, new FrameCodec(), MessageHeaders.BEGIN_GAME);
+
+            sendLeave(guestSocket);
+            // The game ends at its next tick, racing the force close of the main server
+            game.forceCloseServer(guest.player.id);
+            while (!isEnd(nextMessage(hostSocket, hostDecoder))) {
+                // The game states sent before it ended
+            }
+            assertNoMoreEnds(hostSocket, hostDecoder);
+            awaitRemoved();
+            assertEquals(0, game.getPlayerCount());
+        }
+    }
+
+    @Test
+    public void testLeaveBeforeBeginIgnored() throws IOException, InterruptedException {
+        try (Socket hostSocket = connect(host)) {
+            sendLeave(hostSocket);
+            try (Socket guestSocket = connect(guest)) {
+                FrameCodec hostDecoder = new FrameCodec();
+                FrameCodec guestDecoder = new FrameCodec();
+                waitFor(hostSocket, hostDecoder, MessageHeaders.BEGIN_GAME);
+                waitFor(guestSocket, guestDecoder, MessageHeaders.BEGIN_GAME);
+
+                // The connection of the host is still listened to, and its leave now ends the game
+                sendLeave(hostSocket);
+                assertEquals(3, waitFor(guestSocket, guestDecoder, MessageHeaders.GAME_ENDED)[3]);
+                assertNoMoreEnds(guestSocket, guestDecoder);
+                awaitRemoved();
+            }
+        }
+    }
+}
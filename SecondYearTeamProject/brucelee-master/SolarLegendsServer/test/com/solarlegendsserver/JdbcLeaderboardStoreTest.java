@@ -0,0 +1,284 @@
+package com.solarlegendsserver;
+
+import com.solarlegendsserver.utils.Player;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JdbcLeaderboardStoreTest {
+
+    private static final String URL = "jdbc:recording:leaderboard";
+
+    /**
+     * A JDBC driver whose connections run nothing, they only record the statements and their parameters.
+     * A query returns the row of the test, anything else changes nothing.
+     */
+    private static class RecordingDriver implements Driver {
+        ArrayList<String> statements = new ArrayList<>();
+        ArrayList<HashMap<Integer, Object>> parameters = new ArrayList<>();
+        Object[] row = {"robert", 3, 1, 2};
+        boolean failIndex;
+        int commits;
+        int rollbacks;
+
+        @Override
+        public Connection connect(String url, Properties info) {
+            if (!acceptsURL(url))
+                return null;
+            return proxy(Connection.class, (method, args) -> {
+                switch (method) {
+                    case "createStatement":
+                        return proxy(Statement.class, (statementMethod, sql) -> {
+                            if (statementMethod.startsWith("execute"))
+                                return execute((String) sql[0], new HashMap<>());
+                            return null;
+                        });
+                    case "prepareStatement":
+                        return prepared((String) args[0]);
+                    case "createArrayOf":
+                        Object[] elements = (Object[]) args[1];
+                        return proxy(Array.class, (arrayMethod, ignored) -> arrayMethod.equals("getArray") ? elements : null);
+                    case "commit":
+                        commits++;
+                        return null;
+                    case "rollback":
+                        rollbacks++;
+                        return null;
+                    default:
+                        return null;
+                }
+            });
+        }
+
+        private PreparedStatement prepared(String sql) {
+            HashMap<Integer, Object> bound = new HashMap<>();
+            return proxy(PreparedStatement.class, (method, args) -> {
+                switch (method) {
+                    case "setString":
+                        bound.put((Integer) args[0], args[1]);
+                        return null;
+                    case "setArray":
+                        bound.put((Integer) args[0], ((Array) args[1]).getArray());
+                        return null;
+                    case "executeUpdate":
+                    case "executeQuery":
+                        return execute(sql, new HashMap<>(bound));
+                    default:
+                        return null;
+                }
+            });
+        }
+
+        private Object execute(String sql, HashMap<Integer, Object> bound) throws SQLException {
+            statements.add(sql);
+            parameters.add(bound);
+            if (failIndex && sql.equals(JdbcLeaderboardStore.CREATE_NAME_INDEX))
+                throw new SQLException("could not create unique index \"leaderboard_name\"");
+            if (!sql.contains("RETURNING") && !sql.startsWith("SELECT"))
+                return null;
+            boolean[] read = new boolean[1];
+            return proxy(ResultSet.class, (method, args) -> {
+                switch (method) {
+                    case "next":
+                        return !read[0] && (read[0] = true);
+                    case "getString":
+                        return row[(Integer) args[0] - 1];
+                    case "getInt":
+                        return row[(Integer) args[0] - 1];
+                    default:
+                        return null;
+                }
+            });
+        }
+
+        @Override
+        public boolean acceptsURL(String url) {
+            return url.startsWith("jdbc:recording:");
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        @Override
+        public Logger getParentLogger() {
+            return Logger.getGlobal();
+        }
+    }
+
+    private interface Handler {
+        Object handle(String method, Object[] args) throws SQLException;
+    }
+
+    /**
+     * @return an implementation of the interface whose methods are handled by the handler, the methods it
+     * does not handle return nothing, false or 0
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            Object result = handler.handle(method.getName(), args == null ? new Object[0] : args);
+            if (result == null && method.getReturnType() == boolean.class)
+                return false;
+            if (result == null && method.getReturnType() == int.class)
+                return 0;
+            return result;
+        });
+    }
+
+    private RecordingDriver driver;
+    private ConnectionPool pool;
+
+    @Before
+    public void init() throws SQLException {
+        driver = new RecordingDriver();
+        DriverManager.registerDriver(driver);
+        pool = new ConnectionPool(URL, "robert", "robert", 2);
+    }
+
+    @After
+    public void release() throws SQLException {
+        pool.close();
+        DriverManager.deregisterDriver(driver);
+    }
+
+    @Test
+    public void testDuplicatesRemovedBeforeIndex() throws SQLException {
+        new JdbcLeaderboardStore(pool);
+        assertEquals(Arrays.asList(JdbcLeaderboardStore.REMOVE_DUPLICATES, JdbcLeaderboardStore.CREATE_NAME_INDEX),
+                driver.statements);
+        assertEquals(1, driver.commits);
+    }
+
+    @Test
+    public void testIndexFailureFailsFast() {
+        driver.failIndex = true;
+        try {
+            new JdbcLeaderboardStore(pool);
+            fail("the store was made without its index");
+        } catch (SQLException e) {
+            assertEquals(0, driver.commits);
+            assertEquals(1, driver.rollbacks);
+        }
+    }
+
+    @Test
+    public void testLoadPlayerIsOneUpsert() throws SQLException {
+        JdbcLeaderboardStore store = new JdbcLeaderboardStore(pool);
+        driver.statements.clear();
+        driver.parameters.clear();
+
+        Player player = store.loadPlayer("robert");
+        assertEquals(1, driver.statements.size());
+        String sql = driver.statements.get(0);
+        assertTrue(sql.startsWith("INSERT INTO leaderboard"));
+        assertTrue(sql.contains("ON CONFLICT (name) DO UPDATE"));
+        assertTrue(sql.contains("RETURNING name, wins, draws, loses"));
+        assertEquals("robert", driver.parameters.get(0).get(1));
+        assertEquals("robert", player.username);
+        assertEquals(3, player.wins);
+        assertEquals(1, player.draws);
+        assertEquals(2, player.loses);
+    }
+
+    @Test
+    public void testResultsAreOneUpsertOfArrays() throws SQLException {
+        JdbcLeaderboardStore store = new JdbcLeaderboardStore(pool);
+        driver.statements.clear();
+        driver.parameters.clear();
+
+        store.addResults(new ArrayList<>());
+        assertTrue(driver.statements.isEmpty());
+
+        ArrayList<Player> results = new ArrayList<>();
+        Player robert = new Player("robert");
+        robert.wins = 2;
+        robert.loses = 1;
+        Player kai = new Player("kai");
+        kai.draws = 1;
+        results.add(robert);
+        results.add(kai);
+        store.addResults(results);
+
+        assertEquals(Arrays.asList(JdbcLeaderboardStore.ADD_RESULTS), driver.statements);
+        assertTrue(JdbcLeaderboardStore.ADD_RESULTS.contains("ON CONFLICT (name) DO UPDATE SET wins = leaderboard.wins + EXCLUDED.wins"));
+        HashMap<Integer, Object> bound = driver.parameters.get(0);
+        assertArrayEquals(new Object[]{"robert", "kai"}, (Object[]) bound.get(1));
+        assertArrayEquals(new Object[]{2, 0}, (Object[]) bound.get(2));
+        assertArrayEquals(new Object[]{0, 1}, (Object[]) bound.get(3));
+        assertArrayEquals(new Object[]{1, 0}, (Object[]) bound.get(4));
+    }
+
+    @Test
+    public void testWriterBatchesResultsByPlayer() throws Exception {
+        driver.row = new Object[]{"robert", 0, 0, 0};
+        DatabaseManager databaseManager = new DatabaseManager(new JdbcLeaderboardStore(pool));
+        try {
+            for (int i = 0; i < 100; i++) {
+                databaseManager.updatePlayer("robert", 1);
+                databaseManager.updatePlayer("kai", i % 2 == 0 ? 0 : -1);
+            }
+            databaseManager.flush();
+        } finally {
+            databaseManager.closeDBConnection();
+        }
+
+        // However the writer split them, each statement holds a player once and nothing is lost
+        int wins = 0;
+        int draws = 0;
+        int loses = 0;
+        for (int i = 0; i < driver.statements.size(); i++) {
+            if (!driver.statements.get(i).equals(JdbcLeaderboardStore.ADD_RESULTS))
+                continue;
+            Object[] names = (Object[]) driver.parameters.get(i).get(1);
+            assertEquals(names.length, new HashSet<>(Arrays.asList(names)).size());
+            for (int j = 0; j < names.length; j++) {
+                wins += (Integer) ((Object[]) driver.parameters.get(i).get(2))[j];
+                draws += (Integer) ((Object[]) driver.parameters.get(i).get(3))[j];
+                loses += (Integer) ((Object[]) driver.parameters.get(i).get(4))[j];
+            }
+        }
+        assertEquals(100, wins);
+        assertEquals(50, draws);
+        assertEquals(50, loses);
+        assertTrue(driver.statements.stream().filter(JdbcLeaderboardStore.ADD_RESULTS::equals).count() < 200);
+    }
+}
@@ -0,0 +1,181 @@
+package com.solarlegendsserver;
+
+import com.solarlegendsserver.utils.Player;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class LeaderboardIndexTest {
+
+    private LeaderboardIndex leaderboard;
+
+    @Before
+    public void init() {
+        leaderboard = new LeaderboardIndex();
+    }
+
+    private static Player player(String username, int wins, int draws, int loses) {
+        Player player = new Player(username);
+        player.wins = wins;
+        player.draws = draws;
+        player.loses = loses;
+        return player;
+    }
+
+    private static ArrayList<String> names(LeaderboardIndex.Page page) {
+        ArrayList<String> names = new ArrayList<>();
+        for (Player player : page.players) {
+            names.add(player.username);
+        }
+        return names;
+    }
+
+    @Test
+    public void ordersByWinRatio() {
+        leaderboard.add(player("new", 0, 0, 0));
+        leaderboard.add(player("half", 1, 0, 1));
+        leaderboard.add(player("perfect", 2, 0, 0));
+        leaderboard.add(player("third", 1, 1, 1));
+        leaderboard.add(player("bigHalf", 300, 0, 300));
+
+        LeaderboardIndex.Page page = leaderboard.getPage(0, 10);
+        assertEquals(5, page.total);
+        assertEquals(0, page.first);
+        // The same ratio is ordered by the number of wins
+        assertEquals("[perfect, bigHalf, half, third, new]", names(page).toString());
+        assertEquals(300, page.players.get(1).wins);
+    }
+
+    @Test
+    public void resultsAddMissingPlayer() {
+        leaderboard.add(player("robert", 1, 0, 0));
+        ArrayList<Player> results = new ArrayList<>();
+        results.add(player("kai", 2, 0, 0));
+        leaderboard.addResults(results);
+
+        LeaderboardIndex.Page page = leaderboard.getPage(0, 10);
+        assertEquals(2, page.total);
+        assertEquals("[kai, robert]", names(page).toString());
+        assertEquals(2, page.players.get(0).wins);
+    }
+
+    @Test
+    public void addKeepsExistingPlayer() {
+        leaderboard.add(player("robert", 5, 0, 0));
+        leaderboard.add(player("robert", 0, 0, 0));
+        assertEquals(1, leaderboard.size());
+        assertEquals(5, leaderboard.getPage(0, 1).players.get(0).wins);
+    }
+
+    @Test
+    public void resultsMovePlayers() {
+        leaderboard.add(player("robert", 1, 0, 1));
+        leaderboard.add(player("kai", 1, 0, 0));
+        assertEquals(1, leaderboard.getRank("robert"));
+
+        ArrayList<Player> results = new ArrayList<>();
+        results.add(player("robert", 3, 0, 0));
+        results.add(player("kai", 0, 0, 1));
+        results.add(player("nobody", 0, 0, 1));
+        leaderboard.addResults(results);
+
+        assertEquals(0, leaderboard.getRank("robert"));
+        assertEquals(1, leaderboard.getRank("kai"));
+        // Added with its results, the same as in the database
+        assertEquals(2, leaderboard.getRank("nobody"));
+        assertEquals(3, leaderboard.size());
+        assertEquals(4, leaderboard.getPage(0, 1).players.get(0).wins);
+    }
+
+    @Test
+    public void pages() {
+        for (int i = 0; i < 100; i++) {
+            leaderboard.add(player("p" + i, i, 0, 100 - i));
+        }
+        LeaderboardIndex.Page page = leaderboard.getPage(10, 5);
+        assertEquals(100, page.total);
+        assertEquals(10, page.first);
+        assertEquals("[p89, p88, p87, p86, p85]", names(page).toString());
+
+        page = leaderboard.getPage(98, 5);
+        assertEquals("[p1, p0]", names(page).toString());
+        assertEquals(0, leaderboard.getPage(200, 5).players.size());
+    }
+
+    @Test
+    public void pageAround() {
+        for (int i = 0; i < 100; i++) {
+            leaderboard.add(player("p" + i, i, 0, 100 - i));
+        }
+        LeaderboardIndex.Page page = leaderboard.getPageAround("p50", 5);
+        assertEquals(47, page.first);
+        assertEquals("[p52, p51, p50, p49, p48]", names(page).toString());
+
+        // At the ends of the leaderboard the page is still full
+        assertEquals(0, leaderboard.getPageAround("p99", 5).first);
+        assertEquals(95, leaderboard.getPageAround("p0", 5).first);
+        assertEquals(0, leaderboard.getPageAround("nobody", 5).first);
+    }
+
+    @Test
+    public void matchesSortedList() {
+        Random random = new Random(7);
+        HashMap<String, Player> players = new HashMap<>();
+        for (int i = 0; i < 2000; i++) {
+            Player player = player("p" + i, random.nextInt(20), random.nextInt(5), random.nextInt(20));
+            players.put(player.username, player);
+            leaderboard.add(player);
+        }
+        for (int round = 0; round < 50; round++) {
+            ArrayList<Player> results = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                Player result = player("p" + random.nextInt(2000), 0, 0, 0);
+                switch (random.nextInt(3)) {
+                    case 0:
+                        result.wins = 1;
+                        break;
+                    case 1:
+                        result.draws = 1;
+                        break;
+                    default:
+                        result.loses = 1;
+                        break;
+                }
+                Player player = players.get(result.username);
+                player.wins += result.wins;
+                player.draws += result.draws;
+                player.loses += result.loses;
+                results.add(result);
+            }
+            leaderboard.addResults(results);
+        }
+
+        ArrayList<Player> expected = new ArrayList<>(players.values());
+        Collections.sort(expected, Comparator
+                .comparingDouble((Player p) -> -ratio(p))
+                .thenComparing(p -> -p.wins)
+                .thenComparing(p -> p.username));
+        LeaderboardIndex.Page page = leaderboard.getPage(0, expected.size());
+        assertEquals(expected.size(), page.players.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Player player = page.players.get(i);
+            assertEquals(expected.get(i).username, player.username);
+            assertEquals(expected.get(i).wins, player.wins);
+            assertEquals(expected.get(i).draws, player.draws);
+            assertEquals(expected.get(i).loses, player.loses);
+            assertEquals(i, leaderboard.getRank(player.username));
+        }
+    }
+
+    private static double ratio(Player player) {
+        int games = player.wins + player.draws + player.loses;
+        return games == 0 ? 0 : (double) player.wins / games;
+    }
+}
@@ -0,0 +1,158 @@
+package com.solarlegendsserver;
+
+import com.solarlegendsserver.utils.Player;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class LobbyRegistryTest {
+
+    private static final int THREADS = 8;
+
+    private LobbyRegistry registry;
+    private MatchScheduler scheduler;
+    private GameListener gameListener;
+    private boolean debug;
+
+    @Before
+    public void init() {
+        debug = SolarLegendsServer.DEBUG;
+        SolarLegendsServer.DEBUG = false;
+        registry = new LobbyRegistry();
+        scheduler = new MatchScheduler(1, 30);
+        gameListener = new GameListener(0);
+    }
+
+    @After
+    public void release() {
+        scheduler.shutdown();
+        SolarLegendsServer.DEBUG = debug;
+    }
+
+    private GameServer game(String name) {
+        return new GameServer(name, "", scheduler, gameListener, registry);
+    }
+
+    /**
+     * Runs the task on THREADS threads at once and rethrows the first error any of them had.
+     */
+    private void runConcurrently(ThreadTask task) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int id = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    task.run(id);
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (!errors.isEmpty())
+            throw new AssertionError(errors.peek());
+    }
+
+    private interface ThreadTask {
+        void run(int id) throws Exception;
+    }
+
+    @Test
+    public void clientsChurn() throws Exception {
+        runConcurrently(id -> {
+            for (int i = 0; i < 20000; i++) {
+                String name = id + ":" + i;
+                registry.addClient(name, new Client(null, i, new Player(name)));
+                assertEquals(name, registry.getClient(name).player.username);
+                // Every other client disconnects again
+                if (i % 2 == 0)
+                    assertNotNull(registry.removeClient(name));
+            }
+        });
+        assertEquals(THREADS * 10000, registry.getClientCount());
+        assertNull(registry.getClient("0:0"));
+        assertEquals("0:1", registry.getClient("0:1").player.username);
+    }
+
+    @Test
+    public void oneGamePerName() throws Exception {
+        AtomicInteger added = new AtomicInteger();
+        runConcurrently(id -> {
+            for (int i = 0; i < 500; i++) {
+                GameServer game = game("game" + i);
+                if (registry.addGame(game)) {
+                    added.incrementAndGet();
+                } else {
+                    game.forceCloseServer(-1);
+                }
+            }
+        });
+        assertEquals(500, added.get());
+        assertEquals(500, registry.getGameCount());
+    }
+
+    @Test
+    public void gamesEndWhileListed() throws Exception {
+        AtomicBoolean listing = new AtomicBoolean(true);
+        AtomicInteger lists = new AtomicInteger();
+        Thread lister = new Thread(() -> {
+            while (listing.get()) {
+                for (GameServer game : registry.getGames()) {
+                    assertNotNull(game.getServerName());
+                }
+                lists.incrementAndGet();
+            }
+        });
+        lister.start();
+        runConcurrently(id -> {
+            for (int i = 0; i < 2000; i++) {
+                GameServer game = game(id + "-" + i);
+                assertEquals(true, registry.addGame(game));
+                // The games of every other round end, from the thread that created them like a MatchScheduler worker
+                if (i % 2 == 1)
+                    game.forceCloseServer(-1);
+            }
+        });
+        listing.set(false);
+        lister.join();
+
+        assertEquals(THREADS * 1000, registry.getGameCount());
+        assertNull(registry.getGame("0-1"));
+        assertNotNull(registry.getGame("0-0"));
+        assertFalse(lists.get() == 0);
+    }
+
+    @Test
+    public void lateEndKeepsNewerGame() {
+        GameServer first = game("robert");
+        registry.addGame(first);
+        first.forceCloseServer(-1);
+        assertNull(registry.getGame("robert"));
+
+        GameServer second = game("robert");
+        registry.addGame(second);
+        // The first game ends a second time, from another of its threads
+        first.forceCloseServer(-1);
+        assertSame(second, registry.getGame("robert"));
+    }
+}
@@ -0,0 +1,170 @@
+package com.solarlegendsserver;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MatchSchedulerTest {
+
+    private MatchScheduler scheduler;
+    private boolean debug;
+
+    @Before
+    public void init() {
+        debug = SolarLegendsServer.DEBUG;
+        SolarLegendsServer.DEBUG = false;
+    }
+
+    @After
+    public void release() {
+        if (scheduler != null)
+            scheduler.shutdown();
+        SolarLegendsServer.DEBUG = debug;
+    }
+
+    /**
+     * Waits until the scheduler is not ticking any match.
+     */
+    private void awaitIdle() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (scheduler.getActiveMatches() > 0) {
+            assertTrue("the matches did not end", System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * A match that records its name every tick and ends after the given number of ticks.
+     */
+    private MatchScheduler.Match recording(String name, int ticks, List<String> order) {
+        AtomicInteger count = new AtomicInteger();
+        return elapsed -> {
+            order.add(name);
+            return count.incrementAndGet() < ticks;
+        };
+    }
+
+    @Test
+    public void testEarliestDeadlineFirst() throws Exception {
+        scheduler = new MatchScheduler(1, 30);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch scheduled = new CountDownLatch(1);
+        // Keeps the only worker busy while the other matches are scheduled
+        scheduler.schedule("blocker", elapsed -> {
+            blocked.countDown();
+            try {
+                scheduled.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        });
+        assertTrue(blocked.await(10, TimeUnit.SECONDS));
+        scheduler.schedule("a", recording("a", 3, order));
+        scheduler.schedule("b", recording("b", 3, order));
+        scheduler.schedule("c", recording("c", 3, order));
+        scheduled.countDown();
+        awaitIdle();
+
+        assertEquals(Arrays.asList("a", "b", "c", "a", "b", "c", "a", "b", "c"), order);
+        assertEquals(10, scheduler.getTicks());
+    }
+
+    @Test
+    public void testManyMatchesShareTheWorkers() throws Exception {
+        scheduler = new MatchScheduler(2, 100);
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        AtomicInteger ticks = new AtomicInteger();
+        for (int i = 0; i < 200; i++) {
+            AtomicInteger count = new AtomicInteger();
+            scheduler.schedule("match " + i, elapsed -> {
+                threads.add(Thread.currentThread());
+                ticks.incrementAndGet();
+                return count.incrementAndGet() < 3;
+            });
+        }
+        awaitIdle();
+
+        // Every match is ticked to its end by the same two threads
+        assertEquals(600, ticks.get());
+        assertEquals(600, scheduler.getTicks());
+        assertTrue(threads.size() <= 2);
+    }
+
+    @Test
+    public void testOverrunsCounted() throws Exception {
+        scheduler = new MatchScheduler(1, 100);
+        AtomicInteger count = new AtomicInteger();
+        // Every tick takes longer than the 10 ms period
+        scheduler.schedule("slow", elapsed -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return count.incrementAndGet() < 4;
+        });
+        awaitIdle();
+
+        assertEquals(4, scheduler.getTicks());
+        // The last tick ends the match, so it has no next deadline to miss
+        assertEquals(3, scheduler.getOverruns());
+    }
+
+    @Test
+    public void testFinishedMatchRemoved() throws Exception {
+        scheduler = new MatchScheduler(1, 100);
+        AtomicInteger ticks = new AtomicInteger();
+        scheduler.schedule("short", elapsed -> ticks.incrementAndGet() < 2);
+        assertEquals(1, scheduler.getActiveMatches());
+        awaitIdle();
+        Thread.sleep(50);
+
+        assertEquals(2, ticks.get());
+        assertEquals(0, scheduler.getActiveMatches());
+    }
+
+    @Test
+    public void testFailedMatchAborted() throws Exception {
+        scheduler = new MatchScheduler(1, 100);
+        AtomicInteger ticks = new AtomicInteger();
+        AtomicInteger aborts = new AtomicInteger();
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        scheduler.schedule("failing", new MatchScheduler.Match() {
+            @Override
+            public boolean tick(long elapsed) {
+                if (ticks.incrementAndGet() == 2)
+                    throw new IllegalStateException("expected by the test");
+                return true;
+            }
+
+            @Override
+            public void abort() {
+                aborts.incrementAndGet();
+            }
+        });
+        scheduler.schedule("healthy", recording("healthy", 5, order));
+        awaitIdle();
+        Thread.sleep(50);
+
+        assertEquals(2, ticks.get());
+        assertEquals(1, aborts.get());
+        assertEquals(0, scheduler.getActiveMatches());
+        // The failure of one match does not stop the worker from ticking the others
+        assertEquals(5, order.size());
+    }
+}
@@ -0,0 +1,206 @@
+package com.solarlegendsserver;
+
+import com.game.net.ByteReader;
+import com.game.net.MessageHeaders;
+import com.game.net.Serializer;
+import com.solarlegendsserver.utils.Player;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ServerBrowserTest {
+
+    private LobbyRegistry registry;
+    private MatchScheduler scheduler;
+    private GameListener gameListener;
+    private ServerBrowser<String> browser;
+    private ArrayList<byte[]> sent = new ArrayList<>();
+    private boolean debug;
+
+    @Before
+    public void init() {
+        debug = SolarLegendsServer.DEBUG;
+        SolarLegendsServer.DEBUG = false;
+        registry = new LobbyRegistry();
+        scheduler = new MatchScheduler(1, 30);
+        gameListener = new GameListener(0);
+        browser = new ServerBrowser<>(registry, (subscriber, message) -> sent.add(message.getBuffer()));
+    }
+
+    @After
+    public void release() {
+        scheduler.shutdown();
+        SolarLegendsServer.DEBUG = debug;
+    }
+
+    private GameServer openGame(String name, String host) {
+        GameServer game = new GameServer(name, "", scheduler, gameListener, registry);
+        registry.addGame(game);
+        Client client = new Client(null, 0, new Player(host));
+        client.player.id = 0;
+        game.addClient(client);
+        return game;
+    }
+
+    private void join(GameServer game, String name) {
+        Client client = new Client(null, 1, new Player(name));
+        client.player.id = 1;
+        game.addClient(client);
+    }
+
+    private static ArrayList<String> names(ArrayList<com.game.net.GameServer> page) {
+        ArrayList<String> names = new ArrayList<>();
+        for (com.game.net.GameServer server : page) {
+            names.add(server.getName() + "/" + server.getHostName() + "/" + server.getCapacity());
+        }
+        return names;
+    }
+
+    /**
+     * @return the page of a new subscriber with the same filter, to compare with the page kept up to date
+     */
+    private ArrayList<com.game.net.GameServer> freshPage(String name, String host, int maxPlayers, int first, int count) {
+        sent.clear();
+        browser.subscribe("fresh", name, host, maxPlayers, first, count);
+        browser.unsubscribe("fresh");
+        return Serializer.deserializeGameServers(sent.get(0), 3);
+    }
+
+    @Test
+    public void snapshotIsPagedAndFiltered() {
+        for (int i = 0; i < 120; i++) {
+            GameServer game = openGame(String.format("game%03d", i), i % 2 == 0 ? "robert" : "kai");
+            if (i % 3 == 0)
+                join(game, "guest");
+        }
+        browser.update();
+
+        browser.subscribe("client", "", "", 2, 0, 500);
+        byte[] message = sent.get(0);
+        assertEquals(MessageHeaders.SERVERS_LIST, message[2]);
+        assertEquals(120, ByteReader.getInt(message, 3));
+        ArrayList<com.game.net.GameServer> page = Serializer.deserializeGameServers(message, 3);
+        assertEquals(ServerBrowser.MAX_PAGE_SIZE, page.size());
+        assertEquals("game000/robert/2", names(page).get(0));
+
+        sent.clear();
+        browser.subscribe("client", "GAME11", "", 2, 5, 10);
+        page = Serializer.deserializeGameServers(sent.get(0), 3);
+        assertEquals(10, ByteReader.getInt(sent.get(0), 3));
+        assertEquals("[game115/kai/1, game116/robert/1, game117/kai/2, game118/robert/1, game119/kai/1]",
+                names(page).toString());
+
+        sent.clear();
+        browser.subscribe("client", "", "kai", 1, 0, 3);
+        page = Serializer.deserializeGameServers(sent.get(0), 3);
+        assertEquals(40, ByteReader.getInt(sent.get(0), 3));
+        assertEquals("[game001/kai/1, game005/kai/1, game007/kai/1]", names(page).toString());
+    }
+
+    @Test
+    public void updatesKeepThePageCurrent() {
+        GameServer first = openGame("alpha", "robert");
+        openGame("charlie", "kai");
+        browser.update();
+        browser.subscribe("client", "", "", 1, 0, 10);
+        ArrayList<com.game.net.GameServer> page = Serializer.deserializeGameServers(sent.get(0), 3);
+        int total = 2;
+
+        // A game opens, one fills up and so no longer matches, and one ends
+        GameServer bravo = openGame("bravo", "guest");
+        join(first, "guest");
+        bravo.forceCloseServer(-1);
+        openGame("delta", "robert");
+        sent.clear();
+        browser.update();
+
+        assertEquals(1, sent.size());
+        assertEquals(MessageHeaders.SERVERS_UPDATE, sent.get(0)[2]);
+        total = Serializer.applyGameServerUpdates(page, sent.get(0), 3);
+        assertEquals(2, total);
+        assertEquals("[charlie/kai/1, delta/robert/1]", names(page).toString());
+        assertEquals(names(freshPage("", "", 1, 0, 10)), names(page));
+    }
+
+    @Test
+    public void fullPageIsNotSentNewGames() {
+        for (int i = 0; i < 10; i++) {
+            openGame(String.format("game%03d", i), "robert");
+        }
+        browser.update();
+        browser.subscribe("client", "", "", 2, 0, 10);
+        sent.clear();
+
+        // Hundreds of games opening and ending outside the page send nothing
+        for (int i = 10; i < 500; i++) {
+            GameServer game = openGame(String.format("game%03d", i), "kai");
+            if (i % 2 == 0)
+                game.forceCloseServer(-1);
+            browser.update();
+        }
+        assertTrue(sent.isEmpty());
+
+        // A change to a game of the page is sent, with the number of games that match now
+        registry.getGame("game003").forceCloseServer(-1);
+        browser.update();
+        assertEquals(1, sent.size());
+        assertEquals(254, ByteReader.getInt(sent.get(0), 3));
+    }
+
+    @Test
+    public void removalFromFullPagePullsInNextGame() {
+        for (String name : new String[]{"alpha", "bravo", "charlie", "delta", "echo"}) {
+            openGame(name, "robert");
+        }
+        browser.update();
+        browser.subscribe("client", "", "", 1, 0, 3);
+        ArrayList<com.game.net.GameServer> page = Serializer.deserializeGameServers(sent.get(0), 3);
+        sent.clear();
+
+        registry.getGame("bravo").forceCloseServer(-1);
+        browser.update();
+
+        assertEquals(1, sent.size());
+        assertEquals(4, Serializer.applyGameServerUpdates(page, sent.get(0), 3));
+        assertEquals("[alpha/robert/1, charlie/robert/1, delta/robert/1]", names(page).toString());
+        assertEquals(names(freshPage("", "", 1, 0, 3)), names(page));
+    }
+
+    @Test
+    public void insertionBeforePageShiftsIt() {
+        for (String name : new String[]{"bravo", "charlie", "delta", "echo"}) {
+            openGame(name, "robert");
+        }
+        browser.update();
+        browser.subscribe("client", "", "", 1, 1, 2);
+        ArrayList<com.game.net.GameServer> page = Serializer.deserializeGameServers(sent.get(0), 3);
+        assertEquals("[charlie/robert/1, delta/robert/1]", names(page).toString());
+        sent.clear();
+
+        // Sorts before the first game of the page, so every game of the page moves down one place
+        openGame("alpha", "kai");
+        browser.update();
+
+        assertEquals(1, sent.size());
+        assertEquals(5, Serializer.applyGameServerUpdates(page, sent.get(0), 3));
+        assertEquals("[bravo/robert/1, charlie/robert/1]", names(page).toString());
+        assertEquals(names(freshPage("", "", 1, 1, 2)), names(page));
+    }
+
+    @Test
+    public void unsubscribedClientIsSentNothing() {
+        browser.subscribe("client", "", "", 2, 0, 10);
+        assertEquals(1, browser.getSubscriberCount());
+        browser.unsubscribe("client");
+        sent.clear();
+        openGame("alpha", "robert");
+        browser.update();
+        assertTrue(sent.isEmpty());
+        assertEquals(0, browser.getSubscriberCount());
+    }
+}
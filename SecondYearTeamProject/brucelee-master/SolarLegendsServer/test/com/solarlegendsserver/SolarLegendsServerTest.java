@@ -0,0 +1,78 @@
+package com.solarlegendsserver;
+
+import com.game.net.ByteWriter;
+import com.game.net.MessageHeaders;
+import com.game.net.Serializer;
+import com.game.state.Loadout;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SolarLegendsServerTest {
+
+    private static ByteWriter message(byte type) {
+        ByteWriter writer = new ByteWriter();
+        writer.write(MessageHeaders.PACKET_HEADER);
+        writer.write(type);
+        return writer;
+    }
+
+    private static byte[] gameRequest(byte type) {
+        ByteWriter writer = message(type);
+        writer.write(false);
+        for (int i = 0; i < 3; i++) {
+            Serializer.serializeLoadout(new Loadout(), writer);
+        }
+        writer.write("game");
+        writer.write("password");
+        return writer.getBuffer();
+    }
+
+    @Test
+    public void testConnection() {
+        ByteWriter writer = message(MessageHeaders.CONNECTION);
+        writer.write("robert");
+        assertTrue(SolarLegendsServer.isWellFormed(writer.getBuffer()));
+        assertFalse(SolarLegendsServer.isWellFormed(message(MessageHeaders.CONNECTION).getBuffer()));
+        assertFalse(SolarLegendsServer.isWellFormed(new byte[]{0x12}));
+    }
+
+    @Test
+    public void testGameRequests() {
+        for (byte type : new byte[]{MessageHeaders.CREATE_SERVER, MessageHeaders.JOIN_SERVER}) {
+            byte[] data = gameRequest(type);
+            assertTrue(SolarLegendsServer.isWellFormed(data));
+            // Cut inside the password, inside the loadouts and right after the type
+            assertFalse(SolarLegendsServer.isWellFormed(Arrays.copyOf(data, data.length - 1)));
+            assertFalse(SolarLegendsServer.isWellFormed(Arrays.copyOf(data, 20)));
+            assertFalse(SolarLegendsServer.isWellFormed(Arrays.copyOf(data, 3)));
+        }
+        // The messages of the games are not for the main server
+        assertFalse(SolarLegendsServer.isWellFormed(gameRequest(MessageHeaders.LEAVE_GAME)));
+    }
+
+    @Test
+    public void testServersList() {
+        assertTrue(SolarLegendsServer.isWellFormed(message(MessageHeaders.SERVERS_LIST).getBuffer()));
+        ByteWriter writer = message(MessageHeaders.SERVERS_LIST);
+        writer.write("");
+        writer.write("kai");
+        writer.write((byte) 2);
+        writer.write(0);
+        writer.write((byte) 10);
+        byte[] data = writer.getBuffer();
+        assertTrue(SolarLegendsServer.isWellFormed(data));
+        for (int length = 4; length < data.length; length++) {
+            assertFalse(SolarLegendsServer.isWellFormed(Arrays.copyOf(data, length)));
+        }
+    }
+
+    @Test
+    public void testOtherRequests() {
+        assertTrue(SolarLegendsServer.isWellFormed(message(MessageHeaders.LEADERBOARD).getBuffer()));
+        assertTrue(SolarLegendsServer.isWellFormed(message(MessageHeaders.FORCE_QUIT).getBuffer()));
+    }
+}
@@ -0,0 +1,135 @@
+package com.game.net;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * A local regression gate for the wire formats. It runs SerializerBenchmark with the GC profiler
+ * and compares the ns/op and B/op of every benchmark against a baseline file. The process exits
+ * with 1 if a result is worse than the baseline by more than the tolerance, so it can be used
+ * before and after changing the protocol.
+ * <p>
+ * Usage: {@code BenchmarkGate <baseline file> [benchmark regex]}. With {@code -Dgate.update=true},
+ * or when the file does not exist yet, the results are written as the new baseline instead.
+ * {@code -Dgate.tolerance} sets the allowed slowdown, 0.25 by default. The times depend on the
+ * machine, so the baseline should be recorded on the machine the gate runs on.
+ * </p>
+ *
+ * @author Robert Chiper
+ */
+public class BenchmarkGate {
+    private static final String ALLOCATION = "gc.alloc.rate.norm";
+    // Allocation noise of the profiler, in bytes per operation
+    private static final double ALLOCATION_SLACK = 16;
+
+    public static void main(String[] args) throws IOException, RunnerException {
+        if (args.length < 1) {
+            System.out.println("Usage: BenchmarkGate <baseline file> [benchmark regex]");
+            System.exit(2);
+        }
+        Path baselineFile = Paths.get(args[0]);
+        String include = args.length > 1 ? args[1] : SerializerBenchmark.class.getSimpleName();
+        double tolerance = Double.parseDouble(System.getProperty("gate.tolerance", "0.25"));
+
+        Options options = new OptionsBuilder()
+                .include(include)
+                .addProfiler(GCProfiler.class)
+                .shouldFailOnError(true)
+                .build();
+        Map<String, Double> results = collect(new Runner(options).run());
+
+        if (Boolean.getBoolean("gate.update") || !Files.exists(baselineFile)) {
+            store(results, baselineFile);
+            System.out.println("Baseline written to " + baselineFile);
+            return;
+        }
+
+        Properties baseline = new Properties();
+        try (InputStream in = new FileInputStream(baselineFile.toFile())) {
+            baseline.load(in);
+        }
+
+        int regressions = 0;
+        System.out.println();
+        System.out.printf("%-60s %12s %12s%n", "Benchmark", "Baseline", "Current");
+        for (Map.Entry<String, Double> result : results.entrySet()) {
+            String key = result.getKey();
+            double current = result.getValue();
+            String value = baseline.getProperty(key);
+            if (value == null) {
+                System.out.printf("%-60s %12s %12.1f  not in the baseline%n", key, "-", current);
+                continue;
+            }
+            double expected = Double.parseDouble(value);
+            double limit = expected * (1 + tolerance);
+            if (key.endsWith(".bytes"))
+                limit += ALLOCATION_SLACK;
+            boolean regressed = current > limit;
+            if (regressed)
+                regressions++;
+            System.out.printf("%-60s %12.1f %12.1f%s%n", key, expected, current, regressed ? "  REGRESSION" : "");
+        }
+
+        if (regressions > 0) {
+            System.out.println(regressions + " benchmark results are worse than the baseline");
+            System.exit(1);
+        }
+        System.out.println("No regressions");
+    }
+
+    /**
+     * @param runResults the results of the run
+     * @return the ns/op and B/op of every benchmark, keyed by benchmark name and scale
+     */
+    private static Map<String, Double> collect(Collection<RunResult> runResults) {
+        Map<String, Double> results = new TreeMap<>();
+        for (RunResult runResult : runResults) {
+            String benchmark = runResult.getParams().getBenchmark();
+            String key = benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1);
+            String scale = runResult.getParams().getParam("scale");
+            if (scale != null)
+                key += "." + scale;
+
+            results.put(key + ".ns", runResult.getPrimaryResult().getScore());
+            Result allocation = runResult.getSecondaryResults().get(ALLOCATION);
+            if (allocation != null)
+                results.put(key + ".bytes", allocation.getScore());
+        }
+        return results;
+    }
+
+    /**
+     * Writes the results sorted by name, so the baseline file diffs cleanly.
+     *
+     * @param results the results to be stored
+     * @param file    the baseline file
+     * @throws IOException if the file cannot be written
+     */
+    private static void store(Map<String, Double> results, Path file) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+            out.println("# ns/op (.ns) and B/op (.bytes) of the wire format benchmarks");
+            out.println("# Written by BenchmarkGate with -Dgate.update=true");
+            for (Map.Entry<String, Double> result : results.entrySet()) {
+                out.printf(Locale.ROOT, "%s=%.1f%n", result.getKey(), result.getValue());
+            }
+        }
+    }
+}
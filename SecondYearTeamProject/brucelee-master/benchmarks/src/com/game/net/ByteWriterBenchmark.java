@@ -0,0 +1,115 @@
+package com.game.net;
+
+import com.game.physics.Coord;
+import com.game.physics.Robot;
+import com.game.state.Loadout;
+import com.game.weapon.Weapon;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares building and reading a GAME_STATE sized message with ByteUtils against ByteWriter and
+ * ByteReader. The ByteUtils side writes the robots the way Serializer did before it moved to
+ * ByteWriter. Run it with {@code -prof gc} to see the bytes allocated per message.
+ *
+ * @author Robert Chiper
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ByteWriterBenchmark {
+
+    private ArrayList<Robot> robots;
+    private ByteWriter byteWriter;
+    private byte[] message;
+
+    @Setup
+    public void setup() {
+        robots = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            robots.add(new Robot(50, 23, new Coord(100 + 150 * i, 400), new Loadout(), i));
+        }
+        byteWriter = new ByteWriter();
+        message = buildWithByteUtils();
+    }
+
+    @Benchmark
+    public byte[] buildWithByteUtils() {
+        ByteUtils byteUtils = new ByteUtils();
+        byteUtils.write(MessageHeaders.PACKET_HEADER);
+        byteUtils.write(MessageHeaders.GAME_STATE);
+        byteUtils.write((short) 1);
+        byteUtils.write((short) 1);
+        byteUtils.write((byte) 0);
+        byteUtils.write((byte) 0);
+        byteUtils.write((byte) 0);
+        for (Robot robot : robots) {
+            ByteUtils robotBytes = new ByteUtils();
+            robotBytes.write((byte) robot.getRobotId());
+            robotBytes.write(robot.isDead());
+            robotBytes.write((short) robot.getXPos());
+            robotBytes.write((short) robot.getYPos());
+            robotBytes.write((byte) robot.getHealth());
+            robotBytes.write((short) robot.getEnergy());
+            for (Weapon weapon : robot.getAllWeapons()) {
+                robotBytes.write((byte) weapon.getAmmo());
+            }
+            robotBytes.write((byte) robot.getWeaponSlot());
+            robotBytes.write((short) robot.getAngle());
+            robotBytes.write((byte) robot.getPower());
+            robotBytes.write((byte) robot.getImageId());
+            robotBytes.write((byte) robot.getTimer());
+            byteUtils.write(robotBytes.getBuffer());
+        }
+        return byteUtils.getBuffer();
+    }
+
+    @Benchmark
+    public int buildWithByteWriter() {
+        byteWriter.flush();
+        byteWriter.write(MessageHeaders.PACKET_HEADER);
+        byteWriter.write(MessageHeaders.GAME_STATE);
+        byteWriter.write((short) 1);
+        byteWriter.write((short) 1);
+        byteWriter.write((byte) 0);
+        byteWriter.write((byte) 0);
+        byteWriter.write((byte) 0);
+        Serializer.serializeRobots(robots, byteWriter);
+        return byteWriter.size();
+    }
+
+    @Benchmark
+    public void readWithByteUtils(Blackhole blackhole) {
+        for (int i = 10; i < message.length; i += Serializer.ROBOT_SIZE) {
+            blackhole.consume(ByteUtils.getShort(message, i + 2));
+            blackhole.consume(ByteUtils.getShort(message, i + 4));
+            blackhole.consume(ByteUtils.getShort(message, i + 7));
+            blackhole.consume(ByteUtils.getShort(message, i + 19));
+        }
+    }
+
+    @Benchmark
+    public void readWithByteReader(Blackhole blackhole) {
+        for (int i = 10; i < message.length; i += Serializer.ROBOT_SIZE) {
+            blackhole.consume(ByteReader.getShort(message, i + 2));
+            blackhole.consume(ByteReader.getShort(message, i + 4));
+            blackhole.consume(ByteReader.getShort(message, i + 7));
+            blackhole.consume(ByteReader.getShort(message, i + 19));
+        }
+    }
+}
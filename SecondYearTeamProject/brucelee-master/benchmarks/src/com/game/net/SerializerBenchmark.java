@@ -0,0 +1,143 @@
+package com.game.net;
+
+import com.game.physics.Coord;
+import com.game.physics.Robot;
+import com.game.state.GameEvent;
+import com.game.state.Loadout;
+import com.game.state.Simulation;
+import com.solarlegendsserver.ServerBrowser;
+import com.solarlegendsserver.SolarLegendsServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the wire formats of Serializer. Every benchmark runs at two scales: "realistic" uses
+ * the sizes of a normal game (6 robots, 3 loadouts, a few servers and explosions) and "stress"
+ * uses the largest lists a message can hold, since the list sizes are sent as a single signed
+ * byte. The leaderboard and the server browser are sent a page at a time, so their stress size is a
+ * full page.
+ * <p>
+ * Run it with {@code -prof gc} to get the bytes allocated per operation next to the time.
+ * BenchmarkGate runs it and compares the results against the committed baseline.
+ * </p>
+ *
+ * @author Robert Chiper
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializerBenchmark {
+    public static final int STRESS_SIZE = 127;
+
+    @Param({"realistic", "stress"})
+    public String scale;
+
+    private ArrayList<Robot> robots;
+    private byte[][] serializedRobots;
+    private ArrayList<Loadout> loadouts;
+    private ArrayList<GameEvent> explosions;
+    private byte[] serversList;
+    private byte[] leaderboard;
+
+    @Setup
+    public void setup() {
+        boolean stress = scale.equals("stress");
+
+        int robotCount = stress ? STRESS_SIZE : Simulation.noTeams * Simulation.teamSize;
+        robots = new ArrayList<>();
+        serializedRobots = new byte[robotCount][];
+        for (int i = 0; i < robotCount; i++) {
+            Robot robot = new Robot(50, 23, new Coord(100 + 7 * i, 400), new Loadout(), i);
+            robots.add(robot);
+            serializedRobots[i] = Serializer.serializeRobot(robot);
+        }
+
+        int loadoutCount = stress ? STRESS_SIZE : Simulation.teamSize;
+        loadouts = new ArrayList<>();
+        for (int i = 0; i < loadoutCount; i++) {
+            loadouts.add(new Loadout());
+        }
+
+        int explosionCount = stress ? STRESS_SIZE : 4;
+        explosions = new ArrayList<>();
+        for (int i = 0; i < explosionCount; i++) {
+            explosions.add(new GameEvent(GameEvent.Type.EXPLOSION, "grenade_impact", 10 * i, 300, 30, null));
+        }
+
+        // The SERVERS_LIST and LEADERBOARD bodies, as the lobby server writes them
+        int serverCount = stress ? ServerBrowser.MAX_PAGE_SIZE : 8;
+        ByteWriter writer = new ByteWriter();
+        writer.write(1000);
+        writer.write(0);
+        writer.write((short) serverCount);
+        for (int i = 0; i < serverCount; i++) {
+            writer.write((byte) (i % 4 + 1));
+            writer.write("Server" + i);
+            writer.write("Player" + i);
+        }
+        serversList = writer.getBuffer();
+
+        int playerCount = stress ? SolarLegendsServer.LEADERBOARD_PAGE_SIZE : 10;
+        writer.flush();
+        writer.write(1000);
+        writer.write(0);
+        writer.write((short) playerCount);
+        for (int i = 0; i < playerCount; i++) {
+            writer.write(i % 100);
+            writer.write(i % 50);
+            writer.write(i % 10);
+            writer.write("Player" + i);
+        }
+        leaderboard = writer.getBuffer();
+    }
+
+    @Benchmark
+    public void serializeRobot(Blackhole blackhole) {
+        for (Robot robot : robots) {
+            blackhole.consume(Serializer.serializeRobot(robot));
+        }
+    }
+
+    @Benchmark
+    public void deserializeRobot(Blackhole blackhole) {
+        for (byte[] robot : serializedRobots) {
+            blackhole.consume(Serializer.deserializeRobot(robot));
+        }
+    }
+
+    @Benchmark
+    public byte[] serializeLoadouts() {
+        return Serializer.serializeLoadouts(loadouts);
+    }
+
+    @Benchmark
+    public ArrayList<GameServer> deserializeGameServers() {
+        return Serializer.deserializeGameServers(serversList, 0);
+    }
+
+    @Benchmark
+    public ArrayList<Player> deserializeLeaderboard() {
+        return Serializer.deserializeLeaderboard(leaderboard, 0);
+    }
+
+    @Benchmark
+    public byte[] serializeExplosions() {
+        return Serializer.serializeExplosions(explosions);
+    }
+}
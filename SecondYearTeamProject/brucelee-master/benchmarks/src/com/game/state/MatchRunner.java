@@ -0,0 +1,142 @@
+package com.game.state;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Plays thousands of complete AI against AI matches without the UI, as fast as the CPU allows, on
+ * a ForkJoinPool, and reports the matches and ticks per second and the time spent in each phase
+ * of the engine. It is the macro benchmark for changes to the engine: run it before and after.
+ * <p>
+ * Usage: java -cp benchmarks.jar com.game.state.MatchRunner [matches] [threads] [first seed]
+ * </p>
+ * <p>
+ * Match i is played with the seed first seed + i, and everything random in a match comes from
+ * that seed, so two runs play the same matches and only the timings differ.
+ * </p>
+ */
+public class MatchRunner {
+
+    // A minute of game time, after which a turn is stuck and its match is stopped
+    private static final int MAX_TURN_TICKS = 3600;
+    // The matches that are played one after another by a task instead of being split further
+    private static final int BATCH = 4;
+
+    /**
+     * What a group of matches added up to.
+     */
+    private static class Totals {
+        int matches;
+        int unfinished;
+        long ticks;
+        long turns;
+        int[] results = new int[3];
+        long[] nanos = new long[HeadlessMatch.Phase.values().length];
+
+        void add(HeadlessMatch match, boolean ended) {
+            matches++;
+            if (ended) {
+                results[match.gameResult]++;
+            } else {
+                unfinished++;
+            }
+            ticks += match.getTicks();
+            turns += match.turnNumber;
+            for (HeadlessMatch.Phase phase : HeadlessMatch.Phase.values()) {
+                nanos[phase.ordinal()] += match.getNanos(phase);
+            }
+        }
+
+        void add(Totals other) {
+            matches += other.matches;
+            unfinished += other.unfinished;
+            ticks += other.ticks;
+            turns += other.turns;
+            for (int i = 0; i < results.length; i++) {
+                results[i] += other.results[i];
+            }
+            for (int i = 0; i < nanos.length; i++) {
+                nanos[i] += other.nanos[i];
+            }
+        }
+    }
+
+    /**
+     * Plays the matches of a range of seeds, splitting the range until it is small enough.
+     */
+    private static class Matches extends RecursiveTask<Totals> {
+        private final long first;
+        private final int count;
+
+        Matches(long first, int count) {
+            this.first = first;
+            this.count = count;
+        }
+
+        @Override
+        protected Totals compute() {
+            if (count <= BATCH) {
+                Totals totals = new Totals();
+                for (int i = 0; i < count; i++) {
+                    HeadlessMatch match = new HeadlessMatch(first + i);
+                    totals.add(match, match.play(MAX_TURN_TICKS));
+                }
+                return totals;
+            }
+            int half = count / 2;
+            Matches left = new Matches(first, half);
+            left.fork();
+            Totals totals = new Matches(first + half, count - half).compute();
+            totals.add(left.join());
+            return totals;
+        }
+    }
+
+    /**
+     * Plays the given number of matches on a pool of the given size.
+     *
+     * @return what the matches added up to.
+     */
+    private static Totals run(int matches, int threads, long firstSeed) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return pool.invoke(new Matches(firstSeed, matches));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public static void main(String[] args) {
+        int matches = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        long firstSeed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+
+        // A short run first, so the numbers are of compiled code
+        int warmup = Math.max(threads * BATCH, matches / 10);
+        System.out.println("Warming up with " + warmup + " matches on " + threads + " threads");
+        run(warmup, threads, firstSeed + matches);
+
+        System.out.println("Playing " + matches + " matches on " + threads + " threads");
+        long start = System.nanoTime();
+        Totals totals = run(matches, threads, firstSeed);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%d matches in %.2f s: %.1f matches/s, %.0f ticks/s%n", totals.matches, seconds,
+                totals.matches / seconds, totals.ticks / seconds);
+        System.out.printf("%.0f ticks and %.1f turns a match, first team won %d, second team won %d, drawn %d, unfinished %d%n",
+                (double) totals.ticks / totals.matches, (double) totals.turns / totals.matches,
+                totals.results[0], totals.results[1], totals.results[2], totals.unfinished);
+
+        // The phases are timed on every thread, so their sum is CPU time and not the wall time above
+        long measured = 0;
+        for (long nanos : totals.nanos) {
+            measured += nanos;
+        }
+        System.out.println("Phase        total ms   ns/tick   share");
+        for (HeadlessMatch.Phase phase : HeadlessMatch.Phase.values()) {
+            long nanos = totals.nanos[phase.ordinal()];
+            System.out.printf("%-10s %10.0f %9.0f %6.1f%%%n", phase.name().toLowerCase(), nanos / 1e6,
+                    (double) nanos / totals.ticks, 100.0 * nanos / Math.max(measured, 1));
+        }
+    }
+}
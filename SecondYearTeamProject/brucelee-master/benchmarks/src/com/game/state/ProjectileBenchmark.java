@@ -0,0 +1,143 @@
+package com.game.state;
+
+import com.game.object.Grenade;
+import com.game.object.Projectile;
+import com.game.object.SupplyDrop;
+import com.game.physics.AABB;
+import com.game.physics.BroadPhase;
+import com.game.physics.Coord;
+import com.game.physics.Robot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the projectile checks of a step the way they were written before, every projectile
+ * against every Robot and SupplyDrop and removed from the list one at a time, against the broad
+ * phase and the removal at the end of the step.
+ * <p>
+ * Hundreds of projectiles are in the air at once, as with a few cluster bombs going off together,
+ * over the robots of a match and a sky full of drops. Half of them are removed, as when they hit
+ * the ground in the same step. The whole check of a step, terrain included, is measured by
+ * simulationChecks.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProjectileBenchmark {
+
+    private static final int DROPS = 24;
+
+    @Param({"100", "400"})
+    public int count;
+
+    private Simulation simulation;
+    private ArrayList<Robot> robots;
+    private ArrayList<SupplyDrop> drops;
+    private ArrayList<Projectile> projectiles;
+    private BroadPhase phase = new BroadPhase();
+    private int[] candidates = new int[64];
+
+    @Setup
+    public void setup() {
+        Loadout[] loadouts = new Loadout[Simulation.noTeams * Simulation.teamSize];
+        for (int i = 0; i < loadouts.length; i++) {
+            loadouts[i] = new Loadout();
+        }
+        simulation = new Simulation(false, false, loadouts, 1);
+        simulation.createGameWorld(1);
+        simulation.init();
+        robots = simulation.getRobots();
+        drops = simulation.getDrops();
+        Random random = new Random(1);
+        int width = simulation.getWorld().getWorldWidth();
+        for (int i = 0; i < DROPS; i++) {
+            drops.add(new SupplyDrop(new Coord(random.nextInt(width - 40), 60 + random.nextInt(200))));
+        }
+        // High in the sky, where they hit nothing
+        projectiles = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            projectiles.add(new Grenade(new Coord(random.nextInt(width - 20), 10 + random.nextInt(40))));
+        }
+    }
+
+    @Benchmark
+    public int targetsLinear() {
+        int hits = 0;
+        for (Projectile p : projectiles) {
+            AABB box = p.getCollisionBox();
+            for (Robot r : robots) {
+                if (r != p.getCreator() && box.intersects(r.getCollisionBox())) {
+                    hits++;
+                }
+            }
+            for (SupplyDrop s : drops) {
+                if (box.intersects(s.getCollisionBox())) {
+                    hits++;
+                }
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int targetsBroadPhase() {
+        phase.clear();
+        for (int i = 0; i < robots.size(); i++) {
+            phase.add(robots.get(i).getCollisionBox(), i);
+        }
+        for (int i = 0; i < drops.size(); i++) {
+            phase.add(drops.get(i).getCollisionBox(), robots.size() + i);
+        }
+        int hits = 0;
+        for (Projectile p : projectiles) {
+            hits += phase.query(p.getCollisionBox(), candidates);
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int removeOneByOne() {
+        ArrayList<Projectile> list = new ArrayList<>(projectiles);
+        for (int i = 0; i < projectiles.size(); i += 2) {
+            list.remove(projectiles.get(i));
+        }
+        return list.size();
+    }
+
+    @Benchmark
+    public int removeDeferred() {
+        ArrayList<Projectile> list = new ArrayList<>(projectiles);
+        boolean[] removed = new boolean[list.size()];
+        for (int i = 0; i < list.size(); i += 2) {
+            removed[i] = true;
+        }
+        int[] index = {0};
+        list.removeIf(p -> removed[index[0]++]);
+        return list.size();
+    }
+
+    @Benchmark
+    public int simulationChecks() {
+        for (Projectile p : projectiles) {
+            simulation.projectileCollisions(p);
+        }
+        return projectiles.size();
+    }
+}
@@ -0,0 +1,166 @@
+package com.game.state;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the terrain queries of the Simulation on the boolean[][] map, the way they were
+ * written before, against the bit-packed TerrainGrid. Both hold the same generated terrain.
+ * <p>
+ * The boxes are the size of a Robot (23x50) and of a projectile (10x10) and sit in the air just
+ * above the ground, so the checks scan the whole box before finding nothing, which is what the
+ * Simulation does on most steps.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TerrainBenchmark {
+
+    private boolean[][] map;
+    private TerrainGrid grid;
+    private int[] xs;
+    private int[] robotYs;
+    private int[] projectileYs;
+
+    @Setup
+    public void setup() {
+        grid = new Terrain(false, 1).map;
+        int width = grid.getWidth();
+        int height = grid.getHeight();
+        map = new boolean[width][height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                map[x][y] = !grid.isSolid(x, y);
+            }
+        }
+        xs = new int[64];
+        robotYs = new int[xs.length];
+        projectileYs = new int[xs.length];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = 20 + i * 28;
+            int ground = height;
+            for (int x = xs[i]; x < xs[i] + 23; x++) {
+                ground = Math.min(ground, grid.firstSolidBelow(x, 0));
+            }
+            robotYs[i] = ground - 51;
+            projectileYs[i] = ground - 11;
+        }
+    }
+
+    @Benchmark
+    public int robotBoxBooleans() {
+        int hits = 0;
+        for (int i = 0; i < xs.length; i++) {
+            if (anySolid(map, xs[i], robotYs[i], 23, 50)) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int robotBoxGrid() {
+        int hits = 0;
+        for (int i = 0; i < xs.length; i++) {
+            if (grid.anySolid(xs[i], robotYs[i], 23, 50)) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int projectileBoxBooleans() {
+        int hits = 0;
+        for (int i = 0; i < xs.length; i++) {
+            if (anySolid(map, xs[i], projectileYs[i], 10, 10)) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int projectileBoxGrid() {
+        int hits = 0;
+        for (int i = 0; i < xs.length; i++) {
+            if (grid.anySolid(xs[i], projectileYs[i], 10, 10)) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int surfaceBooleans() {
+        int sum = 0;
+        for (int i = 0; i < xs.length; i++) {
+            int y = 0;
+            while (y < map[0].length - 1 && map[xs[i]][y + 1]) {
+                y++;
+            }
+            sum += y;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int surfaceGrid() {
+        int sum = 0;
+        for (int i = 0; i < xs.length; i++) {
+            sum += grid.firstSolidBelow(xs[i], 1) - 1;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int floorRowBooleans() {
+        int hits = 0;
+        for (int i = 0; i < xs.length; i++) {
+            int y = robotYs[i] + 50;
+            for (int x = xs[i] + 3; x < xs[i] + 20; x++) {
+                if (!map[x][y]) {
+                    hits++;
+                    break;
+                }
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int floorRowGrid() {
+        int hits = 0;
+        for (int i = 0; i < xs.length; i++) {
+            if (grid.firstSolidInRow(robotYs[i] + 50, xs[i] + 3, xs[i] + 20) != -1) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    private static boolean anySolid(boolean[][] map, int x, int y, int w, int h) {
+        for (int i = x; i < x + w; i++) {
+            for (int j = y; j < y + h; j++) {
+                if (!map[i][j]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
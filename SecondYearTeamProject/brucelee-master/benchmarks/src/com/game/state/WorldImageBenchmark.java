@@ -0,0 +1,106 @@
+package com.game.state;
+
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long the client takes to draw the image of a new world, which it does before the
+ * match can start.
+ * <p>
+ * setColorPerPixel draws the image the way it was written before, a setColor call for each pixel
+ * with the colours of each row kept in a HashMap and the star colour interpolated for each star.
+ * It reads the stars from memory, so it leaves out loading stars.png for every world, which it
+ * also did. updateWorldImage draws it from the colours of each row and the rows in parallel, and
+ * createWorld is the whole of creating a GameWorld on the client, the terrain included.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorldImageBenchmark {
+
+    private GameWorld world;
+    private boolean[][] stars;
+
+    @Setup
+    public void setup() throws IOException {
+        world = new GameWorld(false, 1, true);
+        BufferedImage image = ImageIO.read(WorldImageBenchmark.class.getClassLoader().getResource("res/images/world/stars.png"));
+        stars = new boolean[image.getWidth()][image.getHeight()];
+        for (int x = 0; x < image.getWidth(); x++) {
+            for (int y = 0; y < image.getHeight(); y++) {
+                stars[x][y] = (image.getRGB(x, y) >>> 24) != 0;
+            }
+        }
+    }
+
+    @Benchmark
+    public WritableImage setColorPerPixel() {
+        TerrainGrid map = world.map;
+        int height = map.getHeight();
+        Color topColourSky = Color.DARKBLUE;
+        Color bottomColourSky = Color.LIGHTBLUE;
+        Color topColourGround = Color.GREEN;
+        Color bottomColourGround = Color.TAN.darker();
+        Color caveColour = bottomColourGround.darker();
+        Color starWhite = new Color(1, 1, 1, 1);
+        double redDiffGround = (topColourGround.getRed() - bottomColourGround.getRed()) / height;
+        double greenDiffGround = (topColourGround.getGreen() - bottomColourGround.getGreen()) / height;
+        double blueDiffGround = (topColourGround.getBlue() - bottomColourGround.getBlue()) / height;
+        double redDiffSky = (topColourSky.getRed() - bottomColourSky.getRed()) / height;
+        double greenDiffSky = (topColourSky.getGreen() - bottomColourSky.getGreen()) / height;
+        double blueDiffSky = (topColourSky.getBlue() - bottomColourSky.getBlue()) / height;
+        HashMap<Integer, Color> groundColours = new HashMap<>();
+        HashMap<Integer, Color> skyColours = new HashMap<>();
+
+        WritableImage image = new WritableImage(map.getWidth(), height);
+        PixelWriter pwriter = image.getPixelWriter();
+        for (int y = 0; y < height; y++) {
+            groundColours.put(y, new Color((topColourGround.getRed() - redDiffGround * y), (topColourGround.getGreen() - greenDiffGround * y), (topColourGround.getBlue() - blueDiffGround * y), 1.0));
+            skyColours.put(y, new Color((topColourSky.getRed() - redDiffSky * y), (topColourSky.getGreen() - greenDiffSky * y), (topColourSky.getBlue() - blueDiffSky * y), 1.0));
+            for (int x = 0; x < map.getWidth(); x++) {
+                if (map.isSolid(x, y)) {
+                    pwriter.setColor(x, y, groundColours.get(y));
+                } else if (world.heightCurve[x] < (y - 7)) {
+                    pwriter.setColor(x, y, caveColour);
+                } else if (stars[x][y]) {
+                    pwriter.setColor(x, y, starWhite.interpolate(skyColours.get(y), ((float) y / (float) (height / 1.5))));
+                } else {
+                    pwriter.setColor(x, y, skyColours.get(y));
+                }
+            }
+        }
+        return image;
+    }
+
+    @Benchmark
+    public WritableImage updateWorldImage() {
+        world.updateWorldImage();
+        return world.mapImage;
+    }
+
+    @Benchmark
+    public GameWorld createWorld() {
+        return new GameWorld(false, 1, true);
+    }
+}
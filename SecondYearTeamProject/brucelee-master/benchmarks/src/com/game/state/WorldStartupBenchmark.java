@@ -0,0 +1,78 @@
+package com.game.state;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long a match takes to be ready to play once the seed is known, which the server
+ * and each client spend generating the same terrain before the first turn.
+ * <p>
+ * fillPerCell fills the grid from the height curve the way it was written before, a setSolid call
+ * and a comparison for every pixel, and fillBelow fills it 64 columns at a time. createGameWorld
+ * is the whole of starting a match on the server, from the seed to the robots standing on the
+ * generated terrain.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorldStartupBenchmark {
+
+    private Terrain terrain;
+    private TerrainGrid grid;
+    private Loadout[] loadouts;
+
+    @Setup
+    public void setup() {
+        terrain = new Terrain(false, 1);
+        grid = new TerrainGrid(terrain.getWorldWidth(), terrain.getWorldHeight());
+        loadouts = new Loadout[Simulation.noTeams * Simulation.teamSize];
+        for (int i = 0; i < loadouts.length; i++) {
+            loadouts[i] = new Loadout();
+        }
+    }
+
+    @Benchmark
+    public TerrainGrid fillPerCell() {
+        int[] heightCurve = terrain.heightCurve;
+        for (int y = 0; y < grid.getHeight(); y++) {
+            for (int x = 0; x < grid.getWidth(); x++) {
+                grid.setSolid(x, y, heightCurve[x] < y);
+            }
+        }
+        return grid;
+    }
+
+    @Benchmark
+    public TerrainGrid fillBelow() {
+        grid.fillBelow(terrain.heightCurve);
+        return grid;
+    }
+
+    @Benchmark
+    public Terrain generateTerrain() {
+        terrain.generateTerrain();
+        return terrain;
+    }
+
+    @Benchmark
+    public Simulation createGameWorld() {
+        Simulation simulation = new Simulation(false, false, loadouts, 1);
+        simulation.createGameWorld(1);
+        simulation.init();
+        return simulation;
+    }
+}
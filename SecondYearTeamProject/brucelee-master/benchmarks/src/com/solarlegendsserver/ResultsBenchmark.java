@@ -0,0 +1,138 @@
+package com.solarlegendsserver;
+
+import com.solarlegendsserver.utils.Player;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Results written per second by several game threads at once, each result being one player
+ * finishing a game.
+ * <p>
+ * The leaderboard is a MemoryLeaderboardStore that waits roundTripMicros on every call, which is
+ * what a statement sent to PostgreSQL costs. writeBehind goes through the DatabaseManager, which
+ * merges the queued results and adds each batch in one call. perResult is the way the results
+ * were written before: three statements for every result on the one shared connection.
+ * </p>
+ * <p>
+ * The queue of the DatabaseManager is bounded, so once it is full updatePlayer waits for the
+ * writer and the score is the rate the results reach the store. Each iteration ends with a flush.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class ResultsBenchmark {
+
+    @Param({"0", "200"})
+    public int roundTripMicros;
+
+    private RoundTripStore store;
+    private DatabaseManager databaseManager;
+    private String[] usernames;
+    private final Object connection = new Object();
+
+    @Setup
+    public void setup() {
+        store = new RoundTripStore(TimeUnit.MICROSECONDS.toNanos(roundTripMicros));
+        databaseManager = new DatabaseManager(store);
+        usernames = new String[64];
+        for (int i = 0; i < usernames.length; i++) {
+            usernames[i] = "player" + i;
+            databaseManager.getPlayer(usernames[i]);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void flush() throws InterruptedException {
+        databaseManager.flush();
+    }
+
+    @TearDown
+    public void close() {
+        databaseManager.closeDBConnection();
+    }
+
+    @Benchmark
+    public void writeBehind() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        databaseManager.updatePlayer(usernames[random.nextInt(usernames.length)], random.nextInt(3) - 1);
+    }
+
+    @Benchmark
+    public void perResult() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Player result = new Player(usernames[random.nextInt(usernames.length)]);
+        result.wins = 1;
+        synchronized (connection) {
+            // isRegistered, SELECT and UPDATE
+            store.roundTrip();
+            store.roundTrip();
+            store.roundTrip();
+            store.addResults(Collections.singletonList(result));
+        }
+    }
+
+    /**
+     * A MemoryLeaderboardStore that takes as long as the database to answer.
+     */
+    static class RoundTripStore implements LeaderboardStore {
+        private MemoryLeaderboardStore store = new MemoryLeaderboardStore();
+        private long roundTripNanos;
+
+        RoundTripStore(long roundTripNanos) {
+            this.roundTripNanos = roundTripNanos;
+        }
+
+        void roundTrip() {
+            if (roundTripNanos > 0) {
+                LockSupport.parkNanos(roundTripNanos);
+            }
+        }
+
+        @Override
+        public Player loadPlayer(String username) {
+            roundTrip();
+            return store.loadPlayer(username);
+        }
+
+        @Override
+        public ArrayList<Player> loadPlayers() {
+            roundTrip();
+            return store.loadPlayers();
+        }
+
+        @Override
+        public void addResults(Collection<Player> results) {
+            roundTrip();
+            store.addResults(results);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}